@@ -32,7 +32,13 @@ public final class Constants {
     public static final String NGAP_PDU_CONTENTS = "tr.havelsan.ueransim.ngap.ngap_pdu_contents";
 
     public static final int NGAP_PROTOCOL_ID = 60;
-    public static final int DEFAULT_STREAM_NUMBER = 1;
+    // Number of SCTP streams requested for an NGAP association. Stream 0 carries the non-UE-associated signalling,
+    // and the UEs are distributed over the other streams. See 3GPP TS 38.412 7
+    public static final int SCTP_STREAMS = 16;
+    public static final int NON_UE_STREAM_NUMBER = 0;
+    // Number of NGAP messages that can wait to be written to an SCTP association
+    public static final int SCTP_SEND_QUEUE_CAPACITY = 8192;
+    public static final String DEFAULT_DNN = "internet";
 
     // here assumed always 3 digit, but it can be changed to false for actual production, no problem.
     public static final boolean ALWAYS_LONG_MNC = true;
@@ -28,15 +28,24 @@ package tr.havelsan.ueransim.mts;
 
 import tr.havelsan.ueransim.utils.Utils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class MtsConstruct {
 
+    // Resolved constructors per construction shape
+    private static final ConcurrentHashMap<ShapeKey, ConstructionPlan> plans = new ConcurrentHashMap<>();
+
     private static boolean parameterCountMatches(Constructor<?> constructor, Map<String, Object> parameters) {
         return constructor.getParameterCount() >= parameters.size();
     }
@@ -100,6 +109,25 @@ public class MtsConstruct {
                 return customConstruct.construct(type, args);
         }
 
+        var key = new ShapeKey(type, args, includeCustoms);
+        var plan = plans.get(key);
+        if (plan == null) {
+            plan = resolve(type, args, includeCustoms);
+            if (plan.cacheable) {
+                plans.putIfAbsent(key, plan);
+            }
+        }
+        return (T) plan.construct(type, args, includeCustoms);
+    }
+
+    /**
+     * Clears the resolved constructors, must be called when the custom types are changed.
+     */
+    static void clearCache() {
+        plans.clear();
+    }
+
+    private static ConstructionPlan resolve(Class<?> type, Map<String, Object> args, boolean includeCustoms) {
         var constructors = Arrays.asList(type.getDeclaredConstructors());
 
         var matched = Utils.streamToList(constructors.stream().filter(constructor -> Modifier.isPublic(constructor.getModifiers())));
@@ -118,63 +146,183 @@ public class MtsConstruct {
         if (matched.size() == 0) {
             throw new MtsException("no constructor found for given parameter values for type %s", type.getSimpleName());
         }
+
+        // The exact match depends on the parameter values, not only on their types, so it is not cached
+        boolean cacheable = true;
         if (matched.size() > 1) {
             var exactMatched = Utils.streamToList(matched.stream().filter(constructor -> parameterTypeExactMatches(constructor, args, includeCustoms)));
             if (exactMatched.size() != 1) {
                 throw new MtsException("multiple constructor found for given parameter values for type %s", type.getSimpleName());
             } else {
                 matched = exactMatched;
+                cacheable = false;
             }
         }
 
-        var constructor = matched.get(0);
+        return new ConstructionPlan(matched.get(0), args, includeCustoms, cacheable);
+    }
+
+    private static Object convertParameter(Parameter param, Object value, boolean includeCustoms) {
+        var conversions = MtsConvert.convert(value, param.getType(), includeCustoms);
+
+        var shallowConversions = Utils.streamToList(conversions.stream().filter(conversion -> conversion.depth == 0));
+        var deepConversions = Utils.streamToList(conversions.stream().filter(conversion -> conversion.depth != 0));
 
-        var params = constructor.getParameters();
-        var paramInstances = new Object[params.length];
+        if (shallowConversions.size() == 0 && deepConversions.size() == 0) {
+            throw new MtsException("'%s' parameter value has type '%s', but expected type is '%s' or convertable types.", param.getName(), value.getClass().getSimpleName(), param.getType().getSimpleName());
+        }
 
-        for (int j = 0; j < params.length; j++) {
-            var param = params[j];
-            var value = args.get(param.getName());
+        Conversion<?> selectedConversion;
 
-            if (value instanceof ImplicitTypedObject) {
-                value = construct(param.getType(), (ImplicitTypedObject) value, includeCustoms);
+        if (shallowConversions.size() == 0) {
+            if (deepConversions.size() > 1) {
+                throw new MtsException("multiple convertions matched for parameter '%s'", param.getName());
             }
+            selectedConversion = deepConversions.get(0);
+        } else if (shallowConversions.size() > 1) {
+            throw new MtsException("multiple convertions matched for parameter '%s'", param.getName());
+        } else {
+            selectedConversion = shallowConversions.get(0);
+        }
 
-            var conversions = MtsConvert.convert(value, param.getType(), includeCustoms);
+        return selectedConversion.value;
+    }
 
-            var shallowConversions = Utils.streamToList(conversions.stream().filter(conversion -> conversion.depth == 0));
-            var deepConversions = Utils.streamToList(conversions.stream().filter(conversion -> conversion.depth != 0));
+    public static <T> T construct(Class<T> type, ImplicitTypedObject implicitTypedObject, boolean includeCustoms) {
+        return construct(type, implicitTypedObject.getParameters(), includeCustoms);
+    }
 
-            if (shallowConversions.size() == 0 && deepConversions.size() == 0) {
-                throw new MtsException("'%s' parameter value has type '%s', but expected type is '%s' or convertable types.", param.getName(), value.getClass().getSimpleName(), param.getType().getSimpleName());
-            }
+    /**
+     * Identifies the arguments of a construction by the target type, and the names and value types of the arguments.
+     * Constructor resolution only depends on these, so it is done once per shape.
+     */
+    private static final class ShapeKey {
+        private final Class<?> type;
+        private final boolean includeCustoms;
+        private final String[] names;
+        private final Class<?>[] valueTypes;
+        private final int hash;
 
-            Conversion<?> selectedConversion;
+        ShapeKey(Class<?> type, Map<String, Object> args, boolean includeCustoms) {
+            this.type = type;
+            this.includeCustoms = includeCustoms;
+            this.names = new String[args.size()];
+            this.valueTypes = new Class[args.size()];
 
-            if (shallowConversions.size() == 0) {
-                if (deepConversions.size() > 1) {
-                    throw new MtsException("multiple convertions matched for parameter '%s'", param.getName());
-                }
-                selectedConversion = deepConversions.get(0);
-            } else if (shallowConversions.size() > 1) {
-                throw new MtsException("multiple convertions matched for parameter '%s'", param.getName());
-            } else {
-                selectedConversion = shallowConversions.get(0);
+            int i = 0;
+            for (var entry : args.entrySet()) {
+                names[i] = entry.getKey();
+                valueTypes[i] = entry.getValue() != null ? entry.getValue().getClass() : null;
+                i++;
             }
+            this.hash = 31 * (31 * type.hashCode() + Arrays.hashCode(names)) + Arrays.hashCode(valueTypes)
+                    + (includeCustoms ? 1 : 0);
+        }
 
-            paramInstances[j] = selectedConversion.value;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ShapeKey)) return false;
+            var other = (ShapeKey) o;
+            return hash == other.hash && type == other.type && includeCustoms == other.includeCustoms
+                    && Arrays.equals(names, other.names) && Arrays.equals(valueTypes, other.valueTypes);
         }
 
-        try {
-            return (T) constructor.newInstance(paramInstances);
-        } catch (InvocationTargetException e) {
-            throw new MtsException("construction failed for type %s, error message: %s", type.getSimpleName(), e.getTargetException().getMessage());
-        } catch (Exception e) {
-            throw new MtsException("Instantiation failed");
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
-    public static <T> T construct(Class<T> type, ImplicitTypedObject implicitTypedObject, boolean includeCustoms) {
-        return construct(type, implicitTypedObject.getParameters(), includeCustoms);
+    /**
+     * The resolved constructor of a {@link ShapeKey}, with how each parameter is obtained from its argument, and the
+     * converter of each converted argument.
+     */
+    private static final class ConstructionPlan {
+        private static final int DIRECT = 0;
+        private static final int NESTED = 1;
+        private static final int CONVERTED = 2;
+
+        private final Constructor<?> constructor;
+        private final MethodHandle handle;
+        private final Parameter[] params;
+        private final int[] kinds;
+        private final Function<Object, Object>[] converters;
+        private final boolean cacheable;
+
+        @SuppressWarnings("unchecked")
+        ConstructionPlan(Constructor<?> constructor, Map<String, Object> args, boolean includeCustoms,
+                         boolean cacheable) {
+            this.constructor = constructor;
+            this.params = constructor.getParameters();
+            this.kinds = new int[params.length];
+            this.converters = new Function[params.length];
+            this.cacheable = cacheable;
+
+            for (int i = 0; i < params.length; i++) {
+                var paramType = params[i].getType();
+                var value = args.get(params[i].getName());
+                if (value instanceof ImplicitTypedObject) {
+                    kinds[i] = NESTED;
+                } else if (value == null || (!paramType.isPrimitive() && paramType.isAssignableFrom(value.getClass()))) {
+                    // Same or assignable types are always selected as is by the conversion
+                    kinds[i] = DIRECT;
+                } else {
+                    var param = params[i];
+                    kinds[i] = CONVERTED;
+                    converters[i] = MtsConvert.resolveConverter(value.getClass(), paramType,
+                            v -> convertParameter(param, v, includeCustoms));
+                }
+            }
+
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.publicLookup().unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, params.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException e) {
+                // Falls back to reflection, e.g. for public constructors of non-public classes
+                handle = null;
+            }
+            this.handle = handle;
+        }
+
+        Object construct(Class<?> type, Map<String, Object> args, boolean includeCustoms) {
+            var paramInstances = new Object[params.length];
+
+            for (int j = 0; j < params.length; j++) {
+                var param = params[j];
+                var value = args.get(param.getName());
+
+                switch (kinds[j]) {
+                    case DIRECT:
+                        paramInstances[j] = value;
+                        break;
+                    case NESTED:
+                        // Constructed as the parameter type, so it is passed as is
+                        paramInstances[j] = MtsConstruct.construct(param.getType(), (ImplicitTypedObject) value,
+                                includeCustoms);
+                        break;
+                    default:
+                        paramInstances[j] = converters[j].apply(value);
+                        break;
+                }
+            }
+
+            try {
+                if (handle != null) {
+                    return (Object) handle.invokeExact(paramInstances);
+                }
+                return constructor.newInstance(paramInstances);
+            } catch (InvocationTargetException e) {
+                throw new MtsException("construction failed for type %s, error message: %s", type.getSimpleName(), e.getTargetException().getMessage());
+            } catch (ReflectiveOperationException e) {
+                throw new MtsException("Instantiation failed");
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new MtsException("construction failed for type %s, error message: %s", type.getSimpleName(), t.getMessage());
+            }
+        }
     }
 }
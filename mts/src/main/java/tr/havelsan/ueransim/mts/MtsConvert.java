@@ -34,13 +34,34 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class MtsConvert {
 
+    // Memoised results of isConvertable, indexed by includeCustoms, source type and target type
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Boolean>>[] convertables =
+            new ConcurrentHashMap[]{new ConcurrentHashMap<>(), new ConcurrentHashMap<>()};
+
     public static boolean isConvertable(Class<?> from, Class<?> to, boolean includeCustoms) {
-        return isConvertable(from, to, new HashSet<>(), includeCustoms);
+        var targets = convertables[includeCustoms ? 1 : 0].computeIfAbsent(from, k -> new ConcurrentHashMap<>());
+        var result = targets.get(to);
+        if (result == null) {
+            result = isConvertable(from, to, new HashSet<>(), includeCustoms);
+            targets.put(to, result);
+        }
+        return result;
+    }
+
+    /**
+     * Clears the memoised results, must be called when the custom types are changed.
+     */
+    static void clearCache() {
+        for (var map : convertables) {
+            map.clear();
+        }
     }
 
     private static boolean isConvertable(Class<?> from, Class<?> to, HashSet<Class<?>> visitedSingleParams, boolean includeCustoms) {
@@ -84,6 +105,26 @@ public class MtsConvert {
         return false;
     }
 
+    /**
+     * Returns a converter of the values of the given type to the target type, for the conversions that are selected by
+     * the types only, so that they are resolved once per type pair. The conversions between numbers (and numeric
+     * strings), booleans and characters are resolved; the others (arrays, custom and deep conversions) select among
+     * the conversions of each value, and use the given fallback.
+     */
+    static Function<Object, Object> resolveConverter(Class<?> from, Class<?> to, Function<Object, Object> fallback) {
+        if (Traits.isNumberOrString(to) && Traits.isNumberOrString(from)) {
+            if (Traits.isString(from)) {
+                return value -> Traits.isNumberIfString(value) ? numberConversion(value, to, 0).value
+                        : fallback.apply(value);
+            }
+            return value -> numberConversion(value, to, 0).value;
+        }
+        if ((Traits.isBoolean(from) && Traits.isBoolean(to)) || (Traits.isChar(from) && Traits.isChar(to))) {
+            return value -> value;
+        }
+        return fallback;
+    }
+
     private static <T> Conversion<T> numberConversion(Object value, Class<T> targetType, int depth) {
         var sourceType = value.getClass();
 
@@ -217,7 +258,7 @@ public class MtsConvert {
                 continue;
 
             var ctorParamType = constructor.getParameterTypes()[0];
-            if (isConvertable(from.getClass(), ctorParamType, new HashSet<>(), includeCustoms)) {
+            if (isConvertable(from.getClass(), ctorParamType, includeCustoms)) {
 
                 var innerList = new ArrayList<Conversion<?>>();
                 convert(from, ctorParamType, innerList, visitedSingleParams, depth + 1, includeCustoms);
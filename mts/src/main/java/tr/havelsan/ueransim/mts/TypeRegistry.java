@@ -113,6 +113,10 @@ public final class TypeRegistry {
         registerCustomIsConvertable(customTypeRegistry);
         registerCustomConverter(customTypeRegistry.getRegisteringClass(), customTypeRegistry);
         registerCustomConstruct(customTypeRegistry.getRegisteringClass(), customTypeRegistry);
+
+        // Conversions and constructor resolutions may have changed with the new type
+        MtsConvert.clearCache();
+        MtsConstruct.clearCache();
     }
 
     public static boolean isCustomConvertable(Class<?> from, Class<?> to) {
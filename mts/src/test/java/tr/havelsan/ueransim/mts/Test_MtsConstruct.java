@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.mts;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Test_MtsConstruct {
+
+    public static class Inner {
+        public final int a;
+        public final String b;
+
+        public Inner(int a, String b) {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    public static class Sample {
+        public final int number;
+        public final long big;
+        public final double ratio;
+        public final String text;
+        public final boolean flag;
+        public final char letter;
+        public final Integer parsed;
+        public final Long[] values;
+        public final Inner inner;
+
+        public Sample(int number, long big, double ratio, String text, boolean flag, char letter, Integer parsed,
+                      Long[] values, Inner inner) {
+            this.number = number;
+            this.big = big;
+            this.ratio = ratio;
+            this.text = text;
+            this.flag = flag;
+            this.letter = letter;
+            this.parsed = parsed;
+            this.values = values;
+            this.inner = inner;
+        }
+    }
+
+    private static Map<String, Object> args(int seed) {
+        var inner = new LinkedHashMap<String, Object>();
+        inner.put("a", String.valueOf(seed));
+        inner.put("b", "inner" + seed);
+
+        var args = new LinkedHashMap<String, Object>();
+        args.put("number", seed);
+        args.put("big", seed * 1000);
+        args.put("ratio", seed);
+        args.put("text", seed + 1);
+        args.put("flag", seed % 2 == 0);
+        args.put("letter", (char) ('a' + seed));
+        args.put("parsed", String.valueOf(seed * 2));
+        args.put("values", new Object[]{seed, (long) seed + 1});
+        args.put("inner", new ImplicitTypedObject(inner));
+        return args;
+    }
+
+    /**
+     * Selects the conversion of the value the way the parameters were converted on each construction before the
+     * converters were resolved in the construction plans.
+     */
+    private static Object convertedBySelection(Object value, Class<?> type) {
+        var conversions = MtsConvert.convert(value, type, true);
+        var shallow = conversions.stream().filter(conversion -> conversion.depth == 0).toArray(Conversion[]::new);
+        if (shallow.length == 1) {
+            return shallow[0].value;
+        }
+        Assert.assertEquals(0, shallow.length);
+        Assert.assertEquals(1, conversions.size());
+        return conversions.get(0).value;
+    }
+
+    @Test
+    public void testPlanMatchesConversionSelection() {
+        // Constructed repeatedly with the same shape, the first construction resolves the plan
+        for (int seed = 1; seed <= 3; seed++) {
+            var args = args(seed);
+            var sample = MtsConstruct.construct(Sample.class, args, true);
+
+            Assert.assertEquals(convertedBySelection(args.get("number"), int.class), sample.number);
+            Assert.assertEquals(convertedBySelection(args.get("big"), long.class), sample.big);
+            Assert.assertEquals(convertedBySelection(args.get("ratio"), double.class), sample.ratio);
+            Assert.assertEquals(convertedBySelection(args.get("text"), String.class), sample.text);
+            Assert.assertEquals(convertedBySelection(args.get("flag"), boolean.class), sample.flag);
+            Assert.assertEquals(convertedBySelection(args.get("letter"), char.class), sample.letter);
+            Assert.assertEquals(convertedBySelection(args.get("parsed"), Integer.class), sample.parsed);
+            Assert.assertArrayEquals((Long[]) convertedBySelection(args.get("values"), Long[].class), sample.values);
+
+            Assert.assertEquals(seed, sample.number);
+            Assert.assertEquals(seed * 1000L, sample.big);
+            Assert.assertEquals(String.valueOf(seed + 1), sample.text);
+            Assert.assertEquals(Integer.valueOf(seed * 2), sample.parsed);
+            Assert.assertArrayEquals(new Long[]{(long) seed, (long) seed + 1}, sample.values);
+            Assert.assertEquals(seed, sample.inner.a);
+            Assert.assertEquals("inner" + seed, sample.inner.b);
+        }
+    }
+
+    @Test
+    public void testNonNumericStringIsRejected() {
+        var args = args(1);
+        MtsConstruct.construct(Sample.class, args, true);
+
+        // Same shape as the resolved plan, but the string is not a number
+        args.put("parsed", "not a number");
+        try {
+            MtsConstruct.construct(Sample.class, args, true);
+            Assert.fail();
+        } catch (MtsException ignored) {
+        }
+    }
+}
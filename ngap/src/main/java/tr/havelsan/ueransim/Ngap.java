@@ -77,7 +77,7 @@ public class Ngap {
 
         var context = new Context();
         try {
-            asn = Loader.load(context, Utils.getResourceStream("asntable.dat"));
+            asn = Loader.load(context, new ByteArrayInputStream(AsnTable.CONTENT));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -100,6 +100,13 @@ public class Ngap {
         return context;
     }
 
+    /**
+     * Loads the ASN.1 runtime and the abstract syntax table, for warming up before the first message is encoded.
+     */
+    public static void warmUp() {
+        getContext();
+    }
+
     public static byte[] perEncode(Value value) {
         try (var stream = new ByteArrayOutputStream()) {
             value.perEncode(getContext(), stream);
@@ -289,4 +296,9 @@ public class Ngap {
         res.valueList = list;
         return res;
     }
+
+    // Contents of asntable.dat, read once on first use and shared by the contexts of all threads
+    private static final class AsnTable {
+        static final byte[] CONTENT = Utils.getResourceFile("asntable.dat");
+    }
 }
@@ -33,12 +33,24 @@ import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
 import tr.havelsan.ueransim.utils.Utils;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+/**
+ * Metadata of the NGAP PDU contents and procedures.
+ * <p>
+ * The metadata is loaded on first use from the compact binary form generated by {@link NgapDataCompiler} at build
+ * time, or from the JSON resources if the binary form is not available.
+ */
 public class NgapData {
+    public static final String BINARY_RESOURCE = "ngap_data.bin";
+    private static final int BINARY_VERSION = 1;
 
     private static HashMap<String, Integer> procedureCodeIds;
     private static HashMap<String, Integer> ieIds;
@@ -46,7 +58,24 @@ public class NgapData {
     private static HashMap<String, ProcedureInfo> procedures;
     private static HashSet<String> ieTypeNames;
 
+    // Procedures and PDU types indexed by message name, so that the lookups do not scan all procedures
+    private static HashMap<String, ProcedureInfo> messageProcedures;
+    private static HashMap<String, NgapPduType> messagePduTypes;
+
     static {
+        var binary = Utils.getResourceStream(BINARY_RESOURCE);
+        if (binary != null) {
+            try (var in = new DataInputStream(new BufferedInputStream(binary))) {
+                readBinary(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            readJson();
+        }
+    }
+
+    static void readJson() {
         var gson = new Gson();
 
         Runnable readNgapConstants = () -> {
@@ -80,64 +109,155 @@ public class NgapData {
             procedures = gson.fromJson(json.get("procedures"), TypeToken.getParameterized(HashMap.class, String.class, ProcedureInfo.class).getType());
         };
 
-        Runnable readIeTypeNames = () -> {
-            ieTypeNames = new HashSet<>();
-            for (var pduContent : pduContents.values()) {
-                for (var ie : pduContent.ies) {
-                    ieTypeNames.add(ie.type);
-                }
-            }
-        };
-
         readNgapConstants.run();
         readNgapPduContents.run();
         readNgapPduDescriptions.run();
-        readIeTypeNames.run();
+        buildIndexes();
     }
 
-    public static NgapPduType findPduType(NgapMessageType messageType) {
-        for (var item : procedures.values()) {
-            if (messageType.name().equals(item.initiatingMessage)) {
-                return NgapPduType.INITIATING_MESSAGE;
+    static void writeBinary(DataOutputStream out) throws IOException {
+        out.writeInt(BINARY_VERSION);
+
+        writeIds(out, procedureCodeIds);
+        writeIds(out, ieIds);
+
+        out.writeInt(pduContents.size());
+        for (var pduContent : pduContents.values()) {
+            out.writeUTF(pduContent.name);
+            out.writeBoolean(pduContent.isPrivate);
+            out.writeInt(pduContent.ies.length);
+            for (var ie : pduContent.ies) {
+                out.writeUTF(ie.id);
+                out.writeInt(ie.criticality);
+                out.writeUTF(ie.type);
+                out.writeInt(ie.presence);
             }
-            if (messageType.name().equals(item.successfulOutcome)) {
-                return NgapPduType.SUCCESSFUL_OUTCOME;
+        }
+
+        out.writeInt(procedures.size());
+        for (var entry : procedures.entrySet()) {
+            var procedure = entry.getValue();
+            out.writeUTF(entry.getKey());
+            writeNullable(out, procedure.initiatingMessage);
+            writeNullable(out, procedure.successfulOutcome);
+            writeNullable(out, procedure.unsuccessfulOutcome);
+            writeNullable(out, procedure.procedureCode);
+            writeNullable(out, procedure.criticality);
+        }
+    }
+
+    private static void readBinary(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("unsupported " + BINARY_RESOURCE + " version: " + version);
+        }
+
+        procedureCodeIds = readIds(in);
+        ieIds = readIds(in);
+
+        int pduContentCount = in.readInt();
+        pduContents = new HashMap<>(pduContentCount * 2);
+        for (int i = 0; i < pduContentCount; i++) {
+            var name = in.readUTF();
+            var isPrivate = in.readBoolean();
+            var ies = new PduContent.InformationElement[in.readInt()];
+            for (int j = 0; j < ies.length; j++) {
+                ies[j] = new PduContent.InformationElement(in.readUTF(), in.readInt(), in.readUTF(), in.readInt());
             }
-            if (messageType.name().equals(item.unsuccessfulOutcome)) {
-                return NgapPduType.UNSUCCESSFUL_OUTCOME;
+            pduContents.put(name, new PduContent(name, isPrivate, ies));
+        }
+
+        int procedureCount = in.readInt();
+        procedures = new HashMap<>(procedureCount * 2);
+        for (int i = 0; i < procedureCount; i++) {
+            var key = in.readUTF();
+            procedures.put(key, new ProcedureInfo(readNullable(in), readNullable(in), readNullable(in),
+                    readNullable(in), readNullable(in)));
+        }
+
+        buildIndexes();
+    }
+
+    private static void buildIndexes() {
+        ieTypeNames = new HashSet<>();
+        for (var pduContent : pduContents.values()) {
+            for (var ie : pduContent.ies) {
+                ieTypeNames.add(ie.type);
             }
         }
+
+        messageProcedures = new HashMap<>();
+        messagePduTypes = new HashMap<>();
+        for (var item : procedures.values()) {
+            indexMessage(item.initiatingMessage, item, NgapPduType.INITIATING_MESSAGE);
+            indexMessage(item.successfulOutcome, item, NgapPduType.SUCCESSFUL_OUTCOME);
+            indexMessage(item.unsuccessfulOutcome, item, NgapPduType.UNSUCCESSFUL_OUTCOME);
+        }
+    }
+
+    private static void indexMessage(String message, ProcedureInfo procedure, NgapPduType pduType) {
+        if (message != null) {
+            messageProcedures.putIfAbsent(message, procedure);
+            messagePduTypes.putIfAbsent(message, pduType);
+        }
+    }
+
+    private static void writeIds(DataOutputStream out, HashMap<String, Integer> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (var entry : ids.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static HashMap<String, Integer> readIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        var ids = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++) {
+            ids.put(in.readUTF(), in.readInt());
+        }
+        return ids;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Forces the metadata to be loaded, for warming up before the first message is built.
+     */
+    public static void warmUp() {
+    }
+
+    public static NgapPduType findPduType(NgapMessageType messageType) {
+        var pduType = messagePduTypes.get(messageType.name());
+        if (pduType != null) {
+            return pduType;
+        }
         Logging.error(Tag.NGAP_INTERNAL, "failed to findPduType of message: %s", messageType.name());
         throw new RuntimeException();
     }
 
     public static NgapCriticality findMessageCriticality(NgapMessageType messageType) {
-        for (var item : procedures.values()) {
-            if (messageType.name().equals(item.initiatingMessage)) {
-                return NgapCriticality.fromAsnValue(item.criticality);
-            }
-            if (messageType.name().equals(item.successfulOutcome)) {
-                return NgapCriticality.fromAsnValue(item.criticality);
-            }
-            if (messageType.name().equals(item.unsuccessfulOutcome)) {
-                return NgapCriticality.fromAsnValue(item.criticality);
-            }
+        var item = messageProcedures.get(messageType.name());
+        if (item != null) {
+            return NgapCriticality.fromAsnValue(item.criticality);
         }
         Logging.error(Tag.NGAP_INTERNAL, "failed to findMessageCriticality of message: %s", messageType.name());
         throw new RuntimeException();
     }
 
     public static int findProcedureCode(NgapMessageType messageType) {
-        for (var item : procedures.values()) {
-            if (messageType.name().equals(item.initiatingMessage)) {
-                return procedureCodeIds.get(item.procedureCode);
-            }
-            if (messageType.name().equals(item.successfulOutcome)) {
-                return procedureCodeIds.get(item.procedureCode);
-            }
-            if (messageType.name().equals(item.unsuccessfulOutcome)) {
-                return procedureCodeIds.get(item.procedureCode);
-            }
+        var item = messageProcedures.get(messageType.name());
+        if (item != null) {
+            return procedureCodeIds.get(item.procedureCode);
         }
         Logging.error(Tag.NGAP_INTERNAL, "failed to findProcedureCode of message: %s", messageType.name());
         throw new RuntimeException();
@@ -29,28 +29,50 @@ package tr.havelsan.ueransim.sctp;
 import com.sun.nio.sctp.AbstractNotificationHandler;
 import com.sun.nio.sctp.AssociationChangeNotification;
 import com.sun.nio.sctp.HandlerResult;
+import com.sun.nio.sctp.SendFailedNotification;
 import com.sun.nio.sctp.ShutdownNotification;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
 
-import java.io.PrintStream;
-
-public class AssociationHandler extends AbstractNotificationHandler<PrintStream> {
+/**
+ * Logs the SCTP notifications of an association. The attachment is the address of the peer. The receive call returns
+ * when the association is no longer usable.
+ */
+public class AssociationHandler extends AbstractNotificationHandler<String> {
 
     @Override
-    public HandlerResult handleNotification(AssociationChangeNotification notification, PrintStream attachment) {
-        if (notification.event() == AssociationChangeNotification.AssocChangeEvent.COMM_UP) {
-            int outbound = notification.association().maxOutboundStreams();
-            int inbound = notification.association().maxInboundStreams();
-            attachment.printf(
-                    "New association setup with %d outbound streams" + ", and %d inbound streams.\n",
-                    outbound, inbound
-            );
+    public HandlerResult handleNotification(AssociationChangeNotification notification, String peer) {
+        switch (notification.event()) {
+            case COMM_UP:
+                Logging.info(Tag.CONNECTION, "SCTP association with %s is up with %d outbound and %d inbound streams",
+                        peer, notification.association().maxOutboundStreams(),
+                        notification.association().maxInboundStreams());
+                return HandlerResult.CONTINUE;
+            case RESTART:
+                Logging.warning(Tag.CONNECTION, "SCTP association with %s is restarted", peer);
+                return HandlerResult.CONTINUE;
+            case COMM_LOST:
+            case CANT_START:
+                Logging.error(Tag.CONNECTION, "SCTP association with %s is lost", peer);
+                return HandlerResult.RETURN;
+            case SHUTDOWN:
+                Logging.info(Tag.CONNECTION, "SCTP association with %s is shut down", peer);
+                return HandlerResult.RETURN;
+            default:
+                return HandlerResult.CONTINUE;
         }
+    }
+
+    @Override
+    public HandlerResult handleNotification(SendFailedNotification notification, String peer) {
+        Logging.error(Tag.CONNECTION, "SCTP message could not be sent to %s on stream %d", peer,
+                notification.streamNumber());
         return HandlerResult.CONTINUE;
     }
 
     @Override
-    public HandlerResult handleNotification(ShutdownNotification notification, PrintStream attachment) {
-        attachment.print("The association has been shutdown.\n");
+    public HandlerResult handleNotification(ShutdownNotification notification, String peer) {
+        Logging.info(Tag.CONNECTION, "SCTP association with %s is shut down", peer);
         return HandlerResult.RETURN;
     }
-}
\ No newline at end of file
+}
@@ -29,7 +29,11 @@ package tr.havelsan.ueransim.sctp;
 public interface ISctpClient {
     void start() throws Exception;
 
-    void send(int streamNumber, byte[] data);
+    /**
+     * Sends the message, or queues it to be sent. Returns false if the message is rejected because the association is
+     * closed or its send queue is full.
+     */
+    boolean send(int streamNumber, byte[] data);
 
     void receiverLoop(ISCTPHandler handler) throws Exception;
 
@@ -38,4 +42,11 @@ public interface ISctpClient {
     void abortReceiver();
 
     boolean isOpen();
+
+    /**
+     * Returns the number of outbound streams negotiated for the association. Valid after the client is started.
+     */
+    int getOutboundStreams();
+
+    SctpStatistics getStatistics();
 }
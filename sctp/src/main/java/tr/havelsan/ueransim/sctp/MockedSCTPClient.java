@@ -26,19 +26,87 @@
 
 package tr.havelsan.ueransim.sctp;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
+/**
+ * An in-memory SCTP transport to a mocked remote. Messages sent by the client are handed to the remote in the calling
+ * thread, and the responses of the remote are queued until the receiver thread delivers them with their stream
+ * numbers. The receiver thread parks while there is nothing to deliver.
+ * <p>
+ * The link can optionally delay the responses, limit their bandwidth, and drop messages in both directions. Message
+ * arrays are passed by reference, so they must not be modified after they are sent.
+ * <p>
+ * Instead of running the receiver loop, the due responses can be polled with {@link #deliverDue}, e.g. by a
+ * discrete event scheduler giving the link a virtual clock.
+ */
 public class MockedSCTPClient implements ISctpClient {
-    private final Queue<Byte[]> queue;
+    private static final int INITIAL_CAPACITY = 256;
+
     private final IMockedRemote mockedRemote;
+    private final IResponder responder;
+    private final long delayNanos;
+    private final double nanosPerByte;
+    private final double lossRatio;
+    private final LongSupplier nanoClock;
+    private final Random random;
+    private final SctpStatistics statistics;
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+
+    // Ring buffer of the responses waiting for delivery, guarded by the lock. The capacity is a power of two and
+    // only grows, so the steady state does not allocate.
+    private byte[][] messages;
+    private int[] streamNumbers;
+    private long[] deliveryTimes;
+    private int head;
+    private int size;
+    private long linkFreeTime;
 
-    private boolean receiving;
-    private boolean isOpen;
+    private volatile boolean receiving;
+    private volatile boolean isOpen;
 
     public MockedSCTPClient(IMockedRemote mockedRemote) {
-        this.queue = new ArrayDeque<>();
+        this(mockedRemote, 1, 0, 0, 0);
+    }
+
+    /**
+     * @param streams       number of outbound and inbound streams of the association
+     * @param delayNanos    delay of each response, in addition to the time of the remote to handle the request
+     * @param bandwidth     bandwidth of the responses in bits per second, or zero for an unlimited bandwidth
+     * @param lossRatio     probability of dropping a message, applied to both directions
+     */
+    public MockedSCTPClient(IMockedRemote mockedRemote, int streams, long delayNanos, long bandwidth,
+                            double lossRatio) {
+        this(mockedRemote, streams, delayNanos, bandwidth, lossRatio, System::nanoTime, null);
+    }
+
+    /**
+     * @param nanoClock     time source of the delivery times, in nanoseconds
+     * @param random        source of the message losses, or null to use the random of the calling thread
+     */
+    public MockedSCTPClient(IMockedRemote mockedRemote, int streams, long delayNanos, long bandwidth,
+                            double lossRatio, LongSupplier nanoClock, Random random) {
         this.mockedRemote = mockedRemote;
+        this.responder = this::deliver;
+        this.delayNanos = delayNanos;
+        this.nanosPerByte = bandwidth > 0 ? 8e9 / bandwidth : 0;
+        this.lossRatio = lossRatio;
+        this.nanoClock = nanoClock;
+        this.random = random;
+        this.statistics = new SctpStatistics();
+        this.statistics.initStreams(streams, streams);
+
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+
+        this.messages = new byte[INITIAL_CAPACITY][];
+        this.streamNumbers = new int[INITIAL_CAPACITY];
+        this.deliveryTimes = new long[INITIAL_CAPACITY];
 
         this.receiving = false;
         this.isOpen = false;
@@ -50,36 +118,171 @@ public class MockedSCTPClient implements ISctpClient {
     }
 
     @Override
-    public void send(int streamNumber, byte[] data) {
-        mockedRemote.onMessage(data, queue);
+    public boolean send(int streamNumber, byte[] data) {
+        statistics.onSent(streamNumber, data.length);
+        if (isLost()) {
+            statistics.onDropped();
+            return true;
+        }
+        mockedRemote.onMessage(streamNumber, data, responder);
+        return true;
+    }
+
+    private void deliver(int streamNumber, byte[] data) {
+        if (isLost()) {
+            statistics.onDropped();
+            return;
+        }
+
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            long deliveryTime = now + delayNanos;
+            if (nanosPerByte > 0) {
+                linkFreeTime = Math.max(now, linkFreeTime) + (long) (data.length * nanosPerByte);
+                deliveryTime = linkFreeTime + delayNanos;
+            }
+
+            if (size == messages.length) {
+                grow();
+            }
+            int tail = (head + size) & (messages.length - 1);
+            messages[tail] = data;
+            streamNumbers[tail] = streamNumber;
+            deliveryTimes[tail] = deliveryTime;
+            size++;
+
+            // Delivery times are non-decreasing, so the receiver only needs to wake up for the first message
+            if (size == 1) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isLost() {
+        return lossRatio > 0 && (random != null ? random : ThreadLocalRandom.current()).nextDouble() < lossRatio;
+    }
+
+    private void grow() {
+        int capacity = messages.length;
+        var newMessages = new byte[capacity * 2][];
+        var newStreamNumbers = new int[capacity * 2];
+        var newDeliveryTimes = new long[capacity * 2];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & (capacity - 1);
+            newMessages[i] = messages[index];
+            newStreamNumbers[i] = streamNumbers[index];
+            newDeliveryTimes[i] = deliveryTimes[index];
+        }
+        messages = newMessages;
+        streamNumbers = newStreamNumbers;
+        deliveryTimes = newDeliveryTimes;
+        head = 0;
     }
 
     @Override
     public void receiverLoop(ISCTPHandler handler) throws Exception {
         receiving = true;
 
-        while (receiving && isOpen) {
-            while (true) {
-                var entry = queue.poll();
-                if (entry == null) break;
+        while (true) {
+            byte[] data;
+            int streamNumber;
 
-                byte[] response = new byte[entry.length];
-                for (int i = 0; i < response.length; i++) {
-                    response[i] = entry[i];
+            lock.lock();
+            try {
+                // Checked under the lock, so that the signal of close and abortReceiver can not be missed
+                if (!receiving || !isOpen) {
+                    break;
                 }
-                handler.handleSCTPMessage(response);
+                if (size == 0) {
+                    notEmpty.await();
+                    continue;
+                }
+                long remaining = deliveryTimes[head] - nanoClock.getAsLong();
+                if (remaining > 0) {
+                    notEmpty.awaitNanos(remaining);
+                    continue;
+                }
+
+                data = messages[head];
+                streamNumber = streamNumbers[head];
+                messages[head] = null;
+                head = (head + 1) & (messages.length - 1);
+                size--;
+            } finally {
+                lock.unlock();
             }
+
+            statistics.onReceived(streamNumber, data.length);
+            handler.handleSCTPMessage(data, streamNumber);
+        }
+    }
+
+    /**
+     * Returns the delivery time of the next response, or {@link Long#MAX_VALUE} if there is none or the client is not
+     * open.
+     */
+    public long nextDeliveryTime() {
+        lock.lock();
+        try {
+            return size == 0 || !isOpen ? Long.MAX_VALUE : deliveryTimes[head];
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Delivers the responses whose delivery time has come to the given handler, in the calling thread. Returns the
+     * number of delivered responses.
+     */
+    public int deliverDue(ISCTPHandler handler) throws Exception {
+        int delivered = 0;
+        while (isOpen) {
+            byte[] data;
+            int streamNumber;
+
+            lock.lock();
+            try {
+                if (size == 0 || deliveryTimes[head] > nanoClock.getAsLong()) {
+                    break;
+                }
+                data = messages[head];
+                streamNumber = streamNumbers[head];
+                messages[head] = null;
+                head = (head + 1) & (messages.length - 1);
+                size--;
+            } finally {
+                lock.unlock();
+            }
+
+            statistics.onReceived(streamNumber, data.length);
+            handler.handleSCTPMessage(data, streamNumber);
+            delivered++;
+        }
+        return delivered;
+    }
+
     @Override
     public void close() {
         isOpen = false;
+        wakeUpReceiver();
     }
 
     @Override
     public void abortReceiver() {
         receiving = false;
+        wakeUpReceiver();
+    }
+
+    private void wakeUpReceiver() {
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -87,7 +290,25 @@ public class MockedSCTPClient implements ISctpClient {
         return isOpen;
     }
 
+    @Override
+    public int getOutboundStreams() {
+        return statistics.getOutboundStreams();
+    }
+
+    @Override
+    public SctpStatistics getStatistics() {
+        return statistics;
+    }
+
     public interface IMockedRemote {
-        void onMessage(byte[] data, Queue<Byte[]> queue);
+        /**
+         * Handles a message sent by the client. Responses are sent through the given responder, either in the
+         * calling thread or later.
+         */
+        void onMessage(int streamNumber, byte[] data, IResponder responder);
+    }
+
+    public interface IResponder {
+        void respond(int streamNumber, byte[] data);
     }
 }
@@ -41,15 +41,22 @@ public class SCTPClient implements ISctpClient {
     private final String host;
     private final int port;
     private final int protocolId;
+    private final int requestedStreams;
+    private final SctpStatistics statistics;
 
     private SctpChannel channel;
     private AssociationHandler associationHandler;
     private boolean receiving;
 
-    public SCTPClient(String host, int port, int protocolId) {
+    /**
+     * @param requestedStreams number of outbound and inbound streams requested for the association
+     */
+    public SCTPClient(String host, int port, int protocolId, int requestedStreams) {
         this.host = host;
         this.port = port;
         this.protocolId = protocolId;
+        this.requestedStreams = requestedStreams;
+        this.statistics = new SctpStatistics();
     }
 
     @Override
@@ -59,23 +66,29 @@ public class SCTPClient implements ISctpClient {
         Logging.info(Tag.CONNECTION, "Trying to establish SCTP connection... (%s:%s)", host, port);
 
         var serverAddress = new InetSocketAddress(host, port);
-        this.channel = SctpChannel.open(serverAddress, 0, 0);
+        this.channel = SctpChannel.open(serverAddress, requestedStreams, requestedStreams);
         this.associationHandler = new AssociationHandler();
         this.receiving = true;
 
-        Logging.info(Tag.CONNECTION, "SCTP connection established");
+        var association = channel.association();
+        statistics.initStreams(association.maxOutboundStreams(), association.maxInboundStreams());
+
+        Logging.info(Tag.CONNECTION, "SCTP connection established with %d outbound and %d inbound streams",
+                association.maxOutboundStreams(), association.maxInboundStreams());
     }
 
     @Override
-    public void send(int streamNumber, byte[] data) {
+    public boolean send(int streamNumber, byte[] data) {
         ByteBuffer outgoingBuffer = ByteBuffer.wrap(data);
         MessageInfo outgoingMessage = MessageInfo.createOutgoing(null, streamNumber);
         outgoingMessage.payloadProtocolID(protocolId);
         try {
             channel.send(outgoingBuffer, outgoingMessage);
+            statistics.onSent(streamNumber, data.length);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return true;
     }
 
     @Override
@@ -85,14 +98,15 @@ public class SCTPClient implements ISctpClient {
         MessageInfo messageInfo;
         while (receiving && channel.isOpen()) {
             ByteBuffer incomingBuffer = ByteBuffer.allocate(RECEIVER_BUFFER_SIZE);
-            messageInfo = channel.receive(incomingBuffer, System.out, associationHandler);
+            messageInfo = channel.receive(incomingBuffer, host + ":" + port, associationHandler);
             if (messageInfo == null || messageInfo.bytes() == -1) break;
 
             byte[] receivedBytes = new byte[messageInfo.bytes()];
             for (int i = 0; i < receivedBytes.length; i++) {
                 receivedBytes[i] = incomingBuffer.get(i);
             }
-            handler.handleSCTPMessage(receivedBytes);
+            statistics.onReceived(messageInfo.streamNumber(), receivedBytes.length);
+            handler.handleSCTPMessage(receivedBytes, messageInfo.streamNumber());
         }
     }
 
@@ -114,4 +128,14 @@ public class SCTPClient implements ISctpClient {
     public boolean isOpen() {
         return channel.isOpen();
     }
+
+    @Override
+    public int getOutboundStreams() {
+        return statistics.getOutboundStreams();
+    }
+
+    @Override
+    public SctpStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+
+/**
+ * A fixed number of selector threads shared by the {@link SelectorSCTPClient}s. Associations are assigned to the
+ * threads in round-robin order, and the threads are started when the first association is opened.
+ */
+public class SctpSelectorGroup {
+    private final int threadCount;
+    private final Thread.UncaughtExceptionHandler exceptionHandler;
+
+    private SctpSelectorThread[] threads;
+    private int nextThread;
+
+    /**
+     * @param exceptionHandler handler of the exceptions thrown by the message handlers of the clients. Failures of
+     *                         single associations are not propagated, these associations are closed instead.
+     */
+    public SctpSelectorGroup(int threadCount, Thread.UncaughtExceptionHandler exceptionHandler) {
+        this.threadCount = threadCount;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    synchronized SctpSelectorThread next() throws IOException {
+        if (threads == null) {
+            threads = new SctpSelectorThread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new SctpSelectorThread("sctp-selector-" + i);
+                threads[i].setUncaughtExceptionHandler(exceptionHandler);
+                threads[i].start();
+            }
+        }
+        var thread = threads[nextThread];
+        nextThread = (nextThread + 1) % threadCount;
+        return thread;
+    }
+
+    public synchronized void close() {
+        if (threads != null) {
+            for (var thread : threads) {
+                thread.shutdown();
+            }
+            threads = null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Performs the I/O of the associations registered to its selector. Registrations and interest changes are submitted
+ * as tasks, so that the selection keys are only touched by this thread.
+ */
+class SctpSelectorThread extends Thread {
+    private static final int RECEIVE_BUFFER_SIZE = 256 * 1024;
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
+    final Selector selector;
+    final ByteBuffer receiveBuffer;
+    final ByteBuffer sendBuffer;
+    final AssociationHandler associationHandler;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+    private volatile boolean running;
+
+    SctpSelectorThread(String name) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        this.sendBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+        this.associationHandler = new AssociationHandler();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.running = true;
+        setDaemon(true);
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                var selectedKeys = selector.selectedKeys();
+                for (var key : selectedKeys) {
+                    handleKey(key);
+                }
+                selectedKeys.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        var client = (SelectorSCTPClient) key.attachment();
+        try {
+            if (key.isValid() && key.isConnectable()) {
+                client.onConnectable();
+            }
+            if (key.isValid() && key.isReadable()) {
+                client.onReadable(this);
+            }
+            if (key.isValid() && key.isWritable()) {
+                client.onWritable();
+            }
+        } catch (IOException e) {
+            client.onError(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Message and byte counters of an SCTP association. Messages are also counted per stream, once the numbers of streams
+ * of the association are known.
+ */
+public class SctpStatistics {
+    public final AtomicLong sentMessages = new AtomicLong();
+    public final AtomicLong sentBytes = new AtomicLong();
+    public final AtomicLong receivedMessages = new AtomicLong();
+    public final AtomicLong receivedBytes = new AtomicLong();
+    public final AtomicLong droppedMessages = new AtomicLong();
+    public final AtomicLong rejectedMessages = new AtomicLong();
+
+    private volatile AtomicLongArray streamSentMessages = new AtomicLongArray(0);
+    private volatile AtomicLongArray streamReceivedMessages = new AtomicLongArray(0);
+
+    public void initStreams(int outboundStreams, int inboundStreams) {
+        streamSentMessages = new AtomicLongArray(outboundStreams);
+        streamReceivedMessages = new AtomicLongArray(inboundStreams);
+    }
+
+    public void onSent(int streamNumber, int bytes) {
+        sentMessages.incrementAndGet();
+        sentBytes.addAndGet(bytes);
+        increment(streamSentMessages, streamNumber);
+    }
+
+    public void onReceived(int streamNumber, int bytes) {
+        receivedMessages.incrementAndGet();
+        receivedBytes.addAndGet(bytes);
+        increment(streamReceivedMessages, streamNumber);
+    }
+
+    public void onDropped() {
+        droppedMessages.incrementAndGet();
+    }
+
+    public void onRejected() {
+        rejectedMessages.incrementAndGet();
+    }
+
+    public int getOutboundStreams() {
+        return streamSentMessages.length();
+    }
+
+    public int getInboundStreams() {
+        return streamReceivedMessages.length();
+    }
+
+    public long getSentMessages(int streamNumber) {
+        return streamSentMessages.get(streamNumber);
+    }
+
+    public long getReceivedMessages(int streamNumber) {
+        return streamReceivedMessages.get(streamNumber);
+    }
+
+    private static void increment(AtomicLongArray counters, int streamNumber) {
+        if (streamNumber >= 0 && streamNumber < counters.length()) {
+            counters.incrementAndGet(streamNumber);
+        }
+    }
+}
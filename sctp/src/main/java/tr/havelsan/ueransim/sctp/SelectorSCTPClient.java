@@ -0,0 +1,413 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An SCTP client using a non-blocking channel served by a {@link SctpSelectorGroup}, so that many associations need
+ * no thread of their own. Received messages are dispatched to the handler in the selector thread.
+ * <p>
+ * Sent messages are put into a bounded queue and written by the selector thread in batches, so the sending thread never
+ * waits for the socket. When the send buffer of the socket is full, writing resumes once the socket is writable, and
+ * the messages sent meanwhile stay in the queue. Messages are rejected when the queue is full.
+ */
+public class SelectorSCTPClient implements ISctpClient {
+    // Upper limit of the messages read from an association at once, so that the other associations are not starved
+    private static final int MAX_MESSAGES_PER_READ = 64;
+    // Number of messages taken from the send queue at once
+    private static final int SEND_BATCH_SIZE = 64;
+    // Upper limit of the time start waits for the association to be established
+    private static final long CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final int protocolId;
+    private final int requestedStreams;
+    private final String peer;
+    private final SctpSelectorGroup selectorGroup;
+    private final SctpStatistics statistics;
+
+    private final CompletableFuture<Void> connected;
+    private final Runnable flushTask;
+
+    // Ring buffer of the messages waiting for the selector thread, guarded by the send lock
+    private final Object sendLock;
+    private final byte[][] sendQueue;
+    private final int[] sendQueueStreams;
+    private int sendQueueHead;
+    private int sendQueueSize;
+    private boolean flushScheduled;
+
+    private SctpSelectorThread selectorThread;
+    private volatile SctpChannel channel;
+
+    // Accessed only by the selector thread
+    private SelectionKey key;
+    private boolean associated;
+    private boolean writeBlocked;
+    private MessageInfo[] messageInfos;
+    private final byte[][] batch;
+    private final int[] batchStreams;
+    private int batchStart;
+    private int batchEnd;
+    private ByteArrayOutputStream partialMessage;
+
+    private volatile ISCTPHandler handler;
+    private volatile boolean receiving;
+
+    /**
+     * @param requestedStreams  number of outbound and inbound streams requested for the association
+     * @param sendQueueCapacity number of messages that can wait in the send queue
+     */
+    public SelectorSCTPClient(String host, int port, int protocolId, int requestedStreams, int sendQueueCapacity,
+                              SctpSelectorGroup selectorGroup) {
+        this.host = host;
+        this.port = port;
+        this.protocolId = protocolId;
+        this.requestedStreams = requestedStreams;
+        this.peer = host + ":" + port;
+        this.selectorGroup = selectorGroup;
+        this.statistics = new SctpStatistics();
+        this.connected = new CompletableFuture<>();
+        this.flushTask = this::flush;
+
+        this.sendLock = new Object();
+        this.sendQueue = new byte[sendQueueCapacity][];
+        this.sendQueueStreams = new int[sendQueueCapacity];
+
+        this.messageInfos = new MessageInfo[0];
+        this.batch = new byte[SEND_BATCH_SIZE][];
+        this.batchStreams = new int[SEND_BATCH_SIZE];
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (this.channel != null) throw new RuntimeException("start was already called");
+
+        Logging.info(Tag.CONNECTION, "Trying to establish SCTP connection... (%s:%s)", host, port);
+
+        this.selectorThread = selectorGroup.next();
+        this.channel = SctpChannel.open();
+        this.channel.configureBlocking(false);
+        selectorThread.execute(this::connect);
+
+        try {
+            connected.get(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } catch (TimeoutException e) {
+            closeChannel();
+            throw new SocketTimeoutException("SCTP connection with " + peer + " timed out after "
+                    + CONNECT_TIMEOUT_MILLIS + " ms");
+        }
+
+        Logging.info(Tag.CONNECTION, "SCTP connection established with %d outbound and %d inbound streams",
+                statistics.getOutboundStreams(), statistics.getInboundStreams());
+    }
+
+    /**
+     * Starts dispatching the received messages to the given handler, and returns immediately.
+     */
+    public void startReceiving(ISCTPHandler handler) {
+        this.handler = handler;
+        this.receiving = true;
+        selectorThread.execute(this::updateInterest);
+    }
+
+    @Override
+    public void receiverLoop(ISCTPHandler handler) throws Exception {
+        startReceiving(handler);
+        synchronized (this) {
+            while (receiving && isOpen()) {
+                wait();
+            }
+        }
+    }
+
+    @Override
+    public boolean send(int streamNumber, byte[] data) {
+        if (!isOpen()) {
+            statistics.onRejected();
+            return false;
+        }
+
+        boolean scheduleFlush;
+        synchronized (sendLock) {
+            int capacity = sendQueue.length;
+            if (sendQueueSize == capacity) {
+                statistics.onRejected();
+                return false;
+            }
+            int tail = sendQueueHead + sendQueueSize;
+            if (tail >= capacity) {
+                tail -= capacity;
+            }
+            sendQueue[tail] = data;
+            sendQueueStreams[tail] = streamNumber;
+            sendQueueSize++;
+
+            // The selector thread is woken up once per batch, not per message
+            scheduleFlush = !flushScheduled;
+            flushScheduled = true;
+        }
+        if (scheduleFlush) {
+            selectorThread.execute(flushTask);
+        }
+        return true;
+    }
+
+    private void flush() {
+        try {
+            while (batchStart < batchEnd || takeBatch()) {
+                while (batchStart < batchEnd) {
+                    if (!write(batchStreams[batchStart], batch[batchStart])) {
+                        writeBlocked = true;
+                        updateInterest();
+                        return;
+                    }
+                    batch[batchStart++] = null;
+                }
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private boolean takeBatch() {
+        synchronized (sendLock) {
+            int count = Math.min(sendQueueSize, batch.length);
+            if (count == 0) {
+                flushScheduled = false;
+                return false;
+            }
+            int capacity = sendQueue.length;
+            for (int i = 0; i < count; i++) {
+                batch[i] = sendQueue[sendQueueHead];
+                batchStreams[i] = sendQueueStreams[sendQueueHead];
+                sendQueue[sendQueueHead] = null;
+                if (++sendQueueHead == capacity) {
+                    sendQueueHead = 0;
+                }
+            }
+            sendQueueSize -= count;
+            batchStart = 0;
+            batchEnd = count;
+            return true;
+        }
+    }
+
+    private boolean write(int streamNumber, byte[] data) throws IOException {
+        // Copying into the direct buffer of the selector thread spares the channel a temporary direct buffer
+        var buffer = selectorThread.sendBuffer;
+        ByteBuffer source;
+        if (data.length <= buffer.capacity()) {
+            buffer.clear();
+            buffer.put(data);
+            buffer.flip();
+            source = buffer;
+        } else {
+            source = ByteBuffer.wrap(data);
+        }
+
+        if (channel.send(source, messageInfo(streamNumber)) == 0) {
+            return false;
+        }
+        statistics.onSent(streamNumber, data.length);
+        return true;
+    }
+
+    private MessageInfo messageInfo(int streamNumber) {
+        if (streamNumber < messageInfos.length && messageInfos[streamNumber] != null) {
+            return messageInfos[streamNumber];
+        }
+        var messageInfo = MessageInfo.createOutgoing(null, streamNumber);
+        messageInfo.payloadProtocolID(protocolId);
+        if (streamNumber < messageInfos.length) {
+            messageInfos[streamNumber] = messageInfo;
+        }
+        return messageInfo;
+    }
+
+    private void connect() {
+        try {
+            key = channel.register(selectorThread.selector, 0, this);
+            if (channel.connect(new InetSocketAddress(host, port), requestedStreams, requestedStreams)) {
+                onConnected();
+            } else {
+                key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    void onConnectable() throws IOException {
+        if (channel.finishConnect()) {
+            onConnected();
+        }
+    }
+
+    private void onConnected() throws IOException {
+        var association = channel.association();
+        statistics.initStreams(association.maxOutboundStreams(), association.maxInboundStreams());
+        messageInfos = new MessageInfo[association.maxOutboundStreams()];
+
+        associated = true;
+        updateInterest();
+        connected.complete(null);
+    }
+
+    void onReadable(SctpSelectorThread thread) throws IOException {
+        var buffer = thread.receiveBuffer;
+
+        for (int i = 0; i < MAX_MESSAGES_PER_READ && receiving; i++) {
+            buffer.clear();
+            var messageInfo = channel.receive(buffer, peer, thread.associationHandler);
+            if (messageInfo == null) {
+                // Either there are no more messages, or the association is shut down by a notification
+                if (channel.association() == null) {
+                    closeChannel();
+                }
+                return;
+            }
+            if (messageInfo.bytes() == -1) {
+                closeChannel();
+                return;
+            }
+
+            buffer.flip();
+            var bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+
+            if (!messageInfo.isComplete()) {
+                if (partialMessage == null) {
+                    partialMessage = new ByteArrayOutputStream();
+                }
+                partialMessage.write(bytes, 0, bytes.length);
+                continue;
+            }
+            if (partialMessage != null) {
+                partialMessage.write(bytes, 0, bytes.length);
+                bytes = partialMessage.toByteArray();
+                partialMessage = null;
+            }
+
+            statistics.onReceived(messageInfo.streamNumber(), bytes.length);
+            try {
+                handler.handleSCTPMessage(bytes, messageInfo.streamNumber());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    void onWritable() {
+        writeBlocked = false;
+        updateInterest();
+        flush();
+    }
+
+    void onError(IOException e) {
+        Logging.error(Tag.CONNECTION, "SCTP association with %s failed: %s", peer, e.getMessage());
+        connected.completeExceptionally(e);
+        closeChannel();
+    }
+
+    private void updateInterest() {
+        if (!associated || !key.isValid()) {
+            return;
+        }
+        int ops = receiving ? SelectionKey.OP_READ : 0;
+        if (writeBlocked) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            stopReceiver();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        stopReceiver();
+    }
+
+    @Override
+    public void abortReceiver() {
+        stopReceiver();
+        selectorThread.execute(this::updateInterest);
+    }
+
+    private synchronized void stopReceiver() {
+        receiving = false;
+        notifyAll();
+    }
+
+    @Override
+    public boolean isOpen() {
+        var channel = this.channel;
+        return channel != null && channel.isOpen();
+    }
+
+    @Override
+    public int getOutboundStreams() {
+        return statistics.getOutboundStreams();
+    }
+
+    @Override
+    public SctpStatistics getStatistics() {
+        return statistics;
+    }
+}
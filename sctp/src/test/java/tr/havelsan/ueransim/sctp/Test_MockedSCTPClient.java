@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class Test_MockedSCTPClient {
+
+    private static class Received {
+        final byte[] data;
+        final int streamNumber;
+        final long time;
+
+        Received(byte[] data, int streamNumber, long time) {
+            this.data = data;
+            this.streamNumber = streamNumber;
+            this.time = time;
+        }
+    }
+
+    // Echoes every message twice on the stream it was received from
+    private static final MockedSCTPClient.IMockedRemote ECHO = (streamNumber, data, responder) -> {
+        responder.respond(streamNumber, data);
+        responder.respond(streamNumber, data);
+    };
+
+    private static Thread startReceiver(MockedSCTPClient client, List<Received> received, int count) {
+        var thread = new Thread(() -> {
+            try {
+                client.receiverLoop((data, streamNumber) -> {
+                    received.add(new Received(data, streamNumber, System.nanoTime()));
+                    if (received.size() == count) {
+                        client.abortReceiver();
+                    }
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testOrderAndStreamsArePreserved() throws Exception {
+        var client = new MockedSCTPClient(ECHO, 7, 0, 0, 0);
+        client.start();
+
+        // More messages than the initial capacity, so that the queue grows
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            client.send(i % 7, new byte[]{(byte) i, (byte) (i >> 8)});
+        }
+
+        var received = new ArrayList<Received>();
+        join(startReceiver(client, received, 2 * count));
+
+        Assert.assertEquals(2 * count, received.size());
+        for (int i = 0; i < 2 * count; i++) {
+            var message = received.get(i);
+            int index = i / 2;
+            Assert.assertEquals((byte) index, message.data[0]);
+            Assert.assertEquals((byte) (index >> 8), message.data[1]);
+            Assert.assertEquals(index % 7, message.streamNumber);
+        }
+        Assert.assertEquals(count, client.getStatistics().sentMessages.get());
+        Assert.assertEquals(2 * count, client.getStatistics().receivedMessages.get());
+
+        Assert.assertEquals(7, client.getOutboundStreams());
+        for (int stream = 0; stream < 7; stream++) {
+            long expected = (count - stream + 6) / 7;
+            Assert.assertEquals(expected, client.getStatistics().getSentMessages(stream));
+            Assert.assertEquals(2 * expected, client.getStatistics().getReceivedMessages(stream));
+        }
+    }
+
+    @Test
+    public void testReceiverWaitsForMessages() throws Exception {
+        var client = new MockedSCTPClient(ECHO);
+        client.start();
+
+        var received = new ArrayList<Received>();
+        var thread = startReceiver(client, received, 2);
+
+        Thread.sleep(50);
+        client.send(3, new byte[]{1});
+        join(thread);
+
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(3, received.get(0).streamNumber);
+    }
+
+    @Test
+    public void testCloseWakesUpReceiver() throws Exception {
+        var client = new MockedSCTPClient(ECHO);
+        client.start();
+
+        var thread = startReceiver(client, new ArrayList<>(), 1);
+        Thread.sleep(50);
+        client.close();
+        join(thread);
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        long delay = TimeUnit.MILLISECONDS.toNanos(100);
+        var client = new MockedSCTPClient(ECHO, 1, delay, 0, 0);
+        client.start();
+
+        long sendTime = System.nanoTime();
+        client.send(0, new byte[]{1});
+
+        var received = new ArrayList<Received>();
+        join(startReceiver(client, received, 2));
+
+        for (var message : received) {
+            Assert.assertTrue(message.time - sendTime >= delay);
+        }
+    }
+
+    @Test
+    public void testBandwidth() throws Exception {
+        // 1000 bytes at 80 kbit/s take 100 ms each
+        var client = new MockedSCTPClient(ECHO, 1, 0, 80_000, 0);
+        client.start();
+
+        long sendTime = System.nanoTime();
+        client.send(0, new byte[1000]);
+
+        var received = new ArrayList<Received>();
+        join(startReceiver(client, received, 2));
+
+        Assert.assertTrue(received.get(0).time - sendTime >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertTrue(received.get(1).time - sendTime >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testDeliverDueOnVirtualClock() throws Exception {
+        var now = new long[1];
+        var client = new MockedSCTPClient(ECHO, 1, 100, 0, 0, () -> now[0], null);
+        client.start();
+
+        client.send(0, new byte[]{1});
+        Assert.assertEquals(100, client.nextDeliveryTime());
+
+        var received = new ArrayList<Received>();
+        ISCTPHandler handler = (data, streamNumber) -> received.add(new Received(data, streamNumber, now[0]));
+
+        now[0] = 99;
+        Assert.assertEquals(0, client.deliverDue(handler));
+        now[0] = 100;
+        Assert.assertEquals(2, client.deliverDue(handler));
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(Long.MAX_VALUE, client.nextDeliveryTime());
+    }
+
+    @Test
+    public void testSeededLossIsRepeatable() {
+        long[] dropped = new long[2];
+        for (int run = 0; run < 2; run++) {
+            var client = new MockedSCTPClient((streamNumber, data, responder) -> {
+            }, 1, 0, 0, 0.5, System::nanoTime, new Random(42));
+            for (int i = 0; i < 1000; i++) {
+                client.send(0, new byte[]{1});
+            }
+            dropped[run] = client.getStatistics().droppedMessages.get();
+        }
+        Assert.assertEquals(dropped[0], dropped[1]);
+        Assert.assertTrue(dropped[0] > 0 && dropped[0] < 1000);
+    }
+
+    @Test
+    public void testLoss() {
+        var responses = new int[1];
+        var client = new MockedSCTPClient((streamNumber, data, responder) -> responses[0]++, 1, 0, 0, 1.0);
+
+        for (int i = 0; i < 100; i++) {
+            client.send(0, new byte[]{1});
+        }
+
+        Assert.assertEquals(0, responses[0]);
+        Assert.assertEquals(100, client.getStatistics().sentMessages.get());
+        Assert.assertEquals(100, client.getStatistics().droppedMessages.get());
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import com.sun.nio.sctp.SctpServerChannel;
+import org.junit.Assert;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class Test_SelectorSCTPClient {
+    private static final int PROTOCOL_ID = 60;
+    private static final int STREAMS = 4;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static class Received {
+        final byte[] data;
+        final int streamNumber;
+
+        Received(byte[] data, int streamNumber) {
+            this.data = data;
+            this.streamNumber = streamNumber;
+        }
+    }
+
+    // Stand-in for the AMF, echoing every message on the stream it was received from
+    private static class EchoServer implements AutoCloseable {
+        final SctpServerChannel serverChannel;
+        final List<SctpChannel> channels = new ArrayList<>();
+        final boolean echo;
+
+        EchoServer() throws IOException {
+            this(true);
+        }
+
+        // A server which does not echo never reads, so that the send buffers of the clients fill up
+        EchoServer(boolean echo) throws IOException {
+            this.echo = echo;
+            serverChannel = openServerChannel();
+            serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+            var thread = new Thread(this::acceptLoop);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() throws IOException {
+            return ((InetSocketAddress) serverChannel.getAllLocalAddresses().iterator().next()).getPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    var channel = serverChannel.accept();
+                    synchronized (channels) {
+                        channels.add(channel);
+                    }
+                    if (echo) {
+                        var thread = new Thread(() -> echoLoop(channel));
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void echoLoop(SctpChannel channel) {
+            var buffer = ByteBuffer.allocate(65536);
+            try {
+                while (true) {
+                    buffer.clear();
+                    var messageInfo = channel.receive(buffer, null, null);
+                    if (messageInfo == null || messageInfo.bytes() == -1) {
+                        return;
+                    }
+                    buffer.flip();
+                    var outgoing = MessageInfo.createOutgoing(null, messageInfo.streamNumber());
+                    outgoing.payloadProtocolID(messageInfo.payloadProtocolID());
+                    channel.send(buffer, outgoing);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverChannel.close();
+            synchronized (channels) {
+                for (var channel : channels) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    private static SctpServerChannel openServerChannel() throws IOException {
+        try {
+            return SctpServerChannel.open();
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.assumeTrue(false, "SCTP is not supported: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static SctpSelectorGroup newSelectorGroup() {
+        return new SctpSelectorGroup(1, (thread, throwable) -> throwable.printStackTrace());
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        var selectorGroup = newSelectorGroup();
+        try (var server = new EchoServer()) {
+            var clients = new ArrayList<SelectorSCTPClient>();
+            var received = new ArrayList<LinkedBlockingQueue<Received>>();
+            for (int i = 0; i < 3; i++) {
+                var client = new SelectorSCTPClient("127.0.0.1", server.port(), PROTOCOL_ID, STREAMS,
+                        QUEUE_CAPACITY, selectorGroup);
+                var queue = new LinkedBlockingQueue<Received>();
+                client.start();
+                client.startReceiving((data, streamNumber) -> queue.add(new Received(data, streamNumber)));
+                Assert.assertTrue(client.getOutboundStreams() >= 2);
+                clients.add(client);
+                received.add(queue);
+            }
+
+            int count = 100;
+            for (int i = 0; i < count; i++) {
+                for (int j = 0; j < clients.size(); j++) {
+                    clients.get(j).send(i % 2, new byte[]{(byte) i, (byte) j});
+                }
+            }
+
+            for (int j = 0; j < clients.size(); j++) {
+                var lastOnStream = new int[]{-1, -1};
+                for (int i = 0; i < count; i++) {
+                    var message = received.get(j).poll(10, TimeUnit.SECONDS);
+                    Assert.assertNotNull(message);
+                    Assert.assertEquals(j, message.data[1]);
+                    Assert.assertEquals(message.data[0] % 2, message.streamNumber);
+                    // Order is preserved within a stream
+                    Assert.assertTrue(message.data[0] > lastOnStream[message.streamNumber]);
+                    lastOnStream[message.streamNumber] = message.data[0];
+                }
+                Assert.assertEquals(count, clients.get(j).getStatistics().sentMessages.get());
+                Assert.assertEquals(count, clients.get(j).getStatistics().receivedMessages.get());
+                Assert.assertEquals(count / 2, clients.get(j).getStatistics().getSentMessages(1));
+            }
+
+            for (var client : clients) {
+                client.close();
+                Assert.assertFalse(client.isOpen());
+            }
+        } finally {
+            selectorGroup.close();
+        }
+    }
+
+    @Test
+    public void testReceiverLoopEndsWhenServerCloses() throws Exception {
+        var selectorGroup = newSelectorGroup();
+        try {
+            var server = new EchoServer();
+            var client = new SelectorSCTPClient("127.0.0.1", server.port(), PROTOCOL_ID, STREAMS,
+                    QUEUE_CAPACITY, selectorGroup);
+            client.start();
+
+            var thread = new Thread(() -> {
+                try {
+                    client.receiverLoop((data, streamNumber) -> {
+                    });
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+
+            client.send(0, new byte[]{1});
+            Thread.sleep(100);
+            server.close();
+
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            Assert.assertFalse(thread.isAlive());
+            Assert.assertFalse(client.isOpen());
+        } finally {
+            selectorGroup.close();
+        }
+    }
+
+    @Test
+    public void testFullQueueIsRejected() throws Exception {
+        var selectorGroup = newSelectorGroup();
+        try (var server = new EchoServer(false)) {
+            var client = new SelectorSCTPClient("127.0.0.1", server.port(), PROTOCOL_ID, STREAMS, 16, selectorGroup);
+            client.start();
+
+            var data = new byte[4096];
+            boolean rejected = false;
+            for (int i = 0; i < 1_000_000 && !rejected; i++) {
+                rejected = !client.send(1, data);
+            }
+
+            Assert.assertTrue(rejected);
+            Assert.assertEquals(1, client.getStatistics().rejectedMessages.get());
+            client.close();
+            Assert.assertFalse(client.send(1, data));
+        } finally {
+            selectorGroup.close();
+        }
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        var selectorGroup = newSelectorGroup();
+        try {
+            int port;
+            try (var server = new EchoServer()) {
+                port = server.port();
+            }
+
+            var client = new SelectorSCTPClient("127.0.0.1", port, PROTOCOL_ID, STREAMS, QUEUE_CAPACITY, selectorGroup);
+            try {
+                client.start();
+                Assert.fail();
+            } catch (IOException ignored) {
+            }
+            Assert.assertFalse(client.isOpen());
+        } finally {
+            selectorGroup.close();
+        }
+    }
+
+    @Test
+    public void testSendBeforeStartIsRejected() {
+        var selectorGroup = newSelectorGroup();
+        try {
+            var client = new SelectorSCTPClient("127.0.0.1", 38412, PROTOCOL_ID, STREAMS, QUEUE_CAPACITY,
+                    selectorGroup);
+            Assert.assertFalse(client.isOpen());
+            Assert.assertFalse(client.send(0, new byte[]{1}));
+            Assert.assertEquals(1, client.getStatistics().rejectedMessages.get());
+        } finally {
+            selectorGroup.close();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import tr.havelsan.ueransim.api.sys.SimulationContext;
 import tr.havelsan.ueransim.core.Constants;
 import tr.havelsan.ueransim.core.GnbSimContext;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.threads.TimingWheelThread;
+import tr.havelsan.ueransim.core.timers.VirtualClock;
 import tr.havelsan.ueransim.mts.ImplicitTypedObject;
 import tr.havelsan.ueransim.mts.MtsConstruct;
 import tr.havelsan.ueransim.mts.MtsDecoder;
@@ -37,7 +39,9 @@ import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
 import tr.havelsan.ueransim.ngap2.NgapInternal;
 import tr.havelsan.ueransim.sctp.ISctpClient;
 import tr.havelsan.ueransim.sctp.MockedSCTPClient;
-import tr.havelsan.ueransim.sctp.SCTPClient;
+import tr.havelsan.ueransim.sctp.SelectorSCTPClient;
+import tr.havelsan.ueransim.structs.AmfConfig;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.structs.GnbConfig;
 import tr.havelsan.ueransim.structs.UeConfig;
 import tr.havelsan.ueransim.utils.IncomingMessage;
@@ -50,49 +54,95 @@ import java.util.Queue;
 
 public class AppConfig {
 
+    // Value of 'amfMockedRemote' selecting the in-process stateful AMF instead of a file of scripted messages
+    private static final String STATEFUL_MOCKED_REMOTE = "stateful";
+
     public static SimulationContext createSimContext() {
-        return new SimulationContext();
+        var ctx = new SimulationContext();
+        ctx.cryptoPool.start();
+        new TimingWheelThread(ctx.timingWheel).start();
+        ctx.ueScheduler.start();
+        return ctx;
+    }
+
+    /**
+     * Creates a context for the discrete event mode. No thread is started, the crypto jobs are run inline and
+     * everything else is driven by the event scheduler of the context.
+     */
+    public static SimulationContext createDiscreteEventSimContext(long seed) {
+        return new SimulationContext(new VirtualClock(), seed);
     }
 
     public static GnbSimContext createGnbSimContext(SimulationContext simCtx, ImplicitTypedObject config) {
         var ctx = new GnbSimContext(simCtx);
         ctx.config = MtsConstruct.construct(GnbConfig.class, config, true);
 
-        // Create SCTP Client
+        // Create SCTP Clients
         {
             boolean amfMocked = config.getBool("amfMocked");
-
-            ISctpClient sctpClient = new SCTPClient(ctx.config.amfHost, ctx.config.amfPort, Constants.NGAP_PROTOCOL_ID);
-
             if (amfMocked) {
                 Logging.warning(Tag.CONNECTION, "Mocked Remote is enabled.");
-                sctpClient = newMockedClient(config.getString("amfMockedRemote"));
             }
 
-            ctx.streamNumber = Constants.DEFAULT_STREAM_NUMBER;
-            ctx.sctpClient = sctpClient;
+            var amfConfigs = ctx.config.amfPool;
+            if (amfConfigs == null) {
+                int amfPort = ctx.config.amfPort != null ? ctx.config.amfPort : 0;
+                amfConfigs = new AmfConfig[]{new AmfConfig(ctx.config.amfHost, amfPort, null)};
+            }
+
+            ctx.amfContexts = new GnbAmfContext[amfConfigs.length];
+            for (int i = 0; i < amfConfigs.length; i++) {
+                var sctpClient = amfMocked
+                        ? newMockedClient(simCtx, ctx.config, config.getString("amfMockedRemote"))
+                        : new SelectorSCTPClient(amfConfigs[i].host, amfConfigs[i].port, Constants.NGAP_PROTOCOL_ID,
+                        Constants.SCTP_STREAMS, Constants.SCTP_SEND_QUEUE_CAPACITY, simCtx.sctpSelectors);
+                var capture = simCtx.capture != null
+                        ? simCtx.capture.newAssociation(amfConfigs[i].host, amfConfigs[i].port)
+                        : null;
+                ctx.amfContexts[i] = new GnbAmfContext(i, amfConfigs[i], sctpClient, capture);
+            }
         }
 
         return ctx;
     }
 
-    public static UeSimContext createUeSimContext(SimulationContext simCtx, ImplicitTypedObject config) {
-        var ctx = new UeSimContext(simCtx);
+    private static ISctpClient newMockedClient(SimulationContext simCtx, GnbConfig config, String mockedRemoteFile) {
+        var mockedRemote = STATEFUL_MOCKED_REMOTE.equals(mockedRemoteFile)
+                ? simCtx.mockedAmf.newAssociation()
+                : newMockedRemote(mockedRemoteFile);
+
+        var link = config.amfMockedLink;
+        long delayNanos = link != null ? (long) (link.delay * 1_000_000) : 0;
+        long bandwidth = link != null ? (long) (link.bandwidth * 1_000_000) : 0;
+        double lossRatio = link != null ? link.lossRatio : 0;
+
+        var scheduler = simCtx.eventScheduler;
+        if (scheduler != null) {
+            return new MockedSCTPClient(mockedRemote, Constants.SCTP_STREAMS, delayNanos, bandwidth, lossRatio,
+                    scheduler::nanoTime, simCtx.newRandom());
+        }
+        return new MockedSCTPClient(mockedRemote, Constants.SCTP_STREAMS, delayNanos, bandwidth, lossRatio);
+    }
 
+    public static UeSimContext createUeSimContext(SimulationContext simCtx, ImplicitTypedObject config) {
         // Parse UE Config
-        ctx.ueConfig = config.asConstructed(UeConfig.class);
+        return createUeSimContext(simCtx, config.asConstructed(UeConfig.class));
+    }
 
+    public static UeSimContext createUeSimContext(SimulationContext simCtx, UeConfig config) {
+        var ctx = new UeSimContext(simCtx);
+        ctx.ueConfig = config;
         return ctx;
     }
 
-    private static MockedSCTPClient newMockedClient(String mockedRemoteFile) {
+    private static MockedSCTPClient.IMockedRemote newMockedRemote(String mockedRemoteFile) {
         var mockedRemote = ((ImplicitTypedObject) MtsDecoder.decode(mockedRemoteFile)).getParameters();
 
-        return new MockedSCTPClient(new MockedSCTPClient.IMockedRemote() {
+        return new MockedSCTPClient.IMockedRemote() {
             int messageIndex = 0;
 
             @Override
-            public void onMessage(byte[] data, Queue<Byte[]> queue) {
+            public void onMessage(int streamNumber, byte[] data, MockedSCTPClient.IResponder responder) {
                 var ngapPdu = Ngap.perDecode(NGAP_PDU.class, data);
                 var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
                 var nasMessage = NgapInternal.extractNasMessage(ngapPdu);
@@ -101,12 +151,7 @@ public class AppConfig {
                 onMessage(incomingMessage, outs);
                 while (!outs.isEmpty()) {
                     var out = outs.remove();
-                    byte[] pdu = Utils.hexStringToByteArray(out);
-                    Byte[] res = new Byte[pdu.length];
-                    for (int i = 0; i < res.length; i++) {
-                        res[i] = pdu[i];
-                    }
-                    queue.add(res);
+                    responder.respond(streamNumber, Utils.hexStringToByteArray(out));
                 }
             }
 
@@ -121,6 +166,6 @@ public class AppConfig {
                 }
                 messageIndex++;
             }
-        });
+        };
     }
 }
@@ -27,14 +27,23 @@
 package tr.havelsan.ueransim;
 
 import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.capture.PcapWriter;
 import tr.havelsan.ueransim.core.nodes.GnbNode;
 import tr.havelsan.ueransim.core.nodes.UeNode;
 import tr.havelsan.ueransim.events.EventParser;
 import tr.havelsan.ueransim.events.gnb.GnbEvent;
 import tr.havelsan.ueransim.events.ue.UeEvent;
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.metrics.MetricsEndpoint;
 import tr.havelsan.ueransim.mts.ImplicitTypedObject;
 import tr.havelsan.ueransim.mts.MtsDecoder;
 import tr.havelsan.ueransim.mts.MtsInitializer;
+import tr.havelsan.ueransim.remote.ControlServer;
+import tr.havelsan.ueransim.replay.TraceReplayer;
+import tr.havelsan.ueransim.shard.Shard;
+import tr.havelsan.ueransim.shard.ShardCoordinator;
+import tr.havelsan.ueransim.shard.ShardWorker;
 import tr.havelsan.ueransim.utils.*;
 
 import java.io.IOException;
@@ -43,15 +52,73 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.function.BooleanSupplier;
 
 public class Program {
 
     public static void main(String[] args) {
+        var warmup = StartupWarmup.start();
         MtsInitializer.initMts();
-        initLogging();
 
-        var simContext = AppConfig.createSimContext();
+        if (args.length > 0 && args[0].equals("warmup")) {
+            // Only initializes the subsystems and exits, used by the build to record the classes for the CDS archive
+            warmup.join();
+            return;
+        }
+
+        // Each worker of a sharded run writes its own log
+        var shard = Utils.getCommandLineOption(args, "--shard");
+        initLogging(shard != null ? "app-" + shard.replace('/', '-') + ".log" : "app.log");
+        if (Utils.hasCommandLineFlag(args, "--no-debug")) {
+            Logging.setDebugEnabled(false);
+        }
+
+        if (args.length > 0 && args[0].equals("coordinator")) {
+            runCoordinator(args, args.length > 1 && !args[1].startsWith("--") ? args[1] : "load.yaml");
+            return;
+        }
+
+        var seed = Utils.getCommandLineOption(args, "--seed");
+        var simContext = Utils.hasCommandLineFlag(args, "--discrete-event")
+                ? AppConfig.createDiscreteEventSimContext(seed != null ? Long.parseLong(seed) : 0)
+                : AppConfig.createSimContext();
+
+        var metricsPort = Utils.getCommandLineOption(args, "--metrics-port");
+        if (metricsPort != null) {
+            startMetricsEndpoint(simContext, Integer.parseInt(metricsPort));
+        }
+
+        var captureFile = Utils.getCommandLineOption(args, "--capture");
+        if (captureFile != null) {
+            var captureFileSize = Utils.getCommandLineOption(args, "--capture-file-size");
+            startCapture(simContext, captureFile, captureFileSize != null ? Long.parseLong(captureFileSize) : 0);
+        }
+
+        var controlPort = Utils.getCommandLineOption(args, "--control-port");
+        if (controlPort != null) {
+            startControlServer(simContext, Integer.parseInt(controlPort));
+        }
+
+        if (args.length > 0 && args[0].equals("load")) {
+            runLoad(simContext, args.length > 1 && !args[1].startsWith("--") ? args[1] : "load.yaml");
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("replay")) {
+            runReplay(simContext, args.length > 1 && !args[1].startsWith("--") ? args[1] : "replay.yaml");
+            return;
+        }
+
+        if (simContext.isDiscreteEvent()) {
+            fail(new IllegalArgumentException("discrete event mode is supported by the load and replay modes only"));
+        }
+
+        if (args.length > 0 && args[0].equals("worker")) {
+            runWorker(simContext, args, args.length > 1 && !args[1].startsWith("--") ? args[1] : "load.yaml");
+            return;
+        }
 
         var gnbContext = AppConfig.createGnbSimContext(simContext, (ImplicitTypedObject) MtsDecoder.decode("gnb.yaml"));
         Simulation.registerGnb(simContext, gnbContext);
@@ -83,15 +150,137 @@ public class Program {
         }
     }
 
+    private static void runLoad(SimulationContext simContext, String loadFile) {
+        var generator = new LoadGenerator(simContext, LoadGenerator.loadConfig(loadFile));
+        generator.start();
+        System.out.println("Load generation started, see the summary when all UEs are finished.");
+        if (simContext.isDiscreteEvent()) {
+            runDiscreteEvent(simContext, generator::isCompleted);
+            return;
+        }
+        try {
+            generator.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runReplay(SimulationContext simContext, String replayFile) {
+        var replayer = new TraceReplayer(simContext, TraceReplayer.loadConfig(replayFile));
+        replayer.start();
+        System.out.println("Trace replay started, see the summary when all messages are dispatched.");
+        if (simContext.isDiscreteEvent()) {
+            runDiscreteEvent(simContext, replayer::isCompleted);
+            return;
+        }
+        try {
+            replayer.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runCoordinator(String[] args, String loadFile) {
+        var workerCount = Utils.getCommandLineOption(args, "--workers");
+        if (workerCount == null) {
+            fail(new IllegalArgumentException("--workers is required by the coordinator mode"));
+        }
+        var workerOptions = new ArrayList<String>();
+        if (Utils.hasCommandLineFlag(args, "--no-debug")) {
+            workerOptions.add("--no-debug");
+        }
+
+        var coordinator = new ShardCoordinator(LoadGenerator.loadConfig(loadFile), loadFile,
+                Integer.parseInt(workerCount), Utils.getCommandLineOption(args, "--worker-heap"), workerOptions);
+        Runtime.getRuntime().addShutdownHook(new Thread(coordinator::stop));
+
+        boolean completed = false;
+        try {
+            coordinator.start();
+            System.out.println("Sharded load generation started, see the summary when all workers are finished.");
+            completed = coordinator.awaitCompletion();
+        } catch (IOException e) {
+            Logging.error(Tag.SYSTEM, "Sharded run failed: %s", e);
+            System.out.println("Sharded run failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        coordinator.stop();
+        System.exit(completed ? 0 : 1);
+    }
+
+    private static void runWorker(SimulationContext simContext, String[] args, String loadFile) {
+        var config = LoadGenerator.loadConfig(loadFile);
+        var shard = Shard.parse(config, Utils.getCommandLineOption(args, "--shard"));
+        int port = Integer.parseInt(Utils.getCommandLineOption(args, "--coordinator-port"));
+        try {
+            new ShardWorker(simContext, config, shard, port).run();
+        } catch (IOException e) {
+            fail(e);
+        }
+        // The looper threads of the gNBs would keep the process alive
+        System.exit(0);
+    }
+
+    private static void runDiscreteEvent(SimulationContext simContext, BooleanSupplier finished) {
+        long startTime = System.nanoTime();
+        boolean completed = false;
+        try {
+            completed = simContext.eventScheduler.run(finished);
+        } catch (Exception e) {
+            fail(e);
+        }
+
+        long virtualMillis = simContext.timingWheel.getClock().millis();
+        long wallMillis = (System.nanoTime() - startTime) / 1_000_000;
+        if (completed) {
+            Logging.info(Tag.SYSTEM, "Discrete event run finished: %d ms of virtual time in %d ms", virtualMillis,
+                    wallMillis);
+        } else {
+            Logging.error(Tag.SYSTEM, "Discrete event run stopped at %d ms of virtual time, nothing is left to do",
+                    virtualMillis);
+            System.out.println("Discrete event run stopped before completion, nothing is left to do.");
+        }
+    }
+
+    private static void startMetricsEndpoint(SimulationContext simContext, int port) {
+        try {
+            new MetricsEndpoint(simContext, port).start();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void startCapture(SimulationContext simContext, String file, long maxFileSizeMb) {
+        // Timestamps are virtual in the discrete event mode, so that the captures of the same run are identical
+        var capture = simContext.isDiscreteEvent()
+                ? new PcapWriter(Paths.get(file), maxFileSizeMb * 1024 * 1024, simContext::nanoTime, 0)
+                : new PcapWriter(Paths.get(file), maxFileSizeMb * 1024 * 1024);
+        try {
+            capture.start();
+        } catch (IOException e) {
+            fail(e);
+        }
+        simContext.capture = capture;
+        Runtime.getRuntime().addShutdownHook(new Thread(capture::close));
+        Logging.info(Tag.SYSTEM, "NGAP messages are captured to: %s", file);
+    }
+
+    private static void startControlServer(SimulationContext simContext, int port) {
+        try {
+            new ControlServer(simContext, port).start();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
     public static void fail(Throwable t) {
         t.printStackTrace();
         Logging.error(Tag.SYSTEM, "%s", t);
         System.exit(1);
     }
 
-    private static void initLogging() {
-        final String logFile = "app.log";
-
+    private static void initLogging(String logFile) {
         Console.println(Color.YELLOW_BOLD_BRIGHT, "WARNING: All logs are written to: %s", logFile);
         Console.setStandardPrintEnabled(false);
         Console.addPrintHandler(str -> {
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim;
+
+import tr.havelsan.ueransim.crypto.Snow3G;
+import tr.havelsan.ueransim.ngap2.NgapData;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Warms up the subsystems with an expensive one-time initialization in parallel, while the main thread goes on with
+ * the MTS initialization and the configuration.
+ * <p>
+ * The subsystems are still initialized lazily on first use, so nothing has to wait for the warm-up. If a subsystem is
+ * used while it is being warmed up, the class initialization makes the user wait for it instead of initializing it
+ * twice.
+ */
+public class StartupWarmup {
+
+    public static CompletableFuture<Void> start() {
+        long startTime = System.nanoTime();
+        var executor = Executors.newFixedThreadPool(3, r -> {
+            var thread = new Thread(r, "startup-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var tasks = CompletableFuture.allOf(
+                CompletableFuture.runAsync(NgapData::warmUp, executor),
+                CompletableFuture.runAsync(Ngap::warmUp, executor),
+                CompletableFuture.runAsync(() -> initialize(Snow3G.class), executor));
+
+        return tasks.whenComplete((result, throwable) -> {
+            executor.shutdown();
+            if (throwable != null) {
+                Logging.error(Tag.SYSTEM, "Startup warm-up failed: %s", throwable);
+            } else {
+                Logging.debug(Tag.SYSTEM, "Startup warm-up is finished in %d ms",
+                        (System.nanoTime() - startTime) / 1_000_000);
+            }
+        });
+    }
+
+    private static void initialize(Class<?> type) {
+        try {
+            Class.forName(type.getName(), true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -28,11 +28,15 @@ package tr.havelsan.ueransim.api.gnb;
 
 import tr.havelsan.ueransim.Ngap;
 import tr.havelsan.ueransim.api.sys.MockedRadio;
+import tr.havelsan.ueransim.core.Constants;
 import tr.havelsan.ueransim.core.GnbSimContext;
 import tr.havelsan.ueransim.core.exceptions.NotImplementedException;
 import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
+import tr.havelsan.ueransim.events.gnb.GnbReplayEvent;
+import tr.havelsan.ueransim.events.gnb.GnbUeContextReleaseEvent;
 import tr.havelsan.ueransim.events.gnb.GnbUplinkNasEvent;
 import tr.havelsan.ueransim.events.gnb.SctpReceiveEvent;
+import tr.havelsan.ueransim.jfr.NgapMessageEvent;
 import tr.havelsan.ueransim.nas.NasDecoder;
 import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
 import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
@@ -41,9 +45,11 @@ import tr.havelsan.ueransim.ngap.ngap_pdu_contents.DownlinkNASTransport;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.InitialContextSetupRequest;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.NGSetupFailure;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.NGSetupResponse;
+import tr.havelsan.ueransim.ngap.ngap_pdu_contents.UEContextReleaseCommand;
 import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
 import tr.havelsan.ueransim.ngap2.NgapBuilder;
 import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.utils.Debugging;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
@@ -53,21 +59,33 @@ import java.util.UUID;
 
 public class GNodeB {
 
-    public static void sendToNetworkNonUe(GnbSimContext ctx, NgapBuilder ngapBuilder) {
+    public static void sendToNetworkNonUe(GnbSimContext ctx, GnbAmfContext amfContext, NgapBuilder ngapBuilder) {
         Debugging.assertThread(ctx);
 
+        var jfrEvent = new NgapMessageEvent();
+        jfrEvent.begin();
+
         var ngapPdu = ngapBuilder.build();
 
-        Logging.debug(Tag.MESSAGING, "Sending NGAP: %s", NgapInternal.extractNgapMessage(ngapPdu).getClass().getSimpleName());
-        Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+        ctx.simCtx.metrics.ngapMessage(ngapMessage.getClass()).sent.increment();
+
+        Logging.debug(Tag.MESSAGING, "Sending NGAP: %s", ngapMessage.getClass().getSimpleName());
+        if (Logging.isDebugEnabled()) {
+            Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+        }
+
+        var data = Ngap.perEncode(ngapPdu);
+        sendToSctp(amfContext, Constants.NON_UE_STREAM_NUMBER, data, ngapMessage);
 
-        ctx.sctpClient.send(ctx.streamNumber, Ngap.perEncode(ngapPdu));
-        Logging.debug(Tag.MESSAGING, "Sent.");
+        commitMessageEvent(jfrEvent, ctx, "uplink", null, ngapMessage, data.length);
     }
 
     public static void sendToNetworkUeAssociated(GnbSimContext ctx, UUID ueId, NgapBuilder ngapBuilder) {
         Debugging.assertThread(ctx);
 
+        var jfrEvent = new NgapMessageEvent();
+        jfrEvent.begin();
 
         // Adding AMF-UE-NGAP-ID (if any)
         {
@@ -88,45 +106,96 @@ public class GNodeB {
 
         // Adding user location information
         {
-            if (NgapInternal.isProtocolIeUsable(ngapBuilder.messageType, UserLocationInformation.class)) {
-                ngapBuilder.addUserLocationInformationNR(MockedRadio.findLocationOfUe(ctx.simCtx, ueId));
+            // Replayed UEs carry the location of the trace instead
+            if (NgapInternal.isProtocolIeUsable(ngapBuilder.messageType, UserLocationInformation.class)
+                    && ctx.ueContexts.get(ueId).ue != null) {
+                ngapBuilder.addUserLocationInformationNR(MockedRadio.findLocationOfUe(ctx.ueContexts.get(ueId).ue));
             }
         }
 
         var ngapPdu = ngapBuilder.build();
 
-        Logging.debug(Tag.MESSAGING, "Sending NGAP: %s", NgapInternal.extractNgapMessage(ngapPdu).getClass().getSimpleName());
-        Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+        ctx.simCtx.metrics.ngapMessage(ngapMessage.getClass()).sent.increment();
 
-        ctx.sctpClient.send(ctx.streamNumber, Ngap.perEncode(ngapPdu));
-        Logging.debug(Tag.MESSAGING, "Sent.");
+        Logging.debug(Tag.MESSAGING, "Sending NGAP: %s", ngapMessage.getClass().getSimpleName());
+        if (Logging.isDebugEnabled()) {
+            Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+        }
+
+        var data = Ngap.perEncode(ngapPdu);
+        var ueCtx = ctx.ueContexts.get(ueId);
+        sendToSctp(ueCtx.amfContext, ueCtx.streamNumber, data, ngapMessage);
+
+        commitMessageEvent(jfrEvent, ctx, "uplink", ueId, ngapMessage, data.length);
+    }
+
+    private static void sendToSctp(GnbAmfContext amfContext, int streamNumber, byte[] data, Object ngapMessage) {
+        // The looper is not blocked when the association cannot keep up, the message is dropped instead
+        if (amfContext.sctpClient.send(streamNumber, data)) {
+            if (amfContext.capture != null) {
+                amfContext.capture.uplink(streamNumber, data);
+            }
+            Logging.debug(Tag.MESSAGING, "Sent.");
+        } else {
+            Logging.error(Tag.CONNECTION, "SCTP send queue is full or association is closed, %s is dropped",
+                    ngapMessage.getClass().getSimpleName());
+        }
     }
 
-    public static void receiveFromNetwork(GnbSimContext ctx, NGAP_PDU ngapPdu) {
+    public static void receiveFromNetwork(GnbSimContext ctx, GnbAmfContext amfContext, NGAP_PDU ngapPdu, int length) {
+        var jfrEvent = new NgapMessageEvent();
+        jfrEvent.begin();
+
         var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
 
+        var metrics = ctx.simCtx.metrics.ngapMessage(ngapMessage.getClass());
+        metrics.received.increment();
+        long startTime = System.nanoTime();
+
         if (NgapInternal.isUeAssociated(ngapMessage)) {
-            receiveFromNetworkUeAssociated(ctx, ngapPdu);
+            receiveFromNetworkUeAssociated(ctx, amfContext, ngapPdu);
         } else {
-            receiveFromNetworkNonUe(ctx, ngapPdu);
+            receiveFromNetworkNonUe(ctx, amfContext, ngapPdu);
+        }
+
+        metrics.handlingTime.record(System.nanoTime() - startTime);
+
+        commitMessageEvent(jfrEvent, ctx, "downlink", null, ngapMessage, length);
+    }
+
+    private static void commitMessageEvent(NgapMessageEvent jfrEvent, GnbSimContext ctx, String direction, UUID ueId,
+                                           Object ngapMessage, int length) {
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.direction = direction;
+            jfrEvent.gnbId = ctx.config.gnbId;
+            jfrEvent.ue = ueId != null ? ueId.toString() : null;
+            jfrEvent.messageType = ngapMessage.getClass().getSimpleName();
+            jfrEvent.length = length;
+            jfrEvent.commit();
         }
     }
 
-    private static void receiveFromNetworkNonUe(GnbSimContext ctx, NGAP_PDU ngapPdu) {
+    private static void receiveFromNetworkNonUe(GnbSimContext ctx, GnbAmfContext amfContext, NGAP_PDU ngapPdu) {
         Debugging.assertThread(ctx);
 
         var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
 
         if (ngapMessage instanceof NGSetupResponse) {
-            GnbInterfaceManagement.receiveNgSetupResponse(ctx, (NGSetupResponse) ngapMessage);
+            GnbInterfaceManagement.receiveNgSetupResponse(ctx, amfContext, (NGSetupResponse) ngapMessage);
         } else if (ngapMessage instanceof NGSetupFailure) {
-            GnbInterfaceManagement.receiveNgSetupFailure(ctx, (NGSetupFailure) ngapMessage);
+            GnbInterfaceManagement.receiveNgSetupFailure(ctx, amfContext, (NGSetupFailure) ngapMessage);
+        } else if (ngapMessage instanceof UEContextReleaseCommand) {
+            // UEContextReleaseCommand carries UE-NGAP-IDs instead of RAN-UE-NGAP-ID
+            GnbUeContextManagement.receiveUeContextReleaseCommand(ctx, amfContext,
+                    (UEContextReleaseCommand) ngapMessage);
         } else {
             Logging.error(Tag.MESSAGING, "Unhandled message received: %s", ngapMessage.getClass().getSimpleName());
         }
     }
 
-    private static void receiveFromNetworkUeAssociated(GnbSimContext ctx, NGAP_PDU ngapPdu) {
+    private static void receiveFromNetworkUeAssociated(GnbSimContext ctx, GnbAmfContext amfContext,
+                                                       NGAP_PDU ngapPdu) {
         Debugging.assertThread(ctx);
 
         var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
@@ -157,12 +226,21 @@ public class GNodeB {
             }
 
             var gnbUeContext = ctx.ueContexts.get(associatedUe);
+            if (gnbUeContext.amfContext != amfContext) {
+                // todo: send error indication
+                Logging.error(Tag.MESSAGING, "UE-associated message received from an AMF the UE is not served by");
+                return;
+            }
             if (gnbUeContext.amfUeNgapId == null) {
-                gnbUeContext.amfUeNgapId = amfUeNgapId;
+                GnbUeManagement.setAmfUeNgapId(gnbUeContext, amfUeNgapId);
             } else if (amfUeNgapId != gnbUeContext.amfUeNgapId) {
                 // todo: either send error indication or update amf-ui-ngap-id
                 throw new NotImplementedException("");
             }
+            if (gnbUeContext.replay != null) {
+                GnbTraceReplay.receiveDownlink(ctx, gnbUeContext.replay);
+                return;
+            }
         }
 
         if (ngapMessage instanceof DownlinkNASTransport) {
@@ -181,11 +259,15 @@ public class GNodeB {
         if (event instanceof SctpReceiveEvent) {
             Logging.info(Tag.EVENT, "GnbEvent is handling: %s", event);
 
-            var ngapPdu = ((SctpReceiveEvent) event).ngapPdu;
+            var receiveEvent = (SctpReceiveEvent) event;
+            var ngapPdu = receiveEvent.ngapPdu;
             Logging.debug(Tag.MESSAGING, "Received NGAP: %s", ngapPdu.getClass().getSimpleName());
-            Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+            if (Logging.isDebugEnabled()) {
+                Logging.debug(Tag.MESSAGING, Utils.xmlToJson(Ngap.xerEncode(ngapPdu)));
+            }
 
-            GNodeB.receiveFromNetwork(ctx, ngapPdu);
+            GNodeB.receiveFromNetwork(ctx, ctx.amfContexts[receiveEvent.associationId], ngapPdu,
+                    receiveEvent.length);
         } else if (event instanceof GnbCommandEvent) {
             Logging.info(Tag.EVENT, "GnbEvent is handling: %s", event);
 
@@ -203,6 +285,14 @@ public class GNodeB {
 
             var e = (GnbUplinkNasEvent) event;
             GnbNasTransport.receiveUplinkNasTransport(ctx, e.ue, NasDecoder.nasPdu(e.nasPdu));
+        } else if (event instanceof GnbUeContextReleaseEvent) {
+            Logging.info(Tag.EVENT, "GnbEvent is handling: %s", event);
+
+            var e = (GnbUeContextReleaseEvent) event;
+            GnbUeContextManagement.sendUeContextReleaseRequest(ctx, e.ue, e.cause);
+        } else if (event instanceof GnbReplayEvent) {
+            var e = (GnbReplayEvent) event;
+            GnbTraceReplay.receiveReplayMessage(ctx, e.ue, e.message);
         }
     }
 }
@@ -28,11 +28,14 @@ package tr.havelsan.ueransim.api.gnb;
 
 import tr.havelsan.ueransim.Ngap;
 import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.ngap.ngap_ies.PagingDRX;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.NGSetupFailure;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.NGSetupResponse;
 import tr.havelsan.ueransim.ngap2.NgapBuilder;
 import tr.havelsan.ueransim.ngap2.NgapMessageType;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.utils.Debugging;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
@@ -40,12 +43,22 @@ import tr.havelsan.ueransim.utils.Tag;
 public class GnbInterfaceManagement {
 
     public static void sendNgSetupRequest(GnbSimContext ctx) {
+        for (var amfContext : ctx.amfContexts) {
+            sendNgSetupRequest(ctx, amfContext);
+        }
+    }
+
+    public static void sendNgSetupRequest(GnbSimContext ctx, GnbAmfContext amfContext) {
         Debugging.assertThread(ctx);
 
         Logging.funcIn("Starting: NGSetupRequest");
-        Logging.info(Tag.PROCEDURE_RESULT, "NGSetup procedure is starting");
+        Logging.info(Tag.PROCEDURE_RESULT, "NGSetup procedure is starting for AMF %s:%s", amfContext.config.host,
+                amfContext.config.port);
+
+        amfContext.ngSetupStartTime = ctx.simCtx.nanoTime();
+        ctx.simCtx.metrics.procedure(EProcedure.NG_SETUP).started();
 
-        GNodeB.sendToNetworkNonUe(ctx,
+        GNodeB.sendToNetworkNonUe(ctx, amfContext,
                 new NgapBuilder(NgapMessageType.NGSetupRequest)
                         .addProtocolIE(Ngap.createGlobalGnbId(ctx.config.gnbId, ctx.config.gnbPlmn))
                         .addProtocolIE(Ngap.createSupportedTAList(ctx.config.supportedTAs))
@@ -55,21 +68,39 @@ public class GnbInterfaceManagement {
         Logging.funcOut();
     }
 
-    public static void receiveNgSetupResponse(GnbSimContext ctx, NGSetupResponse message) {
+    public static void receiveNgSetupResponse(GnbSimContext ctx, GnbAmfContext amfContext, NGSetupResponse message) {
         Debugging.assertThread(ctx);
 
         Logging.funcIn("Handling: NGSetupResponse");
         Logging.success(Tag.PROCEDURE_RESULT, "NGSetup procedure is successful");
+        amfContext.ngSetupSucceeded = true;
+        ngSetupFinished(ctx, amfContext, EProcedureResult.SUCCESS);
+
+        if (ctx.simCtx.metrics.recordNgSetupSucceeded()) {
+            Logging.info(Tag.SYSTEM, "First NGSetup is completed %d ms after the JVM start",
+                    ctx.simCtx.metrics.getTimeToFirstNgSetupMillis());
+        }
 
         Logging.funcOut();
     }
 
-    public static void receiveNgSetupFailure(GnbSimContext ctx, NGSetupFailure message) {
+    public static void receiveNgSetupFailure(GnbSimContext ctx, GnbAmfContext amfContext, NGSetupFailure message) {
         Debugging.assertThread(ctx);
 
         Logging.funcIn("Handling: NGSetupFailure");
         Logging.error(Tag.PROCEDURE_RESULT, "NGSetup procedure is failed");
+        amfContext.ngSetupSucceeded = false;
+        ngSetupFinished(ctx, amfContext, EProcedureResult.FAILURE);
 
         Logging.funcOut();
     }
+
+    private static void ngSetupFinished(GnbSimContext ctx, GnbAmfContext amfContext, EProcedureResult result) {
+        long latency = 0;
+        if (amfContext.ngSetupStartTime != Long.MIN_VALUE) {
+            latency = ctx.simCtx.nanoTime() - amfContext.ngSetupStartTime;
+        }
+        amfContext.ngSetupStartTime = Long.MIN_VALUE;
+        ctx.simCtx.metrics.procedure(EProcedure.NG_SETUP).finished(result, latency);
+    }
 }
@@ -26,8 +26,8 @@
 
 package tr.havelsan.ueransim.api.gnb;
 
-import tr.havelsan.ueransim.api.sys.Simulation;
 import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
 import tr.havelsan.ueransim.events.ue.UeDownlinkNasEvent;
 import tr.havelsan.ueransim.nas.NasEncoder;
 import tr.havelsan.ueransim.nas.core.messages.NasMessage;
@@ -42,7 +42,8 @@ import java.util.UUID;
 
 public class GnbNasTransport {
 
-    public static void receiveUplinkNasTransport(GnbSimContext ctx, UUID associatedUe, NasMessage nasMessage) {
+    public static void receiveUplinkNasTransport(GnbSimContext ctx, UeSimContext ue, NasMessage nasMessage) {
+        var associatedUe = ue.ctxId;
         NgapBuilder ngap;
 
         if (ctx.ueContexts.containsKey(associatedUe)) {
@@ -51,7 +52,7 @@ public class GnbNasTransport {
             ngap = new NgapBuilder(NgapMessageType.InitialUEMessage);
             ngap.addProtocolIE(new RRCEstablishmentCause(RRCEstablishmentCause.ASN_mo_Data));
 
-            GnbUeManagement.allocateUeNgapId(ctx, associatedUe);
+            GnbUeManagement.allocateUeNgapId(ctx, ue);
         }
 
         if (nasMessage != null) {
@@ -66,7 +67,7 @@ public class GnbNasTransport {
 
         var nasMessage = NgapInternal.extractNasMessage(message);
         if (nasMessage != null) {
-            Simulation.pushUeEvent(ctx.simCtx, associatedUe, new UeDownlinkNasEvent(NasEncoder.nasPduS(nasMessage)));
+            ctx.ueContexts.get(associatedUe).ue.pushEvent(new UeDownlinkNasEvent(NasEncoder.nasPduS(nasMessage)));
         }
     }
 }
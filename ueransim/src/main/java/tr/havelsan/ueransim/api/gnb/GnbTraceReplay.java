@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.api.gnb;
+
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.ngap2.NgapBuilder;
+import tr.havelsan.ueransim.ngap2.NgapMessageType;
+import tr.havelsan.ueransim.replay.NgapTrace;
+import tr.havelsan.ueransim.replay.ReplayedUe;
+import tr.havelsan.ueransim.utils.Debugging;
+
+/**
+ * Sending of the trace messages of the replayed UEs. A replayed UE has a gNB UE context like the simulated UEs, so
+ * that the UE-NGAP-IDs and the AMF are handled by the gNB, but the downlink messages are only counted instead of being
+ * handled.
+ */
+public class GnbTraceReplay {
+
+    public static void receiveReplayMessage(GnbSimContext ctx, ReplayedUe ue, NgapTrace.Message message) {
+        Debugging.assertThread(ctx);
+
+        // Messages of a UE are kept in the trace order, behind the ones that are waiting
+        if (ue.admit(message)) {
+            send(ctx, ue, message);
+        }
+    }
+
+    public static void receiveDownlink(GnbSimContext ctx, ReplayedUe ue) {
+        Debugging.assertThread(ctx);
+
+        ue.downlinkReceived();
+        NgapTrace.Message message;
+        while ((message = ue.pollReleased()) != null) {
+            send(ctx, ue, message);
+        }
+    }
+
+    private static void send(GnbSimContext ctx, ReplayedUe ue, NgapTrace.Message message) {
+        if (!ctx.ueContexts.containsKey(ue.id)) {
+            GnbUeManagement.allocateUeNgapId(ctx, ue.id).replay = ue;
+        }
+
+        var ngap = new NgapBuilder(message.messageType);
+        for (var protocolIe : message.protocolIEs) {
+            ngap.addProtocolIE(protocolIe);
+        }
+        if (message.nasPdu != null) {
+            ngap.addNasPdu(ue.nasPduOf(message));
+        }
+        if (message.fiveGSTmsi != null) {
+            ngap.addProtocolIE(ue.fiveGSTmsiOf(message));
+        }
+        GNodeB.sendToNetworkUeAssociated(ctx, ue.id, ngap);
+        ue.counters.sent.increment();
+
+        if (message.messageType == NgapMessageType.UEContextReleaseComplete) {
+            // A later message of the UE in the trace starts a new UE context, e.g. for a service request
+            GnbUeManagement.removeUeContext(ctx, ue.id);
+        }
+    }
+}
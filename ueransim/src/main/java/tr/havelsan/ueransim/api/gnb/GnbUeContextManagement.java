@@ -26,15 +26,23 @@
 
 package tr.havelsan.ueransim.api.gnb;
 
-import tr.havelsan.ueransim.api.sys.Simulation;
 import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.events.ue.UeConnectionReleaseEvent;
 import tr.havelsan.ueransim.events.ue.UeDownlinkNasEvent;
 import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_ID_pair;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_IDs;
 import tr.havelsan.ueransim.ngap.ngap_pdu_contents.InitialContextSetupRequest;
+import tr.havelsan.ueransim.ngap.ngap_pdu_contents.UEContextReleaseCommand;
 import tr.havelsan.ueransim.ngap2.NgapBuilder;
+import tr.havelsan.ueransim.ngap2.NgapCause;
 import tr.havelsan.ueransim.ngap2.NgapInternal;
 import tr.havelsan.ueransim.ngap2.NgapMessageType;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.utils.Debugging;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
 
 import java.util.UUID;
 
@@ -48,7 +56,59 @@ public class GnbUeContextManagement {
 
         var nasMessage = NgapInternal.extractNasMessage(message);
         if (nasMessage != null) {
-            Simulation.pushUeEvent(ctx.simCtx, associatedUe, new UeDownlinkNasEvent(NasEncoder.nasPduS(nasMessage)));
+            ctx.ueContexts.get(associatedUe).ue.pushEvent(new UeDownlinkNasEvent(NasEncoder.nasPduS(nasMessage)));
         }
     }
+
+    public static void sendUeContextReleaseRequest(GnbSimContext ctx, UUID associatedUe, NgapCause cause) {
+        Debugging.assertThread(ctx);
+
+        if (!ctx.ueContexts.containsKey(associatedUe)) {
+            Logging.error(Tag.PROC, "UE context release requested for unknown UE: %s", associatedUe);
+            return;
+        }
+
+        GNodeB.sendToNetworkUeAssociated(ctx, associatedUe,
+                new NgapBuilder(NgapMessageType.UEContextReleaseRequest).addCause(cause));
+    }
+
+    public static void receiveUeContextReleaseCommand(GnbSimContext ctx, GnbAmfContext amfContext,
+                                                      UEContextReleaseCommand message) {
+        Debugging.assertThread(ctx);
+
+        var ieUeNgapIds = NgapInternal.extractProtocolIe(message, UE_NGAP_IDs.class);
+        if (ieUeNgapIds.size() == 0) {
+            Logging.error(Tag.MESSAGING, "UE-NGAP-IDs not found in UEContextReleaseCommand");
+            return;
+        }
+
+        UUID associatedUe;
+
+        var ueNgapIds = ieUeNgapIds.get(0);
+        if (ueNgapIds.getFieldNumber() == UE_NGAP_IDs.ASN_uE_NGAP_ID_pair) {
+            var pair = (UE_NGAP_ID_pair) ueNgapIds.getValue();
+            associatedUe = GnbUeManagement.findUe(ctx, pair.rAN_UE_NGAP_ID.value);
+        } else {
+            var amfUeNgapId = (AMF_UE_NGAP_ID) ueNgapIds.getValue();
+            associatedUe = GnbUeManagement.findUeByAmfUeNgapId(ctx, amfContext, amfUeNgapId.value);
+        }
+
+        if (associatedUe == null) {
+            // todo: send error indication
+            Logging.error(Tag.MESSAGING, "UE context not found for UEContextReleaseCommand");
+            return;
+        }
+
+        var replayedUe = ctx.ueContexts.get(associatedUe).replay;
+        if (replayedUe != null) {
+            // The release is completed by the trace
+            GnbTraceReplay.receiveDownlink(ctx, replayedUe);
+            return;
+        }
+
+        GNodeB.sendToNetworkUeAssociated(ctx, associatedUe, new NgapBuilder(NgapMessageType.UEContextReleaseComplete));
+
+        var gnbUeCtx = GnbUeManagement.removeUeContext(ctx, associatedUe);
+        gnbUeCtx.ue.pushEvent(new UeConnectionReleaseEvent());
+    }
 }
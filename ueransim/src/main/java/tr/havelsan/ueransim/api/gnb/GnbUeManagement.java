@@ -26,7 +26,10 @@
 
 package tr.havelsan.ueransim.api.gnb;
 
+import tr.havelsan.ueransim.core.Constants;
 import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.structs.GnbUeContext;
 import tr.havelsan.ueransim.utils.Debugging;
 
@@ -34,23 +37,109 @@ import java.util.UUID;
 
 public class GnbUeManagement {
 
-    public static void allocateUeNgapId(GnbSimContext ctx, UUID ueId) {
+    public static void allocateUeNgapId(GnbSimContext ctx, UeSimContext ue) {
+        allocateUeNgapId(ctx, ue.ctxId).ue = ue;
+    }
+
+    public static GnbUeContext allocateUeNgapId(GnbSimContext ctx, UUID ueId) {
         Debugging.assertThread(ctx);
 
         var gnbUeCtx = new GnbUeContext();
         gnbUeCtx.ranUeNgapId = ++ctx.ueNgapIdCounter;
         gnbUeCtx.amfUeNgapId = null;
+        gnbUeCtx.amfContext = selectAmf(ctx);
+        gnbUeCtx.streamNumber = selectStream(gnbUeCtx.amfContext, gnbUeCtx.ranUeNgapId);
+
+        addUeContext(ctx, ueId, gnbUeCtx);
+        return gnbUeCtx;
+    }
 
+    /**
+     * Adds the context of a UE to the gNB, with its index by the RAN-UE-NGAP-ID, and by the AMF-UE-NGAP-ID if known.
+     */
+    public static void addUeContext(GnbSimContext ctx, UUID ueId, GnbUeContext gnbUeCtx) {
+        gnbUeCtx.ueId = ueId;
         ctx.ueContexts.put(ueId, gnbUeCtx);
+        ctx.ueContextsByRanUeNgapId.put(gnbUeCtx.ranUeNgapId, gnbUeCtx);
+        if (gnbUeCtx.amfUeNgapId != null) {
+            gnbUeCtx.amfContext.ueContextsByAmfUeNgapId.put(gnbUeCtx.amfUeNgapId, gnbUeCtx);
+        }
     }
 
-    public static UUID findUe(GnbSimContext ctx, long ranUeNgapId) {
-        // todo: make O(1)
-        for (var entry : ctx.ueContexts.entrySet()) {
-            if (entry.getValue().ranUeNgapId == ranUeNgapId) {
-                return entry.getKey();
+    /**
+     * Sets the AMF-UE-NGAP-ID of a UE context, when it is first learned from the AMF.
+     */
+    public static void setAmfUeNgapId(GnbUeContext gnbUeCtx, long amfUeNgapId) {
+        gnbUeCtx.amfUeNgapId = amfUeNgapId;
+        gnbUeCtx.amfContext.ueContextsByAmfUeNgapId.put(amfUeNgapId, gnbUeCtx);
+    }
+
+    /**
+     * Removes the context of a UE from the gNB and from its indexes. Returns the removed context, or null if the UE
+     * has no context.
+     */
+    public static GnbUeContext removeUeContext(GnbSimContext ctx, UUID ueId) {
+        var gnbUeCtx = ctx.ueContexts.remove(ueId);
+        if (gnbUeCtx == null) {
+            return null;
+        }
+        ctx.ueContextsByRanUeNgapId.remove(gnbUeCtx.ranUeNgapId);
+        if (gnbUeCtx.amfUeNgapId != null) {
+            gnbUeCtx.amfContext.ueContextsByAmfUeNgapId.remove(gnbUeCtx.amfUeNgapId, gnbUeCtx);
+        }
+        return gnbUeCtx;
+    }
+
+    /**
+     * Selects the AMF of a new UE with smooth weighted round-robin, among the AMFs whose NG setup succeeded if any.
+     */
+    private static GnbAmfContext selectAmf(GnbSimContext ctx) {
+        var amfContexts = ctx.amfContexts;
+        if (amfContexts.length == 1) {
+            return amfContexts[0];
+        }
+
+        boolean anySucceeded = false;
+        for (var amfContext : amfContexts) {
+            anySucceeded |= amfContext.ngSetupSucceeded;
+        }
+
+        GnbAmfContext selected = null;
+        double totalWeight = 0;
+        for (var amfContext : amfContexts) {
+            if (anySucceeded && !amfContext.ngSetupSucceeded) {
+                continue;
             }
+            amfContext.selectionWeight += amfContext.weight();
+            totalWeight += amfContext.weight();
+            if (selected == null || amfContext.selectionWeight > selected.selectionWeight) {
+                selected = amfContext;
+            }
+        }
+        selected.selectionWeight -= totalWeight;
+        return selected;
+    }
+
+    /**
+     * Distributes the UEs over the streams other than the non-UE-associated signalling stream in round-robin order,
+     * so that a lost or delayed message only stalls the signalling of the UEs sharing its stream.
+     */
+    private static int selectStream(GnbAmfContext amfContext, long ranUeNgapId) {
+        int streams = amfContext.sctpClient.getOutboundStreams();
+        if (streams <= 1) {
+            return Constants.NON_UE_STREAM_NUMBER;
         }
-        return null;
+        return 1 + (int) (ranUeNgapId % (streams - 1));
+    }
+
+    public static UUID findUe(GnbSimContext ctx, long ranUeNgapId) {
+        var gnbUeCtx = ctx.ueContextsByRanUeNgapId.get(ranUeNgapId);
+        return gnbUeCtx != null ? gnbUeCtx.ueId : null;
+    }
+
+    public static UUID findUeByAmfUeNgapId(GnbSimContext ctx, GnbAmfContext amfContext, long amfUeNgapId) {
+        // AMF-UE-NGAP-IDs are only unique within an AMF
+        var gnbUeCtx = amfContext.ueContextsByAmfUeNgapId.get(amfUeNgapId);
+        return gnbUeCtx != null ? gnbUeCtx.ueId : null;
     }
 }
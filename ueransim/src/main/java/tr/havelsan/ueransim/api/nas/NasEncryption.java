@@ -29,6 +29,7 @@ package tr.havelsan.ueransim.api.nas;
 import tr.havelsan.ueransim.core.exceptions.IncorrectImplementationException;
 import tr.havelsan.ueransim.crypto.*;
 import tr.havelsan.ueransim.enums.EConnectionIdentifier;
+import tr.havelsan.ueransim.jfr.NasSecurityEvent;
 import tr.havelsan.ueransim.nas.NasDecoder;
 import tr.havelsan.ueransim.nas.NasEncoder;
 import tr.havelsan.ueransim.nas.core.messages.NasMessage;
@@ -70,11 +71,14 @@ public class NasEncryption {
     }
 
     private static SecuredMmMessage encrypt(byte[] plainNasMessage, EMessageType messageType, NasSecurityContext securityContext) {
+        var jfrEvent = new NasSecurityEvent();
+        jfrEvent.begin();
+
         var sht = makeSecurityHeaderType(securityContext, messageType);
         var count = securityContext.uplinkCount;
         var cnId = securityContext.connectionIdentifier;
-        var intKey = securityContext.keys.kNasInt;
-        var encKey = securityContext.keys.kNasEnc;
+        var intKey = securityContext.keys.getKNasInt();
+        var encKey = securityContext.keys.getKNasEnc();
         var intAlg = securityContext.selectedAlgorithms.integrity;
         var encAlg = securityContext.selectedAlgorithms.ciphering;
 
@@ -89,6 +93,7 @@ public class NasEncryption {
 
         securityContext.countOnEncrypt();
 
+        commitSecurityEvent(jfrEvent, "encrypt", encAlg, intAlg, plainNasMessage.length, true);
         return secured;
     }
 
@@ -126,11 +131,14 @@ public class NasEncryption {
     public static NasMessage decrypt(SecuredMmMessage protectedNasMessage, NasSecurityContext securityContext) {
         Logging.funcIn("NasEncryption.decrypt");
 
+        var jfrEvent = new NasSecurityEvent();
+        jfrEvent.begin();
+
         var estimatedCount = securityContext.estimatedDownlinkCount(protectedNasMessage.sequenceNumber);
 
         var cnId = securityContext.connectionIdentifier;
-        var intKey = securityContext.keys.kNasInt;
-        var encKey = securityContext.keys.kNasEnc;
+        var intKey = securityContext.keys.getKNasInt();
+        var encKey = securityContext.keys.getKNasEnc();
         var intAlg = securityContext.selectedAlgorithms.integrity;
         var encAlg = securityContext.selectedAlgorithms.ciphering;
 
@@ -141,6 +149,8 @@ public class NasEncryption {
 
         if (!mac.equals(protectedNasMessage.messageAuthenticationCode)) {
             if (!intAlg.equals(ETypeOfIntegrityProtectionAlgorithm.IA0)) {
+                commitSecurityEvent(jfrEvent, "decrypt", encAlg, intAlg, protectedNasMessage.plainNasMessage.length,
+                        false);
                 Logging.funcOut();
                 return null;
             }
@@ -152,10 +162,24 @@ public class NasEncryption {
                 protectedNasMessage.plainNasMessage.toByteArray());
         var decryptedMsg = NasDecoder.nasPdu(decryptedData);
 
+        commitSecurityEvent(jfrEvent, "decrypt", encAlg, intAlg, protectedNasMessage.plainNasMessage.length, true);
         Logging.funcOut();
         return decryptedMsg;
     }
 
+    private static void commitSecurityEvent(NasSecurityEvent jfrEvent, String operation,
+                                            ETypeOfCipheringAlgorithm encAlg, ETypeOfIntegrityProtectionAlgorithm intAlg,
+                                            int length, boolean success) {
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.operation = operation;
+            jfrEvent.cipheringAlgorithm = encAlg.name();
+            jfrEvent.integrityAlgorithm = intAlg.name();
+            jfrEvent.length = length;
+            jfrEvent.success = success;
+            jfrEvent.commit();
+        }
+    }
+
     private static OctetString decryptData(ETypeOfCipheringAlgorithm alg, NasCount count, EConnectionIdentifier cnId,
                                            OctetString key, ESecurityHeaderType sht, byte[] data) {
         Logging.funcIn("NasEncryption.decryptData");
@@ -242,8 +266,8 @@ public class NasEncryption {
     }
 
     private static ESecurityHeaderType makeSecurityHeaderType(NasSecurityContext securityContext, EMessageType messageType) {
-        var encKey = securityContext.keys.kNasEnc;
-        var intKey = securityContext.keys.kNasInt;
+        var encKey = securityContext.keys.getKNasEnc();
+        var intKey = securityContext.keys.getKNasInt();
 
         boolean ciphered = encKey != null && encKey.length > 0;
         boolean integrityProtected = intKey != null && intKey.length > 0;
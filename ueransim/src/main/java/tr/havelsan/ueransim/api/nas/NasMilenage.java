@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.api.nas;
+
+import threegpp.milenage.Milenage;
+import threegpp.milenage.MilenageResult;
+import threegpp.milenage.biginteger.BigIntegerBufferFactory;
+import threegpp.milenage.cipher.Ciphers;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class NasMilenage {
+
+    // Milenage functions are already computed in a crypto pool worker or in a node thread, so they are run in the
+    // calling thread.
+    private static final ExecutorService MILENAGE_EXECUTOR = new DirectExecutorService();
+
+    public static Map<MilenageResult, OctetString> calculate(OctetString key, OctetString op, OctetString amf,
+                                                             OctetString sqn, OctetString rand) {
+        var factory = BigIntegerBufferFactory.getInstance();
+        var cipher = Ciphers.createRijndaelCipher(key.toByteArray());
+        byte[] opc = Milenage.calculateOPc(op.toByteArray(), cipher, factory);
+        var milenage = new Milenage<>(opc, cipher, factory);
+        try {
+            var calc = milenage.calculateAll(rand.toByteArray(), sqn.toByteArray(), amf.toByteArray(),
+                    MILENAGE_EXECUTOR);
+            var res = new HashMap<MilenageResult, OctetString>();
+            for (var entry : calc.entrySet()) {
+                res.put(entry.getKey(), new OctetString(entry.getValue()));
+            }
+            return res;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class DirectExecutorService extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
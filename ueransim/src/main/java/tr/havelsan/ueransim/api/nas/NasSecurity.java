@@ -41,7 +41,7 @@ public class NasSecurity {
             return null;
         }
 
-        if (nsc == null || nsc.keys.kNasEnc == null) {
+        if (nsc == null || nsc.keys.getKNasEnc() == null) {
             return nasMessage;
         }
 
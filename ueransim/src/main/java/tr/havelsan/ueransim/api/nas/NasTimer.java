@@ -26,29 +26,134 @@
 
 package tr.havelsan.ueransim.api.nas;
 
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.events.ue.UeTimerExpireEvent;
 import tr.havelsan.ueransim.nas.impl.ies.IEGprsTimer2;
 import tr.havelsan.ueransim.nas.impl.ies.IEGprsTimer3;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
 
-// todo
-public class NasTimer {
+public class NasTimer extends TimerEntry {
+
+    private final UeSimContext ctx;
+
+    public final int timerCode;
+    public final boolean isMmTimer;
+
+    private int interval; // in seconds
+    private boolean running;
+
+    public NasTimer(UeSimContext ctx, int timerCode, boolean isMmTimer, int defaultInterval) {
+        this.ctx = ctx;
+        this.timerCode = timerCode;
+        this.isMmTimer = isMmTimer;
+        this.interval = defaultInterval;
+    }
 
     public void start() {
+        if (interval <= 0) {
+            Logging.error(Tag.NAS_TIMER, "%s cannot be started, timer interval is not known", this);
+            return;
+        }
+        running = true;
+        ctx.simCtx.timingWheel.schedule(this, interval * 1000L);
 
+        Logging.debug(Tag.NAS_TIMER, "%s started with interval %ss", this, interval);
+    }
+
+    /**
+     * Starts the timer to expire once after the given delay, without changing its interval.
+     */
+    public void startAfter(long delayMillis) {
+        running = true;
+        ctx.simCtx.timingWheel.schedule(this, delayMillis);
+
+        Logging.debug(Tag.NAS_TIMER, "%s started with delay %sms", this, delayMillis);
     }
 
     public void start(IEGprsTimer2 v) {
+        int octet = v.value.intValue();
+        int value = octet & 0b11111;
+        int unit = (octet >> 5) & 0b111;
 
+        // See 3GPP TS 24.008, 10.5.7.3 GPRS Timer
+        switch (unit) {
+            case 0b000:
+                interval = value * 2;
+                break;
+            case 0b001:
+                interval = value * 60;
+                break;
+            case 0b010:
+                interval = value * 360;
+                break;
+            case 0b111:
+                stop();
+                return;
+            default:
+                interval = value * 60;
+                break;
+        }
+        start();
     }
 
     public void start(IEGprsTimer3 v) {
+        int value = v.timerValue.intValue();
 
+        if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_10MIN)) {
+            interval = value * 600;
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_1HOUR)) {
+            interval = value * 3600;
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_10HOUR)) {
+            interval = value * 36000;
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_2SEC)) {
+            interval = value * 2;
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_30HOUR)) {
+            interval = value * 30; // actually multiples of 30 seconds
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_1MIN)) {
+            interval = value * 60;
+        } else if (v.unit.equals(IEGprsTimer3.EGprsTimerValueUnit3.MULTIPLES_OF_320HOUR)) {
+            interval = value * 1152000;
+        } else {
+            stop();
+            return;
+        }
+        start();
     }
 
     public void stop() {
-
+        running = false;
+        ctx.simCtx.timingWheel.cancel(this);
     }
 
     public boolean isRunning() {
-        return false;
+        return running;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Invoked in the UE looper when the expiry event of this timer is handled. Returns false if the timer was
+     * stopped or restarted after the expiry event was fired.
+     */
+    public boolean consumeExpiry(long generation) {
+        if (!running || generation != getGeneration()) {
+            return false;
+        }
+        running = false;
+        return true;
+    }
+
+    @Override
+    protected void onExpire(long generation) {
+        ctx.pushEvent(new UeTimerExpireEvent(this, generation));
+    }
+
+    @Override
+    public String toString() {
+        return "T" + timerCode;
     }
 }
@@ -26,13 +26,12 @@
 
 package tr.havelsan.ueransim.api.sys;
 
+import tr.havelsan.ueransim.core.UeSimContext;
 import tr.havelsan.ueransim.ngap2.UserLocationInformationNr;
 
-import java.util.UUID;
-
 public class MockedRadio {
 
-    public static UserLocationInformationNr findLocationOfUe(SimulationContext ctx, UUID ueId) {
-        return Simulation.findUe(ctx, ueId).ueConfig.userLocationInformationNr;
+    public static UserLocationInformationNr findLocationOfUe(UeSimContext ue) {
+        return ue.ueConfig.userLocationInformationNr;
     }
 }
@@ -28,57 +28,120 @@ package tr.havelsan.ueransim.api.sys;
 
 import tr.havelsan.ueransim.core.GnbSimContext;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.events.BaseEvent;
 import tr.havelsan.ueransim.events.gnb.GnbEvent;
 import tr.havelsan.ueransim.events.ue.UeEvent;
+import tr.havelsan.ueransim.jfr.ProcedureEndEvent;
+import tr.havelsan.ueransim.jfr.ProcedureStartEvent;
+import tr.havelsan.ueransim.utils.Debugging;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
 
-import java.util.UUID;
+import java.util.function.Consumer;
 
 public class Simulation {
 
     public static void registerUe(SimulationContext ctx, UeSimContext ue) {
-        synchronized (ctx) {
-            ctx.ueMap.put(ue.ctxId, ue);
-        }
+        ctx.ueRegistry.register(ue);
     }
 
     public static void registerGnb(SimulationContext ctx, GnbSimContext gnb) {
-        synchronized (ctx) {
-            ctx.gnbMap.put(gnb.ctxId, gnb);
-        }
+        ctx.gnbRegistry.register(gnb);
     }
 
-    static UeSimContext findUe(SimulationContext ctx, UUID id) {
-        synchronized (ctx) {
-            return ctx.ueMap.get(id);
-        }
+    public static UeSimContext findUe(SimulationContext ctx, int nodeId) {
+        return ctx.ueRegistry.get(nodeId);
     }
 
-    static GnbSimContext findGnb(SimulationContext ctx, UUID id) {
-        synchronized (ctx) {
-            return ctx.gnbMap.get(id);
-        }
+    public static GnbSimContext findGnb(SimulationContext ctx, int nodeId) {
+        return ctx.gnbRegistry.get(nodeId);
     }
 
+    /**
+     * Makes the gNB the serving gNB of the UE. Must be called before the UE is started.
+     */
     public static void connectUeToGnb(UeSimContext ueContext, GnbSimContext gnbContext) {
-        synchronized (ueContext) {
-            synchronized (gnbContext) {
-                ueContext.connectedGnb = gnbContext.ctxId;
-            }
+        ueContext.connectedGnb = gnbContext;
+    }
+
+    public static void addProcedureListener(SimulationContext ctx, IProcedureListener listener) {
+        ctx.procedureListeners.add(listener);
+    }
+
+    public static void removeProcedureListener(SimulationContext ctx, IProcedureListener listener) {
+        ctx.procedureListeners.remove(listener);
+    }
+
+    public static void procedureStarted(UeSimContext ue, EProcedure procedure) {
+        Debugging.assertThread(ue);
+
+        ue.currentProcedure = procedure;
+        ue.procedureStartTime = ue.simCtx.nanoTime();
+        ue.simCtx.metrics.procedure(procedure).started();
+
+        var jfrEvent = new ProcedureStartEvent();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.ue = ue.ctxId.toString();
+            jfrEvent.procedure = procedure.name();
+            jfrEvent.commit();
+        }
+
+        for (var listener : ue.simCtx.procedureListeners) {
+            listener.onProcedureStarted(ue, procedure);
         }
     }
 
+    public static void procedureFinished(UeSimContext ue, EProcedure procedure, EProcedureResult result) {
+        Debugging.assertThread(ue);
+
+        long latency = 0;
+        if (ue.currentProcedure == procedure) {
+            latency = ue.simCtx.nanoTime() - ue.procedureStartTime;
+            ue.currentProcedure = null;
+        }
+        ue.simCtx.metrics.procedure(procedure).finished(result, latency);
+
+        var jfrEvent = new ProcedureEndEvent();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.ue = ue.ctxId.toString();
+            jfrEvent.procedure = procedure.name();
+            jfrEvent.result = result.name();
+            jfrEvent.latency = latency;
+            jfrEvent.commit();
+        }
+
+        for (var listener : ue.simCtx.procedureListeners) {
+            listener.onProcedureFinished(ue, procedure, result, latency);
+        }
+    }
+
+    /**
+     * Performs the given action for each registered UE. The UE contexts must not be modified by the action, since
+     * it is not called on the UE threads.
+     */
+    public static void forEachUe(SimulationContext ctx, Consumer<UeSimContext> action) {
+        ctx.ueRegistry.forEach(action);
+    }
+
+    /**
+     * Performs the given action for each registered gNB, with the same restrictions as {@link #forEachUe}.
+     */
+    public static void forEachGnb(SimulationContext ctx, Consumer<GnbSimContext> action) {
+        ctx.gnbRegistry.forEach(action);
+    }
+
     public static void pushEvent(SimulationContext ctx, BaseEvent event) {
         // todo
     }
 
-    public static void pushUeEvent(SimulationContext ctx, UUID ueId, UeEvent event) {
-        UeSimContext ue;
-        synchronized (ctx) {
-            ue = findUe(ctx, ueId);
-        }
+    /**
+     * Pushes the event to the UE with the given node id. Nodes that already know the UE should push to its context
+     * directly instead.
+     */
+    public static void pushUeEvent(SimulationContext ctx, int ueId, UeEvent event) {
+        var ue = findUe(ctx, ueId);
         if (ue == null) {
             Logging.error(Tag.SYSTEM, "Simulation.pushUeEvent: could not find UE Sim Context with id: %s", ueId);
         } else {
@@ -86,11 +149,8 @@ public class Simulation {
         }
     }
 
-    public static void pushGnbEvent(SimulationContext ctx, UUID gnbId, GnbEvent event) {
-        GnbSimContext gnb;
-        synchronized (ctx) {
-            gnb = findGnb(ctx, gnbId);
-        }
+    public static void pushGnbEvent(SimulationContext ctx, int gnbId, GnbEvent event) {
+        var gnb = findGnb(ctx, gnbId);
         if (gnb == null) {
             Logging.error(Tag.SYSTEM, "Simulation.pushGnbEvent: could not find gNB Sim Context with id: %s", gnbId);
         } else {
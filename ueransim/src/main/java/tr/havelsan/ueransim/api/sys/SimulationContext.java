@@ -26,18 +26,122 @@
 
 package tr.havelsan.ueransim.api.sys;
 
+import tr.havelsan.ueransim.Program;
+import tr.havelsan.ueransim.api.gnb.GNodeB;
+import tr.havelsan.ueransim.api.ue.UserEquipment;
+import tr.havelsan.ueransim.capture.PcapWriter;
+import tr.havelsan.ueransim.core.BaseSimContext;
 import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.NodeRegistry;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.threads.CryptoWorkerPool;
+import tr.havelsan.ueransim.core.threads.DiscreteEventScheduler;
+import tr.havelsan.ueransim.core.threads.LooperGate;
+import tr.havelsan.ueransim.core.threads.NodeScheduler;
+import tr.havelsan.ueransim.core.timers.IClock;
+import tr.havelsan.ueransim.core.timers.SystemClock;
+import tr.havelsan.ueransim.core.timers.TimingWheel;
+import tr.havelsan.ueransim.core.timers.VirtualClock;
+import tr.havelsan.ueransim.metrics.MetricsRegistry;
+import tr.havelsan.ueransim.mock.MockedAmf;
+import tr.havelsan.ueransim.sctp.SctpSelectorGroup;
 
-import java.util.HashMap;
-import java.util.UUID;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SimulationContext {
-    HashMap<UUID, GnbSimContext> gnbMap;
-    HashMap<UUID, UeSimContext> ueMap;
+    private static final int CRYPTO_QUEUE_CAPACITY = 65536;
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int MAX_SCTP_SELECTOR_THREADS = 4;
+
+    CopyOnWriteArrayList<IProcedureListener> procedureListeners;
+
+    public final NodeRegistry<GnbSimContext> gnbRegistry;
+    public final NodeRegistry<UeSimContext> ueRegistry;
+    public final CryptoWorkerPool cryptoPool;
+    public final TimingWheel timingWheel;
+    public final NodeScheduler<UeSimContext> ueScheduler;
+    // Pauses the UE workers and the gNB loopers, not used by the discrete event mode which runs on a single thread
+    public final LooperGate looperGate;
+    public final MetricsRegistry metrics;
+    public final MockedAmf mockedAmf;
+    public final SctpSelectorGroup sctpSelectors;
+    // Drives the whole simulation on virtual time in the discrete event mode, null otherwise
+    public final DiscreteEventScheduler eventScheduler;
+    // Source of all the randomness of the simulation in the discrete event mode, null otherwise
+    private final Random seededRandom;
+    // Capture of the NGAP messages, null if disabled. Must be set before the gNBs are created.
+    public PcapWriter capture;
 
     public SimulationContext() {
-        this.gnbMap = new HashMap<>();
-        this.ueMap = new HashMap<>();
+        this(new SystemClock());
+    }
+
+    public SimulationContext(IClock clock) {
+        this(clock, null);
+    }
+
+    /**
+     * Creates a context for the discrete event mode, in which the simulation is run by {@link #eventScheduler} on the
+     * given virtual clock, and all the randomness comes from the given seed.
+     */
+    public SimulationContext(VirtualClock clock, long seed) {
+        this(clock, new Random(seed));
+    }
+
+    private SimulationContext(IClock clock, Random seededRandom) {
+        this.seededRandom = seededRandom;
+        this.gnbRegistry = new NodeRegistry<>();
+        this.ueRegistry = new NodeRegistry<>();
+        this.procedureListeners = new CopyOnWriteArrayList<>();
+        this.cryptoPool = new CryptoWorkerPool(Runtime.getRuntime().availableProcessors(), CRYPTO_QUEUE_CAPACITY);
+        this.timingWheel = new TimingWheel(clock, TIMER_TICK_MILLIS);
+        this.looperGate = new LooperGate();
+        this.ueScheduler = new NodeScheduler<>("ue-worker", Runtime.getRuntime().availableProcessors(),
+                UserEquipment::cycle, looperGate);
+        this.metrics = new MetricsRegistry();
+        this.mockedAmf = new MockedAmf(this);
+        this.sctpSelectors = new SctpSelectorGroup(
+                Math.min(MAX_SCTP_SELECTOR_THREADS, Runtime.getRuntime().availableProcessors()),
+                (thread, throwable) -> Program.fail(throwable));
+        this.eventScheduler = seededRandom != null
+                ? new DiscreteEventScheduler((VirtualClock) clock, timingWheel, SimulationContext::cycle)
+                : null;
+    }
+
+    private static void cycle(BaseSimContext<?> ctx) {
+        if (ctx instanceof GnbSimContext) {
+            GNodeB.cycle((GnbSimContext) ctx);
+        } else {
+            UserEquipment.cycle((UeSimContext) ctx);
+        }
+    }
+
+    public boolean isDiscreteEvent() {
+        return eventScheduler != null;
+    }
+
+    /**
+     * Returns the random to be used in the calling thread. It is the seeded random in the discrete event mode, since
+     * the simulation is run by a single thread then.
+     */
+    public Random random() {
+        return seededRandom != null ? seededRandom : ThreadLocalRandom.current();
+    }
+
+    /**
+     * Returns a new random for a component that keeps its own, seeded from the simulation seed in the discrete event
+     * mode.
+     */
+    public Random newRandom() {
+        return seededRandom != null ? new Random(seededRandom.nextLong()) : new Random();
+    }
+
+    /**
+     * Returns the time source of the latencies of the simulation, which is virtual in the discrete event mode.
+     */
+    public long nanoTime() {
+        return eventScheduler != null ? eventScheduler.nanoTime() : System.nanoTime();
     }
 }
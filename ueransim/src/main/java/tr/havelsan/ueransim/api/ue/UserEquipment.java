@@ -27,13 +27,17 @@
 package tr.havelsan.ueransim.api.ue;
 
 import tr.havelsan.ueransim.api.nas.NasSecurity;
-import tr.havelsan.ueransim.api.sys.Simulation;
 import tr.havelsan.ueransim.api.ue.mm.MobilityManagement;
 import tr.havelsan.ueransim.api.ue.sm.SessionManagement;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.ECmState;
 import tr.havelsan.ueransim.events.gnb.GnbUplinkNasEvent;
 import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+import tr.havelsan.ueransim.events.ue.UeConnectionReleaseEvent;
+import tr.havelsan.ueransim.events.ue.UeCryptoResultEvent;
 import tr.havelsan.ueransim.events.ue.UeDownlinkNasEvent;
+import tr.havelsan.ueransim.events.ue.UeTimerExpireEvent;
+import tr.havelsan.ueransim.jfr.NasMessageEvent;
 import tr.havelsan.ueransim.nas.NasDecoder;
 import tr.havelsan.ueransim.nas.NasEncoder;
 import tr.havelsan.ueransim.nas.core.messages.NasMessage;
@@ -43,6 +47,7 @@ import tr.havelsan.ueransim.utils.Debugging;
 import tr.havelsan.ueransim.utils.Json;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
+import tr.havelsan.ueransim.utils.octets.OctetString;
 
 public class UserEquipment {
 
@@ -51,6 +56,11 @@ public class UserEquipment {
 
         Logging.funcIn("Sending NAS message: %s", message.getClass().getSimpleName());
 
+        var jfrEvent = new NasMessageEvent();
+        jfrEvent.begin();
+
+        ctx.simCtx.metrics.nasMessage(message.getClass()).sent.increment();
+
         var securedNas = NasSecurity.encryptNasMessage(ctx.currentNsCtx, message);
         var securedNasPdu = NasEncoder.nasPduS(securedNas);
 
@@ -59,12 +69,39 @@ public class UserEquipment {
         Logging.debug(Tag.MESSAGING, "Secured NAS as JSON %s", Json.toJson(securedNas));
         Logging.debug(Tag.MESSAGING, "Secured NAS PDU: %s", securedNasPdu);
 
-        Simulation.pushGnbEvent(ctx.simCtx, ctx.connectedGnb, new GnbUplinkNasEvent(ctx.ctxId, securedNasPdu));
+        ctx.mmCtx.cmState = ECmState.CONNECTED;
+        ctx.connectedGnb.pushEvent(new GnbUplinkNasEvent(ctx, securedNasPdu));
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.direction = "uplink";
+            jfrEvent.ue = ctx.ctxId.toString();
+            jfrEvent.messageType = message.getClass().getSimpleName();
+            jfrEvent.length = securedNasPdu.length;
+            jfrEvent.commit();
+        }
 
         Logging.funcOut();
     }
 
-    public static void receiveNas(UeSimContext ctx, NasMessage message) {
+    public static void receiveNas(UeSimContext ctx, OctetString nasPdu) {
+        var jfrEvent = new NasMessageEvent();
+        jfrEvent.begin();
+
+        var message = receiveNas(ctx, NasDecoder.nasPdu(nasPdu));
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.direction = "downlink";
+            jfrEvent.ue = ctx.ctxId.toString();
+            jfrEvent.messageType = message != null ? message.getClass().getSimpleName() : null;
+            jfrEvent.length = nasPdu.length;
+            jfrEvent.commit();
+        }
+    }
+
+    /**
+     * Handles the given NAS message, and returns it in plain form, or null if it could not be decrypted.
+     */
+    public static NasMessage receiveNas(UeSimContext ctx, NasMessage message) {
         Debugging.assertThread(ctx);
 
         Logging.funcIn("Receiving NAS message: %s", message.getClass().getSimpleName());
@@ -78,14 +115,21 @@ public class UserEquipment {
         Logging.debug(Tag.MESSAGING, "Plain NAS PDU: %s", NasEncoder.nasPduS(message));
 
         if (message != null) {
+            var metrics = ctx.simCtx.metrics.nasMessage(message.getClass());
+            metrics.received.increment();
+            long startTime = System.nanoTime();
+
             if (message instanceof PlainMmMessage) {
                 MobilityManagement.receiveMm(ctx, (PlainMmMessage) message);
             } else {
                 SessionManagement.receiveSm(ctx, (PlainSmMessage) message);
             }
+
+            metrics.handlingTime.record(System.nanoTime() - startTime);
         }
 
         Logging.funcOut();
+        return message;
     }
 
     public static void cycle(UeSimContext ctx) {
@@ -96,8 +140,12 @@ public class UserEquipment {
             var cmd = ((UeCommandEvent) event).cmd;
             switch (cmd) {
                 case "initial-registration":
+                case "deregistration":
                     MobilityManagement.executeCommand(ctx, cmd);
                     break;
+                case "pdu-session-establishment":
+                    SessionManagement.executeCommand(ctx, cmd);
+                    break;
                 default:
                     Logging.error(Tag.EVENT, "UeCommandEvent not recognized: %s", cmd);
                     break;
@@ -105,7 +153,26 @@ public class UserEquipment {
         } else if (event instanceof UeDownlinkNasEvent) {
             Logging.info(Tag.EVENT, "UeEvent is handling: %s", event);
 
-            receiveNas(ctx, NasDecoder.nasPdu(((UeDownlinkNasEvent) event).nasPdu));
+            receiveNas(ctx, ((UeDownlinkNasEvent) event).nasPdu);
+        } else if (event instanceof UeCryptoResultEvent) {
+            Logging.info(Tag.EVENT, "UeEvent is handling: %s", event);
+
+            ((UeCryptoResultEvent<?>) event).complete(ctx);
+        } else if (event instanceof UeConnectionReleaseEvent) {
+            Logging.info(Tag.EVENT, "UeEvent is handling: %s", event);
+
+            MobilityManagement.receiveConnectionRelease(ctx);
+        } else if (event instanceof UeTimerExpireEvent) {
+            var timerEvent = (UeTimerExpireEvent) event;
+            if (timerEvent.timer.consumeExpiry(timerEvent.generation)) {
+                Logging.info(Tag.EVENT, "UeEvent is handling: %s", event);
+
+                if (timerEvent.timer.isMmTimer) {
+                    MobilityManagement.receiveTimerExpire(ctx, timerEvent.timer);
+                } else {
+                    SessionManagement.receiveTimerExpire(ctx, timerEvent.timer);
+                }
+            }
         }
     }
 }
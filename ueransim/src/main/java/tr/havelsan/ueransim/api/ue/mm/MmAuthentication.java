@@ -27,11 +27,12 @@
 package tr.havelsan.ueransim.api.ue.mm;
 
 import threegpp.milenage.MilenageResult;
-import threegpp.milenage.biginteger.BigIntegerBufferFactory;
-import threegpp.milenage.cipher.Ciphers;
+import tr.havelsan.ueransim.api.nas.NasMilenage;
 import tr.havelsan.ueransim.api.nas.NasSecurityContext;
 import tr.havelsan.ueransim.core.UeSimContext;
 import tr.havelsan.ueransim.enums.AutnValidationRes;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.nas.core.messages.PlainMmMessage;
 import tr.havelsan.ueransim.nas.eap.*;
 import tr.havelsan.ueransim.nas.impl.enums.EMmCause;
@@ -42,12 +43,11 @@ import tr.havelsan.ueransim.nas.impl.messages.*;
 import tr.havelsan.ueransim.structs.UeConfig;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
+import tr.havelsan.ueransim.utils.bits.Bit3;
 import tr.havelsan.ueransim.utils.bits.BitString;
 import tr.havelsan.ueransim.utils.octets.OctetString;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
 
 class MmAuthentication {
 
@@ -55,6 +55,9 @@ class MmAuthentication {
     private static final boolean USE_SQN_HACK = true; // todo
 
     public static void receiveAuthenticationRequest(UeSimContext ctx, AuthenticationRequest message) {
+        ctx.mmCtx.authenticationStartTime = ctx.simCtx.nanoTime();
+        ctx.simCtx.metrics.procedure(EProcedure.AUTHENTICATION).started();
+
         if (message.eapMessage != null) {
             receiveAuthenticationRequestEap(ctx, message);
         } else {
@@ -65,27 +68,61 @@ class MmAuthentication {
     private static void receiveAuthenticationRequestEap(UeSimContext ctx, AuthenticationRequest message) {
         Logging.funcIn("Handling: EAP AKA' Authentication Request");
 
-        OctetString receivedRand, receivedMac, receivedAutn, milenageAk, milenageMac, res, mk, kaut;
-        EapAkaPrime receivedEap;
-        int receivedKdf;
+        ctx.ueTimers.t3520().stop();
+
+        if (USE_SQN_HACK) {
+            Logging.warning(Tag.CONFIG, "USE_SQN_HACK: %s", USE_SQN_HACK);
+        }
+        if (IGNORE_CONTROLS_FAILURES) {
+            Logging.warning(Tag.CONFIG, "IGNORE_CONTROLS_FAILURES: %s", IGNORE_CONTROLS_FAILURES);
+        }
+
+        var receivedEap = (EapAkaPrime) message.eapMessage.eap;
+
+        // Control received KDF
+        {
+            int receivedKdf = receivedEap.attributes.getKdf();
+            if (!IGNORE_CONTROLS_FAILURES && receivedKdf != 1) {
+                startRejectionTimers(ctx);
 
-        Runnable ueRejectionTimers = () -> {
-            ctx.ueTimers.t3520.start();
+                var eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_AUTHENTICATION_REJECT);
+                var response = new AuthenticationReject(new IEEapMessage(eapResponse));
+                MobilityManagement.sendMm(ctx, response);
+                authenticationFinished(ctx, EProcedureResult.FAILURE);
+
+                Logging.funcOut();
+                return;
+            }
+        }
 
-            ctx.ueTimers.t3510.stop();
-            ctx.ueTimers.t3517.stop();
-            ctx.ueTimers.t3521.stop();
-        };
+        // Derive keys and perform the controls in the crypto pool, then continue in the UE looper.
+        {
+            var ueConfig = ctx.ueConfig;
+            var sqn = ctx.ueData.sqn;
+            var ngKsi = message.ngKSI.nasKeySetIdentifier;
 
-        ctx.ueTimers.t3520.stop();
+            ctx.simCtx.cryptoPool.submit(ctx, () -> calculateEapAkaPrime(ueConfig, sqn, receivedEap, ngKsi),
+                    MmAuthentication::completeAuthenticationRequestEap, MmAuthentication::failAuthenticationRequest);
+        }
+
+        Logging.funcOut();
+    }
+
+    /**
+     * Performs all the EAP-AKA' computations. Invoked in the crypto pool, so it must not touch the UE context.
+     */
+    private static EapAkaPrimeResult calculateEapAkaPrime(UeConfig ueConfig, OctetString sqn, EapAkaPrime receivedEap,
+                                                          Bit3 ngKsi) {
+        var result = new EapAkaPrimeResult();
+        result.receivedEap = receivedEap;
+
+        OctetString receivedRand, receivedMac, receivedAutn, milenageAk, milenageMac, res, mk, kaut;
 
         // Read EAP-AKA' request
         {
-            receivedEap = (EapAkaPrime) message.eapMessage.eap;
             receivedRand = receivedEap.attributes.getRand();
             receivedMac = receivedEap.attributes.getMac();
             receivedAutn = receivedEap.attributes.getAutn();
-            receivedKdf = receivedEap.attributes.getKdf();
 
             Logging.debug(Tag.VALUE, "received at_rand: %s", receivedRand);
             Logging.debug(Tag.VALUE, "received at_mac: %s", receivedMac);
@@ -95,37 +132,31 @@ class MmAuthentication {
         // Derive keys
         {
             if (USE_SQN_HACK) {
-                Logging.warning(Tag.CONFIG, "USE_SQN_HACK: %s", USE_SQN_HACK);
-            }
-            if (IGNORE_CONTROLS_FAILURES) {
-                Logging.warning(Tag.CONFIG, "IGNORE_CONTROLS_FAILURES: %s", IGNORE_CONTROLS_FAILURES);
-            }
-
-            if (USE_SQN_HACK) {
-                ctx.ueData.sqn = OctetString.xor(receivedAutn.substring(0, 6),
-                        calculateMilenage(ctx.ueConfig, new OctetString("000000000000"), receivedRand).get(MilenageResult.AK));
+                sqn = OctetString.xor(receivedAutn.substring(0, 6),
+                        calculateMilenage(ueConfig, new OctetString("000000000000"), receivedRand).get(MilenageResult.AK));
             }
+            result.sqn = sqn;
 
-            var milenage = calculateMilenage(ctx.ueConfig, ctx.ueData.sqn, receivedRand);
+            var milenage = calculateMilenage(ueConfig, sqn, receivedRand);
             res = milenage.get(MilenageResult.RES);
             var ck = milenage.get(MilenageResult.CK);
             var ik = milenage.get(MilenageResult.IK);
             milenageAk = milenage.get(MilenageResult.AK);
             milenageMac = milenage.get(MilenageResult.MAC_A);
 
-            var sqnXorAk = OctetString.xor(ctx.ueData.sqn, milenageAk);
-            var ckPrimeIkPrime = MmKeyManagement.calculateCkPrimeIkPrime(ck, ik, ctx.ueConfig.snn, sqnXorAk);
+            var sqnXorAk = OctetString.xor(sqn, milenageAk);
+            var ckPrimeIkPrime = MmKeyManagement.calculateCkPrimeIkPrime(ck, ik, ueConfig.snn, sqnXorAk);
             var ckPrime = ckPrimeIkPrime[0];
             var ikPrime = ckPrimeIkPrime[1];
 
-            mk = MmKeyManagement.calculateMk(ckPrime, ikPrime, ctx.ueConfig.supi);
+            mk = MmKeyManagement.calculateMk(ckPrime, ikPrime, ueConfig.supi);
             kaut = mk.substring(16, 32);
 
-            Logging.debug(Tag.VALUE, "ueData.sqn: %s", ctx.ueData.sqn);
-            Logging.debug(Tag.VALUE, "ueData.op: %s", ctx.ueConfig.op);
-            Logging.debug(Tag.VALUE, "ueData.K: %s", ctx.ueConfig.key);
-            Logging.debug(Tag.VALUE, "ueData.supi: %s", ctx.ueConfig.supi);
-            Logging.debug(Tag.VALUE, "ueData.snn: %s", ctx.ueConfig.snn);
+            Logging.debug(Tag.VALUE, "ueData.sqn: %s", sqn);
+            Logging.debug(Tag.VALUE, "ueData.op: %s", ueConfig.op);
+            Logging.debug(Tag.VALUE, "ueData.K: %s", ueConfig.key);
+            Logging.debug(Tag.VALUE, "ueData.supi: %s", ueConfig.supi);
+            Logging.debug(Tag.VALUE, "ueData.snn: %s", ueConfig.snn);
             Logging.debug(Tag.VALUE, "calculated res: %s", res);
             Logging.debug(Tag.VALUE, "calculated ck: %s", ck);
             Logging.debug(Tag.VALUE, "calculated ik: %s", ik);
@@ -136,50 +167,13 @@ class MmAuthentication {
             Logging.debug(Tag.VALUE, "calculated kaut: %s", kaut);
         }
 
-        // Control received KDF
-        {
-            if (!IGNORE_CONTROLS_FAILURES && receivedKdf != 1) {
-                ueRejectionTimers.run();
-
-                var eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_AUTHENTICATION_REJECT);
-                var response = new AuthenticationReject(new IEEapMessage(eapResponse));
-                MobilityManagement.sendMm(ctx, response);
-            }
-        }
-
-        // Control received SSN
-        {
-            // todo
-        }
-
         // Control received AUTN
         {
-            var autnCheck = MmAuthentication.validateAutn(milenageAk, milenageMac, receivedAutn);
-            Logging.debug(Tag.VALUE, "autnCheck: %s", autnCheck);
-
-            if (autnCheck != AutnValidationRes.OK) {
-                EapAkaPrime eapResponse = null;
-
-                if (autnCheck == AutnValidationRes.MAC_FAILURE) {
-                    eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_AUTHENTICATION_REJECT);
-                } else if (autnCheck == AutnValidationRes.SYNCHRONISATION_FAILURE) {
-                    // todo
-                    //eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_SYNCHRONIZATION_FAILURE);
-                    //eapResponse.attributes.putAuts(...);
-
-                    Logging.warning(Tag.NOT_IMPL_YET, "feature not implemented yet: SYNCHRONISATION_FAILURE in AUTN validation for EAP AKA'");
-                } else {
-                    eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_CLIENT_ERROR);
-                    eapResponse.attributes.putClientErrorCode(0);
-                }
-
-                if (!IGNORE_CONTROLS_FAILURES && eapResponse != null) {
-                    ueRejectionTimers.run();
+            result.autnCheck = MmAuthentication.validateAutn(milenageAk, milenageMac, receivedAutn);
+            Logging.debug(Tag.VALUE, "autnCheck: %s", result.autnCheck);
 
-                    var response = new AuthenticationReject(new IEEapMessage(eapResponse));
-                    MobilityManagement.sendMm(ctx, response);
-                }
-                return;
+            if (result.autnCheck != AutnValidationRes.OK) {
+                return result;
             }
         }
 
@@ -189,16 +183,10 @@ class MmAuthentication {
             if (!expectedMac.equals(receivedMac)) {
                 Logging.error(Tag.PROC, "AT_MAC failure in EAP AKA'. expected: %s received: %s",
                         expectedMac, receivedMac);
+                result.macFailure = true;
 
                 if (!IGNORE_CONTROLS_FAILURES) {
-                    ueRejectionTimers.run();
-
-                    var eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_CLIENT_ERROR);
-                    eapResponse.attributes.putClientErrorCode(0);
-
-                    var response = new AuthenticationReject(new IEEapMessage(eapResponse));
-                    MobilityManagement.sendMm(ctx, response);
-                    return;
+                    return result;
                 }
             }
         }
@@ -208,17 +196,16 @@ class MmAuthentication {
             var kAusf = MmKeyManagement.calculateKAusfForEapAkaPrime(mk);
             Logging.debug(Tag.VALUE, "kAusf: %s", kAusf);
 
-            ctx.nonCurrentNsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT,
-                    message.ngKSI.nasKeySetIdentifier);
-            ctx.nonCurrentNsCtx.keys.rand = receivedRand;
-            ctx.nonCurrentNsCtx.keys.res = res;
-            ctx.nonCurrentNsCtx.keys.resStar = null;
-            ctx.nonCurrentNsCtx.keys.kAusf = kAusf;
+            result.nsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, ngKsi);
+            result.nsCtx.keys.setRand(receivedRand);
+            result.nsCtx.keys.setRes(res);
+            result.nsCtx.keys.setResStar(null);
+            result.nsCtx.keys.setKAusf(kAusf);
 
-            MmKeyManagement.deriveKeysSeafAmf(ctx.ueConfig, ctx.nonCurrentNsCtx);
+            MmKeyManagement.deriveKeysSeafAmf(ueConfig, result.nsCtx);
         }
 
-        // Send Response
+        // Prepare response
         {
             var akaPrimeResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_CHALLENGE);
             akaPrimeResponse.attributes = new EapAttributes();
@@ -232,20 +219,112 @@ class MmAuthentication {
 
             Logging.debug(Tag.VALUE, "sending eap at_mac: %s", sendingMac);
 
+            result.response = akaPrimeResponse;
+        }
+
+        return result;
+    }
+
+    private static void completeAuthenticationRequestEap(UeSimContext ctx, EapAkaPrimeResult result) {
+        Logging.funcIn("Completing: EAP AKA' Authentication Request");
+
+        var receivedEap = result.receivedEap;
+        ctx.ueData.sqn = result.sqn;
+
+        // Handle AUTN control result
+        if (result.autnCheck != AutnValidationRes.OK) {
+            EapAkaPrime eapResponse = null;
+
+            if (result.autnCheck == AutnValidationRes.MAC_FAILURE) {
+                eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_AUTHENTICATION_REJECT);
+            } else if (result.autnCheck == AutnValidationRes.SYNCHRONISATION_FAILURE) {
+                // todo
+                //eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_SYNCHRONIZATION_FAILURE);
+                //eapResponse.attributes.putAuts(...);
+
+                Logging.warning(Tag.NOT_IMPL_YET, "feature not implemented yet: SYNCHRONISATION_FAILURE in AUTN validation for EAP AKA'");
+            } else {
+                eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_CLIENT_ERROR);
+                eapResponse.attributes.putClientErrorCode(0);
+            }
+
+            if (!IGNORE_CONTROLS_FAILURES && eapResponse != null) {
+                startRejectionTimers(ctx);
+
+                var response = new AuthenticationReject(new IEEapMessage(eapResponse));
+                MobilityManagement.sendMm(ctx, response);
+            }
+            authenticationFinished(ctx, EProcedureResult.FAILURE);
+
+            Logging.funcOut();
+            return;
+        }
+
+        // Handle AT_MAC control result
+        if (result.macFailure && !IGNORE_CONTROLS_FAILURES) {
+            startRejectionTimers(ctx);
+
+            var eapResponse = new EapAkaPrime(Eap.ECode.RESPONSE, receivedEap.id, ESubType.AKA_CLIENT_ERROR);
+            eapResponse.attributes.putClientErrorCode(0);
+
+            var response = new AuthenticationReject(new IEEapMessage(eapResponse));
+            MobilityManagement.sendMm(ctx, response);
+            authenticationFinished(ctx, EProcedureResult.FAILURE);
+
+            Logging.funcOut();
+            return;
+        }
+
+        ctx.nonCurrentNsCtx = result.nsCtx;
+
+        // Send Response
+        {
             var response = new AuthenticationResponse();
-            response.eapMessage = new IEEapMessage(akaPrimeResponse);
+            response.eapMessage = new IEEapMessage(result.response);
 
             MobilityManagement.sendMm(ctx, response);
+            authenticationFinished(ctx, EProcedureResult.SUCCESS);
         }
 
         Logging.funcOut();
     }
 
+    /**
+     * Records the UE side duration of the authentication, from the Authentication Request to the response of the
+     * UE, including the waiting time in the crypto pool.
+     */
+    private static void authenticationFinished(UeSimContext ctx, EProcedureResult result) {
+        if (ctx.mmCtx.authenticationStartTime == Long.MIN_VALUE) {
+            return;
+        }
+        long latency = ctx.simCtx.nanoTime() - ctx.mmCtx.authenticationStartTime;
+        ctx.mmCtx.authenticationStartTime = Long.MIN_VALUE;
+        ctx.simCtx.metrics.procedure(EProcedure.AUTHENTICATION).finished(result, latency);
+    }
+
+    /**
+     * Invoked by the UE looper if the computations of an authentication request failed in the crypto pool.
+     */
+    private static void failAuthenticationRequest(UeSimContext ctx) {
+        Logging.funcIn("Failing: Authentication Request");
+
+        MobilityManagement.sendMm(ctx, new AuthenticationFailure(EMmCause.UNSPECIFIED_PROTOCOL_ERROR));
+        authenticationFinished(ctx, EProcedureResult.FAILURE);
+
+        Logging.funcOut();
+    }
+
+    private static void startRejectionTimers(UeSimContext ctx) {
+        ctx.ueTimers.t3520().start();
+
+        ctx.ueTimers.t3510().stop();
+        ctx.ueTimers.t3517().stop();
+        ctx.ueTimers.t3521().stop();
+    }
+
     private static void receiveAuthenticationRequest5gAka(UeSimContext ctx, AuthenticationRequest request) {
         Logging.funcIn("Handling: 5G AKA Authentication Request");
 
-        PlainMmMessage response = null;
-
         if (USE_SQN_HACK) {
             Logging.warning(Tag.CONFIG, "USE_SQN_HACK: %s", USE_SQN_HACK);
         }
@@ -259,20 +338,41 @@ class MmAuthentication {
         Logging.debug(Tag.VALUE, "received rand: %s", rand);
         Logging.debug(Tag.VALUE, "received autn: %s", autn);
 
+        // Derive keys and perform the controls in the crypto pool, then continue in the UE looper.
+        {
+            var ueConfig = ctx.ueConfig;
+            var sqn = ctx.ueData.sqn;
+            var ngKsi = request.ngKSI.nasKeySetIdentifier;
+
+            ctx.simCtx.cryptoPool.submit(ctx, () -> calculate5gAka(ueConfig, sqn, rand, autn, ngKsi),
+                    MmAuthentication::completeAuthenticationRequest5gAka, MmAuthentication::failAuthenticationRequest);
+        }
+
+        Logging.funcOut();
+    }
+
+    /**
+     * Performs all the 5G-AKA computations. Invoked in the crypto pool, so it must not touch the UE context.
+     */
+    private static AkaResult calculate5gAka(UeConfig ueConfig, OctetString sqn, OctetString rand, OctetString autn,
+                                            Bit3 ngKsi) {
+        var result = new AkaResult();
+
         if (USE_SQN_HACK) {
-            ctx.ueData.sqn = OctetString.xor(autn.substring(0, 6),
-                    calculateMilenage(ctx.ueConfig, ctx.ueData.sqn, rand).get(MilenageResult.AK));
+            sqn = OctetString.xor(autn.substring(0, 6),
+                    calculateMilenage(ueConfig, new OctetString("000000000000"), rand).get(MilenageResult.AK));
         }
+        result.sqn = sqn;
 
-        var milenage = calculateMilenage(ctx.ueConfig, ctx.ueData.sqn, rand);
+        var milenage = calculateMilenage(ueConfig, sqn, rand);
         var res = milenage.get(MilenageResult.RES);
         var ck = milenage.get(MilenageResult.CK);
         var ik = milenage.get(MilenageResult.IK);
         var ckik = OctetString.concat(ck, ik);
         var milenageAk = milenage.get(MilenageResult.AK);
         var milenageMac = milenage.get(MilenageResult.MAC_A);
-        var sqnXorAk = OctetString.xor(ctx.ueData.sqn, milenageAk);
-        var snn = ctx.ueConfig.snn;
+        var sqnXorAk = OctetString.xor(sqn, milenageAk);
+        var snn = ueConfig.snn;
 
         Logging.debug(Tag.VALUE, "calculated res: %s", res);
         Logging.debug(Tag.VALUE, "calculated ck: %s", ck);
@@ -280,30 +380,42 @@ class MmAuthentication {
         Logging.debug(Tag.VALUE, "calculated milenageAk: %s", milenageAk);
         Logging.debug(Tag.VALUE, "calculated milenageMac: %s", milenageMac);
         Logging.debug(Tag.VALUE, "used snn: %s", snn);
-        Logging.debug(Tag.VALUE, "used sqn: %s", ctx.ueData.sqn);
-
-        var autnCheck = MmAuthentication.validateAutn(milenageAk, milenageMac, autn);
-        Logging.debug(Tag.VALUE, "autnCheck: %s", autnCheck);
+        Logging.debug(Tag.VALUE, "used sqn: %s", sqn);
 
-        if (IGNORE_CONTROLS_FAILURES || autnCheck == AutnValidationRes.OK) {
+        result.autnCheck = MmAuthentication.validateAutn(milenageAk, milenageMac, autn);
+        Logging.debug(Tag.VALUE, "autnCheck: %s", result.autnCheck);
 
+        if (IGNORE_CONTROLS_FAILURES || result.autnCheck == AutnValidationRes.OK) {
             // Create new partial native NAS security context and continue with key derivation
-            ctx.nonCurrentNsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT,
-                    request.ngKSI.nasKeySetIdentifier);
-            ctx.nonCurrentNsCtx.keys.rand = rand;
-            ctx.nonCurrentNsCtx.keys.res = res;
-            ctx.nonCurrentNsCtx.keys.resStar = MmKeyManagement.calculateResStar(ckik, snn, rand, res);
-            ctx.nonCurrentNsCtx.keys.kAusf = MmKeyManagement.calculateKAusfFor5gAka(ck, ik, snn, sqnXorAk);
+            result.nsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, ngKsi);
+            result.nsCtx.keys.setRand(rand);
+            result.nsCtx.keys.setRes(res);
+            result.nsCtx.keys.setResStar(MmKeyManagement.calculateResStar(ckik, snn, rand, res));
+            result.nsCtx.keys.setKAusf(MmKeyManagement.calculateKAusfFor5gAka(ck, ik, snn, sqnXorAk));
 
-            MmKeyManagement.deriveKeysSeafAmf(ctx.ueConfig, ctx.nonCurrentNsCtx);
+            MmKeyManagement.deriveKeysSeafAmf(ueConfig, result.nsCtx);
+        }
+
+        return result;
+    }
+
+    private static void completeAuthenticationRequest5gAka(UeSimContext ctx, AkaResult result) {
+        Logging.funcIn("Completing: 5G AKA Authentication Request");
+
+        PlainMmMessage response = null;
+
+        ctx.ueData.sqn = result.sqn;
+
+        if (result.nsCtx != null) {
+            ctx.nonCurrentNsCtx = result.nsCtx;
 
             // Prepare response
             response = new AuthenticationResponse(
-                    new IEAuthenticationResponseParameter(ctx.nonCurrentNsCtx.keys.resStar), null);
+                    new IEAuthenticationResponseParameter(ctx.nonCurrentNsCtx.keys.getResStar()), null);
 
-        } else if (autnCheck == AutnValidationRes.MAC_FAILURE) {
+        } else if (result.autnCheck == AutnValidationRes.MAC_FAILURE) {
             response = new AuthenticationFailure(EMmCause.MAC_FAILURE);
-        } else if (autnCheck == AutnValidationRes.SYNCHRONISATION_FAILURE) {
+        } else if (result.autnCheck == AutnValidationRes.SYNCHRONISATION_FAILURE) {
             Logging.error(Tag.NOT_IMPL_YET, "SYNCHRONISATION_FAILURE case not implemented yet in AUTN validation");
         } else {
             response = new AuthenticationFailure(EMmCause.UNSPECIFIED_PROTOCOL_ERROR);
@@ -312,6 +424,8 @@ class MmAuthentication {
         if (response != null) {
             MobilityManagement.sendMm(ctx, response);
         }
+        authenticationFinished(ctx, response instanceof AuthenticationResponse
+                ? EProcedureResult.SUCCESS : EProcedureResult.FAILURE);
 
         Logging.funcOut();
     }
@@ -346,21 +460,7 @@ class MmAuthentication {
     }
 
     private static Map<MilenageResult, OctetString> calculateMilenage(UeConfig ueConfig, OctetString sqn, OctetString rand) {
-        var factory = BigIntegerBufferFactory.getInstance();
-        var cipher = Ciphers.createRijndaelCipher(ueConfig.key.toByteArray());
-        byte[] opc = threegpp.milenage.Milenage.calculateOPc(ueConfig.op.toByteArray(), cipher, factory);
-        var milenage = new threegpp.milenage.Milenage<>(opc, cipher, factory);
-        try {
-            var calc = milenage.calculateAll(rand.toByteArray(), sqn.toByteArray(),
-                    ueConfig.amf.toByteArray(), Executors.newCachedThreadPool());
-            var res = new HashMap<MilenageResult, OctetString>();
-            for (var entry : calc.entrySet()) {
-                res.put(entry.getKey(), new OctetString(entry.getValue()));
-            }
-            return res;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return NasMilenage.calculate(ueConfig.key, ueConfig.op, ueConfig.amf, sqn, rand);
     }
 
     private static boolean checkSqn(OctetString sqn) {
@@ -458,4 +558,19 @@ class MmAuthentication {
 
         Logging.funcOut();
     }
+
+    private static class AkaResult {
+        OctetString sqn;
+        AutnValidationRes autnCheck;
+        NasSecurityContext nsCtx;
+    }
+
+    private static class EapAkaPrimeResult {
+        EapAkaPrime receivedEap;
+        OctetString sqn;
+        AutnValidationRes autnCheck;
+        boolean macFailure;
+        NasSecurityContext nsCtx;
+        EapAkaPrime response;
+    }
 }
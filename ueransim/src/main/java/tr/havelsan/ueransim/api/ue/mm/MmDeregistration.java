@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.api.ue.mm;
+
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IEDeRegistrationType;
+import tr.havelsan.ueransim.nas.impl.ies.IEImeiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IENasKeySetIdentifier;
+import tr.havelsan.ueransim.nas.impl.messages.DeRegistrationAcceptUeOriginating;
+import tr.havelsan.ueransim.nas.impl.messages.DeRegistrationRequestUeOriginating;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+class MmDeregistration {
+
+    public static void sendDeregistration(UeSimContext ctx, IEDeRegistrationType.ESwitchOff switchOff) {
+        Logging.funcIn("Starting: UE originating de-registration procedure");
+
+        var ngKsi = new IENasKeySetIdentifier(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, IENasKeySetIdentifier.NOT_AVAILABLE_OR_RESERVED);
+        if (ctx.currentNsCtx != null && ctx.currentNsCtx.ngKsi != null) {
+            ngKsi = ctx.currentNsCtx.ngKsi;
+        }
+
+        var request = new DeRegistrationRequestUeOriginating();
+        request.deRegistrationType = new IEDeRegistrationType(
+                IEDeRegistrationType.EDeRegistrationAccessType.THREEGPP_ACCESS,
+                IEDeRegistrationType.EReRegistrationRequired.NOT_REQUIRED,
+                switchOff);
+        request.ngKSI = ngKsi;
+
+        if (ctx.mmCtx.storedGuti != null) {
+            request.mobileIdentity = ctx.mmCtx.storedGuti;
+        } else {
+            var suci = MmIdentity.getOrGenerateSuci(ctx);
+            if (suci != null) {
+                request.mobileIdentity = suci;
+            } else {
+                request.mobileIdentity = new IEImeiMobileIdentity(ctx.ueConfig.imei);
+            }
+        }
+
+        ctx.mmCtx.mmState = EMmState.DEREGISTERED_INITIATED;
+
+        if (switchOff.equals(IEDeRegistrationType.ESwitchOff.NORMAL_DE_REGISTRATION)) {
+            ctx.ueTimers.t3521().start();
+        }
+
+        Simulation.procedureStarted(ctx, EProcedure.DEREGISTRATION);
+
+        MobilityManagement.sendMm(ctx, request);
+
+        if (switchOff.equals(IEDeRegistrationType.ESwitchOff.SWITCH_OFF)) {
+            // No response is expected for switch off
+            ctx.mmCtx.mmState = EMmState.DEREGISTERED;
+            Simulation.procedureFinished(ctx, EProcedure.DEREGISTRATION, EProcedureResult.SUCCESS);
+        }
+
+        Logging.funcOut();
+    }
+
+    public static void handleDeregistrationAccept(UeSimContext ctx, DeRegistrationAcceptUeOriginating message) {
+        Logging.funcIn("Handling: UE originating de-registration accept");
+
+        ctx.ueTimers.t3521().stop();
+        ctx.ueTimers.t3512().stop();
+
+        ctx.mmCtx.mmState = EMmState.DEREGISTERED;
+
+        Logging.success(Tag.PROCEDURE_RESULT, "De-registration is successful");
+        Simulation.procedureFinished(ctx, EProcedure.DEREGISTRATION, EProcedureResult.SUCCESS);
+
+        Logging.funcOut();
+    }
+
+    public static void handleT3521Expiry(UeSimContext ctx) {
+        Logging.funcIn("Handling: T3521 expiry");
+
+        // todo: retransmission of the de-registration request, see 3GPP TS 24.501 5.5.2.2.6
+        ctx.mmCtx.mmState = EMmState.DEREGISTERED;
+
+        Logging.error(Tag.PROCEDURE_RESULT, "De-registration failed: T3521 expired");
+        Simulation.procedureFinished(ctx, EProcedure.DEREGISTRATION, EProcedureResult.TIMEOUT);
+
+        Logging.funcOut();
+    }
+}
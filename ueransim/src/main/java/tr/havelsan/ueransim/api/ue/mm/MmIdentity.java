@@ -68,7 +68,7 @@ class MmIdentity {
 
     public static IESuciMobileIdentity getOrGenerateSuci(UeSimContext ctx) {
         Logging.funcIn("Get or Generate SUCI");
-        if (ctx.ueTimers.t3519.isRunning()) {
+        if (ctx.ueTimers.t3519().isRunning()) {
             Logging.debug(Tag.PROC, "T3519 is running, returning stored SUCI.");
             Logging.funcOut();
             return ctx.mmCtx.storedSuci;
@@ -77,7 +77,7 @@ class MmIdentity {
         ctx.mmCtx.storedSuci = generateSuci(ctx.ueConfig.supi);
         Logging.debug(Tag.PROC, "T3519 is not running, new SUCI generated.");
 
-        ctx.ueTimers.t3519.start();
+        ctx.ueTimers.t3519().start();
 
         Logging.funcOut();
         return ctx.mmCtx.storedSuci;
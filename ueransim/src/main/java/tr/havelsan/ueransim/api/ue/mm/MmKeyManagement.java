@@ -51,22 +51,23 @@ class MmKeyManagement {
 
     public static void deriveKeysSeafAmf(UeConfig ueConfig, NasSecurityContext nasSecurityContext) {
         var keys = nasSecurityContext.keys;
-        keys.kSeaf = KDF.calculateKey(keys.kAusf, 0x6C, KDF.encodeString(ueConfig.snn));
-        keys.kAmf = KDF.calculateKey(keys.kSeaf, 0x6D, KDF.encodeString(ueConfig.supi.value), new OctetString("0000"));
+        keys.setKSeaf(KDF.calculateKey(keys.getKAusf(), 0x6C, KDF.encodeString(ueConfig.snn)));
+        keys.setKAmf(KDF.calculateKey(keys.getKSeaf(), 0x6D, KDF.encodeString(ueConfig.supi.value),
+                new OctetString("0000")));
 
-        Logging.debug(Tag.VALUE, "kSeaf: %s", nasSecurityContext.keys.kSeaf);
-        Logging.debug(Tag.VALUE, "kAmf: %s", nasSecurityContext.keys.kAmf);
+        Logging.debug(Tag.VALUE, "kSeaf: %s", nasSecurityContext.keys.getKSeaf());
+        Logging.debug(Tag.VALUE, "kAmf: %s", nasSecurityContext.keys.getKAmf());
     }
 
     public static void deriveNasKeys(NasSecurityContext securityContext) {
-        var kdfEnc = KDF.calculateKey(securityContext.keys.kAmf, 0x69, new Octet(N_NAS_enc_alg).toOctetString(),
+        var kdfEnc = KDF.calculateKey(securityContext.keys.getKAmf(), 0x69, new Octet(N_NAS_enc_alg).toOctetString(),
                 new Octet(securityContext.selectedAlgorithms.ciphering.intValue()).toOctetString());
 
-        var kdfInt = KDF.calculateKey(securityContext.keys.kAmf, 0x69, new Octet(N_NAS_int_alg).toOctetString(),
+        var kdfInt = KDF.calculateKey(securityContext.keys.getKAmf(), 0x69, new Octet(N_NAS_int_alg).toOctetString(),
                 new Octet(securityContext.selectedAlgorithms.integrity.intValue()).toOctetString());
 
-        securityContext.keys.kNasEnc = kdfEnc.substring(16, 16);
-        securityContext.keys.kNasInt = kdfInt.substring(16, 16);
+        securityContext.keys.setKNasEnc(kdfEnc.substring(16, 16));
+        securityContext.keys.setKNasInt(kdfInt.substring(16, 16));
     }
 
     /**
@@ -26,7 +26,11 @@
 
 package tr.havelsan.ueransim.api.ue.mm;
 
+import tr.havelsan.ueransim.api.sys.Simulation;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.nas.eap.Eap;
 import tr.havelsan.ueransim.nas.impl.enums.EFollowOnRequest;
 import tr.havelsan.ueransim.nas.impl.enums.EMmCause;
@@ -69,8 +73,8 @@ class MmRegistration {
             if (suci != null) {
                 registrationRequest.mobileIdentity = suci;
 
-                if (!ctx.ueTimers.t3519.isRunning()) {
-                    ctx.ueTimers.t3519.start();
+                if (!ctx.ueTimers.t3519().isRunning()) {
+                    ctx.ueTimers.t3519().start();
                 }
 
             } else {
@@ -83,10 +87,13 @@ class MmRegistration {
         }
 
         ctx.mmCtx.registrationRequest = registrationRequest;
+        ctx.mmCtx.mmState = EMmState.REGISTERED_INITIATED;
 
-        ctx.ueTimers.t3510.start();
-        ctx.ueTimers.t3502.stop();
-        ctx.ueTimers.t3511.stop();
+        ctx.ueTimers.t3510().start();
+        ctx.ueTimers.t3502().stop();
+        ctx.ueTimers.t3511().stop();
+
+        Simulation.procedureStarted(ctx, procedureOf(registrationType));
 
         MobilityManagement.sendMm(ctx, registrationRequest);
 
@@ -96,17 +103,25 @@ class MmRegistration {
     public static void handleRegistrationAccept(UeSimContext ctx, RegistrationAccept message) {
         Logging.funcIn("Handling: Registration Accept");
 
+        if (ctx.mmCtx.registrationRequest == null) {
+            Logging.warning(Tag.PROC, "Registration Accept received without an ongoing registration, ignoring");
+            Logging.funcOut();
+            return;
+        }
+
         boolean sendCompleteMes = false;
 
+        ctx.ueTimers.t3510().stop();
+
         ctx.mmCtx.taiList = message.taiList;
 
         if (message.t3512Value != null && message.t3512Value.hasValue()) {
-            ctx.ueTimers.t3512.start(message.t3512Value);
+            ctx.ueTimers.t3512().start(message.t3512Value);
         }
 
         if (message.mobileIdentity instanceof IE5gGutiMobileIdentity) {
             ctx.mmCtx.storedGuti = (IE5gGutiMobileIdentity) message.mobileIdentity;
-            ctx.ueTimers.t3519.stop();
+            ctx.ueTimers.t3519().stop();
 
             sendCompleteMes = true;
         }
@@ -115,13 +130,24 @@ class MmRegistration {
             MobilityManagement.sendMm(ctx, new RegistrationComplete());
         }
 
+        ctx.mmCtx.mmState = EMmState.REGISTERED;
+
         Logging.success(Tag.PROCEDURE_RESULT, "Registration is successful");
+        Simulation.procedureFinished(ctx, procedureOf(ctx.mmCtx.registrationRequest.registrationType.registrationType),
+                EProcedureResult.SUCCESS);
+
         Logging.funcOut();
     }
 
     public static void handleRegistrationReject(UeSimContext ctx, RegistrationReject message) {
         Logging.funcIn("Starting: Registration reject");
 
+        if (ctx.mmCtx.registrationRequest == null) {
+            Logging.warning(Tag.PROC, "Registration Reject received without an ongoing registration, ignoring");
+            Logging.funcOut();
+            return;
+        }
+
         if (message.eapMessage != null) {
             if (message.eapMessage.eap.code.equals(Eap.ECode.FAILURE)) {
                 MmAuthentication.receiveEapFailureMessage(ctx, message.eapMessage.eap);
@@ -131,6 +157,8 @@ class MmRegistration {
             }
         }
 
+        ctx.ueTimers.t3510().stop();
+
         var cause = message.mmCause.value;
 
         var regType = ctx.mmCtx.registrationRequest.registrationType.registrationType;
@@ -174,10 +202,10 @@ class MmRegistration {
                 ctx.nonCurrentNsCtx = null;
             } else if (cause.equals(EMmCause.CONGESTION)) {
                 if (message.t3346value != null && message.t3346value.hasValue()) {
-                    ctx.ueTimers.t3346.stop();
+                    ctx.ueTimers.t3346().stop();
 
                     if (message.securityHeaderType.isIntegrityProtected()) {
-                        ctx.ueTimers.t3346.start(message.t3346value);
+                        ctx.ueTimers.t3346().start(message.t3346value);
                     } else {
                         // todo
                     }
@@ -201,6 +229,64 @@ class MmRegistration {
             // todo
         }
 
+        ctx.mmCtx.mmState = EMmState.DEREGISTERED;
+
+        Logging.error(Tag.PROCEDURE_RESULT, "Registration failed: %s", cause.name());
+        Simulation.procedureFinished(ctx, procedureOf(regType), EProcedureResult.FAILURE);
+
         Logging.funcOut();
     }
+
+    public static void handleT3510Expiry(UeSimContext ctx) {
+        Logging.funcIn("Handling: T3510 expiry");
+
+        if (ctx.mmCtx.registrationRequest == null) {
+            Logging.warning(Tag.PROC, "T3510 expired without an ongoing registration, ignoring");
+            Logging.funcOut();
+            return;
+        }
+
+        Logging.error(Tag.PROCEDURE_RESULT, "Registration failed: T3510 expired");
+        abortRegistration(ctx, EProcedureResult.TIMEOUT);
+
+        Logging.funcOut();
+    }
+
+    /**
+     * Invoked when the N1 signalling connection is released while the registration is still ongoing, i.e. before
+     * the Registration Accept or Reject is received.
+     */
+    public static void handleConnectionRelease(UeSimContext ctx) {
+        Logging.funcIn("Handling: Connection release during registration");
+
+        ctx.ueTimers.t3510().stop();
+
+        Logging.error(Tag.PROCEDURE_RESULT, "Registration failed: connection released");
+        abortRegistration(ctx, EProcedureResult.FAILURE);
+
+        Logging.funcOut();
+    }
+
+    private static void abortRegistration(UeSimContext ctx, EProcedureResult result) {
+        var regType = ctx.mmCtx.registrationRequest.registrationType.registrationType;
+
+        // todo: registration attempt counter and T3511/T3502 handling, see 3GPP TS 24.501 5.5.1.2.7
+        ctx.mmCtx.mmState = regType.equals(ERegistrationType.INITIAL_REGISTRATION)
+                || regType.equals(ERegistrationType.EMERGENCY_REGISTRATION)
+                ? EMmState.DEREGISTERED : EMmState.REGISTERED;
+
+        Simulation.procedureFinished(ctx, procedureOf(regType), result);
+    }
+
+    private static EProcedure procedureOf(ERegistrationType registrationType) {
+        if (registrationType.equals(ERegistrationType.INITIAL_REGISTRATION)) {
+            return EProcedure.INITIAL_REGISTRATION;
+        } else if (registrationType.equals(ERegistrationType.MOBILITY_REGISTRATION_UPDATING)) {
+            return EProcedure.MOBILITY_REGISTRATION;
+        } else if (registrationType.equals(ERegistrationType.PERIODIC_REGISTRATION_UPDATING)) {
+            return EProcedure.PERIODIC_REGISTRATION;
+        } else {
+            return EProcedure.EMERGENCY_REGISTRATION;
+        }
+    }
 }
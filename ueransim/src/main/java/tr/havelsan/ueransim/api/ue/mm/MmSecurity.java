@@ -27,6 +27,8 @@
 package tr.havelsan.ueransim.api.ue.mm;
 
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.nas.NasEncoder;
 import tr.havelsan.ueransim.nas.eap.Eap;
 import tr.havelsan.ueransim.nas.impl.enums.EMmCause;
@@ -48,6 +50,10 @@ class MmSecurity {
     public static void handleSecurityModeCommand(UeSimContext ctx, SecurityModeCommand message) {
         Logging.funcIn("Handling: Security Mode Command");
 
+        long startTime = System.nanoTime();
+        var metrics = ctx.simCtx.metrics.procedure(EProcedure.SECURITY_MODE_CONTROL);
+        metrics.started();
+
         // todo: check the integriti with new security context
         {
             var mac = message._macForNewSC;
@@ -60,6 +66,7 @@ class MmSecurity {
             if (!compareSecurityCapabilities(real, replayed)) {
                 MobilityManagement.sendMm(ctx, new SecurityModeReject(EMmCause.UE_SECURITY_CAP_MISMATCH));
                 Logging.error(Tag.PROC, "UE Replayed Security Capability Mismatch.");
+                metrics.finished(EProcedureResult.FAILURE, System.nanoTime() - startTime);
                 return;
             }
         }
@@ -80,8 +87,8 @@ class MmSecurity {
         );
         MmKeyManagement.deriveNasKeys(ctx.nonCurrentNsCtx);
 
-        Logging.debug(Tag.VALUE, "kNasEnc: %s", ctx.nonCurrentNsCtx.keys.kNasEnc);
-        Logging.debug(Tag.VALUE, "kNasInt: %s", ctx.nonCurrentNsCtx.keys.kNasInt);
+        Logging.debug(Tag.VALUE, "kNasEnc: %s", ctx.nonCurrentNsCtx.keys.getKNasEnc());
+        Logging.debug(Tag.VALUE, "kNasInt: %s", ctx.nonCurrentNsCtx.keys.getKNasInt());
         Logging.debug(Tag.VALUE, "selectedIntAlg: %s", ctx.nonCurrentNsCtx.selectedAlgorithms.integrity);
         Logging.debug(Tag.VALUE, "selectedEncAlg: %s", ctx.nonCurrentNsCtx.selectedAlgorithms.ciphering);
 
@@ -101,6 +108,7 @@ class MmSecurity {
 
         // Send response
         MobilityManagement.sendMm(ctx, response);
+        metrics.finished(EProcedureResult.SUCCESS, System.nanoTime() - startTime);
 
         Logging.funcOut();
     }
@@ -26,10 +26,17 @@
 
 package tr.havelsan.ueransim.api.ue.mm;
 
+import tr.havelsan.ueransim.api.nas.NasTimer;
 import tr.havelsan.ueransim.api.ue.UserEquipment;
+import tr.havelsan.ueransim.api.ue.sm.SessionManagement;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.nas.NasDecoder;
 import tr.havelsan.ueransim.nas.core.messages.PlainMmMessage;
+import tr.havelsan.ueransim.nas.core.messages.PlainSmMessage;
 import tr.havelsan.ueransim.nas.impl.enums.ERegistrationType;
+import tr.havelsan.ueransim.nas.impl.ies.IEDeRegistrationType;
+import tr.havelsan.ueransim.nas.impl.ies.IEPayloadContainerType;
 import tr.havelsan.ueransim.nas.impl.messages.*;
 import tr.havelsan.ueransim.utils.Debugging;
 import tr.havelsan.ueransim.utils.Logging;
@@ -66,16 +73,76 @@ public class MobilityManagement {
             MmService.handleServiceReject(ctx, (ServiceReject) message);
         } else if (message instanceof SecurityModeCommand) {
             MmSecurity.handleSecurityModeCommand(ctx, (SecurityModeCommand) message);
+        } else if (message instanceof DeRegistrationAcceptUeOriginating) {
+            MmDeregistration.handleDeregistrationAccept(ctx, (DeRegistrationAcceptUeOriginating) message);
+        } else if (message instanceof DlNasTransport) {
+            receiveDlNasTransport(ctx, (DlNasTransport) message);
         } else {
             Logging.error(Tag.MESSAGING, "Unhandled message received: %s", message.getClass().getSimpleName());
         }
     }
 
+    private static void receiveDlNasTransport(UeSimContext ctx, DlNasTransport message) {
+        if (!message.payloadContainerType.payloadContainerType.equals(IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION)) {
+            Logging.warning(Tag.NOT_IMPL_YET, "Payload container type is not supported yet: %s",
+                    message.payloadContainerType.payloadContainerType);
+            return;
+        }
+
+        var smMessage = NasDecoder.nasPdu(message.payloadContainer.payload);
+        if (smMessage instanceof PlainSmMessage) {
+            SessionManagement.receiveSm(ctx, (PlainSmMessage) smMessage);
+        } else {
+            Logging.error(Tag.MESSAGING, "SM message expected in DL NAS Transport");
+        }
+    }
+
+    public static void receiveTimerExpire(UeSimContext ctx, NasTimer timer) {
+        Debugging.assertThread(ctx);
+
+        Logging.info(Tag.NAS_TIMER, "NAS timer expired: %s", timer);
+
+        switch (timer.timerCode) {
+            case 3510:
+                MmRegistration.handleT3510Expiry(ctx);
+                break;
+            case 3512:
+                MmRegistration.sendRegistration(ctx, ERegistrationType.PERIODIC_REGISTRATION_UPDATING);
+                break;
+            case 3521:
+                MmDeregistration.handleT3521Expiry(ctx);
+                break;
+            default:
+                Logging.warning(Tag.NOT_IMPL_YET, "Expiry of %s is not handled yet", timer);
+                break;
+        }
+    }
+
+    public static void receiveConnectionRelease(UeSimContext ctx) {
+        Debugging.assertThread(ctx);
+
+        ctx.mmCtx.cmState = ECmState.IDLE;
+
+        // The registration can not complete without the connection, it is finished before its request is dropped
+        if (ctx.ueTimers.t3510().isRunning() && ctx.mmCtx.registrationRequest != null) {
+            MmRegistration.handleConnectionRelease(ctx);
+        }
+
+        // Keep the dormant UE compact, these are not needed until the next procedure starts
+        ctx.mmCtx.registrationRequest = null;
+        ctx.nonCurrentNsCtx = null;
+
+        Logging.info(Tag.PROC, "UE has entered CM-IDLE state");
+    }
+
     public static void executeCommand(UeSimContext ctx, String cmd) {
         switch (cmd) {
             case "initial-registration":
                 MmRegistration.sendRegistration(ctx, ERegistrationType.INITIAL_REGISTRATION);
                 break;
+            case "deregistration":
+                MmDeregistration.sendDeregistration(ctx, IEDeRegistrationType.ESwitchOff.NORMAL_DE_REGISTRATION);
+                break;
             default:
                 Logging.error(Tag.EVENT, "MobilityManagement.executeCommand, command not recognized: %s", cmd);
                 break;
@@ -26,8 +26,12 @@
 
 package tr.havelsan.ueransim.api.ue.sm;
 
+import tr.havelsan.ueransim.api.nas.NasTimer;
 import tr.havelsan.ueransim.api.ue.UserEquipment;
+import tr.havelsan.ueransim.configs.PduSessionEstablishmentConfig;
+import tr.havelsan.ueransim.core.Constants;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.nas.impl.ies.IEDnn;
 import tr.havelsan.ueransim.nas.core.messages.PlainSmMessage;
 import tr.havelsan.ueransim.nas.impl.messages.PduSessionEstablishmentAccept;
 import tr.havelsan.ueransim.nas.impl.messages.PduSessionEstablishmentReject;
@@ -55,4 +59,35 @@ public class SessionManagement {
             Logging.error(Tag.MESSAGING, "Unhandled message received: %s", message.getClass().getSimpleName());
         }
     }
+
+    public static void receiveTimerExpire(UeSimContext ctx, NasTimer timer) {
+        Debugging.assertThread(ctx);
+
+        Logging.info(Tag.NAS_TIMER, "NAS timer expired: %s", timer);
+
+        switch (timer.timerCode) {
+            case 3580:
+                SmPduSessionEstablishment.handleT3580Expiry(ctx);
+                break;
+            default:
+                Logging.warning(Tag.NOT_IMPL_YET, "Expiry of %s is not handled yet", timer);
+                break;
+        }
+    }
+
+    public static void executeCommand(UeSimContext ctx, String cmd) {
+        switch (cmd) {
+            case "pdu-session-establishment": {
+                var sNssai = ctx.ueConfig.requestedNssai != null && ctx.ueConfig.requestedNssai.length > 0
+                        ? ctx.ueConfig.requestedNssai[0] : null;
+                var config = new PduSessionEstablishmentConfig(null, sNssai, new IEDnn(Constants.DEFAULT_DNN),
+                        null, null, 0);
+                SmPduSessionEstablishment.sendEstablishmentRequest(ctx, config);
+                break;
+            }
+            default:
+                Logging.error(Tag.EVENT, "SessionManagement.executeCommand, command not recognized: %s", cmd);
+                break;
+        }
+    }
 }
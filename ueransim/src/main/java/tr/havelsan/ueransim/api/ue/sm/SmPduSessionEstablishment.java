@@ -27,7 +27,10 @@
 package tr.havelsan.ueransim.api.ue.sm;
 
 import tr.havelsan.ueransim.configs.PduSessionEstablishmentConfig;
+import tr.havelsan.ueransim.api.sys.Simulation;
 import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
 import tr.havelsan.ueransim.nas.NasEncoder;
 import tr.havelsan.ueransim.nas.impl.enums.EPduSessionType;
 import tr.havelsan.ueransim.nas.impl.ies.*;
@@ -76,7 +79,9 @@ class SmPduSessionEstablishment {
         ulNasTransport.sNssa = config.sNssai;
         ulNasTransport.dnn = config.dnn;
 
-        ctx.ueTimers.t3580.start();
+        ctx.ueTimers.t3580().start();
+
+        Simulation.procedureStarted(ctx, EProcedure.PDU_SESSION_ESTABLISHMENT);
 
         SessionManagement.sendSm(ctx, ulNasTransport);
 
@@ -90,11 +95,11 @@ class SmPduSessionEstablishment {
             Logging.warning(Tag.PROC, "SM cause received in PduSessionEstablishmentAccept: %s", message.smCause.value);
         }
 
-        ctx.ueTimers.t3580.stop();
+        ctx.ueTimers.t3580().stop();
 
         SmPduSessionManagement.releaseProcedureTransactionId(ctx, message.pti);
 
-        var pduSession = ctx.smCtx.pduSessions[message.pduSessionId.intValue()];
+        var pduSession = ctx.smCtx.pduSessions()[message.pduSessionId.intValue()];
         if (pduSession == null) {
             Logging.error(Tag.PROC, "PDU session not found: %s", message.pduSessionId);
             Logging.funcOut();
@@ -107,6 +112,7 @@ class SmPduSessionEstablishment {
         pduSession.authorizedQoSFlowDescriptions = message.authorizedQoSFlowDescriptions;
 
         Logging.info(Tag.PROC, "PDU session established: %s", message.pduSessionId);
+        Simulation.procedureFinished(ctx, EProcedure.PDU_SESSION_ESTABLISHMENT, EProcedureResult.SUCCESS);
 
         Logging.funcOut();
         return;
@@ -148,6 +154,26 @@ class SmPduSessionEstablishment {
     }
 
     public static void receiveEstablishmentReject(UeSimContext ctx, PduSessionEstablishmentReject message) {
+        Logging.funcIn("Handling: PDU Session Establishment Reject");
+
+        ctx.ueTimers.t3580().stop();
+
+        SmPduSessionManagement.releaseProcedureTransactionId(ctx, message.pti);
+        SmPduSessionManagement.releasePduSession(ctx, message.pduSessionId);
+
+        Logging.error(Tag.PROCEDURE_RESULT, "PDU Session Establishment failed: %s", message.smCause.value);
+        Simulation.procedureFinished(ctx, EProcedure.PDU_SESSION_ESTABLISHMENT, EProcedureResult.FAILURE);
 
+        Logging.funcOut();
+    }
+
+    public static void handleT3580Expiry(UeSimContext ctx) {
+        Logging.funcIn("Handling: T3580 expiry");
+
+        // todo: retransmission and releasing the PTI, see 3GPP TS 24.501 6.4.1.6
+        Logging.error(Tag.PROCEDURE_RESULT, "PDU Session Establishment failed: T3580 expired");
+        Simulation.procedureFinished(ctx, EProcedure.PDU_SESSION_ESTABLISHMENT, EProcedureResult.TIMEOUT);
+
+        Logging.funcOut();
     }
 }
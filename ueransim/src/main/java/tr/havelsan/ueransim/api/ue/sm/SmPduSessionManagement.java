@@ -37,7 +37,7 @@ import tr.havelsan.ueransim.utils.Tag;
 class SmPduSessionManagement {
 
     public static EPduSessionIdentity allocatePduSessionId(UeSimContext ctx) {
-        var arr = ctx.smCtx.pduSessions;
+        var arr = ctx.smCtx.pduSessions();
 
         int id = -1;
         for (int i = PduSession.MIN_ID; i <= PduSession.MAX_ID; i++) {
@@ -60,7 +60,7 @@ class SmPduSessionManagement {
     }
 
     public static EProcedureTransactionIdentity allocateProcedureTransactionId(UeSimContext ctx) {
-        var arr = ctx.smCtx.procedureTransactions;
+        var arr = ctx.smCtx.procedureTransactions();
 
         int id = -1;
         for (int i = ProcedureTransaction.MIN_ID; i <= ProcedureTransaction.MAX_ID; i++) {
@@ -83,12 +83,12 @@ class SmPduSessionManagement {
     }
 
     public static void releaseProcedureTransactionId(UeSimContext ctx, EProcedureTransactionIdentity pti) {
-        ctx.smCtx.procedureTransactions[pti.intValue()] = ProcedureTransaction.RELEASED;
+        ctx.smCtx.procedureTransactions()[pti.intValue()] = ProcedureTransaction.RELEASED;
         Logging.debug(Tag.PROC, "PTI released: %s", pti);
     }
 
     public static void releasePduSession(UeSimContext ctx, EPduSessionIdentity psi) {
-        ctx.smCtx.pduSessions[psi.intValue()] = PduSession.RELEASED;
+        ctx.smCtx.pduSessions()[psi.intValue()] = PduSession.RELEASED;
         Logging.debug(Tag.PROC, "PDU Session released: %s", psi);
     }
 }
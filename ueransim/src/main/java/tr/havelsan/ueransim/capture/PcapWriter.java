@@ -0,0 +1,445 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.capture;
+
+import tr.havelsan.ueransim.core.threads.BaseThread;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes the NGAP messages of the gNBs to pcap files that can be opened with Wireshark. Each message is written as an
+ * SCTP DATA chunk in a synthesized IPv4 packet, with the stream number of the message and the NGAP payload protocol
+ * identifier.
+ * <p>
+ * The sending and receiving threads only append the message to a lock-free queue, the packets are built and written
+ * by the writer thread through a large buffer. Messages are dropped instead of blocking these threads if the writer
+ * cannot keep up. The file is rotated when it would exceed the maximum file size. If the file cannot be written, the
+ * capture is stopped and the further messages are dropped, while the simulation goes on.
+ */
+public class PcapWriter {
+    private static final int PCAP_MAGIC = 0xA1B2C3D4;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int SNAPLEN = 65535;
+
+    private static final int GLOBAL_HEADER_LENGTH = 24;
+    private static final int RECORD_HEADER_LENGTH = 16;
+    private static final int IP_HEADER_LENGTH = 20;
+    private static final int SCTP_HEADER_LENGTH = 12;
+    private static final int DATA_CHUNK_HEADER_LENGTH = 16;
+    private static final int PACKET_OVERHEAD = IP_HEADER_LENGTH + SCTP_HEADER_LENGTH + DATA_CHUNK_HEADER_LENGTH;
+    private static final int MAX_DATA_LENGTH = SNAPLEN - PACKET_OVERHEAD - 3;
+
+    private static final int IP_PROTOCOL_SCTP = 132;
+    private static final int NGAP_PPID = 60;
+    private static final int NGAP_PORT = 38412;
+
+    private static final int BUFFER_SIZE = 4 << 20;
+    private static final int QUEUE_CAPACITY = 1 << 20;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final Path path;
+    private final long maxFileSize;
+
+    private final Queue<Record> queue;
+    private final AtomicInteger queuedMessages;
+    private final AtomicLong droppedMessages;
+    private final AtomicInteger associationCount;
+    private final LongSupplier nanoClock;
+    private final long baseMicros;
+    private final long baseNanos;
+    private final BaseThread writerThread;
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    // Accessed by the writer thread only
+    private final ByteBuffer buffer;
+    private final CRC32C crc;
+    private FileChannel channel;
+    private long fileSize;
+    private int fileIndex;
+    // Records in the buffer that are not written to the file yet
+    private int bufferedRecords;
+
+    /**
+     * Creates the writer of the capture files. If the maximum file size is positive, the files after the first one are
+     * named with an index appended to the given name, otherwise a single file is written.
+     */
+    public PcapWriter(Path path, long maxFileSize) {
+        this(path, maxFileSize, System::nanoTime, System.currentTimeMillis() * 1000);
+    }
+
+    /**
+     * @param nanoClock  time source of the timestamps, in nanoseconds
+     * @param baseMicros timestamp of the current time of the clock, in microseconds since the epoch
+     */
+    public PcapWriter(Path path, long maxFileSize, LongSupplier nanoClock, long baseMicros) {
+        this.path = path;
+        this.maxFileSize = maxFileSize;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queuedMessages = new AtomicInteger();
+        this.droppedMessages = new AtomicLong();
+        this.associationCount = new AtomicInteger();
+        this.nanoClock = nanoClock;
+        this.baseMicros = baseMicros;
+        this.baseNanos = nanoClock.getAsLong();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.crc = new CRC32C();
+        this.writerThread = new BaseThread() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        };
+        this.writerThread.setName("pcap-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() throws IOException {
+        openFile();
+        writerThread.start();
+    }
+
+    /**
+     * Writes the messages that are already queued and closes the file. Messages captured after this are dropped.
+     */
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Creates the capture of an NGAP association of a gNB. The local address of the association is not known to the
+     * gNB, so each association is given a distinct address in 10.0.0.0/8 instead. The AMF address is used if it is an
+     * IPv4 address, otherwise the AMF is given a loopback address.
+     */
+    public Association newAssociation(String amfHost, int amfPort) {
+        int index = associationCount.incrementAndGet();
+        int gnbAddress = (10 << 24) | (index & 0xFFFFFF);
+        int amfAddress = parseIpv4(amfHost);
+        return new Association(gnbAddress, amfAddress, amfPort > 0 ? amfPort : NGAP_PORT, index);
+    }
+
+    private void enqueue(Association association, boolean uplink, int streamNumber, byte[] data) {
+        if (closed || failed || data.length > MAX_DATA_LENGTH) {
+            droppedMessages.incrementAndGet();
+            return;
+        }
+        if (queuedMessages.incrementAndGet() > QUEUE_CAPACITY) {
+            queuedMessages.decrementAndGet();
+            droppedMessages.incrementAndGet();
+            return;
+        }
+        long timestamp = baseMicros + (nanoClock.getAsLong() - baseNanos) / 1000;
+        queue.offer(new Record(association, uplink, streamNumber, data, timestamp));
+    }
+
+    private void writerLoop() {
+        while (true) {
+            var record = queue.poll();
+            if (record != null) {
+                queuedMessages.decrementAndGet();
+                if (failed) {
+                    droppedMessages.incrementAndGet();
+                    continue;
+                }
+                try {
+                    writeRecord(record);
+                } catch (IOException e) {
+                    droppedMessages.incrementAndGet();
+                    fail(e);
+                }
+                continue;
+            }
+            if (!failed) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            // A message that races with closing may be lost, it would be dropped a moment later anyway
+            if (closed && queue.isEmpty()) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        closeChannel();
+    }
+
+    /**
+     * Stops the capture after a write error. The records that are still in the buffer are counted as dropped, as well
+     * as the records captured afterwards.
+     */
+    private void fail(IOException e) {
+        Logging.error(Tag.SYSTEM, "NGAP capture to %s is stopped, further messages are dropped: %s", path, e);
+        failed = true;
+        droppedMessages.addAndGet(bufferedRecords);
+        bufferedRecords = 0;
+        buffer.clear();
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Logging.error(Tag.SYSTEM, "NGAP capture file could not be closed: %s", e);
+        }
+        channel = null;
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        int dataLength = record.data.length;
+        int padding = (4 - (dataLength & 3)) & 3;
+        int packetLength = PACKET_OVERHEAD + dataLength + padding;
+        int recordLength = RECORD_HEADER_LENGTH + packetLength;
+
+        if (maxFileSize > 0 && fileSize > GLOBAL_HEADER_LENGTH && fileSize + recordLength > maxFileSize) {
+            flush();
+            channel.close();
+            fileIndex++;
+            openFile();
+        }
+        if (buffer.remaining() < recordLength) {
+            flush();
+        }
+
+        var association = record.association;
+        var direction = record.uplink ? association.uplink : association.downlink;
+
+        buffer.putInt((int) (record.timestamp / 1_000_000));
+        buffer.putInt((int) (record.timestamp % 1_000_000));
+        buffer.putInt(packetLength);
+        buffer.putInt(packetLength);
+
+        // IPv4 header
+        int ipStart = buffer.position();
+        buffer.put((byte) 0x45);
+        buffer.put((byte) 0);
+        buffer.putShort((short) packetLength);
+        buffer.putShort((short) direction.ipIdentification++);
+        buffer.putShort((short) 0x4000);
+        buffer.put((byte) 64);
+        buffer.put((byte) IP_PROTOCOL_SCTP);
+        buffer.putShort((short) 0);
+        buffer.putInt(record.uplink ? association.gnbAddress : association.amfAddress);
+        buffer.putInt(record.uplink ? association.amfAddress : association.gnbAddress);
+        buffer.putShort(ipStart + 10, ipChecksum(ipStart));
+
+        // SCTP common header, the checksum is computed after the chunk is written
+        int sctpStart = buffer.position();
+        buffer.putShort((short) (record.uplink ? association.gnbPort : association.amfPort));
+        buffer.putShort((short) (record.uplink ? association.amfPort : association.gnbPort));
+        buffer.putInt(direction.verificationTag);
+        buffer.putInt(0);
+
+        // DATA chunk with the beginning and the ending fragment flags set
+        buffer.put((byte) 0);
+        buffer.put((byte) 0x03);
+        buffer.putShort((short) (DATA_CHUNK_HEADER_LENGTH + dataLength));
+        buffer.putInt(direction.tsn++);
+        buffer.putShort((short) record.streamNumber);
+        buffer.putShort((short) direction.nextStreamSequence(record.streamNumber));
+        buffer.putInt(NGAP_PPID);
+        buffer.put(record.data);
+        for (int i = 0; i < padding; i++) {
+            buffer.put((byte) 0);
+        }
+
+        var sctpPacket = buffer.duplicate();
+        sctpPacket.position(sctpStart);
+        sctpPacket.limit(buffer.position());
+        crc.reset();
+        crc.update(sctpPacket);
+        // CRC32c is stored in the little-endian byte order, unlike the other fields
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(sctpStart + 8, (int) crc.getValue());
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        fileSize += recordLength;
+        bufferedRecords++;
+    }
+
+    private short ipChecksum(int start) {
+        int sum = 0;
+        for (int i = 0; i < IP_HEADER_LENGTH; i += 2) {
+            sum += buffer.getShort(start + i) & 0xFFFF;
+        }
+        while ((sum >> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >> 16);
+        }
+        return (short) ~sum;
+    }
+
+    private void openFile() throws IOException {
+        channel = FileChannel.open(filePath(fileIndex), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(PCAP_MAGIC);
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 4);
+        buffer.putInt(0);
+        buffer.putInt(0);
+        buffer.putInt(SNAPLEN);
+        buffer.putInt(LINKTYPE_RAW);
+        fileSize = GLOBAL_HEADER_LENGTH;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        bufferedRecords = 0;
+    }
+
+    Path filePath(int index) {
+        if (index == 0) {
+            return path;
+        }
+        var name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        var rotated = dot > 0
+                ? name.substring(0, dot) + "-" + index + name.substring(dot)
+                : name + "-" + index;
+        return path.resolveSibling(rotated);
+    }
+
+    private static int parseIpv4(String host) {
+        if (host != null) {
+            var parts = host.split("\\.");
+            if (parts.length == 4) {
+                try {
+                    int address = 0;
+                    for (var part : parts) {
+                        int octet = Integer.parseInt(part);
+                        if (octet < 0 || octet > 255) {
+                            return 0x7F000001;
+                        }
+                        address = (address << 8) | octet;
+                    }
+                    return address;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return 0x7F000001;
+    }
+
+    /**
+     * Capture of the messages of an NGAP association. Can be used by any thread.
+     */
+    public final class Association {
+        private final int gnbAddress;
+        private final int amfAddress;
+        private final int gnbPort;
+        private final int amfPort;
+        private final Direction uplink;
+        private final Direction downlink;
+
+        private Association(int gnbAddress, int amfAddress, int amfPort, int index) {
+            this.gnbAddress = gnbAddress;
+            this.amfAddress = amfAddress;
+            this.gnbPort = NGAP_PORT;
+            this.amfPort = amfPort;
+            this.uplink = new Direction(index * 2);
+            this.downlink = new Direction(index * 2 + 1);
+        }
+
+        public void uplink(int streamNumber, byte[] data) {
+            enqueue(this, true, streamNumber, data);
+        }
+
+        public void downlink(int streamNumber, byte[] data) {
+            enqueue(this, false, streamNumber, data);
+        }
+    }
+
+    /**
+     * Per direction counters of an association, accessed by the writer thread only.
+     */
+    private static final class Direction {
+        final int verificationTag;
+        int tsn;
+        int ipIdentification;
+        short[] streamSequences = new short[0];
+
+        Direction(int verificationTag) {
+            this.verificationTag = verificationTag;
+        }
+
+        int nextStreamSequence(int streamNumber) {
+            if (streamNumber >= streamSequences.length) {
+                var grown = new short[Math.max(streamNumber + 1, streamSequences.length * 2)];
+                System.arraycopy(streamSequences, 0, grown, 0, streamSequences.length);
+                streamSequences = grown;
+            }
+            return streamSequences[streamNumber]++;
+        }
+    }
+
+    private static final class Record {
+        final Association association;
+        final boolean uplink;
+        final int streamNumber;
+        final byte[] data;
+        final long timestamp;
+
+        Record(Association association, boolean uplink, int streamNumber, byte[] data, long timestamp) {
+            this.association = association;
+            this.uplink = uplink;
+            this.streamNumber = streamNumber;
+            this.data = data;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -27,24 +27,67 @@
 package tr.havelsan.ueransim.core;
 
 import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.threads.INodeScheduler;
 import tr.havelsan.ueransim.events.BaseEvent;
+import tr.havelsan.ueransim.jfr.MailboxPopEvent;
+import tr.havelsan.ueransim.jfr.MailboxPushEvent;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
 
+import jdk.jfr.EventType;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class BaseSimContext<T extends BaseEvent> {
+    private static final EventType MAILBOX_POP_EVENT_TYPE = EventType.getEventType(MailboxPopEvent.class);
+    private static final VarHandle SCHEDULED;
+
+    // A node rarely has more than a few events waiting, and there is a mailbox for every UE
+    private static final int MAILBOX_INITIAL_CAPACITY = 3;
+
+    static {
+        try {
+            SCHEDULED = MethodHandles.lookup().findVarHandle(BaseSimContext.class, "scheduled", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public final SimulationContext simCtx;
+    // Dense id of the node among the nodes of its kind, see NodeRegistry
+    public final int nodeId;
+    // Only used for display purposes, such as logs and JFR events
     public final UUID ctxId;
     private final Queue<T> eventQueue;
     private Thread looperThread;
+    private volatile INodeScheduler scheduler;
+    // Accessed through SCHEDULED, instead of an AtomicBoolean per node
+    private volatile boolean scheduled;
+
+    // Written under the node lock, read without it by the metric exporters.
+    private volatile int queueDepth;
+    private volatile long processedEventCount;
 
-    public BaseSimContext(SimulationContext simCtx) {
+    public BaseSimContext(SimulationContext simCtx, int nodeId) {
         this.simCtx = simCtx;
-        this.ctxId = UUID.randomUUID();
-        this.eventQueue = new ArrayDeque<>();
+        this.nodeId = nodeId;
+        this.ctxId = randomUuid(simCtx != null ? simCtx.random() : ThreadLocalRandom.current());
+        this.eventQueue = new ArrayDeque<>(MAILBOX_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns a version 4 UUID without going through SecureRandom, since the UUIDs of the nodes are not secrets.
+     */
+    private static UUID randomUuid(Random random) {
+        long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(msb, lsb);
     }
 
     public Thread getLooperThread() {
@@ -55,6 +98,18 @@ public class BaseSimContext<T extends BaseEvent> {
         this.looperThread = looperThread;
     }
 
+    public void setScheduler(INodeScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public boolean markScheduled() {
+        return SCHEDULED.compareAndSet(this, false, true);
+    }
+
+    public void clearScheduled() {
+        scheduled = false;
+    }
+
     public boolean hasEvent() {
         synchronized (this) {
             return !eventQueue.isEmpty();
@@ -63,14 +118,64 @@ public class BaseSimContext<T extends BaseEvent> {
 
     public void pushEvent(T event) {
         Logging.info(Tag.EVENT, "Pushed event: %s", event);
+
+        var jfrEvent = new MailboxPushEvent();
+        if (MAILBOX_POP_EVENT_TYPE.isEnabled()) {
+            event.setPushTime(System.nanoTime());
+        }
+
         synchronized (this) {
             eventQueue.add(event);
+            queueDepth = eventQueue.size();
+        }
+
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.node = ctxId.toString();
+            jfrEvent.eventType = event.getClass().getSimpleName();
+            jfrEvent.queueDepth = queueDepth;
+            jfrEvent.commit();
+        }
+
+        var scheduler = this.scheduler;
+        if (scheduler != null && markScheduled()) {
+            scheduler.wakeUp(this);
         }
     }
 
     public T popEvent() {
+        T event;
         synchronized (this) {
-            return eventQueue.poll();
+            event = eventQueue.poll();
+            if (event == null) {
+                return null;
+            }
+            queueDepth = eventQueue.size();
+            processedEventCount++;
+        }
+
+        var jfrEvent = new MailboxPopEvent();
+        if (jfrEvent.shouldCommit()) {
+            long pushTime = event.getPushTime();
+            jfrEvent.node = ctxId.toString();
+            jfrEvent.eventType = event.getClass().getSimpleName();
+            jfrEvent.queueWait = pushTime != 0 ? System.nanoTime() - pushTime : 0;
+            jfrEvent.queueDepth = queueDepth;
+            jfrEvent.commit();
         }
+        return event;
+    }
+
+    /**
+     * Returns the number of events waiting in the mailbox, without taking the node lock.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of events taken from the mailbox so far, without taking the node lock.
+     */
+    public long getProcessedEventCount() {
+        return processedEventCount;
     }
 }
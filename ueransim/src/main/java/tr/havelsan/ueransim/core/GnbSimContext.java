@@ -28,7 +28,7 @@ package tr.havelsan.ueransim.core;
 
 import tr.havelsan.ueransim.api.sys.SimulationContext;
 import tr.havelsan.ueransim.events.gnb.GnbEvent;
-import tr.havelsan.ueransim.sctp.ISctpClient;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 import tr.havelsan.ueransim.structs.GnbConfig;
 import tr.havelsan.ueransim.structs.GnbUeContext;
 
@@ -38,14 +38,16 @@ import java.util.UUID;
 public class GnbSimContext extends BaseSimContext<GnbEvent> {
     public GnbConfig config;
 
-    public ISctpClient sctpClient;
-    public int streamNumber;
+    public GnbAmfContext[] amfContexts;
 
     public HashMap<UUID, GnbUeContext> ueContexts;
+    // Same contexts keyed by the RAN-UE-NGAP-ID, maintained by GnbUeManagement
+    public HashMap<Long, GnbUeContext> ueContextsByRanUeNgapId;
     public long ueNgapIdCounter;
 
     public GnbSimContext(SimulationContext simCtx) {
-        super(simCtx);
+        super(simCtx, simCtx.gnbRegistry.allocateId());
         this.ueContexts = new HashMap<>();
+        this.ueContextsByRanUeNgapId = new HashMap<>();
     }
 }
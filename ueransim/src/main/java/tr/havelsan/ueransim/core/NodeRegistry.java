@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the nodes of one kind, addressed by dense integer ids.
+ * <p>
+ * Ids are allocated by {@link #allocateId()} when a node is created and the node is published by {@link #register}.
+ * Nodes are stored in fixed-size pages, so lookups and iteration are lock-free and never copy the stored nodes. Only
+ * adding a page takes the registry lock.
+ */
+public class NodeRegistry<T extends BaseSimContext<?>> {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final AtomicInteger nextId;
+    private final AtomicInteger count;
+    private volatile AtomicReferenceArray<T>[] pages;
+
+    @SuppressWarnings("unchecked")
+    public NodeRegistry() {
+        this.nextId = new AtomicInteger();
+        this.count = new AtomicInteger();
+        this.pages = new AtomicReferenceArray[0];
+    }
+
+    public int allocateId() {
+        int id = nextId.getAndIncrement();
+        if (id < 0) {
+            throw new IllegalStateException("node id space is exhausted");
+        }
+        return id;
+    }
+
+    public void register(T node) {
+        int id = node.nodeId;
+        var pages = this.pages;
+        int pageIndex = id >>> PAGE_BITS;
+        if (pageIndex >= pages.length) {
+            pages = growTo(pageIndex);
+        }
+        if (pages[pageIndex].getAndSet(id & PAGE_MASK, node) == null) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the node with the given id, or null if no such node is registered.
+     */
+    public T get(int id) {
+        var pages = this.pages;
+        int pageIndex = id >>> PAGE_BITS;
+        if (id < 0 || pageIndex >= pages.length) {
+            return null;
+        }
+        return pages[pageIndex].get(id & PAGE_MASK);
+    }
+
+    /**
+     * Performs the given action for each registered node in id order.
+     */
+    public void forEach(Consumer<? super T> action) {
+        var pages = this.pages;
+        for (var page : pages) {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                var node = page.get(i);
+                if (node != null) {
+                    action.accept(node);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized AtomicReferenceArray<T>[] growTo(int pageIndex) {
+        var pages = this.pages;
+        if (pageIndex < pages.length) {
+            return pages;
+        }
+        var newPages = new AtomicReferenceArray[Math.max(pageIndex + 1, pages.length * 2)];
+        System.arraycopy(pages, 0, newPages, 0, pages.length);
+        for (int i = pages.length; i < newPages.length; i++) {
+            newPages[i] = new AtomicReferenceArray<T>(PAGE_SIZE);
+        }
+        this.pages = newPages;
+        return newPages;
+    }
+}
@@ -28,27 +28,29 @@ package tr.havelsan.ueransim.core;
 
 import tr.havelsan.ueransim.api.nas.NasSecurityContext;
 import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.enums.EProcedure;
 import tr.havelsan.ueransim.events.ue.UeEvent;
 import tr.havelsan.ueransim.structs.*;
 
-import java.util.UUID;
-
 public class UeSimContext extends BaseSimContext<UeEvent> {
 
     public UeData ueData;
     public UeConfig ueConfig;
     public UeTimers ueTimers;
 
-    public UUID connectedGnb;
+    public GnbSimContext connectedGnb;
 
     public MmContext mmCtx;
     public SmContext smCtx;
     public NasSecurityContext currentNsCtx;
     public NasSecurityContext nonCurrentNsCtx;
 
+    public EProcedure currentProcedure;
+    public long procedureStartTime;
+
     public UeSimContext(SimulationContext simCtx) {
-        super(simCtx);
-        this.ueTimers = new UeTimers();
+        super(simCtx, simCtx.ueRegistry.allocateId());
+        this.ueTimers = new UeTimers(this);
         this.mmCtx = new MmContext();
         this.smCtx = new SmContext();
         this.ueData = new UeData();
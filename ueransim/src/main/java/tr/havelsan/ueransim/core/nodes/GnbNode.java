@@ -31,21 +31,57 @@ import tr.havelsan.ueransim.api.gnb.GNodeB;
 import tr.havelsan.ueransim.core.GnbSimContext;
 import tr.havelsan.ueransim.core.threads.NodeLooperThread;
 import tr.havelsan.ueransim.core.threads.SctpRecevierThread;
+import tr.havelsan.ueransim.events.gnb.SctpReceiveEvent;
+import tr.havelsan.ueransim.sctp.ISCTPHandler;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.sctp.SelectorSCTPClient;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 
 public class GnbNode {
 
     public static void run(GnbSimContext ctx) {
-        try {
-            ctx.sctpClient.start();
-        } catch (Exception e) {
-            Program.fail(e);
+        for (var amfContext : ctx.amfContexts) {
+            if (ctx.simCtx.isDiscreteEvent() && !(amfContext.sctpClient instanceof MockedSCTPClient)) {
+                Program.fail(new IllegalStateException("discrete event mode requires the mocked AMF"));
+            }
+            try {
+                amfContext.sctpClient.start();
+            } catch (Exception e) {
+                Program.fail(e);
+            }
+
+            if (ctx.simCtx.isDiscreteEvent()) {
+                // Responses are delivered on virtual time by the event scheduler
+                ctx.simCtx.eventScheduler.addLink((MockedSCTPClient) amfContext.sctpClient,
+                        receiveHandler(ctx, amfContext));
+            } else if (amfContext.sctpClient instanceof SelectorSCTPClient) {
+                // Messages are dispatched by the selector threads shared by all the gNBs
+                ((SelectorSCTPClient) amfContext.sctpClient).startReceiving(receiveHandler(ctx, amfContext));
+            } else {
+                var sctpReceiverThread = new SctpRecevierThread(ctx, amfContext);
+                sctpReceiverThread.start();
+            }
         }
 
-        var sctpReceiverThread = new SctpRecevierThread(ctx, ctx.sctpClient);
-        sctpReceiverThread.start();
+        if (ctx.simCtx.isDiscreteEvent()) {
+            ctx.simCtx.eventScheduler.attach(ctx);
+            return;
+        }
 
-        var looperThread = new NodeLooperThread<>(ctx, GNodeB::cycle);
+        var looperThread = new NodeLooperThread<>(ctx, GNodeB::cycle, ctx.simCtx.looperGate);
         ctx.setLooperThread(looperThread);
         looperThread.start();
     }
+
+    public static ISCTPHandler receiveHandler(GnbSimContext ctx, GnbAmfContext amfContext) {
+        var capture = amfContext.capture;
+        if (capture == null) {
+            return (receivedBytes, streamNumber) ->
+                    ctx.pushEvent(new SctpReceiveEvent(amfContext.associationId, receivedBytes));
+        }
+        return (receivedBytes, streamNumber) -> {
+            capture.downlink(streamNumber, receivedBytes);
+            ctx.pushEvent(new SctpReceiveEvent(amfContext.associationId, receivedBytes));
+        };
+    }
 }
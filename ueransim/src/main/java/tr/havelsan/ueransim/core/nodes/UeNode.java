@@ -26,15 +26,15 @@
 
 package tr.havelsan.ueransim.core.nodes;
 
-import tr.havelsan.ueransim.api.ue.UserEquipment;
 import tr.havelsan.ueransim.core.UeSimContext;
-import tr.havelsan.ueransim.core.threads.NodeLooperThread;
 
 public class UeNode {
 
     public static void run(UeSimContext ctx) {
-        var looperThread = new NodeLooperThread<>(ctx, UserEquipment::cycle);
-        ctx.setLooperThread(looperThread);
-        looperThread.start();
+        if (ctx.simCtx.isDiscreteEvent()) {
+            ctx.simCtx.eventScheduler.attach(ctx);
+        } else {
+            ctx.simCtx.ueScheduler.attach(ctx);
+        }
     }
 }
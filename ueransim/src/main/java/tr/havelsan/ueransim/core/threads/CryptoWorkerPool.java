@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.events.ue.UeCryptoResultEvent;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded worker pool for the expensive authentication and key derivation computations (Milenage, KDF, PRF').
+ * Jobs run off the UE looper, and their results are delivered back into the owning UE's mailbox as a
+ * {@link UeCryptoResultEvent}, so that all UE state is still mutated by the UE's own looper only.
+ * <p>
+ * If the queue is full, the job is executed in the caller's thread. The completion is delivered through the
+ * mailbox in that case too, so the UE state machine observes the same ordering in both cases.
+ * <p>
+ * A job that throws is logged and reported to the UE through its failure callback; the worker keeps running.
+ */
+public class CryptoWorkerPool {
+
+    private final BlockingQueue<Job<?>> queue;
+    private final Worker[] workers;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong executedInline = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalComputeNanos = new AtomicLong();
+    private final AtomicLong maxComputeNanos = new AtomicLong();
+
+    private volatile boolean started;
+
+    public CryptoWorkerPool(int workerCount, int queueCapacity) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be positive");
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new Worker[workerCount];
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+            workers[i].start();
+        }
+        Logging.debug(Tag.SYSTEM, "CryptoWorkerPool started with %d workers", workers.length);
+    }
+
+    /**
+     * Runs the given job in the pool, and pushes its result to the given UE as a completion event. The completion
+     * callback is invoked by the UE looper. If the job throws, the failure callback is invoked by the UE looper
+     * instead.
+     */
+    public <T> void submit(UeSimContext ctx, Supplier<T> job, BiConsumer<UeSimContext, T> completion,
+                           Consumer<UeSimContext> failure) {
+        submitted.incrementAndGet();
+
+        var item = new Job<>(ctx, job, completion, failure);
+        if (!started || !queue.offer(item)) {
+            executedInline.incrementAndGet();
+            item.run();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getExecutedInlineCount() {
+        return executedInline.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public long getTotalQueueWaitNanos() {
+        return totalQueueWaitNanos.get();
+    }
+
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+    public long getTotalComputeNanos() {
+        return totalComputeNanos.get();
+    }
+
+    public long getMaxComputeNanos() {
+        return maxComputeNanos.get();
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    private final class Job<T> {
+        private final UeSimContext ctx;
+        private final Supplier<T> job;
+        private final BiConsumer<UeSimContext, T> completion;
+        private final Consumer<UeSimContext> failure;
+        private final long enqueueTime;
+
+        private Job(UeSimContext ctx, Supplier<T> job, BiConsumer<UeSimContext, T> completion,
+                    Consumer<UeSimContext> failure) {
+            this.ctx = ctx;
+            this.job = job;
+            this.completion = completion;
+            this.failure = failure;
+            this.enqueueTime = System.nanoTime();
+        }
+
+        private void run() {
+            long startTime = System.nanoTime();
+            T result;
+            try {
+                result = job.get();
+            } catch (RuntimeException e) {
+                Logging.error(Tag.SYSTEM, "Crypto job failed: %s", e);
+                failed.incrementAndGet();
+                ctx.pushEvent(UeCryptoResultEvent.failed(e, failure));
+                return;
+            }
+            long endTime = System.nanoTime();
+
+            long queueWait = startTime - enqueueTime;
+            long compute = endTime - startTime;
+
+            totalQueueWaitNanos.addAndGet(queueWait);
+            totalComputeNanos.addAndGet(compute);
+            updateMax(maxQueueWaitNanos, queueWait);
+            updateMax(maxComputeNanos, compute);
+            completed.incrementAndGet();
+
+            ctx.pushEvent(new UeCryptoResultEvent<>(result, completion));
+        }
+    }
+
+    private final class Worker extends BaseThread {
+
+        private Worker(int index) {
+            setName("crypto-worker-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Job<?> job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                job.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import tr.havelsan.ueransim.core.BaseSimContext;
+import tr.havelsan.ueransim.core.timers.TimingWheel;
+import tr.havelsan.ueransim.core.timers.VirtualClock;
+import tr.havelsan.ueransim.sctp.ISCTPHandler;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs a whole simulation in the calling thread on virtual time, instead of the looper, worker, timer and receiver
+ * threads. Nodes with pending events are run in the order they are woken up, the responses of the mocked links
+ * are delivered at their delivery times, and the timing wheel is advanced by jumping the virtual clock to the next
+ * deadline once nothing else is left at the current time. Handling an event takes no virtual time.
+ * <p>
+ * Since there is a single thread and the order of everything is given by the events themselves, a run with the same
+ * configuration and seed yields the same sequence of events every time, as fast as the CPU allows.
+ */
+public final class DiscreteEventScheduler implements INodeScheduler {
+
+    private static final int MAX_BATCH = 64;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final VirtualClock clock;
+    private final TimingWheel wheel;
+    private final Consumer<BaseSimContext<?>> looper;
+    private final ArrayDeque<BaseSimContext<?>> readyQueue;
+    private final ArrayList<MockedSCTPClient> links;
+    private final ArrayList<ISCTPHandler> linkHandlers;
+
+    // Virtual time in nanoseconds, the virtual clock of the timing wheel follows it with a millisecond resolution
+    private volatile long nanoTime;
+    private long runCount;
+
+    public DiscreteEventScheduler(VirtualClock clock, TimingWheel wheel, Consumer<BaseSimContext<?>> looper) {
+        if (wheel.getClock() != clock) {
+            throw new IllegalArgumentException("timing wheel must be driven by the given clock");
+        }
+        this.clock = clock;
+        this.wheel = wheel;
+        this.looper = looper;
+        this.readyQueue = new ArrayDeque<>();
+        this.links = new ArrayList<>();
+        this.linkHandlers = new ArrayList<>();
+        this.nanoTime = clock.millis() * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the virtual time in nanoseconds, to be used as the time source of everything that is measured in the
+     * simulation.
+     */
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    public long getRunCount() {
+        return runCount;
+    }
+
+    public void attach(BaseSimContext<?> ctx) {
+        ctx.setScheduler(this);
+        if (ctx.hasEvent() && ctx.markScheduled()) {
+            wakeUp(ctx);
+        }
+    }
+
+    /**
+     * Delivers the responses of the given link to the given handler, instead of a receiver thread.
+     */
+    public synchronized void addLink(MockedSCTPClient link, ISCTPHandler handler) {
+        links.add(link);
+        linkHandlers.add(handler);
+    }
+
+    @Override
+    public synchronized void wakeUp(BaseSimContext<?> ctx) {
+        readyQueue.add(ctx);
+    }
+
+    /**
+     * Runs the simulation until the given condition holds, or until nothing is left to do. Returns false in the
+     * latter case, i.e. when there is neither a pending event, nor a response in flight, nor a scheduled timer.
+     */
+    public boolean run(BooleanSupplier finished) throws Exception {
+        while (!finished.getAsBoolean()) {
+            if (runNextNode() || deliverResponses() || wheel.advance() > 0) {
+                continue;
+            }
+
+            long next = Math.min(nextDeliveryTime(), toNanos(wheel.nextExpiryMillis()));
+            if (next == Long.MAX_VALUE) {
+                return false;
+            }
+            advanceTo(next);
+        }
+        return true;
+    }
+
+    private boolean runNextNode() {
+        BaseSimContext<?> ctx;
+        synchronized (this) {
+            ctx = readyQueue.poll();
+        }
+        if (ctx == null) {
+            return false;
+        }
+
+        ctx.setLooperThread(Thread.currentThread());
+        try {
+            for (int i = 0; i < MAX_BATCH && ctx.hasEvent(); i++) {
+                looper.accept(ctx);
+            }
+        } finally {
+            ctx.setLooperThread(null);
+        }
+        runCount++;
+
+        if (ctx.hasEvent()) {
+            // Batch limit is reached, the node goes behind the others that are ready at the same time
+            wakeUp(ctx);
+            return true;
+        }
+
+        ctx.clearScheduled();
+
+        // An event may have been pushed by another thread just before clearing the flag, e.g. by the control server
+        if (ctx.hasEvent() && ctx.markScheduled()) {
+            wakeUp(ctx);
+        }
+        return true;
+    }
+
+    private synchronized boolean deliverResponses() throws Exception {
+        int delivered = 0;
+        for (int i = 0; i < links.size(); i++) {
+            delivered += links.get(i).deliverDue(linkHandlers.get(i));
+        }
+        return delivered > 0;
+    }
+
+    private synchronized long nextDeliveryTime() {
+        long next = Long.MAX_VALUE;
+        for (var link : links) {
+            next = Math.min(next, link.nextDeliveryTime());
+        }
+        return next;
+    }
+
+    private void advanceTo(long newNanoTime) {
+        if (newNanoTime > nanoTime) {
+            nanoTime = newNanoTime;
+            clock.set(Math.max(clock.millis(), newNanoTime / NANOS_PER_MILLI));
+        }
+    }
+
+    private static long toNanos(long millis) {
+        return millis == Long.MAX_VALUE ? Long.MAX_VALUE : millis * NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import tr.havelsan.ueransim.Program;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pauses the looper threads of the nodes between two batches of events, so that another thread can read the state
+ * of many nodes consistently, e.g. to write a snapshot. Events pushed during the pause wait in the mailboxes.
+ * <p>
+ * A looper marks only its own {@link Slot} around a batch, so running a batch does not touch a lock or a counter
+ * shared by the loopers. The gate must not be closed from a looper thread, since it waits for every looper.
+ */
+public final class LooperGate {
+
+    private static final long POLL_MILLIS = 1;
+
+    private final CopyOnWriteArrayList<Slot> slots;
+    private volatile boolean closed;
+
+    public LooperGate() {
+        this.slots = new CopyOnWriteArrayList<>();
+    }
+
+    public Slot newSlot() {
+        var slot = new Slot();
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Invoked by a looper before a batch of events. Blocks while the gate is closed.
+     */
+    public void enter(Slot slot) {
+        while (true) {
+            slot.busy = true;
+            if (!closed) {
+                return;
+            }
+            slot.busy = false;
+            synchronized (this) {
+                while (closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Program.fail(e);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoked by a looper after a batch of events.
+     */
+    public void exit(Slot slot) {
+        slot.busy = false;
+    }
+
+    /**
+     * Closes the gate and waits until no looper is running a batch. Everything the loopers did before is visible to
+     * the calling thread afterwards.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        for (var slot : slots) {
+            while (slot.busy) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+    }
+
+    public synchronized void open() {
+        closed = false;
+        notifyAll();
+    }
+
+    public static final class Slot {
+        private volatile boolean busy;
+
+        private Slot() {
+        }
+    }
+}
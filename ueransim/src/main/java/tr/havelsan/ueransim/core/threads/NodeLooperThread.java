@@ -35,21 +35,38 @@ import java.util.function.Consumer;
 
 public final class NodeLooperThread<T extends BaseSimContext<?>> extends BaseThread {
 
+    private static final int MAX_BATCH = 64;
+
     private final T simContext;
     private final Consumer<T> looper;
+    private final LooperGate gate;
+    private final LooperGate.Slot slot;
 
-    public NodeLooperThread(T simContext, Consumer<T> looper) {
+    public NodeLooperThread(T simContext, Consumer<T> looper, LooperGate gate) {
         this.simContext = simContext;
         this.looper = looper;
+        this.gate = gate;
+        this.slot = gate.newSlot();
     }
 
     @Override
     public void run() {
         Logging.debug(Tag.SYSTEM, "%s has started: %s", simContext.getClass().getSimpleName(), simContext.ctxId);
         while (true) {
-            looper.accept(simContext);
-            while (simContext.hasEvent()) {
+            boolean pending;
+            gate.enter(slot);
+            try {
                 looper.accept(simContext);
+                for (int i = 1; i < MAX_BATCH && simContext.hasEvent(); i++) {
+                    looper.accept(simContext);
+                }
+                pending = simContext.hasEvent();
+            } finally {
+                gate.exit(slot);
+            }
+            if (pending) {
+                // Batch limit is reached, leave the gate so that it can be closed in between
+                continue;
             }
             try {
                 Thread.sleep(1);
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import tr.havelsan.ueransim.Program;
+import tr.havelsan.ueransim.core.BaseSimContext;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Runs the loopers of many nodes on a fixed number of worker threads. A node is queued only when it has pending
+ * events and it is run by at most one worker at a time, so that a node still sees its events sequentially in a
+ * single looper thread.
+ */
+public final class NodeScheduler<T extends BaseSimContext<?>> implements INodeScheduler {
+
+    private static final int MAX_BATCH = 64;
+
+    private final String name;
+    private final Consumer<T> looper;
+    private final LooperGate gate;
+    private final LinkedBlockingQueue<T> readyQueue;
+    private final BaseThread[] workers;
+    private boolean started;
+
+    public NodeScheduler(String name, int workerCount, Consumer<T> looper, LooperGate gate) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount must be positive");
+        }
+        this.name = name;
+        this.looper = looper;
+        this.gate = gate;
+        this.readyQueue = new LinkedBlockingQueue<>();
+        this.workers = new BaseThread[workerCount];
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(name + "-" + i);
+            workers[i].start();
+        }
+        started = true;
+    }
+
+    public void attach(T ctx) {
+        ctx.setScheduler(this);
+        if (ctx.hasEvent() && ctx.markScheduled()) {
+            readyQueue.add(ctx);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void wakeUp(BaseSimContext<?> ctx) {
+        readyQueue.add((T) ctx);
+    }
+
+    public int getReadyCount() {
+        return readyQueue.size();
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    private void runNode(T ctx) {
+        ctx.setLooperThread(Thread.currentThread());
+        try {
+            for (int i = 0; i < MAX_BATCH && ctx.hasEvent(); i++) {
+                looper.accept(ctx);
+            }
+        } finally {
+            ctx.setLooperThread(null);
+        }
+
+        if (ctx.hasEvent()) {
+            // Batch limit is reached, give the other nodes a chance
+            readyQueue.add(ctx);
+            return;
+        }
+
+        ctx.clearScheduled();
+
+        // An event may have been pushed just before clearing the flag
+        if (ctx.hasEvent() && ctx.markScheduled()) {
+            readyQueue.add(ctx);
+        }
+    }
+
+    private class Worker extends BaseThread {
+        private final LooperGate.Slot slot = gate.newSlot();
+
+        Worker(String name) {
+            this.setName(name);
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                T ctx;
+                try {
+                    ctx = readyQueue.take();
+                } catch (InterruptedException e) {
+                    Program.fail(e);
+                    return;
+                }
+                gate.enter(slot);
+                try {
+                    runNode(ctx);
+                } finally {
+                    gate.exit(slot);
+                }
+            }
+        }
+    }
+}
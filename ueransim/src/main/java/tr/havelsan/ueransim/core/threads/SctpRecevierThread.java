@@ -27,23 +27,23 @@
 package tr.havelsan.ueransim.core.threads;
 
 import tr.havelsan.ueransim.core.GnbSimContext;
-import tr.havelsan.ueransim.events.gnb.SctpReceiveEvent;
-import tr.havelsan.ueransim.sctp.ISctpClient;
+import tr.havelsan.ueransim.core.nodes.GnbNode;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
 
 public class SctpRecevierThread extends BaseThread {
 
     private final GnbSimContext ctx;
-    private final ISctpClient sctpClient;
+    private final GnbAmfContext amfContext;
 
-    public SctpRecevierThread(GnbSimContext ctx, ISctpClient sctpClient) {
+    public SctpRecevierThread(GnbSimContext ctx, GnbAmfContext amfContext) {
         this.ctx = ctx;
-        this.sctpClient = sctpClient;
+        this.amfContext = amfContext;
     }
 
     @Override
     public void run() {
         try {
-            sctpClient.receiverLoop(receivedBytes -> ctx.pushEvent(new SctpReceiveEvent(receivedBytes)));
+            amfContext.sctpClient.receiverLoop(GnbNode.receiveHandler(ctx, amfContext));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
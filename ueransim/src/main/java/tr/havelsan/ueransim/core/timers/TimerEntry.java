@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.timers;
+
+/**
+ * An entry of the {@link TimingWheel}. The entry itself is the linked list node, so that scheduling and
+ * cancelling do not allocate.
+ */
+public abstract class TimerEntry {
+
+    // Managed by the TimingWheel under its lock
+    TimerEntry prev;
+    TimerEntry next;
+    long deadline;
+    int slot = -1;
+    long firedGeneration;
+
+    private volatile long generation;
+
+    /**
+     * Returns the generation of this entry. The generation is incremented each time the entry is scheduled or
+     * cancelled, so an expiry that was fired for an older generation can be detected as stale.
+     */
+    public final long getGeneration() {
+        return generation;
+    }
+
+    final void nextGeneration() {
+        generation++;
+    }
+
+    final boolean isLinked() {
+        return slot != -1;
+    }
+
+    /**
+     * Invoked by the thread advancing the wheel, outside of the wheel lock.
+     *
+     * @param generation the generation of the entry at the time of expiry
+     */
+    protected abstract void onExpire(long generation);
+}
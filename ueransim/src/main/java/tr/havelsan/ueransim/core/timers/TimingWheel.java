@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.timers;
+
+import java.util.ArrayList;
+
+/**
+ * Hierarchical timing wheel shared by all the timers of a simulation. Scheduling, rescheduling and cancelling
+ * are O(1). Each level has 64 slots and covers 64 times the range of the previous level, so that long timers
+ * (e.g. T3512) are cascaded down only a few times before they expire.
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 6;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final IClock clock;
+    private final long tickMillis;
+    private final long origin;
+    private final TimerEntry[] slots;
+
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(IClock clock, long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.origin = clock.millis();
+        this.slots = new TimerEntry[LEVELS * WHEEL_SIZE];
+    }
+
+    public IClock getClock() {
+        return clock;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the entry to expire after the given delay. If the entry is already scheduled, it is rescheduled.
+     */
+    public synchronized void schedule(TimerEntry entry, long delayMillis) {
+        if (entry.isLinked()) {
+            unlink(entry);
+            size--;
+        }
+
+        long elapsed = clock.millis() - origin + Math.max(delayMillis, 0);
+        long deadline = Math.max((elapsed + tickMillis - 1) / tickMillis, currentTick + 1);
+
+        entry.nextGeneration();
+        entry.deadline = deadline;
+        link(entry);
+        size++;
+    }
+
+    /**
+     * Cancels the entry if it is scheduled. Returns true if the entry was scheduled.
+     */
+    public synchronized boolean cancel(TimerEntry entry) {
+        entry.nextGeneration();
+        if (!entry.isLinked()) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to the current time of the clock and fires the expired entries. Returns the number of
+     * expired entries.
+     */
+    public int advance() {
+        ArrayList<TimerEntry> expired = null;
+
+        synchronized (this) {
+            long targetTick = clockTick();
+
+            if (size == 0) {
+                currentTick = Math.max(currentTick, targetTick);
+                return 0;
+            }
+
+            while (currentTick < targetTick) {
+                currentTick++;
+
+                for (int level = 1; level < LEVELS; level++) {
+                    if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                        break;
+                    }
+                    cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+                }
+
+                int index = (int) (currentTick & WHEEL_MASK);
+                var entry = slots[index];
+                slots[index] = null;
+
+                while (entry != null) {
+                    var next = entry.next;
+                    entry.prev = null;
+                    entry.next = null;
+                    entry.slot = -1;
+                    entry.firedGeneration = entry.getGeneration();
+                    size--;
+
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(entry);
+                    entry = next;
+                }
+
+                if (size == 0) {
+                    currentTick = targetTick;
+                }
+            }
+        }
+
+        if (expired == null) {
+            return 0;
+        }
+        for (var entry : expired) {
+            entry.onExpire(entry.firedGeneration);
+        }
+        return expired.size();
+    }
+
+    /**
+     * Returns the time of the clock at which the wheel should be advanced next, or {@link Long#MAX_VALUE} if no
+     * entry is scheduled. This is the deadline of the earliest entry of the first level, or the next cascade if it is
+     * earlier, so that no entry expires before it. Used to skip idle periods when the clock is virtual.
+     */
+    public synchronized long nextExpiryMillis() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        // An entry of the first level expires within one turn of the level, so a slot that is not empty before the
+        // next cascade holds an entry that expires exactly at that tick
+        long cascadeTick = (currentTick | WHEEL_MASK) + 1;
+        for (long tick = currentTick + 1; tick < cascadeTick; tick++) {
+            if (slots[(int) (tick & WHEEL_MASK)] != null) {
+                return origin + tick * tickMillis;
+            }
+        }
+        return origin + cascadeTick * tickMillis;
+    }
+
+    private long clockTick() {
+        return (clock.millis() - origin) / tickMillis;
+    }
+
+    private void cascade(int level, int index) {
+        int slot = level * WHEEL_SIZE + index;
+        var entry = slots[slot];
+        slots[slot] = null;
+
+        while (entry != null) {
+            var next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            link(entry);
+            entry = next;
+        }
+    }
+
+    private void link(TimerEntry entry) {
+        long delta = Math.min(Math.max(entry.deadline - currentTick, 0), MAX_DELTA);
+        if (delta == MAX_DELTA) {
+            entry.deadline = currentTick + MAX_DELTA;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int slot = level * WHEEL_SIZE + (int) ((entry.deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+
+        var head = slots[slot];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots[slot] = entry;
+        entry.slot = slot;
+    }
+
+    private void unlink(TimerEntry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.timers;
+
+/**
+ * A clock that only moves when it is explicitly advanced. Used to run the NAS timers on simulated time.
+ */
+public class VirtualClock implements IClock {
+
+    private volatile long millis;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long initialMillis) {
+        this.millis = initialMillis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    public synchronized void advance(long deltaMillis) {
+        if (deltaMillis < 0) {
+            throw new IllegalArgumentException("virtual clock cannot go backwards");
+        }
+        millis += deltaMillis;
+    }
+
+    public synchronized void set(long newMillis) {
+        if (newMillis < millis) {
+            throw new IllegalArgumentException("virtual clock cannot go backwards");
+        }
+        millis = newMillis;
+    }
+}
@@ -27,4 +27,15 @@
 package tr.havelsan.ueransim.events;
 
 public abstract class BaseEvent {
+
+    // Time of the push into a mailbox in nanoseconds, only set while the mailbox events are being recorded.
+    private long pushTime;
+
+    public long getPushTime() {
+        return pushTime;
+    }
+
+    public void setPushTime(long pushTime) {
+        this.pushTime = pushTime;
+    }
 }
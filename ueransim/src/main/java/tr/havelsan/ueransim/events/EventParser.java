@@ -26,6 +26,7 @@
 
 package tr.havelsan.ueransim.events;
 
+import tr.havelsan.ueransim.enums.EProcedure;
 import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
 import tr.havelsan.ueransim.events.ue.UeCommandEvent;
 
@@ -34,7 +35,9 @@ public class EventParser {
     public static String[] possibleEvents() {
         return new String[]{
                 "ngsetup",
-                "initial-registration"
+                "initial-registration",
+                "pdu-session-establishment",
+                "deregistration"
         };
     }
 
@@ -45,9 +48,26 @@ public class EventParser {
         if (command.equals("ngsetup")) {
             return new GnbCommandEvent(command);
         }
-        if (command.equals("initial-registration")) {
+        if (command.equals("initial-registration") || command.equals("pdu-session-establishment")
+                || command.equals("deregistration")) {
             return new UeCommandEvent(command);
         }
         return null;
     }
+
+    /**
+     * Returns the procedure started by the given UE command, or null if the command does not start a procedure.
+     */
+    public static EProcedure procedureOf(String command) {
+        switch (command) {
+            case "initial-registration":
+                return EProcedure.INITIAL_REGISTRATION;
+            case "pdu-session-establishment":
+                return EProcedure.PDU_SESSION_ESTABLISHMENT;
+            case "deregistration":
+                return EProcedure.DEREGISTRATION;
+            default:
+                return null;
+        }
+    }
 }
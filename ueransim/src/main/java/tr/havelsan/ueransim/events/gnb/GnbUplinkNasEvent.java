@@ -26,15 +26,14 @@
 
 package tr.havelsan.ueransim.events.gnb;
 
+import tr.havelsan.ueransim.core.UeSimContext;
 import tr.havelsan.ueransim.utils.octets.OctetString;
 
-import java.util.UUID;
-
 public class GnbUplinkNasEvent extends GnbEvent {
-    public final UUID ue;
+    public final UeSimContext ue;
     public final OctetString nasPdu;
 
-    public GnbUplinkNasEvent(UUID ue, OctetString nasPdu) {
+    public GnbUplinkNasEvent(UeSimContext ue, OctetString nasPdu) {
         this.ue = ue;
         this.nasPdu = nasPdu;
     }
@@ -42,7 +41,7 @@ public class GnbUplinkNasEvent extends GnbEvent {
     @Override
     public String toString() {
         return "GnbUplinkNasEvent{" +
-                "ue=" + ue +
+                "ue=" + ue.ctxId +
                 ", nasPdu=" + nasPdu +
                 '}';
     }
@@ -31,21 +31,30 @@ import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
 import tr.havelsan.ueransim.ngap2.NgapInternal;
 
 public class SctpReceiveEvent extends GnbEvent {
+    public final int associationId;
     public final NGAP_PDU ngapPdu;
+    public final int length;
 
-    public SctpReceiveEvent(byte[] ngapPdu) {
-        this(Ngap.perDecode(NGAP_PDU.class, ngapPdu));
+    public SctpReceiveEvent(int associationId, byte[] ngapPdu) {
+        this(associationId, Ngap.perDecode(NGAP_PDU.class, ngapPdu), ngapPdu.length);
     }
 
-    public SctpReceiveEvent(NGAP_PDU ngapPdu) {
+    public SctpReceiveEvent(int associationId, NGAP_PDU ngapPdu) {
+        this(associationId, ngapPdu, -1);
+    }
+
+    public SctpReceiveEvent(int associationId, NGAP_PDU ngapPdu, int length) {
+        this.associationId = associationId;
         this.ngapPdu = ngapPdu;
+        this.length = length;
     }
 
     @Override
     public String toString() {
         var n = ngapPdu == null ? "null" : NgapInternal.extractNgapMessage(ngapPdu).getClass().getSimpleName();
         return "SctpReceiveEvent{" +
-                "ngapPdu=" + n +
+                "associationId=" + associationId +
+                ", ngapPdu=" + n +
                 '}';
     }
 }
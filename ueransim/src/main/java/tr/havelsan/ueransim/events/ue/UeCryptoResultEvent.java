@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.events.ue;
+
+import tr.havelsan.ueransim.core.UeSimContext;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class UeCryptoResultEvent<T> extends UeEvent {
+    public final T result;
+    public final BiConsumer<UeSimContext, T> completion;
+    public final Throwable error;
+    public final Consumer<UeSimContext> failure;
+
+    public UeCryptoResultEvent(T result, BiConsumer<UeSimContext, T> completion) {
+        this(result, completion, null, null);
+    }
+
+    private UeCryptoResultEvent(T result, BiConsumer<UeSimContext, T> completion, Throwable error,
+                                Consumer<UeSimContext> failure) {
+        this.result = result;
+        this.completion = completion;
+        this.error = error;
+        this.failure = failure;
+    }
+
+    public static <T> UeCryptoResultEvent<T> failed(Throwable error, Consumer<UeSimContext> failure) {
+        return new UeCryptoResultEvent<>(null, null, error, failure);
+    }
+
+    public void complete(UeSimContext ctx) {
+        if (error != null) {
+            failure.accept(ctx);
+        } else {
+            completion.accept(ctx, result);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UeCryptoResultEvent{" +
+                "result=" + (result == null ? "null" : result.getClass().getSimpleName()) +
+                (error == null ? "" : ", error=" + error) +
+                '}';
+    }
+}
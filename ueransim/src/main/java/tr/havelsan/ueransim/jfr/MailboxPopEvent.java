@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.jfr;
+
+import jdk.jfr.*;
+
+@Name("ueransim.MailboxPop")
+@Label("Mailbox Pop")
+@Description("An event taken from the mailbox of a node by its looper")
+@Category({"UERANSIM", "Mailbox"})
+@StackTrace(false)
+public class MailboxPopEvent extends Event {
+
+    @Label("Node")
+    public String node;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Queue Wait")
+    @Description("Time spent by the event in the mailbox, or 0 if it was pushed while recording was disabled")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Queue Depth")
+    @Description("Number of events left in the mailbox")
+    public int queueDepth;
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.jfr;
+
+import jdk.jfr.*;
+
+@Name("ueransim.NgapMessage")
+@Label("NGAP Message")
+@Description("An NGAP message sent or received by a gNB, covering its encoding or handling")
+@Category({"UERANSIM", "NGAP"})
+@StackTrace(false)
+public class NgapMessageEvent extends Event {
+
+    @Label("Direction")
+    public String direction;
+
+    @Label("gNB")
+    public int gnbId;
+
+    @Label("UE")
+    @Description("Associated UE, if any")
+    public String ue;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Length")
+    @Description("Encoded length, or -1 if not known")
+    @DataAmount
+    public int length;
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.structs.LoadConfig;
+
+import java.util.Random;
+
+/**
+ * Computes the arrival times of the UEs of a load run, relative to the start of the run.
+ */
+public abstract class ArrivalProfile {
+
+    public static ArrivalProfile create(LoadConfig config, Random random) {
+        if (config.rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        switch (config.profile) {
+            case "constant":
+                return new Constant(config.rate);
+            case "ramp":
+                return new Ramp(config.rate, config.rampDuration);
+            case "step":
+                return new Step(config.rate, config.stepCount, config.stepDuration);
+            case "poisson":
+                return new Poisson(config.rate, random);
+            default:
+                throw new IllegalArgumentException("unknown arrival profile: " + config.profile);
+        }
+    }
+
+    /**
+     * Returns the arrival time of the next UE in milliseconds. Consecutive calls return non-decreasing values.
+     */
+    public abstract double nextArrival();
+
+    /**
+     * Arrivals with a fixed inter-arrival time of 1/rate.
+     */
+    public static class Constant extends ArrivalProfile {
+        private final double interval;
+        private double time;
+
+        public Constant(double rate) {
+            this.interval = 1000.0 / rate;
+            this.time = -interval;
+        }
+
+        @Override
+        public double nextArrival() {
+            time += interval;
+            return time;
+        }
+    }
+
+    /**
+     * The arrival rate grows linearly from zero to the target rate within the ramp duration, and stays constant
+     * afterwards.
+     */
+    public static class Ramp extends ArrivalProfile {
+        private final double rate;
+        private final double duration;
+        private long count;
+
+        public Ramp(double rate, long durationMillis) {
+            if (durationMillis <= 0) {
+                throw new IllegalArgumentException("rampDuration must be positive");
+            }
+            this.rate = rate / 1000.0;
+            this.duration = durationMillis;
+        }
+
+        @Override
+        public double nextArrival() {
+            // Number of arrivals up to time t is rate*t²/(2*duration) within the ramp, inverted for the n'th arrival.
+            double n = count++;
+            double rampArrivals = rate * duration / 2.0;
+            if (n < rampArrivals) {
+                return Math.sqrt(2.0 * n * duration / rate);
+            }
+            return duration + (n - rampArrivals) / rate;
+        }
+    }
+
+    /**
+     * The arrival rate increases in equal steps up to the target rate, each step lasting the step duration. The
+     * last step is kept afterwards.
+     */
+    public static class Step extends ArrivalProfile {
+        private final double rate;
+        private final int stepCount;
+        private final double stepDuration;
+        private double time;
+        private boolean first;
+
+        public Step(double rate, int stepCount, long stepDurationMillis) {
+            if (stepCount <= 0 || stepDurationMillis <= 0) {
+                throw new IllegalArgumentException("stepCount and stepDuration must be positive");
+            }
+            this.rate = rate / 1000.0;
+            this.stepCount = stepCount;
+            this.stepDuration = stepDurationMillis;
+            this.first = true;
+        }
+
+        @Override
+        public double nextArrival() {
+            if (first) {
+                first = false;
+                return 0;
+            }
+            int step = Math.min((int) (time / stepDuration), stepCount - 1);
+            time += 1.0 / (rate * (step + 1) / stepCount);
+            return time;
+        }
+    }
+
+    /**
+     * Arrivals of a Poisson process, i.e. exponentially distributed inter-arrival times with mean 1/rate.
+     */
+    public static class Poisson extends ArrivalProfile {
+        private final double rate;
+        private final Random random;
+        private double time;
+
+        public Poisson(double rate, Random random) {
+            this.rate = rate / 1000.0;
+            this.random = random;
+        }
+
+        @Override
+        public double nextArrival() {
+            time += -Math.log(1.0 - random.nextDouble()) / rate;
+            return time;
+        }
+    }
+}
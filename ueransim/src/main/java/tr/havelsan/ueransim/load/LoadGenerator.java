@@ -0,0 +1,350 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.AppConfig;
+import tr.havelsan.ueransim.api.sys.IProcedureListener;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.nodes.GnbNode;
+import tr.havelsan.ueransim.core.nodes.UeNode;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.events.EventParser;
+import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
+import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+import tr.havelsan.ueransim.metrics.MetricsReporter;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.snapshot.UeSnapshot;
+import tr.havelsan.ueransim.structs.LoadConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Creates a population of gNBs and UEs from templates, and starts the configured procedure of each UE at the
+ * arrival times given by an {@link ArrivalProfile}.
+ * <p>
+ * UEs are created when they arrive, from a {@link UeConfigFactory} expanding the population spec, so neither the
+ * configurations nor the contexts of the UEs that have not arrived yet are held in memory. If a snapshot is restored,
+ * the population of the snapshot is created before the first arrival instead, with the state it had when the
+ * snapshot was taken.
+ * <p>
+ * Arrivals are driven by the shared timing wheel, so no thread is needed per UE or per arrival. If a pacer is
+ * configured, arriving UEs are handed over to a {@link ProcedurePacer} instead of being started immediately.
+ */
+public class LoadGenerator {
+
+    private final SimulationContext simCtx;
+    private final LoadConfig config;
+    private final int firstUe;
+    private final int firstGnb;
+    private final EProcedure procedure;
+    private final ArrivalProfile profile;
+    private final ArrivalTimer arrivalTimer;
+    private final CompletionListener completionListener;
+    private final CountDownLatch completion;
+    private final ProcedurePacer pacer;
+    private final MetricsReporter metricsReporter;
+
+    private UeConfigFactory ueFactory;
+    private UeSimContext[] restoredUes;
+    private int ueCount;
+    private GnbSimContext[] gnbs;
+    private PeriodicRegistrationEngine periodicEngine;
+    private int launched;
+    private long startMillis;
+    private double nextArrival;
+
+    public LoadGenerator(SimulationContext simCtx, LoadConfig config) {
+        this(simCtx, config, 0, 0);
+    }
+
+    /**
+     * Creates a generator of a part of a larger population, e.g. for a worker process of a sharded run. The UE with
+     * index i gets the identities of the index (firstUe + i) of the population, and the gNB with index i gets the gNB
+     * id of the template incremented by (firstGnb + i).
+     */
+    public LoadGenerator(SimulationContext simCtx, LoadConfig config, int firstUe, int firstGnb) {
+        if (config.ueCount <= 0 || config.gnbCount <= 0) {
+            throw new IllegalArgumentException("ueCount and gnbCount must be positive");
+        }
+        this.simCtx = simCtx;
+        this.config = config;
+        this.firstUe = firstUe;
+        this.firstGnb = firstGnb;
+        this.procedure = procedureOf(config.procedure);
+        this.profile = ArrivalProfile.create(config, simCtx.newRandom());
+        this.arrivalTimer = new ArrivalTimer();
+        this.completionListener = new CompletionListener();
+        this.completion = new CountDownLatch(1);
+        this.pacer = config.pacer != null ? new ProcedurePacer(simCtx, config.pacer) : null;
+        this.metricsReporter = config.reportInterval > 0 ? new MetricsReporter(simCtx, config.reportInterval) : null;
+    }
+
+    public static LoadConfig loadConfig(String file) {
+        return ((ImplicitTypedObject) MtsDecoder.decode(file)).asConstructed(LoadConfig.class);
+    }
+
+    public void start() {
+        Simulation.addProcedureListener(simCtx, completionListener);
+
+        createGnbs();
+        ueFactory = new UeConfigFactory((ImplicitTypedObject) MtsDecoder.decode(config.ueTemplate), config.keySeed,
+                config.population);
+        ueCount = config.ueCount;
+        if (config.restoreFile != null && !config.restoreFile.isEmpty()) {
+            restoreUes();
+        }
+        startGnbs();
+
+        if (pacer != null) {
+            pacer.start();
+        }
+        if (metricsReporter != null) {
+            metricsReporter.start();
+        }
+
+        if (config.idleAfterRegistration) {
+            periodicEngine = new PeriodicRegistrationEngine(simCtx, config.periodicJitter, config.reportInterval);
+            periodicEngine.start();
+        }
+
+        Logging.info(Tag.SYSTEM, "Load generation starts in %d ms: %d UEs over %d gNBs, profile=%s rate=%.2f/s",
+                config.startDelay, ueCount, config.gnbCount, config.profile, config.rate);
+
+        nextArrival = profile.nextArrival();
+        startMillis = simCtx.timingWheel.getClock().millis() + config.startDelay;
+        simCtx.timingWheel.schedule(arrivalTimer, config.startDelay + (long) Math.ceil(nextArrival));
+    }
+
+    /**
+     * Blocks until the configured procedure of every UE is finished.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        completion.await();
+    }
+
+    public boolean isCompleted() {
+        return completion.getCount() == 0;
+    }
+
+    public String summary() {
+        var sb = new StringBuilder();
+        sb.append(String.format("Load run finished: %d UEs, %d gNBs, profile=%s rate=%.2f/s%n",
+                ueCount, config.gnbCount, config.profile, config.rate));
+        sb.append(MetricsReporter.summary(simCtx.metrics));
+        if (periodicEngine != null) {
+            sb.append(periodicEngine.report()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    private void createGnbs() {
+        var template = (ImplicitTypedObject) MtsDecoder.decode(config.gnbTemplate);
+        int baseGnbId = template.getInt("gnbId");
+
+        gnbs = new GnbSimContext[config.gnbCount];
+        for (int i = 0; i < gnbs.length; i++) {
+            var parameters = new LinkedHashMap<>(template.getParameters());
+            parameters.put("gnbId", baseGnbId + firstGnb + i);
+
+            var gnb = AppConfig.createGnbSimContext(simCtx, new ImplicitTypedObject(parameters));
+            Simulation.registerGnb(simCtx, gnb);
+            gnbs[i] = gnb;
+        }
+    }
+
+    private void startGnbs() {
+        for (var gnb : gnbs) {
+            GnbNode.run(gnb);
+            gnb.pushEvent(new GnbCommandEvent("ngsetup"));
+        }
+    }
+
+    private void restoreUes() {
+        try {
+            restoredUes = UeSnapshot.restore(simCtx, Path.of(config.restoreFile), ueFactory.getTemplate(), gnbs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ueCount = restoredUes.length;
+
+        for (int i = 0; i < restoredUes.length; i++) {
+            var ue = restoredUes[i];
+            if (ue.connectedGnb == null) {
+                Simulation.connectUeToGnb(ue, gnbs[i % gnbs.length]);
+            }
+            startUe(ue);
+        }
+    }
+
+    /**
+     * Writes the snapshot while the loopers of the nodes are paused, so that neither a UE nor a gNB is changed while
+     * its state is read. Must not be invoked from a looper.
+     */
+    private void writeSnapshot() {
+        try {
+            simCtx.looperGate.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            UeSnapshot.write(simCtx, Path.of(config.snapshotFile));
+        } catch (IOException e) {
+            Logging.error(Tag.SYSTEM, "Snapshot could not be written: %s", e);
+        } finally {
+            simCtx.looperGate.open();
+        }
+    }
+
+    private UeSimContext createUe(int index) {
+        if (restoredUes != null) {
+            return restoredUes[index];
+        }
+        var ue = AppConfig.createUeSimContext(simCtx, ueFactory.create(firstUe + index));
+        Simulation.connectUeToGnb(ue, gnbs[index % gnbs.length]);
+        startUe(ue);
+        return ue;
+    }
+
+    private void startUe(UeSimContext ue) {
+        Simulation.registerUe(simCtx, ue);
+        if (simCtx.mockedAmf.isInUse()) {
+            // Added right away, otherwise each arriving UE would make the mocked AMF index the whole population
+            simCtx.mockedAmf.addSubscriber(ue.ueConfig);
+        }
+        UeNode.run(ue);
+    }
+
+    private static EProcedure procedureOf(String command) {
+        var procedure = EventParser.procedureOf(command);
+        if (procedure == null) {
+            throw new IllegalArgumentException("unsupported load procedure: " + command);
+        }
+        return procedure;
+    }
+
+    private class ArrivalTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            long elapsed = simCtx.timingWheel.getClock().millis() - startMillis;
+
+            while (launched < ueCount && nextArrival <= elapsed) {
+                var ue = createUe(launched++);
+                completionListener.launched(ue);
+                if (pacer != null) {
+                    pacer.submit(ue, config.procedure, procedure);
+                } else {
+                    ue.pushEvent(new UeCommandEvent(config.procedure));
+                }
+                nextArrival = profile.nextArrival();
+            }
+
+            if (launched < ueCount) {
+                simCtx.timingWheel.schedule(this, Math.max(1, (long) Math.ceil(nextArrival - elapsed)));
+            } else {
+                Logging.info(Tag.SYSTEM, "All %d UEs have been launched", launched);
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot and completes the run. It is a timer so that the snapshot is written by the thread advancing
+     * the wheel, outside of the loopers, and in the discrete event mode between two node runs.
+     */
+    private class SnapshotTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            writeSnapshot();
+            completion.countDown();
+        }
+    }
+
+    /**
+     * Counts the UEs that have finished the configured procedure. Only the first finish of each UE launched by the
+     * generator is counted, so retries, re-registrations and procedures started by other means do not complete the
+     * run early.
+     */
+    private class CompletionListener implements IProcedureListener {
+        private final BitSet launchedUes = new BitSet();
+        private final BitSet finishedUes = new BitSet();
+        private int finished;
+
+        private synchronized void launched(UeSimContext ue) {
+            launchedUes.set(ue.nodeId);
+        }
+
+        private synchronized boolean finished(UeSimContext ue) {
+            if (!launchedUes.get(ue.nodeId) || finishedUes.get(ue.nodeId)) {
+                return false;
+            }
+            finishedUes.set(ue.nodeId);
+            return ++finished == ueCount;
+        }
+
+        @Override
+        public void onProcedureStarted(UeSimContext ue, EProcedure procedure) {
+        }
+
+        @Override
+        public void onProcedureFinished(UeSimContext ue, EProcedure procedure, EProcedureResult result,
+                                        long latencyNanos) {
+            if (procedure != LoadGenerator.this.procedure) {
+                return;
+            }
+            if (finished(ue)) {
+                Simulation.removeProcedureListener(simCtx, this);
+                if (pacer != null) {
+                    pacer.stop();
+                }
+                var summary = summary();
+                Logging.info(Tag.PROCEDURE_RESULT, "%s", summary);
+                System.out.print(summary);
+                if (config.snapshotFile != null && !config.snapshotFile.isEmpty()) {
+                    // The procedure is finished in a looper, which cannot wait for the other loopers to pause
+                    simCtx.timingWheel.schedule(new SnapshotTimer(), 0);
+                } else {
+                    completion.countDown();
+                }
+            }
+        }
+    }
+}
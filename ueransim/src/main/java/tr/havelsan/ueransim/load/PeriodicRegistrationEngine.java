@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.api.sys.IProcedureListener;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.events.gnb.GnbUeContextReleaseEvent;
+import tr.havelsan.ueransim.ngap2.NgapCause;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the registered UEs in CM-IDLE state and lets them perform periodic registration updates on T3512 expiry.
+ * <p>
+ * After the initial registration of a UE, T3512 is restarted with a uniformly random phase within its interval, so
+ * that a population registered in a burst does not also expire in a burst. Periodic updates are then rescheduled
+ * with a small jitter. After each successful registration the serving gNB is asked to release the UE context, and
+ * the UE falls back to its compact dormant form until the next expiry.
+ */
+public class PeriodicRegistrationEngine implements IProcedureListener {
+
+    private final SimulationContext simCtx;
+    private final double jitterRatio;
+    private final long reportIntervalMillis;
+
+    private final AtomicLong started;
+    private final AtomicLong succeeded;
+    private final AtomicLong failed;
+    private final AtomicLong timedOut;
+    private final AtomicLong totalLatencyNanos;
+    private final AtomicLong maxLatencyNanos;
+    private final ReportTimer reportTimer;
+
+    private volatile long startTime;
+
+    /**
+     * @param jitterRatio          random variation applied to each periodic interval, e.g. 0.05 for ±5%
+     * @param reportIntervalMillis interval of the periodic report, zero to disable
+     */
+    public PeriodicRegistrationEngine(SimulationContext simCtx, double jitterRatio, long reportIntervalMillis) {
+        if (jitterRatio < 0 || jitterRatio >= 1) {
+            throw new IllegalArgumentException("jitterRatio must be in [0, 1)");
+        }
+        this.simCtx = simCtx;
+        this.jitterRatio = jitterRatio;
+        this.reportIntervalMillis = reportIntervalMillis;
+        this.started = new AtomicLong();
+        this.succeeded = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.timedOut = new AtomicLong();
+        this.totalLatencyNanos = new AtomicLong();
+        this.maxLatencyNanos = new AtomicLong();
+        this.reportTimer = new ReportTimer();
+    }
+
+    public void start() {
+        startTime = simCtx.nanoTime();
+        Simulation.addProcedureListener(simCtx, this);
+
+        if (reportIntervalMillis > 0) {
+            simCtx.timingWheel.schedule(reportTimer, reportIntervalMillis);
+        }
+    }
+
+    public void stop() {
+        Simulation.removeProcedureListener(simCtx, this);
+        simCtx.timingWheel.cancel(reportTimer);
+    }
+
+    @Override
+    public void onProcedureStarted(UeSimContext ue, EProcedure procedure) {
+        if (procedure == EProcedure.PERIODIC_REGISTRATION) {
+            started.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onProcedureFinished(UeSimContext ue, EProcedure procedure, EProcedureResult result, long latencyNanos) {
+        if (procedure != EProcedure.INITIAL_REGISTRATION && procedure != EProcedure.PERIODIC_REGISTRATION) {
+            return;
+        }
+
+        if (procedure == EProcedure.PERIODIC_REGISTRATION) {
+            switch (result) {
+                case SUCCESS:
+                    succeeded.incrementAndGet();
+                    totalLatencyNanos.addAndGet(latencyNanos);
+                    maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+                    break;
+                case FAILURE:
+                    failed.incrementAndGet();
+                    break;
+                case TIMEOUT:
+                    timedOut.incrementAndGet();
+                    break;
+            }
+        }
+
+        if (result != EProcedureResult.SUCCESS) {
+            return;
+        }
+
+        var t3512 = ue.ueTimers.t3512();
+        if (t3512.isRunning()) {
+            long intervalMillis = t3512.getInterval() * 1000L;
+            var random = simCtx.random();
+
+            if (procedure == EProcedure.INITIAL_REGISTRATION) {
+                t3512.startAfter(1 + (long) (random.nextDouble() * intervalMillis));
+            } else if (jitterRatio > 0) {
+                double factor = 1.0 + (random.nextDouble() * 2.0 - 1.0) * jitterRatio;
+                t3512.startAfter((long) (intervalMillis * factor));
+            }
+        }
+
+        if (ue.connectedGnb != null) {
+            ue.connectedGnb.pushEvent(
+                    new GnbUeContextReleaseEvent(ue.ctxId, NgapCause.RADIO_NETWORK__USER_INACTIVITY));
+        }
+    }
+
+    public long getStartedCount() {
+        return started.get();
+    }
+
+    public long getSucceededCount() {
+        return succeeded.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    /**
+     * Returns the achieved rate of successful periodic registration updates per second since the start.
+     */
+    public double getAchievedRate() {
+        double elapsedSeconds = (simCtx.nanoTime() - startTime) / 1e9;
+        return elapsedSeconds > 0 ? succeeded.get() / elapsedSeconds : 0;
+    }
+
+    public double getAverageLatencyMillis() {
+        long count = succeeded.get();
+        return count > 0 ? totalLatencyNanos.get() / 1e6 / count : 0;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    public String report() {
+        return String.format("periodic registration: started=%d succeeded=%d failed=%d timedOut=%d " +
+                        "rate=%.2f/s avgLatency=%.2fms maxLatency=%.2fms",
+                getStartedCount(), getSucceededCount(), getFailedCount(), getTimedOutCount(),
+                getAchievedRate(), getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+
+    private class ReportTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            if (generation != getGeneration()) {
+                return; // stopped
+            }
+            Logging.info(Tag.PROCEDURE_RESULT, "%s", report());
+            simCtx.timingWheel.schedule(this, reportIntervalMillis);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.api.sys.IProcedureListener;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+import tr.havelsan.ueransim.structs.PacerConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits UE procedure starts through a global token bucket, a token bucket per gNB and a cap on the number of
+ * procedures in flight.
+ * <p>
+ * Submitted commands wait in a queue per gNB, and the queues are served in round-robin order on every tick of the
+ * timing wheel. In closed-loop mode the global rate is adjusted periodically: it is decreased multiplicatively when
+ * the p99 completion latency or the failure rate of the last interval exceeds its threshold, and increased
+ * additively otherwise, never exceeding the configured global rate.
+ * <p>
+ * A procedure releases its in-flight slot when it is reported as finished, or after {@link #IN_FLIGHT_TIMEOUT_MILLIS}
+ * if it ends without being reported, so that such procedures can not stop the admission.
+ */
+public class ProcedurePacer implements IProcedureListener {
+
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final double INCREASE_RATIO = 0.05;
+    private static final int MAX_LATENCY_SAMPLES = 8192;
+    // Longer than the guard timers of the paced procedures (e.g. 15 s of T3510), which report a finish on expiry
+    private static final long IN_FLIGHT_TIMEOUT_MILLIS = 30_000;
+
+    private final SimulationContext simCtx;
+    private final PacerConfig config;
+    private final TokenBucket globalBucket;
+    private final HashMap<GnbSimContext, TokenBucket> gnbBuckets;
+    private final HashMap<GnbSimContext, ArrayDeque<Pending>> gnbQueues;
+    private final ArrayDeque<GnbSimContext> gnbOrder;
+    private final ConcurrentLinkedQueue<Pending> inbox;
+    private final ConcurrentHashMap<UUID, InFlight> inFlight;
+    private final ArrayDeque<InFlight> inFlightDeadlines;
+    private final AtomicInteger inFlightCount;
+    private final AdmissionTimer admissionTimer;
+    private final AdjustTimer adjustTimer;
+
+    private final long[] latencySamples;
+    private int latencySampleCount;
+    private long windowFinished;
+    private long windowFailed;
+
+    public ProcedurePacer(SimulationContext simCtx, PacerConfig config) {
+        if (config.maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.simCtx = simCtx;
+        this.config = config;
+
+        var clock = simCtx.timingWheel.getClock();
+        double burst = Math.max(1, config.burst);
+        this.globalBucket = new TokenBucket(clock, config.globalRate, burst);
+        this.gnbBuckets = new HashMap<>();
+        this.gnbQueues = new HashMap<>();
+        this.gnbOrder = new ArrayDeque<>();
+        this.inbox = new ConcurrentLinkedQueue<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.inFlightDeadlines = new ArrayDeque<>();
+        this.inFlightCount = new AtomicInteger();
+        this.admissionTimer = new AdmissionTimer();
+        this.adjustTimer = new AdjustTimer();
+        this.latencySamples = new long[MAX_LATENCY_SAMPLES];
+    }
+
+    public void start() {
+        Simulation.addProcedureListener(simCtx, this);
+        simCtx.timingWheel.schedule(admissionTimer, simCtx.timingWheel.getTickMillis());
+        if (config.closedLoop) {
+            simCtx.timingWheel.schedule(adjustTimer, config.adjustInterval);
+        }
+    }
+
+    public void stop() {
+        Simulation.removeProcedureListener(simCtx, this);
+        simCtx.timingWheel.cancel(admissionTimer);
+        simCtx.timingWheel.cancel(adjustTimer);
+    }
+
+    /**
+     * Queues the given UE command to be pushed to the UE when admitted. Can be called from any thread.
+     */
+    public void submit(UeSimContext ue, String command, EProcedure procedure) {
+        inbox.add(new Pending(ue, command, procedure));
+    }
+
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    public double getCurrentRate() {
+        return globalBucket.getRate();
+    }
+
+    @Override
+    public void onProcedureStarted(UeSimContext ue, EProcedure procedure) {
+    }
+
+    @Override
+    public void onProcedureFinished(UeSimContext ue, EProcedure procedure, EProcedureResult result, long latencyNanos) {
+        var entry = inFlight.get(ue.ctxId);
+        if (entry == null || entry.procedure != procedure || !inFlight.remove(ue.ctxId, entry)) {
+            return;
+        }
+        inFlightCount.decrementAndGet();
+        recordFinish(result, latencyNanos);
+    }
+
+    private void recordFinish(EProcedureResult result, long latencyNanos) {
+        if (config.closedLoop) {
+            synchronized (latencySamples) {
+                windowFinished++;
+                if (result == EProcedureResult.SUCCESS) {
+                    if (latencySampleCount < latencySamples.length) {
+                        latencySamples[latencySampleCount++] = latencyNanos;
+                    }
+                } else {
+                    windowFailed++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the slots of the procedures admitted before the in-flight timeout that are still not finished. The
+     * deadlines are in admission order, since the timeout is the same for all procedures.
+     */
+    private void expireInFlight() {
+        long now = simCtx.timingWheel.getClock().millis();
+
+        InFlight entry;
+        while ((entry = inFlightDeadlines.peek()) != null && entry.deadline <= now) {
+            inFlightDeadlines.poll();
+            if (inFlight.remove(entry.ctxId, entry)) {
+                inFlightCount.decrementAndGet();
+                recordFinish(EProcedureResult.TIMEOUT, 0);
+                Logging.warning(Tag.PROCEDURE_RESULT, "Pacer released the slot of unfinished %s after %d ms",
+                        entry.procedure, IN_FLIGHT_TIMEOUT_MILLIS);
+            }
+        }
+    }
+
+    private void admit() {
+        expireInFlight();
+
+        Pending pending;
+        while ((pending = inbox.poll()) != null) {
+            var gnb = pending.ue.connectedGnb;
+            var queue = gnbQueues.get(gnb);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                gnbQueues.put(gnb, queue);
+                gnbBuckets.put(gnb, new TokenBucket(simCtx.timingWheel.getClock(), config.gnbRate,
+                        Math.max(1, config.burst)));
+                gnbOrder.add(gnb);
+            }
+            queue.add(pending);
+        }
+
+        // Serve the gNB queues in round-robin order, until the global limits are hit or no gNB can admit.
+        int idleRounds = 0;
+        while (idleRounds < gnbOrder.size() && inFlightCount.get() < config.maxInFlight) {
+            var gnb = gnbOrder.poll();
+            gnbOrder.add(gnb);
+
+            var queue = gnbQueues.get(gnb);
+            if (queue.isEmpty() || !gnbBuckets.get(gnb).tryAcquire()) {
+                idleRounds++;
+                continue;
+            }
+            if (!globalBucket.tryAcquire()) {
+                gnbBuckets.get(gnb).release();
+                break;
+            }
+
+            idleRounds = 0;
+            var next = queue.poll();
+            var entry = new InFlight(next.ue.ctxId, next.procedure,
+                    simCtx.timingWheel.getClock().millis() + IN_FLIGHT_TIMEOUT_MILLIS);
+            if (inFlight.putIfAbsent(next.ue.ctxId, entry) == null) {
+                inFlightCount.incrementAndGet();
+                inFlightDeadlines.add(entry);
+            }
+            next.ue.pushEvent(new UeCommandEvent(next.command));
+        }
+    }
+
+    private void adjust() {
+        long[] samples;
+        long finished, failed;
+        synchronized (latencySamples) {
+            samples = Arrays.copyOf(latencySamples, latencySampleCount);
+            finished = windowFinished;
+            failed = windowFailed;
+            latencySampleCount = 0;
+            windowFinished = 0;
+            windowFailed = 0;
+        }
+        if (finished == 0) {
+            return;
+        }
+
+        double p99Millis = 0;
+        if (samples.length > 0) {
+            Arrays.sort(samples);
+            p99Millis = samples[Math.min(samples.length - 1, (int) Math.ceil(samples.length * 0.99) - 1)] / 1e6;
+        }
+        double failureRate = (double) failed / finished;
+
+        double rate = globalBucket.getRate();
+        double newRate;
+        if (p99Millis > config.p99Threshold || failureRate > config.failureThreshold) {
+            newRate = Math.max(config.minRate, rate * DECREASE_FACTOR);
+        } else {
+            newRate = Math.min(config.globalRate, rate + config.globalRate * INCREASE_RATIO);
+        }
+
+        if (newRate != rate) {
+            globalBucket.setRate(newRate);
+            Logging.info(Tag.PROCEDURE_RESULT, "Pacer rate adjusted: %.2f/s -> %.2f/s (p99=%.2fms failureRate=%.3f)",
+                    rate, newRate, p99Millis, failureRate);
+        }
+    }
+
+    private static class Pending {
+        final UeSimContext ue;
+        final String command;
+        final EProcedure procedure;
+
+        Pending(UeSimContext ue, String command, EProcedure procedure) {
+            this.ue = ue;
+            this.command = command;
+            this.procedure = procedure;
+        }
+    }
+
+    private static class InFlight {
+        final UUID ctxId;
+        final EProcedure procedure;
+        final long deadline;
+
+        InFlight(UUID ctxId, EProcedure procedure, long deadline) {
+            this.ctxId = ctxId;
+            this.procedure = procedure;
+            this.deadline = deadline;
+        }
+    }
+
+    private class AdmissionTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            if (generation != getGeneration()) {
+                return; // stopped
+            }
+            admit();
+            simCtx.timingWheel.schedule(this, simCtx.timingWheel.getTickMillis());
+        }
+    }
+
+    private class AdjustTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            if (generation != getGeneration()) {
+                return; // stopped
+            }
+            adjust();
+            simCtx.timingWheel.schedule(this, config.adjustInterval);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.structs.PopulationConfig;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.utils.Utils;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives the configurations of a UE population from a single UE template.
+ * <p>
+ * The template is constructed once, and every UE configuration shares its immutable fields such as the NSSAI,
+ * the user location, SNN, OP and AMF. Only the identity of a UE is materialised, when the UE is created.
+ * <p>
+ * The UE with index i gets the first SUPI and IMEI incremented by i times the step. The first SUPI and IMEI are
+ * taken from the population spec, or from the template if not given. If a key seed is given, the subscriber key
+ * of each UE is derived as the first 128 bits of SHA-256(seed || SUPI), so that the same population can be
+ * provisioned on the core network side. Otherwise if a first key is given, the keys are incremented in the same
+ * way as the SUPI, and all UEs share the template key if neither is given.
+ */
+public class UeConfigFactory {
+
+    private static final String IMSI_PREFIX = "imsi-";
+    private static final int KEY_LENGTH = 16;
+
+    private final UeConfig template;
+    private final long baseMsin;
+    private final int msinLength;
+    private final long maxMsin;
+    private final long baseImei;
+    private final long step;
+    private final String keySeed;
+    private final BigInteger baseKey;
+
+    public UeConfigFactory(ImplicitTypedObject template, String keySeed, PopulationConfig population) {
+        var supi = population != null && population.supiStart != null
+                ? population.supiStart : template.getString("supi");
+        if (supi == null || !supi.startsWith(IMSI_PREFIX)) {
+            throw new IllegalArgumentException("UE population must have an IMSI type SUPI");
+        }
+        var imei = population != null && population.imeiStart != null
+                ? population.imeiStart : template.getString("imei");
+        if (imei == null || imei.length() != 15) {
+            throw new IllegalArgumentException("UE population must have a 15 digit IMEI");
+        }
+        var keyStart = population != null && population.keyStart != null && !population.keyStart.isEmpty()
+                ? population.keyStart : null;
+        if (keyStart != null && keyStart.length() != 2 * KEY_LENGTH) {
+            throw new IllegalArgumentException("UE population must have a 128 bit first key");
+        }
+
+        this.template = template.asConstructed(UeConfig.class);
+        this.baseMsin = Long.parseLong(supi.substring(IMSI_PREFIX.length()));
+        this.msinLength = supi.length() - IMSI_PREFIX.length();
+        this.maxMsin = msinLength >= 18 ? Long.MAX_VALUE : pow10(msinLength) - 1;
+        this.baseImei = Long.parseLong(imei.substring(0, 14));
+        this.step = population != null && population.step != null ? population.step : 1;
+        this.keySeed = keySeed != null && keySeed.isEmpty() ? null : keySeed;
+        this.baseKey = keyStart != null ? new BigInteger(keyStart, 16) : null;
+
+        if (step <= 0) {
+            throw new IllegalArgumentException("UE population step must be positive");
+        }
+    }
+
+    /**
+     * Returns the configuration constructed from the template, which is shared by all the UEs.
+     */
+    public UeConfig getTemplate() {
+        return template;
+    }
+
+    public UeConfig create(int index) {
+        long offset = index * step;
+
+        long msin = baseMsin + offset;
+        if (msin > maxMsin) {
+            throw new IllegalArgumentException("SUPI range exhausted for index: " + index);
+        }
+        var msinString = Utils.padLeft(Long.toString(msin), msinLength, '0');
+
+        OctetString key = null;
+        if (keySeed != null) {
+            key = new OctetString(deriveKey(keySeed, IMSI_PREFIX + msinString));
+        } else if (baseKey != null) {
+            key = new OctetString(keyOf(baseKey.add(BigInteger.valueOf(offset))));
+        }
+
+        return template.withIdentity(new Supi("imsi", msinString), imei(offset), key);
+    }
+
+    private String imei(long offset) {
+        var body = Utils.padLeft(Long.toString((baseImei + offset) % 100_000_000_000_000L), 14, '0');
+        return body + luhnDigit(body);
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    static byte[] keyOf(BigInteger value) {
+        var bytes = value.toByteArray();
+        var key = new byte[KEY_LENGTH];
+        int length = Math.min(bytes.length, KEY_LENGTH);
+        System.arraycopy(bytes, bytes.length - length, key, KEY_LENGTH - length, length);
+        return key;
+    }
+
+    public static int luhnDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int d = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    static byte[] deriveKey(String seed, String supi) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(seed.getBytes(StandardCharsets.UTF_8));
+            digest.update(supi.getBytes(StandardCharsets.UTF_8));
+            var hash = digest.digest();
+            var key = new byte[KEY_LENGTH];
+            System.arraycopy(hash, 0, key, 0, key.length);
+            return key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}.
+ */
+public class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the maximum value recorded since the creation of the histogram.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Returns the value at the given percentile, e.g. 99.9, as the highest value of the bucket it falls into.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the upper bound of each non-empty bucket and its count, in the order of increasing values. Used by the
+     * metric exporters.
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(LatencyHistogram.highestValueOf(i), counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the recordings between the given earlier snapshot and this one.
+     */
+    public HistogramSnapshot minus(HistogramSnapshot earlier) {
+        var diff = new long[counts.length];
+        long diffCount = 0;
+        for (int i = 0; i < diff.length; i++) {
+            diff[i] = counts[i] - earlier.counts[i];
+            diffCount += diff[i];
+        }
+        return new HistogramSnapshot(diff, diffCount, sum - earlier.sum, max);
+    }
+
+    /**
+     * Returns the recordings of this snapshot and the given one together, e.g. to aggregate the histograms of several
+     * processes.
+     */
+    public HistogramSnapshot plus(HistogramSnapshot other) {
+        var total = new long[counts.length];
+        for (int i = 0; i < total.length; i++) {
+            total[i] = counts[i] + other.counts[i];
+        }
+        return new HistogramSnapshot(total, count + other.count, sum + other.sum, Math.max(max, other.max));
+    }
+
+    /**
+     * Encodes the snapshot as "sum,max" followed by ",index:count" for each non-empty bucket. The result contains no
+     * whitespace, so that it can be a token of a line based protocol.
+     */
+    public String encode() {
+        var sb = new StringBuilder();
+        sb.append(sum).append(',').append(max);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                sb.append(',').append(i).append(':').append(counts[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a snapshot encoded by {@link #encode()}.
+     */
+    public static HistogramSnapshot decode(String encoded) {
+        var fields = encoded.split(",");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("invalid histogram: " + encoded);
+        }
+        var counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long count = 0;
+        for (int i = 2; i < fields.length; i++) {
+            int separator = fields[i].indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("invalid histogram bucket: " + fields[i]);
+            }
+            int index = Integer.parseInt(fields[i].substring(0, separator));
+            if (index < 0 || index >= counts.length) {
+                throw new IllegalArgumentException("invalid histogram bucket: " + fields[i]);
+            }
+            counts[index] = Long.parseLong(fields[i].substring(separator + 1));
+            count += counts[index];
+        }
+        return new HistogramSnapshot(counts, count, Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+    }
+
+    /**
+     * Returns an empty snapshot.
+     */
+    public static HistogramSnapshot empty() {
+        return new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0, 0);
+    }
+
+    public interface BucketConsumer {
+        void accept(long upperBound, long count);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency recorder with log-linear buckets, in the manner of HdrHistogram.
+ * <p>
+ * Values below 2^SUB_BUCKET_BITS are recorded exactly, larger values with a relative error below
+ * 2^-(SUB_BUCKET_BITS-1), i.e. about 1.6%. Recording is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    /**
+     * Values are clamped to 2^MAX_VALUE_BITS - 1 nanoseconds, which is about 18 minutes.
+     */
+    static final int MAX_VALUE_BITS = 40;
+    static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong totalValue;
+    private final AtomicLong maxValue;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new AtomicLong();
+        this.totalValue = new AtomicLong();
+        this.maxValue = new AtomicLong();
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        if (value > maxValue.get()) {
+            maxValue.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns a copy of the current state. The copy is not atomic with respect to concurrent recordings, but every
+     * recording is either fully included or fully excluded by the bucket counts.
+     */
+    public HistogramSnapshot snapshot() {
+        var copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new HistogramSnapshot(copy, count, totalValue.get(), maxValue.get());
+    }
+
+    /**
+     * Calculates the cumulative count of the recorded values which are not greater than each of the given ascending
+     * thresholds, without allocating. Values within the bucket of a threshold are counted as not greater.
+     */
+    public void cumulativeCounts(long[] thresholds, long[] output) {
+        int index = 0;
+        long cumulative = 0;
+        for (int i = 0; i < thresholds.length; i++) {
+            int lastIndex = indexOf(Math.min(Math.max(thresholds[i], 0), MAX_VALUE));
+            for (; index <= lastIndex; index++) {
+                cumulative += counts.get(index);
+            }
+            output[i] = cumulative;
+        }
+    }
+
+    public long getTotalValue() {
+        return totalValue.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int bucket = msb - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> bucket);
+        return bucket * SUB_BUCKET_HALF + subBucket;
+    }
+
+    /**
+     * Returns the highest value which is recorded into the given bucket index.
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - bucket * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.sctp.SctpStatistics;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes the simulator metrics in OpenMetrics text format on http://127.0.0.1:port/metrics.
+ * <p>
+ * Scrapes are served by a single thread which renders into reused buffers. The node mailboxes are read through
+ * their lock-free counters, so a scrape never blocks the UE and gNB loopers.
+ */
+public class MetricsEndpoint {
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /**
+     * Bucket upper bounds of the exported latency histograms in nanoseconds, and their labels in seconds.
+     */
+    private static final long[] LATENCY_BOUNDS = {
+            100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L,
+            50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L,
+            5_000_000_000L, 10_000_000_000L, 30_000_000_000L
+    };
+    private static final String[] LATENCY_LABELS = {
+            "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025",
+            "0.05", "0.1", "0.25", "0.5", "1.0", "2.5",
+            "5.0", "10.0", "30.0"
+    };
+
+    private final SimulationContext simCtx;
+    private final int port;
+    private final String[] procedureLabels;
+    private final String[] mmStateLabels;
+    private final String[] cmStateLabels;
+    private final StringBuilder text;
+    private final long[] bucketCounts;
+    private final int[] mmStates;
+    private final int[] cmStates;
+    private final long[] ueTotals;
+    private final ThreadMXBean threadBean;
+    private final List<GarbageCollectorMXBean> gcBeans;
+
+    private HttpServer server;
+    private byte[] body;
+
+    public MetricsEndpoint(SimulationContext simCtx, int port) {
+        this.simCtx = simCtx;
+        this.port = port;
+        this.procedureLabels = labels(EProcedure.values());
+        this.mmStateLabels = labels(EMmState.values());
+        this.cmStateLabels = labels(ECmState.values());
+        this.text = new StringBuilder(64 * 1024);
+        this.bucketCounts = new long[LATENCY_BOUNDS.length];
+        this.mmStates = new int[EMmState.values().length];
+        this.cmStates = new int[ECmState.values().length];
+        this.ueTotals = new long[3];
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        this.body = new byte[64 * 1024];
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("already started");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+
+        Logging.info(Tag.SYSTEM, "Metrics endpoint is listening on %s", server.getAddress());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            int length = render();
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, length);
+            exchange.getResponseBody().write(body, 0, length);
+        }
+    }
+
+    /**
+     * Renders all metrics into the reused body buffer, and returns its length.
+     */
+    synchronized int render() {
+        text.setLength(0);
+
+        writeNodes();
+        writeSctp();
+        writeSctpStreams();
+        writeCrypto();
+        writeTimers();
+        writeProcedures();
+        writeMessages();
+        writeUeStates();
+        writeJvm();
+        text.append("# EOF\n");
+
+        // All content is ASCII, except possibly the message type names which are Java identifiers.
+        int length = text.length();
+        if (body.length < length * 3) {
+            body = new byte[length * 3];
+        }
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                body[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                body[pos++] = (byte) (0xC0 | (c >> 6));
+                body[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                body[pos++] = (byte) (0xE0 | (c >> 12));
+                body[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                body[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private void writeNodes() {
+        type("ueransim_gnb_mailbox_depth", "gauge", "Number of events waiting in the gNB mailbox.");
+        Simulation.forEachGnb(simCtx, gnb -> {
+            text.append("ueransim_gnb_mailbox_depth{gnb=\"").append(gnb.config.gnbId).append("\"} ")
+                    .append(gnb.getQueueDepth()).append('\n');
+        });
+        type("ueransim_gnb_events", "counter", "Number of events handled by the gNB.");
+        Simulation.forEachGnb(simCtx, gnb -> {
+            text.append("ueransim_gnb_events_total{gnb=\"").append(gnb.config.gnbId).append("\"} ")
+                    .append(gnb.getProcessedEventCount()).append('\n');
+        });
+
+        // UEs are aggregated, since a series per UE would not be practical for large populations.
+        Arrays.fill(ueTotals, 0);
+        Simulation.forEachUe(simCtx, ue -> {
+            int depth = ue.getQueueDepth();
+            ueTotals[0] += depth;
+            ueTotals[1] = Math.max(ueTotals[1], depth);
+            ueTotals[2] += ue.getProcessedEventCount();
+        });
+        type("ueransim_ue_mailbox_depth", "gauge", "Total number of events waiting in the UE mailboxes.");
+        sample("ueransim_ue_mailbox_depth", ueTotals[0]);
+        type("ueransim_ue_mailbox_depth_max", "gauge", "Largest number of events waiting in a UE mailbox.");
+        sample("ueransim_ue_mailbox_depth_max", ueTotals[1]);
+        type("ueransim_ue_events", "counter", "Number of events handled by all UEs.");
+        sample("ueransim_ue_events_total", ueTotals[2]);
+        type("ueransim_ue_scheduler_ready", "gauge", "Number of UEs waiting for a scheduler worker.");
+        sample("ueransim_ue_scheduler_ready", simCtx.ueScheduler.getReadyCount());
+    }
+
+    private void writeSctp() {
+        type("ueransim_sctp_sent_messages", "counter", "Number of SCTP messages sent per association.");
+        sctpSamples("ueransim_sctp_sent_messages_total", statistics -> statistics.sentMessages.get());
+        type("ueransim_sctp_sent_bytes", "counter", "Number of SCTP payload bytes sent per association.");
+        sctpSamples("ueransim_sctp_sent_bytes_total", statistics -> statistics.sentBytes.get());
+        type("ueransim_sctp_received_messages", "counter", "Number of SCTP messages received per association.");
+        sctpSamples("ueransim_sctp_received_messages_total", statistics -> statistics.receivedMessages.get());
+        type("ueransim_sctp_received_bytes", "counter", "Number of SCTP payload bytes received per association.");
+        sctpSamples("ueransim_sctp_received_bytes_total", statistics -> statistics.receivedBytes.get());
+        type("ueransim_sctp_dropped_messages", "counter", "Number of SCTP messages dropped by loss injection.");
+        sctpSamples("ueransim_sctp_dropped_messages_total", statistics -> statistics.droppedMessages.get());
+        type("ueransim_sctp_rejected_messages", "counter", "Number of SCTP messages rejected by a full send queue.");
+        sctpSamples("ueransim_sctp_rejected_messages_total", statistics -> statistics.rejectedMessages.get());
+    }
+
+    private void writeSctpStreams() {
+        type("ueransim_sctp_stream_sent_messages", "counter", "Number of SCTP messages sent per stream.");
+        Simulation.forEachGnb(simCtx, gnb -> {
+            if (gnb.amfContexts == null) return;
+            for (var amf : gnb.amfContexts) {
+                var statistics = amf.sctpClient.getStatistics();
+                for (int stream = 0; stream < statistics.getOutboundStreams(); stream++) {
+                    sctpStreamSample("ueransim_sctp_stream_sent_messages_total", gnb.config.gnbId,
+                            amf.associationId, stream, statistics.getSentMessages(stream));
+                }
+            }
+        });
+        type("ueransim_sctp_stream_received_messages", "counter", "Number of SCTP messages received per stream.");
+        Simulation.forEachGnb(simCtx, gnb -> {
+            if (gnb.amfContexts == null) return;
+            for (var amf : gnb.amfContexts) {
+                var statistics = amf.sctpClient.getStatistics();
+                for (int stream = 0; stream < statistics.getInboundStreams(); stream++) {
+                    sctpStreamSample("ueransim_sctp_stream_received_messages_total", gnb.config.gnbId,
+                            amf.associationId, stream, statistics.getReceivedMessages(stream));
+                }
+            }
+        });
+    }
+
+    private void sctpSamples(String name, ToLongFunction<SctpStatistics> value) {
+        Simulation.forEachGnb(simCtx, gnb -> {
+            if (gnb.amfContexts == null) return;
+            for (var amf : gnb.amfContexts) {
+                text.append(name).append("{gnb=\"").append(gnb.config.gnbId).append("\",amf=\"")
+                        .append(amf.associationId).append("\"} ")
+                        .append(value.applyAsLong(amf.sctpClient.getStatistics())).append('\n');
+            }
+        });
+    }
+
+    private void sctpStreamSample(String name, int gnbId, int associationId, int stream, long value) {
+        text.append(name).append("{gnb=\"").append(gnbId).append("\",amf=\"").append(associationId)
+                .append("\",stream=\"").append(stream).append("\"} ").append(value).append('\n');
+    }
+
+    private void writeCrypto() {
+        var pool = simCtx.cryptoPool;
+        type("ueransim_crypto_jobs_submitted", "counter", "Number of crypto jobs submitted.");
+        sample("ueransim_crypto_jobs_submitted_total", pool.getSubmittedCount());
+        type("ueransim_crypto_jobs_completed", "counter", "Number of crypto jobs completed.");
+        sample("ueransim_crypto_jobs_completed_total", pool.getCompletedCount());
+        type("ueransim_crypto_jobs_failed", "counter", "Number of crypto jobs that threw an exception.");
+        sample("ueransim_crypto_jobs_failed_total", pool.getFailedCount());
+        type("ueransim_crypto_jobs_inline", "counter", "Number of crypto jobs executed by the caller on overload.");
+        sample("ueransim_crypto_jobs_inline_total", pool.getExecutedInlineCount());
+        type("ueransim_crypto_queue_depth", "gauge", "Number of crypto jobs waiting for a worker.");
+        sample("ueransim_crypto_queue_depth", pool.getQueueDepth());
+        type("ueransim_crypto_queue_wait_seconds", "counter", "Total queue waiting time of crypto jobs.");
+        seconds("ueransim_crypto_queue_wait_seconds_total", pool.getTotalQueueWaitNanos());
+        type("ueransim_crypto_compute_seconds", "counter", "Total computation time of crypto jobs.");
+        seconds("ueransim_crypto_compute_seconds_total", pool.getTotalComputeNanos());
+    }
+
+    private void writeTimers() {
+        type("ueransim_timers_pending", "gauge", "Number of timers scheduled in the timing wheel.");
+        sample("ueransim_timers_pending", simCtx.timingWheel.size());
+    }
+
+    private void writeProcedures() {
+        var procedures = EProcedure.values();
+
+        type("ueransim_procedure_started", "counter", "Number of started procedures.");
+        for (var procedure : procedures) {
+            procedureSample("ueransim_procedure_started_total", procedure,
+                    simCtx.metrics.procedure(procedure).started.sum());
+        }
+        type("ueransim_procedure_succeeded", "counter", "Number of successful procedures.");
+        for (var procedure : procedures) {
+            procedureSample("ueransim_procedure_succeeded_total", procedure,
+                    simCtx.metrics.procedure(procedure).succeeded.sum());
+        }
+        type("ueransim_procedure_failed", "counter", "Number of failed procedures.");
+        for (var procedure : procedures) {
+            procedureSample("ueransim_procedure_failed_total", procedure,
+                    simCtx.metrics.procedure(procedure).failed.sum());
+        }
+        type("ueransim_procedure_timed_out", "counter", "Number of timed out procedures.");
+        for (var procedure : procedures) {
+            procedureSample("ueransim_procedure_timed_out_total", procedure,
+                    simCtx.metrics.procedure(procedure).timedOut.sum());
+        }
+
+        type("ueransim_procedure_latency_seconds", "histogram", "Completion latency of procedures.");
+        for (var procedure : procedures) {
+            var histogram = simCtx.metrics.procedure(procedure).latency;
+            long count = histogram.getCount();
+            long sum = histogram.getTotalValue();
+            histogram.cumulativeCounts(LATENCY_BOUNDS, bucketCounts);
+
+            var label = procedureLabels[procedure.ordinal()];
+            for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+                text.append("ueransim_procedure_latency_seconds_bucket{procedure=\"").append(label)
+                        .append("\",le=\"").append(LATENCY_LABELS[i]).append("\"} ")
+                        .append(Math.min(bucketCounts[i], count)).append('\n');
+            }
+            text.append("ueransim_procedure_latency_seconds_bucket{procedure=\"").append(label)
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            text.append("ueransim_procedure_latency_seconds_count{procedure=\"").append(label).append("\"} ")
+                    .append(count).append('\n');
+            text.append("ueransim_procedure_latency_seconds_sum{procedure=\"").append(label).append("\"} ");
+            appendSeconds(sum);
+            text.append('\n');
+        }
+    }
+
+    private void procedureSample(String name, EProcedure procedure, long value) {
+        text.append(name).append("{procedure=\"").append(procedureLabels[procedure.ordinal()]).append("\"} ")
+                .append(value).append('\n');
+    }
+
+    private void writeMessages() {
+        var messages = simCtx.metrics.messages();
+
+        type("ueransim_messages_sent", "counter", "Number of NAS and NGAP messages sent per type.");
+        for (var message : messages) {
+            messageSample("ueransim_messages_sent_total", message, message.sent.sum());
+        }
+        type("ueransim_messages_received", "counter", "Number of NAS and NGAP messages received per type.");
+        for (var message : messages) {
+            messageSample("ueransim_messages_received_total", message, message.received.sum());
+        }
+        type("ueransim_message_handling_seconds", "counter", "Total handling time of received messages per type.");
+        for (var message : messages) {
+            text.append("ueransim_message_handling_seconds_total{protocol=\"").append(message.protocol)
+                    .append("\",type=\"").append(message.type).append("\"} ");
+            appendSeconds(message.handlingTime.getTotalValue());
+            text.append('\n');
+        }
+    }
+
+    private void messageSample(String name, MessageMetrics message, long value) {
+        text.append(name).append("{protocol=\"").append(message.protocol).append("\",type=\"")
+                .append(message.type).append("\"} ").append(value).append('\n');
+    }
+
+    private void writeUeStates() {
+        Arrays.fill(mmStates, 0);
+        Arrays.fill(cmStates, 0);
+        Simulation.forEachUe(simCtx, ue -> {
+            mmStates[ue.mmCtx.mmState.ordinal()]++;
+            cmStates[ue.mmCtx.cmState.ordinal()]++;
+        });
+
+        type("ueransim_ue_mm_state", "gauge", "Number of UEs per 5GMM state.");
+        for (int i = 0; i < mmStates.length; i++) {
+            text.append("ueransim_ue_mm_state{state=\"").append(mmStateLabels[i]).append("\"} ")
+                    .append(mmStates[i]).append('\n');
+        }
+        type("ueransim_ue_cm_state", "gauge", "Number of UEs per 5GMM connection management state.");
+        for (int i = 0; i < cmStates.length; i++) {
+            text.append("ueransim_ue_cm_state{state=\"").append(cmStateLabels[i]).append("\"} ")
+                    .append(cmStates[i]).append('\n');
+        }
+    }
+
+    private void writeJvm() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            var bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                long total = 0;
+                for (long allocated : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+                    if (allocated > 0) {
+                        total += allocated;
+                    }
+                }
+                type("ueransim_jvm_allocated_bytes", "counter", "Bytes allocated by the live threads.");
+                sample("ueransim_jvm_allocated_bytes_total", total);
+            }
+        }
+
+        type("ueransim_jvm_gc_collections", "counter", "Number of garbage collections per collector.");
+        for (var gc : gcBeans) {
+            text.append("ueransim_jvm_gc_collections_total{gc=\"").append(gc.getName()).append("\"} ")
+                    .append(Math.max(0, gc.getCollectionCount())).append('\n');
+        }
+        type("ueransim_jvm_gc_seconds", "counter", "Accumulated garbage collection time per collector.");
+        for (var gc : gcBeans) {
+            text.append("ueransim_jvm_gc_seconds_total{gc=\"").append(gc.getName()).append("\"} ");
+            appendSeconds(Math.max(0, gc.getCollectionTime()) * 1_000_000L);
+            text.append('\n');
+        }
+
+        long firstNgSetup = simCtx.metrics.getTimeToFirstNgSetupMillis();
+        if (firstNgSetup >= 0) {
+            type("ueransim_startup_first_ng_setup_seconds", "gauge",
+                    "Time from the JVM start to the first successful NG setup.");
+            seconds("ueransim_startup_first_ng_setup_seconds", firstNgSetup * 1_000_000L);
+        }
+    }
+
+    private void type(String name, String type, String help) {
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void sample(String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void seconds(String name, long nanos) {
+        text.append(name).append(' ');
+        appendSeconds(nanos);
+        text.append('\n');
+    }
+
+    /**
+     * Appends the given nanoseconds as seconds with nanosecond precision, without going through double formatting.
+     */
+    private void appendSeconds(long nanos) {
+        text.append(nanos / 1_000_000_000L).append('.');
+        long fraction = nanos % 1_000_000_000L;
+        for (long div = 100_000_000L; div > 0; div /= 10) {
+            text.append((char) ('0' + (fraction / div) % 10));
+        }
+    }
+
+    private static String[] labels(Enum<?>[] values) {
+        var labels = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            labels[i] = values[i].name().toLowerCase(Locale.ROOT);
+        }
+        return labels;
+    }
+}
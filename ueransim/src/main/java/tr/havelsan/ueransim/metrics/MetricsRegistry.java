@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import tr.havelsan.ueransim.enums.EProcedure;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the metrics of a simulation. Lookups on the messaging paths are lock-free and do not allocate after the
+ * first use of a message type.
+ */
+public class MetricsRegistry {
+
+    private final EnumMap<EProcedure, ProcedureMetrics> procedures;
+    private final ConcurrentHashMap<Class<?>, MessageMetrics> nasMessages;
+    private final ConcurrentHashMap<Class<?>, MessageMetrics> ngapMessages;
+    private final AtomicLong timeToFirstNgSetupMillis;
+
+    public MetricsRegistry() {
+        this.procedures = new EnumMap<>(EProcedure.class);
+        for (var procedure : EProcedure.values()) {
+            procedures.put(procedure, new ProcedureMetrics());
+        }
+        this.nasMessages = new ConcurrentHashMap<>();
+        this.ngapMessages = new ConcurrentHashMap<>();
+        this.timeToFirstNgSetupMillis = new AtomicLong(-1);
+    }
+
+    public ProcedureMetrics procedure(EProcedure procedure) {
+        return procedures.get(procedure);
+    }
+
+    public MessageMetrics nasMessage(Class<?> type) {
+        return message(nasMessages, "nas", type);
+    }
+
+    public MessageMetrics ngapMessage(Class<?> type) {
+        return message(ngapMessages, "ngap", type);
+    }
+
+    /**
+     * Records a successful NG setup. Returns true if it is the first one, whose time since the JVM start is then
+     * available from {@link #getTimeToFirstNgSetupMillis()}.
+     */
+    public boolean recordNgSetupSucceeded() {
+        if (timeToFirstNgSetupMillis.get() >= 0) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        return timeToFirstNgSetupMillis.compareAndSet(-1, elapsed);
+    }
+
+    /**
+     * Returns the time from the JVM start to the first successful NG setup, or -1 if there is none yet.
+     */
+    public long getTimeToFirstNgSetupMillis() {
+        return timeToFirstNgSetupMillis.get();
+    }
+
+    /**
+     * Returns the metrics of all message types seen so far.
+     */
+    public List<MessageMetrics> messages() {
+        var list = new ArrayList<MessageMetrics>(nasMessages.size() + ngapMessages.size());
+        list.addAll(nasMessages.values());
+        list.addAll(ngapMessages.values());
+        return list;
+    }
+
+    private static MessageMetrics message(ConcurrentHashMap<Class<?>, MessageMetrics> map, String protocol,
+                                          Class<?> type) {
+        var metrics = map.get(type);
+        if (metrics == null) {
+            metrics = map.computeIfAbsent(type, t -> new MessageMetrics(protocol, t.getSimpleName()));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.EnumMap;
+
+/**
+ * Periodically logs an interval snapshot of the simulation metrics: the throughput and p50/p99/p999 latency of each
+ * procedure within the last interval, the message counters and the number of UEs per MM and CM state.
+ */
+public class MetricsReporter {
+
+    private final SimulationContext simCtx;
+    private final long intervalMillis;
+    private final ReportTimer reportTimer;
+    private final EnumMap<EProcedure, HistogramSnapshot> previous;
+
+    private long previousTime;
+
+    public MetricsReporter(SimulationContext simCtx, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        this.simCtx = simCtx;
+        this.intervalMillis = intervalMillis;
+        this.reportTimer = new ReportTimer();
+        this.previous = new EnumMap<>(EProcedure.class);
+    }
+
+    public void start() {
+        synchronized (previous) {
+            for (var procedure : EProcedure.values()) {
+                previous.put(procedure, simCtx.metrics.procedure(procedure).latency.snapshot());
+            }
+            previousTime = System.nanoTime();
+        }
+        simCtx.timingWheel.schedule(reportTimer, intervalMillis);
+    }
+
+    public void stop() {
+        simCtx.timingWheel.cancel(reportTimer);
+    }
+
+    /**
+     * Returns the report of the interval since the previous call, and starts a new interval.
+     */
+    public String intervalReport() {
+        var sb = new StringBuilder();
+
+        synchronized (previous) {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - previousTime) / 1e9);
+            previousTime = now;
+
+            sb.append(String.format("Metrics of the last %.1fs:%n", seconds));
+            for (var procedure : EProcedure.values()) {
+                var metrics = simCtx.metrics.procedure(procedure);
+                if (metrics.started.sum() == 0) {
+                    continue;
+                }
+                var snapshot = metrics.latency.snapshot();
+                var interval = snapshot.minus(previous.put(procedure, snapshot));
+                sb.append(String.format("  %s: %.2f/s p50=%.2fms p99=%.2fms p999=%.2fms | total started=%d " +
+                                "succeeded=%d failed=%d timedOut=%d%n",
+                        procedure, interval.getCount() / seconds,
+                        interval.getValueAtPercentile(50) / 1e6,
+                        interval.getValueAtPercentile(99) / 1e6,
+                        interval.getValueAtPercentile(99.9) / 1e6,
+                        metrics.started.sum(), metrics.succeeded.sum(), metrics.failed.sum(), metrics.timedOut.sum()));
+            }
+        }
+
+        appendMessages(sb);
+        appendUeStates(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the report of all procedures since the start of the simulation.
+     */
+    public static String summary(MetricsRegistry registry) {
+        var sb = new StringBuilder();
+        for (var procedure : EProcedure.values()) {
+            var metrics = registry.procedure(procedure);
+            if (metrics.started.sum() == 0) {
+                continue;
+            }
+            appendProcedure(sb, procedure, metrics.started.sum(), metrics.succeeded.sum(), metrics.failed.sum(),
+                    metrics.timedOut.sum(), metrics.latency.snapshot());
+        }
+        long firstNgSetup = registry.getTimeToFirstNgSetupMillis();
+        if (firstNgSetup >= 0) {
+            sb.append(String.format("Time to first NGSetup: %dms%n", firstNgSetup));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the summary line of a procedure, also used for the metrics aggregated from several processes.
+     */
+    public static void appendProcedure(StringBuilder sb, EProcedure procedure, long started, long succeeded,
+                                       long failed, long timedOut, HistogramSnapshot snapshot) {
+        sb.append(String.format("%s: started=%d succeeded=%d failed=%d timedOut=%d mean=%.2fms p50=%.2fms " +
+                        "p99=%.2fms p999=%.2fms max=%.2fms%n",
+                procedure, started, succeeded, failed, timedOut, snapshot.getMean() / 1e6,
+                snapshot.getValueAtPercentile(50) / 1e6,
+                snapshot.getValueAtPercentile(99) / 1e6,
+                snapshot.getValueAtPercentile(99.9) / 1e6,
+                snapshot.getMax() / 1e6));
+    }
+
+    private void appendMessages(StringBuilder sb) {
+        for (var message : simCtx.metrics.messages()) {
+            var handling = message.handlingTime.snapshot();
+            sb.append(String.format("  %s %s: sent=%d received=%d handling p99=%.3fms%n",
+                    message.protocol, message.type, message.sent.sum(), message.received.sum(),
+                    handling.getValueAtPercentile(99) / 1e6));
+        }
+    }
+
+    private void appendUeStates(StringBuilder sb) {
+        var mmStates = new int[EMmState.values().length];
+        var cmStates = new int[ECmState.values().length];
+
+        Simulation.forEachUe(simCtx, ue -> {
+            mmStates[ue.mmCtx.mmState.ordinal()]++;
+            cmStates[ue.mmCtx.cmState.ordinal()]++;
+        });
+
+        sb.append("  UEs:");
+        for (var state : EMmState.values()) {
+            sb.append(' ').append(state).append('=').append(mmStates[state.ordinal()]);
+        }
+        for (var state : ECmState.values()) {
+            sb.append(" CM-").append(state).append('=').append(cmStates[state.ordinal()]);
+        }
+        sb.append(System.lineSeparator());
+    }
+
+    private class ReportTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            if (generation != getGeneration()) {
+                return; // stopped
+            }
+            Logging.info(Tag.PROCEDURE_RESULT, "%s", intervalReport());
+            simCtx.timingWheel.schedule(this, intervalMillis);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import tr.havelsan.ueransim.enums.EProcedureResult;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and completion latency of a single procedure type.
+ */
+public class ProcedureMetrics {
+    public final LongAdder started;
+    public final LongAdder succeeded;
+    public final LongAdder failed;
+    public final LongAdder timedOut;
+    public final LatencyHistogram latency;
+
+    public ProcedureMetrics() {
+        this.started = new LongAdder();
+        this.succeeded = new LongAdder();
+        this.failed = new LongAdder();
+        this.timedOut = new LongAdder();
+        this.latency = new LatencyHistogram();
+    }
+
+    public void started() {
+        started.increment();
+    }
+
+    /**
+     * Records the outcome of the procedure. The latency is recorded for all results, so that timeouts also show up
+     * in the tail of the histogram.
+     */
+    public void finished(EProcedureResult result, long latencyNanos) {
+        switch (result) {
+            case SUCCESS:
+                succeeded.increment();
+                break;
+            case FAILURE:
+                failed.increment();
+                break;
+            case TIMEOUT:
+                timedOut.increment();
+                break;
+        }
+        if (latencyNanos > 0) {
+            latency.record(latencyNanos);
+        }
+    }
+}
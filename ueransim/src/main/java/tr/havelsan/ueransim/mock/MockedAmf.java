@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.mock;
+
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.Constants;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gsMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IEImsiMobileIdentity;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for the AMF, which makes it possible to measure the simulator alone. Each gNB connects to
+ * the mocked AMF through its own {@link MockedAmfAssociation}, while the subscriptions, the 5G-GUTIs and the
+ * AMF-UE-NGAP-IDs are shared by all of them.
+ * <p>
+ * The subscription data is taken from the configurations of the simulated UEs, so that the authentication vectors
+ * are generated with the same Milenage parameters as the UEs.
+ */
+public class MockedAmf {
+
+    private final SimulationContext simCtx;
+    private final ConcurrentHashMap<String, MockedSubscriber> subscribersBySupi;
+    private final ConcurrentHashMap<Long, MockedSubscriber> subscribersByTmsi;
+    private final AtomicLong tmsiCounter;
+    private final AtomicLong amfUeNgapIdCounter;
+    private final AtomicLong ipAddressCounter;
+    private volatile boolean inUse;
+
+    public MockedAmf(SimulationContext simCtx) {
+        this.simCtx = simCtx;
+        this.subscribersBySupi = new ConcurrentHashMap<>();
+        this.subscribersByTmsi = new ConcurrentHashMap<>();
+        this.tmsiCounter = new AtomicLong();
+        this.amfUeNgapIdCounter = new AtomicLong();
+        this.ipAddressCounter = new AtomicLong();
+    }
+
+    public MockedAmfAssociation newAssociation() {
+        inUse = true;
+        return new MockedAmfAssociation(this);
+    }
+
+    /**
+     * Returns true if any gNB is associated with the mocked AMF.
+     */
+    public boolean isInUse() {
+        return inUse;
+    }
+
+    /**
+     * Adds the subscription of the given UE, if it is not already known.
+     */
+    public void addSubscriber(UeConfig config) {
+        if (config.supi == null || subscribersBySupi.containsKey(config.supi.value)) {
+            return;
+        }
+        subscribersBySupi.computeIfAbsent(config.supi.value, supi -> {
+            var subscriber = new MockedSubscriber(config, tmsiCounter.incrementAndGet());
+            subscribersByTmsi.put(subscriber.tmsi, subscriber);
+            return subscriber;
+        });
+    }
+
+    long allocateAmfUeNgapId() {
+        return amfUeNgapIdCounter.incrementAndGet();
+    }
+
+    /**
+     * Returns the next UE IPv4 address from the 10.45.0.0/16 pool.
+     */
+    byte[] allocateIpAddress() {
+        long index = ipAddressCounter.incrementAndGet() % 65534 + 1;
+        return new byte[]{10, 45, (byte) (index >> 8), (byte) index};
+    }
+
+    Random random() {
+        return simCtx.random();
+    }
+
+    MockedSubscriber findSubscriber(IE5gsMobileIdentity mobileIdentity) {
+        if (mobileIdentity instanceof IEImsiMobileIdentity) {
+            var suci = (IEImsiMobileIdentity) mobileIdentity;
+            if (!suci.protectionSchemaId.equals(IEImsiMobileIdentity.EProtectionSchemeIdentifier.NULL_SCHEME)) {
+                Logging.error(Tag.PROC, "Mocked AMF supports the null protection scheme only");
+                return null;
+            }
+            String supi = String.format(Constants.ALWAYS_LONG_MNC ? "%03d%03d%s" : "%03d%02d%s",
+                    suci.mcc.intValue(), suci.mnc.intValue(), suci.schemeOutput);
+            return findSubscriber(supi);
+        }
+        if (mobileIdentity instanceof IE5gGutiMobileIdentity) {
+            var guti = (IE5gGutiMobileIdentity) mobileIdentity;
+            return subscribersByTmsi.get(guti.tmsi.value.longValue());
+        }
+        return null;
+    }
+
+    private MockedSubscriber findSubscriber(String supi) {
+        var subscriber = subscribersBySupi.get(supi);
+        if (subscriber == null) {
+            // Unknown UEs are expected to be created after the last refresh, so the whole population is indexed
+            // again instead of searching for a single UE.
+            Simulation.forEachUe(simCtx, ue -> addSubscriber(ue.ueConfig));
+            subscriber = subscribersBySupi.get(supi);
+        }
+        return subscriber;
+    }
+}
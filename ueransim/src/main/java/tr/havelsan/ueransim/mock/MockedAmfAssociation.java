@@ -0,0 +1,342 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.mock;
+
+import fr.marben.asnsdk.japi.InvalidStructureException;
+import threegpp.milenage.MilenageResult;
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.api.nas.NasMilenage;
+import tr.havelsan.ueransim.crypto.KDF;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.core.messages.NasMessage;
+import tr.havelsan.ueransim.nas.core.messages.SecuredMmMessage;
+import tr.havelsan.ueransim.nas.impl.enums.*;
+import tr.havelsan.ueransim.nas.impl.ies.*;
+import tr.havelsan.ueransim.nas.impl.messages.*;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.RelativeAMFCapacity;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_ID_pair;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_IDs;
+import tr.havelsan.ueransim.ngap.ngap_pdu_contents.*;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapBuilder;
+import tr.havelsan.ueransim.ngap2.NgapCause;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.ngap2.NgapMessageType;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient.IResponder;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.octets.Octet2;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.util.HashMap;
+
+/**
+ * The NGAP association between a gNB and the {@link MockedAmf}. Messages are handled in the thread of the gNB which
+ * sends them, so the UE contexts of an association need no synchronization.
+ * <p>
+ * The security mode command selects NIA2 with null ciphering. The UEs compute the integrity of every uplink message
+ * as they would against a real core network, while the mocked AMF reads the uplink messages without deciphering them
+ * and does not verify their MACs. Downlink messages are sent without security protection.
+ */
+public class MockedAmfAssociation implements MockedSCTPClient.IMockedRemote {
+
+    // Default QoS rule matching all the packets with QFI 1, see 3GPP TS 24.501 9.11.4.13
+    private static final OctetString DEFAULT_QOS_RULE = new OctetString("01000631310101ff01");
+    private static final OctetString ABBA = new OctetString("0000");
+
+    private final MockedAmf amf;
+    private final HashMap<Long, UeContext> ueContexts;
+
+    MockedAmfAssociation(MockedAmf amf) {
+        this.amf = amf;
+        this.ueContexts = new HashMap<>();
+    }
+
+    @Override
+    public void onMessage(int streamNumber, byte[] data, IResponder responder) {
+        var ngapPdu = Ngap.perDecode(NGAP_PDU.class, data);
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+
+        if (ngapMessage instanceof NGSetupRequest) {
+            send(responder, streamNumber, new NgapBuilder(NgapMessageType.NGSetupResponse)
+                    .addProtocolIE(new RelativeAMFCapacity(255)));
+            return;
+        }
+
+        var ranUeNgapIds = NgapInternal.extractProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class);
+        if (ranUeNgapIds.isEmpty()) {
+            Logging.error(Tag.MESSAGING, "Mocked AMF: unhandled message received: %s",
+                    ngapMessage.getClass().getSimpleName());
+            return;
+        }
+        long ranUeNgapId = ranUeNgapIds.get(ranUeNgapIds.size() - 1).value;
+
+        if (ngapMessage instanceof InitialUEMessage) {
+            ueContexts.put(ranUeNgapId, new UeContext(ranUeNgapId, amf.allocateAmfUeNgapId()));
+        }
+
+        var ue = ueContexts.get(ranUeNgapId);
+        if (ue == null) {
+            Logging.error(Tag.MESSAGING, "Mocked AMF: UE context not found for RAN-UE-NGAP-ID: %s", ranUeNgapId);
+            return;
+        }
+        // Downlink messages of the UE follow the stream of its latest uplink message
+        ue.streamNumber = streamNumber;
+
+        if (ngapMessage instanceof InitialUEMessage || ngapMessage instanceof UplinkNASTransport) {
+            var nasMessage = NgapInternal.extractNasMessage(ngapMessage);
+            if (nasMessage != null) {
+                receiveNas(responder, ue, nasMessage);
+            }
+        } else if (ngapMessage instanceof UEContextReleaseRequest) {
+            sendUeContextReleaseCommand(responder, ue, NgapCause.NAS__NORMAL_RELEASE);
+        } else if (ngapMessage instanceof UEContextReleaseComplete) {
+            ueContexts.remove(ranUeNgapId);
+        } else {
+            Logging.error(Tag.MESSAGING, "Mocked AMF: unhandled message received: %s",
+                    ngapMessage.getClass().getSimpleName());
+        }
+    }
+
+    private void receiveNas(IResponder responder, UeContext ue, NasMessage message) {
+        if (message instanceof SecuredMmMessage) {
+            // Null ciphering is selected, so the payload is the plain message
+            message = NasDecoder.nasPdu(((SecuredMmMessage) message).plainNasMessage);
+        }
+
+        if (message instanceof RegistrationRequest) {
+            receiveRegistrationRequest(responder, ue, (RegistrationRequest) message);
+        } else if (message instanceof AuthenticationResponse) {
+            receiveAuthenticationResponse(responder, ue, (AuthenticationResponse) message);
+        } else if (message instanceof AuthenticationFailure) {
+            Logging.error(Tag.PROC, "Mocked AMF: authentication failed: %s",
+                    ((AuthenticationFailure) message).mmCause.value);
+            sendNas(responder, ue, new AuthenticationReject());
+        } else if (message instanceof SecurityModeComplete) {
+            sendRegistrationAccept(responder, ue);
+        } else if (message instanceof SecurityModeReject) {
+            Logging.error(Tag.PROC, "Mocked AMF: security mode rejected: %s",
+                    ((SecurityModeReject) message).mmCause.value);
+            sendRegistrationReject(responder, ue, EMmCause.UE_SECURITY_CAP_MISMATCH);
+        } else if (message instanceof RegistrationComplete) {
+            ue.subscriber.registered = true;
+        } else if (message instanceof UlNasTransport) {
+            receiveUlNasTransport(responder, ue, (UlNasTransport) message);
+        } else if (message instanceof DeRegistrationRequestUeOriginating) {
+            receiveDeregistrationRequest(responder, ue, (DeRegistrationRequestUeOriginating) message);
+        } else {
+            Logging.error(Tag.MESSAGING, "Mocked AMF: unhandled NAS message received: %s",
+                    message.getClass().getSimpleName());
+        }
+    }
+
+    private void receiveRegistrationRequest(IResponder responder, UeContext ue, RegistrationRequest message) {
+        ue.subscriber = amf.findSubscriber(message.mobileIdentity);
+        if (ue.subscriber == null) {
+            Logging.error(Tag.PROC, "Mocked AMF: subscriber not found");
+            sendRegistrationReject(responder, ue, EMmCause.UE_IDENTITY_CANNOT_BE_DERIVED_FROM_NETWORK);
+            return;
+        }
+
+        ue.ueSecurityCapability = message.ueSecurityCapability;
+        ue.requestedNssai = message.requestedNSSAI;
+
+        // A registered UE identified by its 5G-GUTI keeps using its current security context
+        if (message.mobileIdentity instanceof IE5gGutiMobileIdentity && ue.subscriber.registered) {
+            sendRegistrationAccept(responder, ue);
+        } else {
+            sendAuthenticationRequest(responder, ue);
+        }
+    }
+
+    private void sendAuthenticationRequest(IResponder responder, UeContext ue) {
+        var config = ue.subscriber.config;
+
+        var randBytes = new byte[16];
+        amf.random().nextBytes(randBytes);
+        var rand = new OctetString(randBytes);
+        var sqn = ue.subscriber.nextSqn();
+
+        var milenage = NasMilenage.calculate(config.key, config.op, config.amf, sqn, rand);
+        var res = milenage.get(MilenageResult.RES);
+        var ck = milenage.get(MilenageResult.CK);
+        var ik = milenage.get(MilenageResult.IK);
+        var ak = milenage.get(MilenageResult.AK);
+        var macA = milenage.get(MilenageResult.MAC_A);
+
+        var autn = OctetString.concat(OctetString.concat(OctetString.xor(sqn, ak), config.amf), macA);
+
+        // XRES* according to 3GPP TS 33.501 Annex A.4
+        var kdfOutput = KDF.calculateKey(OctetString.concat(ck, ik), 0x6B,
+                new OctetString[]{KDF.encodeString(config.snn), rand, res});
+        ue.xresStar = kdfOutput.substring(kdfOutput.length - 16);
+
+        ue.ngKsi = new IENasKeySetIdentifier(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT,
+                new Bit3((ue.ngKsi == null ? 0 : ue.ngKsi.nasKeySetIdentifier.intValue() + 1) % 7));
+
+        var request = new AuthenticationRequest();
+        request.ngKSI = ue.ngKsi;
+        request.abba = new IEAbba(ABBA);
+        request.authParamRAND = new IEAuthenticationParameterRand(rand);
+        request.authParamAUTN = new IEAuthenticationParameterAutn(autn);
+        sendNas(responder, ue, request);
+    }
+
+    private void receiveAuthenticationResponse(IResponder responder, UeContext ue, AuthenticationResponse message) {
+        var resStar = message.authenticationResponseParameter != null
+                ? message.authenticationResponseParameter.rawData : null;
+
+        if (ue.xresStar == null || !ue.xresStar.equals(resStar)) {
+            Logging.error(Tag.PROC, "Mocked AMF: RES* mismatch. expected: %s received: %s", ue.xresStar, resStar);
+            sendNas(responder, ue, new AuthenticationReject());
+            return;
+        }
+        ue.xresStar = null;
+
+        var command = new SecurityModeCommand();
+        command.selectedNasSecurityAlgorithms = new IENasSecurityAlgorithms(
+                ETypeOfIntegrityProtectionAlgorithm.IA2_128, ETypeOfCipheringAlgorithm.EA0);
+        command.ngKsi = ue.ngKsi;
+        command.replayedUeSecurityCapabilities = ue.ueSecurityCapability;
+        sendNas(responder, ue, command);
+    }
+
+    private void sendRegistrationAccept(IResponder responder, UeContext ue) {
+        var accept = new RegistrationAccept();
+        accept.registrationResult = new IE5gsRegistrationResult(
+                IE5gsRegistrationResult.ESmsOverNasTransportAllowed.NOT_ALLOWED,
+                IE5gsRegistrationResult.E5gsRegistrationResult.THREEGPP_ACCESS);
+        accept.mobileIdentity = ue.subscriber.guti();
+        accept.allowedNSSAI = ue.requestedNssai;
+        sendNas(responder, ue, accept);
+    }
+
+    private void sendRegistrationReject(IResponder responder, UeContext ue, EMmCause cause) {
+        var reject = new RegistrationReject();
+        reject.mmCause = new IE5gMmCause(cause);
+        sendNas(responder, ue, reject);
+    }
+
+    private void receiveUlNasTransport(IResponder responder, UeContext ue, UlNasTransport message) {
+        if (!message.payloadContainerType.payloadContainerType.equals(
+                IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION)) {
+            Logging.error(Tag.NOT_IMPL_YET, "Mocked AMF: payload container type not supported: %s",
+                    message.payloadContainerType.payloadContainerType);
+            return;
+        }
+
+        var smMessage = NasDecoder.nasPdu(message.payloadContainer.payload);
+        if (!(smMessage instanceof PduSessionEstablishmentRequest)) {
+            Logging.error(Tag.MESSAGING, "Mocked AMF: unhandled SM message received: %s",
+                    smMessage.getClass().getSimpleName());
+            return;
+        }
+        var request = (PduSessionEstablishmentRequest) smMessage;
+
+        var accept = new PduSessionEstablishmentAccept();
+        accept.pduSessionId = request.pduSessionId;
+        accept.pti = request.pti;
+        accept.selectedPduSessionType = new IEPduSessionType(EPduSessionType.IPV4);
+        accept.selectedSscMode = new IESscMode(IESscMode.ESscMode.SSC_MODE_1);
+        accept.authorizedQoSRules = new IEQoSRules(DEFAULT_QOS_RULE);
+        accept.sessionAmbr = new IESessionAmbr(
+                IESessionAmbr.EUnitForSessionAmbr.MULT_1Gbps, new Octet2(1),
+                IESessionAmbr.EUnitForSessionAmbr.MULT_1Gbps, new Octet2(1));
+        accept.pduAddress = new IEPduAddress(EPduSessionType.IPV4, new OctetString(amf.allocateIpAddress()));
+        accept.dnn = message.dnn;
+
+        var transport = new DlNasTransport();
+        transport.payloadContainerType = new IEPayloadContainerType(
+                IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION);
+        transport.payloadContainer = new IEPayloadContainer(NasEncoder.nasPduS(accept));
+        transport.pduSessionId = message.pduSessionId;
+        sendNas(responder, ue, transport);
+    }
+
+    private void receiveDeregistrationRequest(IResponder responder, UeContext ue,
+                                              DeRegistrationRequestUeOriginating message) {
+        var subscriber = ue.subscriber != null ? ue.subscriber : amf.findSubscriber(message.mobileIdentity);
+        if (subscriber != null) {
+            subscriber.registered = false;
+        }
+
+        if (message.deRegistrationType.switchOff.equals(IEDeRegistrationType.ESwitchOff.NORMAL_DE_REGISTRATION)) {
+            sendNas(responder, ue, new DeRegistrationAcceptUeOriginating());
+        }
+        sendUeContextReleaseCommand(responder, ue, NgapCause.NAS__DEREGISTER);
+    }
+
+    private void sendUeContextReleaseCommand(IResponder responder, UeContext ue, NgapCause cause) {
+        var pair = new UE_NGAP_ID_pair();
+        pair.aMF_UE_NGAP_ID = new AMF_UE_NGAP_ID(ue.amfUeNgapId);
+        pair.rAN_UE_NGAP_ID = new RAN_UE_NGAP_ID(ue.ranUeNgapId);
+
+        UE_NGAP_IDs ueNgapIds;
+        try {
+            ueNgapIds = new UE_NGAP_IDs(UE_NGAP_IDs.ASN_uE_NGAP_ID_pair, pair);
+        } catch (InvalidStructureException e) {
+            throw new RuntimeException(e);
+        }
+
+        send(responder, ue.streamNumber, new NgapBuilder(NgapMessageType.UEContextReleaseCommand)
+                .addProtocolIE(ueNgapIds)
+                .addCause(cause));
+    }
+
+    private void sendNas(IResponder responder, UeContext ue, NasMessage message) {
+        send(responder, ue.streamNumber, new NgapBuilder(NgapMessageType.DownlinkNASTransport)
+                .addAmfUeNgapId(ue.amfUeNgapId)
+                .addRanUeNgapId(ue.ranUeNgapId)
+                .addNasPdu(message));
+    }
+
+    private static void send(IResponder responder, int streamNumber, NgapBuilder builder) {
+        responder.respond(streamNumber, Ngap.perEncode(builder.build()));
+    }
+
+    private static class UeContext {
+        final long ranUeNgapId;
+        final long amfUeNgapId;
+
+        MockedSubscriber subscriber;
+        IEUeSecurityCapability ueSecurityCapability;
+        IENssai requestedNssai;
+        IENasKeySetIdentifier ngKsi;
+        OctetString xresStar;
+        int streamNumber;
+
+        UeContext(long ranUeNgapId, long amfUeNgapId) {
+            this.ranUeNgapId = ranUeNgapId;
+            this.amfUeNgapId = amfUeNgapId;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.mock;
+
+import tr.havelsan.ueransim.core.Constants;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.values.VAmfSetId;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.utils.bits.Bit6;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+/**
+ * Subscription data of a UE as known by the mocked AMF, shared by all the gNB associations.
+ */
+class MockedSubscriber {
+    private static final int AMF_REGION_ID = 1;
+    private static final int AMF_SET_ID = 1;
+    private static final int AMF_POINTER = 1;
+
+    final UeConfig config;
+    final long tmsi;
+    final EMccValue mcc;
+    final EMncValue mnc;
+
+    volatile boolean registered;
+
+    private long sqn;
+
+    MockedSubscriber(UeConfig config, long tmsi) {
+        this.config = config;
+        this.tmsi = tmsi;
+
+        String imsi = config.supi.value;
+        this.mcc = EMccValue.fromValue(Integer.parseInt(imsi.substring(0, 3)));
+        this.mnc = EMncValue.fromValue(Integer.parseInt(imsi.substring(3, Constants.ALWAYS_LONG_MNC ? 6 : 5)));
+    }
+
+    synchronized OctetString nextSqn() {
+        sqn = (sqn + 1) & 0xFFFFFFFFFFFFL;
+
+        var bytes = new byte[6];
+        for (int i = 0; i < 6; i++) {
+            bytes[i] = (byte) (sqn >> (8 * (5 - i)));
+        }
+        return new OctetString(bytes);
+    }
+
+    IE5gGutiMobileIdentity guti() {
+        return new IE5gGutiMobileIdentity(mcc, mnc, new Octet(AMF_REGION_ID), new VAmfSetId(AMF_SET_ID),
+                new Bit6(AMF_POINTER), new V5gTmsi(tmsi));
+    }
+}
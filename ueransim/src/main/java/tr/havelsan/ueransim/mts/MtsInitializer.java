@@ -32,27 +32,42 @@ import tr.havelsan.ueransim.core.Constants;
 import tr.havelsan.ueransim.nas.eap.*;
 import tr.havelsan.ueransim.utils.Utils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class MtsInitializer {
 
+    /**
+     * Name of the resource listing the NAS types, generated at build time by {@link MtsTypeIndexGenerator}.
+     */
+    public static final String TYPE_INDEX_RESOURCE = "mts_types.idx";
+
     public static void initMts() {
-        try (ScanResult scanResult = new ClassGraph().enableClassInfo().ignoreClassVisibility().whitelistPackages(Constants.NAS_IMPL_PREFIX).scan()) {
-            var classInfoList = scanResult.getAllClasses();
-            for (var classInfo : classInfoList) {
-                Class<?> clazz;
-                try {
-                    clazz = Class.forName(classInfo.getName());
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException(e);
-                }
+        var typeNames = readNasTypeIndex();
+        if (typeNames == null) {
+            typeNames = scanNasTypeNames();
+        }
 
-                String typeName = Utils.getTypeName(clazz);
-                TypeRegistry.registerTypeName(typeName, clazz);
+        var classLoader = MtsInitializer.class.getClassLoader();
+        for (var name : typeNames) {
+            Class<?> clazz;
+            try {
+                // The types are only registered here, they are initialized on first use
+                clazz = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
             }
+
+            String typeName = Utils.getTypeName(clazz);
+            TypeRegistry.registerTypeName(typeName, clazz);
         }
 
         final Class<?>[] otherTypes = new Class[]{
@@ -85,4 +100,34 @@ public class MtsInitializer {
             }
         });
     }
+
+    static List<String> scanNasTypeNames() {
+        try (ScanResult scanResult = new ClassGraph().enableClassInfo().ignoreClassVisibility().whitelistPackages(Constants.NAS_IMPL_PREFIX).scan()) {
+            var names = new ArrayList<String>();
+            for (var classInfo : scanResult.getAllClasses()) {
+                names.add(classInfo.getName());
+            }
+            Collections.sort(names);
+            return names;
+        }
+    }
+
+    private static List<String> readNasTypeIndex() {
+        var stream = Utils.getResourceStream(TYPE_INDEX_RESOURCE);
+        if (stream == null) {
+            return null;
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            var names = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+            return names;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.remote;
+
+import tr.havelsan.ueransim.api.sys.IProcedureListener;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bulk UE command issued through the {@link ControlServer}.
+ * <p>
+ * The command is pushed to the target UEs from the timing wheel, at the requested rate or all at once. Progress is
+ * written to the issuing connection periodically, counting the outcomes of the procedure started by the command
+ * among the target UEs. A target is counted only for the first start of the procedure after the command has been
+ * pushed to it, and then for the finish of that procedure, so other jobs and procedures started by other means are
+ * not counted. The job is done when every target has been dispatched and has finished the procedure, or times out
+ * when some targets have not finished {@link #PROCEDURE_TIMEOUT_MILLIS} after the last dispatch, e.g. because the
+ * command could not start the procedure in their state.
+ */
+class ControlJob extends TimerEntry implements IProcedureListener {
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+    static final long PROCEDURE_TIMEOUT_MILLIS = 30_000;
+
+    final int id;
+    final String command;
+
+    private final SimulationContext simCtx;
+    private final UeSimContext[] targets;
+    private final EProcedure procedure;
+    private final double rate;
+    private final Consumer<String> output;
+    private final Consumer<ControlJob> onFinished;
+    private final AtomicInteger succeeded;
+    private final AtomicInteger failed;
+    private final AtomicBoolean finished;
+
+    // Targets that have been dispatched but not started the procedure yet, and that are running the procedure
+    // started by the job. Guarded by the job, since the procedure listeners are invoked by the UE loopers.
+    private final BitSet awaitingStart;
+    private final BitSet running;
+    private int unfinished;
+
+    // Only accessed by the timing wheel thread
+    private long startMillis;
+    private long lastReportMillis;
+    private long lastDispatchMillis;
+    // Written by the timing wheel thread, read by the control server for job listings
+    private volatile int dispatched;
+    private volatile int timedOut;
+
+    ControlJob(int id, SimulationContext simCtx, UeSimContext[] targets, String command, EProcedure procedure,
+               double rate, Consumer<String> output, Consumer<ControlJob> onFinished) {
+        this.id = id;
+        this.command = command;
+        this.simCtx = simCtx;
+        this.targets = targets;
+        this.procedure = procedure;
+        this.rate = rate;
+        this.output = output;
+        this.onFinished = onFinished;
+        this.succeeded = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.finished = new AtomicBoolean();
+        this.awaitingStart = new BitSet();
+        this.running = new BitSet();
+    }
+
+    void start() {
+        if (procedure != null) {
+            Simulation.addProcedureListener(simCtx, this);
+        }
+        startMillis = simCtx.timingWheel.getClock().millis();
+        lastReportMillis = startMillis;
+        simCtx.timingWheel.schedule(this, 0);
+    }
+
+    void cancel() {
+        simCtx.timingWheel.cancel(this);
+        finish("cancelled");
+    }
+
+    String describe() {
+        return String.format("job=%d command=%s dispatched=%d/%d succeeded=%d failed=%d timedOut=%d", id, command,
+                dispatched, targets.length, succeeded.get(), failed.get(), timedOut);
+    }
+
+    @Override
+    protected void onExpire(long generation) {
+        if (finished.get()) {
+            return;
+        }
+
+        long now = simCtx.timingWheel.getClock().millis();
+        int due = targets.length;
+        if (rate > 0) {
+            due = (int) Math.min(targets.length, (long) ((now - startMillis) * rate / 1000.0) + 1);
+        }
+        int next = dispatched;
+        if (next < due) {
+            lastDispatchMillis = now;
+        }
+        while (next < due) {
+            var target = targets[next++];
+            if (procedure != null) {
+                // Marked before the push, so that the start can not be missed
+                markDispatched(target);
+            }
+            target.pushEvent(new UeCommandEvent(command));
+        }
+        dispatched = next;
+
+        if (next == targets.length) {
+            int remaining = procedure != null ? getUnfinished() : 0;
+            if (remaining == 0) {
+                finish("done");
+                return;
+            }
+            if (now - lastDispatchMillis >= PROCEDURE_TIMEOUT_MILLIS) {
+                timedOut = remaining;
+                finish("timeout");
+                return;
+            }
+        }
+
+        if (now - lastReportMillis >= PROGRESS_INTERVAL_MILLIS) {
+            lastReportMillis = now;
+            output.accept("progress " + describe());
+        }
+
+        long delay = PROGRESS_INTERVAL_MILLIS;
+        if (next < targets.length) {
+            long nextDue = startMillis + (long) Math.ceil(next * 1000.0 / rate);
+            delay = Math.max(1, Math.min(delay, nextDue - now));
+        } else {
+            delay = Math.max(1, Math.min(delay, lastDispatchMillis + PROCEDURE_TIMEOUT_MILLIS - now));
+        }
+        simCtx.timingWheel.schedule(this, delay);
+    }
+
+    private void finish(String status) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (procedure != null) {
+            Simulation.removeProcedureListener(simCtx, this);
+        }
+        output.accept(status + " " + describe());
+        onFinished.accept(this);
+    }
+
+    private synchronized void markDispatched(UeSimContext ue) {
+        awaitingStart.set(ue.nodeId);
+        unfinished++;
+    }
+
+    private synchronized int getUnfinished() {
+        return unfinished;
+    }
+
+    @Override
+    public void onProcedureStarted(UeSimContext ue, EProcedure procedure) {
+        if (procedure != this.procedure) {
+            return;
+        }
+        synchronized (this) {
+            if (awaitingStart.get(ue.nodeId)) {
+                awaitingStart.clear(ue.nodeId);
+                running.set(ue.nodeId);
+            }
+        }
+    }
+
+    @Override
+    public void onProcedureFinished(UeSimContext ue, EProcedure procedure, EProcedureResult result,
+                                    long latencyNanos) {
+        if (procedure != this.procedure) {
+            return;
+        }
+        synchronized (this) {
+            if (!running.get(ue.nodeId)) {
+                return;
+            }
+            running.clear(ue.nodeId);
+            unfinished--;
+        }
+        if (result == EProcedureResult.SUCCESS) {
+            succeeded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+}
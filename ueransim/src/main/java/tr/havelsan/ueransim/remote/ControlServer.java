@@ -0,0 +1,390 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.remote;
+
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.events.EventParser;
+import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
+import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Line based control interface of the simulator on a local TCP port.
+ * <p>
+ * All connections are served by a single thread with a selector. Each request is one line, and is answered with an
+ * "ok ..." or "error ..." line:
+ * <pre>
+ * ue &lt;targets&gt; &lt;command&gt; [rate]   pushes the command to the selected UEs, at most rate UEs per second
+ * gnb &lt;targets&gt; &lt;command&gt;         pushes the command to the selected gNBs
+ * status                         counts of nodes and jobs, and the procedure counters
+ * jobs                           one "job ..." line per running UE command, followed by "ok"
+ * cancel &lt;job&gt;                   stops dispatching a UE command
+ * </pre>
+ * Targets are given as described in {@link TargetSelector}. UE commands run as jobs in the background, which write
+ * "progress ..." lines to the connection periodically and a final "done ...", "timeout ..." or "cancelled ..." line.
+ */
+public class ControlServer {
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    private final SimulationContext simCtx;
+    private final int port;
+    private final Map<Integer, ControlJob> jobs;
+    private final Queue<Connection> pendingWrites;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private int jobIdCounter;
+
+    public ControlServer(SimulationContext simCtx, int port) {
+        this.simCtx = simCtx;
+        this.port = port;
+        this.jobs = new ConcurrentHashMap<>();
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this::run, "control-server");
+        thread.setDaemon(true);
+        thread.start();
+
+        Logging.info(Tag.SYSTEM, "Control server is listening on %s", serverChannel.getLocalAddress());
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        selector.wakeup();
+        for (var job : jobs.values()) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Returns the port the server is bound to, which is useful when it is started with port 0.
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.enableWrite();
+                }
+
+                var selectedKeys = selector.selectedKeys();
+                for (var key : selectedKeys) {
+                    handleKey(key);
+                }
+                selectedKeys.clear();
+            }
+        } catch (IOException e) {
+            Logging.error(Tag.SYSTEM, "Control server failed: %s", e);
+        } finally {
+            for (var key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void handleKey(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            var channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                var connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            }
+            return;
+        }
+
+        var connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException e) {
+            Logging.debug(Tag.CONNECTION, "Control connection is closed: %s", e);
+            connection.close();
+        }
+    }
+
+    private String execute(Connection connection, String line) {
+        var tokens = line.trim().split("\\s+");
+        if (tokens.length == 0 || tokens[0].isEmpty()) {
+            return null;
+        }
+        try {
+            switch (tokens[0]) {
+                case "ue":
+                    return executeUeCommand(connection, tokens);
+                case "gnb":
+                    return executeGnbCommand(tokens);
+                case "status":
+                    return status();
+                case "jobs":
+                    for (var job : jobs.values()) {
+                        connection.send("job " + job.describe());
+                    }
+                    return "ok jobs=" + jobs.size();
+                case "cancel": {
+                    var job = tokens.length == 2 ? jobs.get(Integer.parseInt(tokens[1])) : null;
+                    if (job == null) {
+                        return "error no such job";
+                    }
+                    job.cancel();
+                    return "ok";
+                }
+                default:
+                    return "error unknown request: " + tokens[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        }
+    }
+
+    private String executeUeCommand(Connection connection, String[] tokens) {
+        if (tokens.length != 3 && tokens.length != 4) {
+            return "error usage: ue <targets> <command> [rate]";
+        }
+        var targetSelector = TargetSelector.parse(tokens[1]);
+        var command = tokens[2];
+        if (!(EventParser.parse(command) instanceof UeCommandEvent)) {
+            return "error unknown UE command: " + command;
+        }
+        double rate = tokens.length == 4 ? Double.parseDouble(tokens[3]) : 0;
+        if (rate < 0) {
+            return "error rate must not be negative";
+        }
+
+        var targets = new ArrayList<UeSimContext>();
+        Simulation.forEachUe(simCtx, ue -> {
+            var gnb = ue.connectedGnb;
+            if (targetSelector.matches(ue.nodeId, gnb != null ? gnb.nodeId : -1)) {
+                targets.add(ue);
+            }
+        });
+        if (targets.isEmpty()) {
+            return "error no UE is selected";
+        }
+
+        EProcedure procedure = EventParser.procedureOf(command);
+        var job = new ControlJob(++jobIdCounter, simCtx, targets.toArray(new UeSimContext[0]), command, procedure,
+                rate, connection::send, finished -> jobs.remove(finished.id));
+        jobs.put(job.id, job);
+        job.start();
+        return "ok job=" + job.id + " targets=" + targets.size();
+    }
+
+    private String executeGnbCommand(String[] tokens) {
+        if (tokens.length != 3) {
+            return "error usage: gnb <targets> <command>";
+        }
+        var targetSelector = TargetSelector.parse(tokens[1]);
+        if (targetSelector.isGnbFilter()) {
+            return "error gNBs are selected by their own node ids";
+        }
+        var command = tokens[2];
+        if (!(EventParser.parse(command) instanceof GnbCommandEvent)) {
+            return "error unknown gNB command: " + command;
+        }
+
+        int[] count = new int[1];
+        Simulation.forEachGnb(simCtx, gnb -> {
+            if (targetSelector.matches(gnb.nodeId, -1)) {
+                gnb.pushEvent(new GnbCommandEvent(command));
+                count[0]++;
+            }
+        });
+        return "ok targets=" + count[0];
+    }
+
+    private String status() {
+        var sb = new StringBuilder("ok");
+        sb.append(" ues=").append(simCtx.ueRegistry.size());
+        sb.append(" gnbs=").append(simCtx.gnbRegistry.size());
+        sb.append(" jobs=").append(jobs.size());
+        for (var procedure : EProcedure.values()) {
+            var metrics = simCtx.metrics.procedure(procedure);
+            long started = metrics.started.sum();
+            if (started == 0) {
+                continue;
+            }
+            sb.append(' ').append(procedure.name().toLowerCase().replace('_', '-')).append('=')
+                    .append(started).append('/')
+                    .append(metrics.succeeded.sum()).append('/')
+                    .append(metrics.failed.sum()).append('/')
+                    .append(metrics.timedOut.sum());
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        if (key.attachment() instanceof Connection) {
+            ((Connection) key.attachment()).close();
+        } else {
+            closeQuietly(key.channel());
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer;
+        private final StringBuilder line;
+        // Lines may be sent by job timers as well as by the server thread
+        private final Queue<ByteBuffer> outbox;
+        private volatile boolean closed;
+        private SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.line = new StringBuilder();
+            this.outbox = new ConcurrentLinkedQueue<>();
+        }
+
+        void send(String text) {
+            if (closed) {
+                return;
+            }
+            outbox.add(ByteBuffer.wrap((text + "\n").getBytes(StandardCharsets.UTF_8)));
+            if (Thread.currentThread() == thread) {
+                enableWrite();
+            } else {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void enableWrite() {
+            if (!closed && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void read() throws IOException {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                char c = (char) (readBuffer.get() & 0xFF);
+                if (c == '\n') {
+                    var response = execute(this, line.toString());
+                    line.setLength(0);
+                    if (response != null) {
+                        send(response);
+                    }
+                } else if (c != '\r') {
+                    if (line.length() == MAX_LINE_LENGTH) {
+                        Logging.error(Tag.CONNECTION, "Control connection is closed, request line is too long");
+                        close();
+                        return;
+                    }
+                    line.append(c);
+                }
+            }
+        }
+
+        void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = outbox.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                outbox.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // A line may have been added after the queue was found empty
+            if (!outbox.isEmpty()) {
+                enableWrite();
+            }
+        }
+
+        void close() {
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.remote;
+
+/**
+ * Selects nodes of a control command by their node ids.
+ * <p>
+ * A selector is either "all", a single id, an inclusive range such as "1-50000", or "gnb:id" which selects the UEs
+ * served by the gNB with the given node id.
+ */
+public class TargetSelector {
+    private static final String GNB_PREFIX = "gnb:";
+
+    private final int from;
+    private final int to;
+    private final int gnbId;
+
+    private TargetSelector(int from, int to, int gnbId) {
+        this.from = from;
+        this.to = to;
+        this.gnbId = gnbId;
+    }
+
+    public static TargetSelector parse(String text) {
+        if (text.equals("all")) {
+            return new TargetSelector(0, Integer.MAX_VALUE, -1);
+        }
+        if (text.startsWith(GNB_PREFIX)) {
+            return new TargetSelector(0, Integer.MAX_VALUE, parseId(text.substring(GNB_PREFIX.length())));
+        }
+        int dash = text.indexOf('-');
+        if (dash < 0) {
+            int id = parseId(text);
+            return new TargetSelector(id, id, -1);
+        }
+        int from = parseId(text.substring(0, dash));
+        int to = parseId(text.substring(dash + 1));
+        if (from > to) {
+            throw new IllegalArgumentException("invalid range: " + text);
+        }
+        return new TargetSelector(from, to, -1);
+    }
+
+    private static int parseId(String text) {
+        try {
+            int id = Integer.parseInt(text);
+            if (id >= 0) {
+                return id;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("invalid node id: " + text);
+    }
+
+    public boolean isGnbFilter() {
+        return gnbId != -1;
+    }
+
+    /**
+     * Returns whether the node with the given id is selected. For "gnb:id" selectors, the id of the serving gNB is
+     * also required, or -1 if the node is not connected to a gNB.
+     */
+    public boolean matches(int nodeId, int servingGnbId) {
+        if (isGnbFilter()) {
+            return servingGnbId == gnbId;
+        }
+        return nodeId >= from && nodeId <= to;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import tr.havelsan.ueransim.load.UeConfigFactory;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.core.messages.PlainMmMessage;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gTmsiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gsMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IEImeiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IEImsiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.messages.DeRegistrationRequestUeOriginating;
+import tr.havelsan.ueransim.nas.impl.messages.IdentityResponse;
+import tr.havelsan.ueransim.nas.impl.messages.RegistrationRequest;
+import tr.havelsan.ueransim.nas.impl.messages.ServiceRequest;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_S_TMSI;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_TMSI;
+import tr.havelsan.ueransim.utils.Utils;
+
+/**
+ * Rewrites the UE identities of the trace messages for the copies of the trace, by adding the identity offset of the
+ * copy to the MSIN of null-scheme SUCIs, to the 5G-TMSIs and to the IMEIs. Only the identities in plain NAS messages
+ * can be rewritten, the security protected messages are replayed as they are.
+ */
+class IdentityRewriter {
+
+    static byte[] rewriteNasPdu(byte[] nasPdu, long offset) {
+        if (offset == 0 || nasPdu == null) {
+            return nasPdu;
+        }
+
+        PlainMmMessage message;
+        try {
+            var decoded = NasDecoder.nasPdu(nasPdu);
+            if (!(decoded instanceof PlainMmMessage)) {
+                return nasPdu;
+            }
+            message = (PlainMmMessage) decoded;
+        } catch (Exception e) {
+            return nasPdu;
+        }
+
+        if (message instanceof RegistrationRequest) {
+            var registrationRequest = (RegistrationRequest) message;
+            registrationRequest.mobileIdentity = rewrite(registrationRequest.mobileIdentity, offset);
+            registrationRequest.additionalGuti = rewrite(registrationRequest.additionalGuti, offset);
+        } else if (message instanceof ServiceRequest) {
+            var serviceRequest = (ServiceRequest) message;
+            serviceRequest.tmsi = rewrite(serviceRequest.tmsi, offset);
+        } else if (message instanceof IdentityResponse) {
+            var identityResponse = (IdentityResponse) message;
+            identityResponse.mobileIdentity = rewrite(identityResponse.mobileIdentity, offset);
+        } else if (message instanceof DeRegistrationRequestUeOriginating) {
+            var deregistrationRequest = (DeRegistrationRequestUeOriginating) message;
+            deregistrationRequest.mobileIdentity = rewrite(deregistrationRequest.mobileIdentity, offset);
+        } else {
+            return nasPdu;
+        }
+        return NasEncoder.nasPdu(message);
+    }
+
+    static FiveG_S_TMSI rewriteFiveGSTmsi(FiveG_S_TMSI fiveGSTmsi, long offset) {
+        if (offset == 0 || fiveGSTmsi == null) {
+            return fiveGSTmsi;
+        }
+
+        var tmsi = fiveGSTmsi.fiveG_TMSI.getValue();
+        long value = ((tmsi[0] & 0xFFL) << 24) | ((tmsi[1] & 0xFFL) << 16) | ((tmsi[2] & 0xFFL) << 8)
+                | (tmsi[3] & 0xFFL);
+        value = (value + offset) & 0xFFFFFFFFL;
+
+        var rewritten = new FiveG_S_TMSI();
+        rewritten.aMFSetID = fiveGSTmsi.aMFSetID;
+        rewritten.aMFPointer = fiveGSTmsi.aMFPointer;
+        rewritten.fiveG_TMSI = new FiveG_TMSI(new byte[]{(byte) (value >> 24), (byte) (value >> 16),
+                (byte) (value >> 8), (byte) value});
+        return rewritten;
+    }
+
+    private static IE5gsMobileIdentity rewrite(IE5gsMobileIdentity identity, long offset) {
+        if (identity instanceof IEImsiMobileIdentity) {
+            var imsi = (IEImsiMobileIdentity) identity;
+            if (IEImsiMobileIdentity.EProtectionSchemeIdentifier.NULL_SCHEME.equals(imsi.protectionSchemaId)) {
+                imsi.schemeOutput = addToDigits(imsi.schemeOutput, offset);
+            }
+        } else if (identity instanceof IE5gGutiMobileIdentity) {
+            var guti = (IE5gGutiMobileIdentity) identity;
+            guti.tmsi = rewrite(guti.tmsi, offset);
+        } else if (identity instanceof IE5gTmsiMobileIdentity) {
+            var tmsi = (IE5gTmsiMobileIdentity) identity;
+            tmsi.tmsi = rewrite(tmsi.tmsi, offset);
+        } else if (identity instanceof IEImeiMobileIdentity) {
+            var imei = (IEImeiMobileIdentity) identity;
+            if (imei.imei != null && imei.imei.length() == 15) {
+                var body = addToDigits(imei.imei.substring(0, 14), offset);
+                imei.imei = body + UeConfigFactory.luhnDigit(body);
+            }
+        }
+        return identity;
+    }
+
+    private static V5gTmsi rewrite(V5gTmsi tmsi, long offset) {
+        return tmsi == null ? null : new V5gTmsi((tmsi.value.longValue() + offset) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds the offset to the decimal number in the given digits, wrapping around within the same number of digits.
+     */
+    static String addToDigits(String digits, long offset) {
+        if (digits == null || digits.isEmpty() || digits.length() > 18
+                || !digits.chars().allMatch(Character::isDigit)) {
+            return digits;
+        }
+        long modulus = 1;
+        for (int i = 0; i < digits.length(); i++) {
+            modulus *= 10;
+        }
+        long value = Math.floorMod(Long.parseLong(digits) + offset, modulus);
+        return Utils.padLeft(Long.toString(value), digits.length(), '0');
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import fr.marben.asnsdk.japi.spe.Value;
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_S_TMSI;
+import tr.havelsan.ueransim.ngap.ngap_ies.NAS_PDU;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_IDs;
+import tr.havelsan.ueransim.ngap.ngap_ies.UE_NGAP_ID_pair;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.ngap2.NgapMessageType;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The UE-associated uplink NGAP messages of a recorded trace, to be replayed by the gNBs. The UEs of the trace are
+ * identified by their RAN-UE-NGAP-IDs within each SCTP association, and numbered in the order they appear.
+ * <p>
+ * The downlink messages are not replayed, but each uplink message records how many downlink messages its UE had
+ * received before it in the trace. A replayed message is held back until its UE has received as many, so that the
+ * responses of the UE do not overtake the requests of the AMF at high speeds.
+ */
+public class NgapTrace {
+
+    // Messages sent by the gNB, the other UE-associated messages are sent by the AMF
+    private static final EnumSet<NgapMessageType> UPLINK_TYPES = EnumSet.of(
+            NgapMessageType.InitialUEMessage,
+            NgapMessageType.UplinkNASTransport,
+            NgapMessageType.NASNonDeliveryIndication,
+            NgapMessageType.InitialContextSetupResponse,
+            NgapMessageType.InitialContextSetupFailure,
+            NgapMessageType.UEContextReleaseRequest,
+            NgapMessageType.UEContextReleaseComplete,
+            NgapMessageType.UEContextModificationResponse,
+            NgapMessageType.UEContextModificationFailure,
+            NgapMessageType.UERadioCapabilityInfoIndication,
+            NgapMessageType.UERadioCapabilityCheckResponse,
+            NgapMessageType.PDUSessionResourceSetupResponse,
+            NgapMessageType.PDUSessionResourceReleaseResponse,
+            NgapMessageType.PDUSessionResourceModifyResponse,
+            NgapMessageType.PDUSessionResourceModifyIndication,
+            NgapMessageType.PDUSessionResourceNotify,
+            NgapMessageType.HandoverRequired,
+            NgapMessageType.HandoverRequestAcknowledge,
+            NgapMessageType.HandoverFailure,
+            NgapMessageType.HandoverNotify,
+            NgapMessageType.HandoverCancel,
+            NgapMessageType.PathSwitchRequest,
+            NgapMessageType.UplinkRANStatusTransfer,
+            NgapMessageType.LocationReport,
+            NgapMessageType.LocationReportingFailureIndication,
+            NgapMessageType.CellTrafficTrace,
+            NgapMessageType.TraceFailureIndication,
+            NgapMessageType.RRCInactiveTransitionReport,
+            NgapMessageType.UplinkUEAssociatedNRPPaTransport);
+
+    public final List<Message> messages;
+    public final int ueCount;
+
+    private NgapTrace(List<Message> messages, int ueCount) {
+        this.messages = Collections.unmodifiableList(messages);
+        this.ueCount = ueCount;
+    }
+
+    /**
+     * An uplink message of the trace. The UE-NGAP-IDs, the NAS PDU and the 5G-S-TMSI are kept apart from the other
+     * IEs, since they are rewritten for each replayed UE.
+     */
+    public static final class Message {
+        public final long offsetMicros;
+        public final int ue;
+        public final int downlinksBefore;
+        public final NgapMessageType messageType;
+        public final List<Value> protocolIEs;
+        public final byte[] nasPdu;
+        public final FiveG_S_TMSI fiveGSTmsi;
+
+        Message(long offsetMicros, int ue, int downlinksBefore, NgapMessageType messageType, List<Value> protocolIEs,
+                byte[] nasPdu, FiveG_S_TMSI fiveGSTmsi) {
+            this.offsetMicros = offsetMicros;
+            this.ue = ue;
+            this.downlinksBefore = downlinksBefore;
+            this.messageType = messageType;
+            this.protocolIEs = protocolIEs;
+            this.nasPdu = nasPdu;
+            this.fiveGSTmsi = fiveGSTmsi;
+        }
+    }
+
+    public static NgapTrace load(Path path) throws IOException {
+        var chunks = PcapTraceReader.read(path);
+
+        var messages = new ArrayList<Message>();
+        // Keyed by the association index in the upper bits and the RAN-UE-NGAP-ID or AMF-UE-NGAP-ID in the lower bits
+        var uesByRanId = new HashMap<Long, Integer>();
+        var uesByAmfId = new HashMap<Long, Integer>();
+        var downlinks = new ArrayList<Integer>();
+        int undecoded = 0;
+
+        long startMicros = chunks.isEmpty() ? 0 : chunks.get(0).timeMicros;
+        for (var chunk : chunks) {
+            Value ngapMessage;
+            try {
+                ngapMessage = NgapInternal.extractNgapMessage(Ngap.perDecode(NGAP_PDU.class, chunk.data));
+            } catch (Exception e) {
+                undecoded++;
+                continue;
+            }
+            if (ngapMessage == null) {
+                undecoded++;
+                continue;
+            }
+
+            var messageType = NgapMessageType.valueOf(ngapMessage.getClass().getSimpleName());
+            var ranIds = NgapInternal.extractProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class);
+            var amfIds = NgapInternal.extractProtocolIe(ngapMessage, AMF_UE_NGAP_ID.class);
+            long association = (long) chunk.association << 40;
+
+            if (UPLINK_TYPES.contains(messageType)) {
+                if (ranIds.isEmpty()) {
+                    continue;
+                }
+                long key = association | ranIds.get(0).value;
+                var ue = uesByRanId.get(key);
+                if (ue == null) {
+                    ue = downlinks.size();
+                    uesByRanId.put(key, ue);
+                    downlinks.add(0);
+                }
+                if (!amfIds.isEmpty()) {
+                    uesByAmfId.put(association | amfIds.get(0).value, ue);
+                }
+                messages.add(newMessage(chunk.timeMicros - startMicros, ue, downlinks.get(ue), messageType,
+                        ngapMessage));
+                continue;
+            }
+
+            // A downlink message, only counted for the UE it is sent to
+            Integer ue = null;
+            if (!ranIds.isEmpty()) {
+                ue = uesByRanId.get(association | ranIds.get(0).value);
+            } else {
+                var ueNgapIds = NgapInternal.extractProtocolIe(ngapMessage, UE_NGAP_IDs.class);
+                if (!ueNgapIds.isEmpty()) {
+                    var ids = ueNgapIds.get(0);
+                    if (ids.getFieldNumber() == UE_NGAP_IDs.ASN_uE_NGAP_ID_pair) {
+                        ue = uesByRanId.get(association | ((UE_NGAP_ID_pair) ids.getValue()).rAN_UE_NGAP_ID.value);
+                    } else {
+                        ue = uesByAmfId.get(association | ((AMF_UE_NGAP_ID) ids.getValue()).value);
+                    }
+                }
+            }
+            if (ue != null) {
+                if (!amfIds.isEmpty()) {
+                    uesByAmfId.put(association | amfIds.get(0).value, ue);
+                }
+                downlinks.set(ue, downlinks.get(ue) + 1);
+            }
+        }
+
+        if (undecoded > 0) {
+            Logging.warning(Tag.SYSTEM, "%d messages of the trace could not be decoded and are skipped", undecoded);
+        }
+        return new NgapTrace(messages, downlinks.size());
+    }
+
+    private static Message newMessage(long offsetMicros, int ue, int downlinksBefore, NgapMessageType messageType,
+                                      Value ngapMessage) {
+        var protocolIEs = new ArrayList<Value>();
+        byte[] nasPdu = null;
+        FiveG_S_TMSI fiveGSTmsi = null;
+        for (var ie : NgapInternal.extractProtocolIe(ngapMessage, Value.class)) {
+            if (ie instanceof RAN_UE_NGAP_ID || ie instanceof AMF_UE_NGAP_ID) {
+                // Added by the gNB for the replayed UE
+                continue;
+            }
+            if (ie instanceof NAS_PDU) {
+                nasPdu = ((NAS_PDU) ie).getValue();
+            } else if (ie instanceof FiveG_S_TMSI) {
+                fiveGSTmsi = (FiveG_S_TMSI) ie;
+            } else {
+                protocolIEs.add(ie);
+            }
+        }
+        return new Message(offsetMicros, ue, downlinksBefore, messageType, protocolIEs, nasPdu, fiveGSTmsi);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads the NGAP messages of a pcap file, e.g. one written by the capture of the gNBs. Messages are taken from the
+ * unfragmented SCTP DATA chunks with the NGAP payload protocol identifier, over IPv4 or IPv6 on raw IP, Ethernet and
+ * Linux cooked captures. Fragmented IP packets and fragmented user messages are skipped.
+ */
+public class PcapTraceReader {
+    private static final int MAGIC_MICROS = 0xA1B2C3D4;
+    private static final int MAGIC_NANOS = 0xA1B23C4D;
+
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int LINKTYPE_LINUX_SLL = 113;
+    private static final int LINKTYPE_IPV4 = 228;
+    private static final int LINKTYPE_IPV6 = 229;
+    private static final int LINKTYPE_LINUX_SLL2 = 276;
+
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+
+    private static final int IP_PROTOCOL_SCTP = 132;
+    private static final int SCTP_CHUNK_DATA = 0;
+    private static final int NGAP_PPID = 60;
+
+    /**
+     * An NGAP message of the trace. Messages of the same SCTP association have the same association index, in the
+     * order the associations appear in the trace.
+     */
+    public static final class TraceChunk {
+        public final long timeMicros;
+        public final int association;
+        public final int streamNumber;
+        public final byte[] data;
+
+        TraceChunk(long timeMicros, int association, int streamNumber, byte[] data) {
+            this.timeMicros = timeMicros;
+            this.association = association;
+            this.streamNumber = streamNumber;
+            this.data = data;
+        }
+    }
+
+    public static List<TraceChunk> read(Path path) throws IOException {
+        ByteBuffer file;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(file);
+    }
+
+    static List<TraceChunk> read(ByteBuffer file) throws IOException {
+        if (file.remaining() < 24) {
+            throw new IOException("not a pcap file");
+        }
+
+        int magic = file.getInt(0);
+        if (magic == Integer.reverseBytes(MAGIC_MICROS) || magic == Integer.reverseBytes(MAGIC_NANOS)) {
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            magic = Integer.reverseBytes(magic);
+        }
+        if (magic != MAGIC_MICROS && magic != MAGIC_NANOS) {
+            throw new IOException("not a pcap file, pcapng files must be converted first");
+        }
+        boolean nanos = magic == MAGIC_NANOS;
+        int linkType = file.getInt(20) & 0xFFFF;
+
+        var chunks = new ArrayList<TraceChunk>();
+        var associations = new HashMap<String, Integer>();
+
+        int position = 24;
+        while (position + 16 <= file.limit()) {
+            long seconds = file.getInt(position) & 0xFFFFFFFFL;
+            long fraction = file.getInt(position + 4) & 0xFFFFFFFFL;
+            int capturedLength = file.getInt(position + 8);
+            int packetStart = position + 16;
+            position = packetStart + capturedLength;
+            if (capturedLength < 0 || position > file.limit()) {
+                break;
+            }
+
+            long timeMicros = seconds * 1_000_000 + (nanos ? fraction / 1000 : fraction);
+            var packet = file.duplicate().order(ByteOrder.BIG_ENDIAN);
+            packet.position(packetStart).limit(position);
+            int ipStart = ipStart(packet, linkType);
+            if (ipStart >= 0) {
+                readIpPacket(packet, ipStart, timeMicros, associations, chunks);
+            }
+        }
+        return chunks;
+    }
+
+    private static int ipStart(ByteBuffer packet, int linkType) throws IOException {
+        int start = packet.position();
+        int etherTypeOffset;
+        int headerLength;
+        switch (linkType) {
+            case LINKTYPE_RAW:
+            case LINKTYPE_IPV4:
+            case LINKTYPE_IPV6:
+                return start;
+            case LINKTYPE_ETHERNET:
+                etherTypeOffset = 12;
+                headerLength = 14;
+                break;
+            case LINKTYPE_LINUX_SLL:
+                etherTypeOffset = 14;
+                headerLength = 16;
+                break;
+            case LINKTYPE_LINUX_SLL2:
+                etherTypeOffset = 0;
+                headerLength = 20;
+                break;
+            default:
+                throw new IOException("unsupported pcap link type: " + linkType);
+        }
+
+        if (packet.remaining() < headerLength) {
+            return -1;
+        }
+        int etherType = packet.getShort(start + etherTypeOffset) & 0xFFFF;
+        if (linkType == LINKTYPE_ETHERNET && etherType == ETHERTYPE_VLAN && packet.remaining() >= 18) {
+            etherType = packet.getShort(start + 16) & 0xFFFF;
+            headerLength = 18;
+        }
+        return etherType == ETHERTYPE_IPV4 || etherType == ETHERTYPE_IPV6 ? start + headerLength : -1;
+    }
+
+    private static void readIpPacket(ByteBuffer packet, int ipStart, long timeMicros,
+                                     HashMap<String, Integer> associations, List<TraceChunk> chunks) {
+        int end = packet.limit();
+        if (end - ipStart < 20) {
+            return;
+        }
+
+        int version = (packet.get(ipStart) & 0xFF) >> 4;
+        int sctpStart;
+        byte[] source;
+        byte[] destination;
+        if (version == 4) {
+            int headerLength = (packet.get(ipStart) & 0x0F) * 4;
+            int fragment = packet.getShort(ipStart + 6) & 0x3FFF;
+            if (fragment != 0 || (packet.get(ipStart + 9) & 0xFF) != IP_PROTOCOL_SCTP) {
+                return;
+            }
+            end = Math.min(end, ipStart + (packet.getShort(ipStart + 2) & 0xFFFF));
+            source = bytes(packet, ipStart + 12, 4);
+            destination = bytes(packet, ipStart + 16, 4);
+            sctpStart = ipStart + headerLength;
+        } else if (version == 6 && end - ipStart >= 40) {
+            // Extension headers are not followed, SCTP is expected right after the fixed header
+            if ((packet.get(ipStart + 6) & 0xFF) != IP_PROTOCOL_SCTP) {
+                return;
+            }
+            end = Math.min(end, ipStart + 40 + (packet.getShort(ipStart + 4) & 0xFFFF));
+            source = bytes(packet, ipStart + 8, 16);
+            destination = bytes(packet, ipStart + 24, 16);
+            sctpStart = ipStart + 40;
+        } else {
+            return;
+        }
+
+        if (end - sctpStart < 12) {
+            return;
+        }
+        int sourcePort = packet.getShort(sctpStart) & 0xFFFF;
+        int destinationPort = packet.getShort(sctpStart + 2) & 0xFFFF;
+        int association = associationIndex(associations, source, sourcePort, destination, destinationPort);
+
+        int chunkStart = sctpStart + 12;
+        while (chunkStart + 4 <= end) {
+            int type = packet.get(chunkStart) & 0xFF;
+            int flags = packet.get(chunkStart + 1) & 0xFF;
+            int length = packet.getShort(chunkStart + 2) & 0xFFFF;
+            if (length < 4 || chunkStart + length > end) {
+                return;
+            }
+            // Only the unfragmented user messages, both the beginning and the ending flags are set
+            if (type == SCTP_CHUNK_DATA && length > 16 && (flags & 0x03) == 0x03
+                    && packet.getInt(chunkStart + 12) == NGAP_PPID) {
+                int streamNumber = packet.getShort(chunkStart + 8) & 0xFFFF;
+                chunks.add(new TraceChunk(timeMicros, association, streamNumber,
+                        bytes(packet, chunkStart + 16, length - 16)));
+            }
+            chunkStart += (length + 3) & ~3;
+        }
+    }
+
+    private static int associationIndex(HashMap<String, Integer> associations, byte[] source, int sourcePort,
+                                        byte[] destination, int destinationPort) {
+        var a = Arrays.toString(source) + ":" + sourcePort;
+        var b = Arrays.toString(destination) + ":" + destinationPort;
+        var key = a.compareTo(b) < 0 ? a + "-" + b : b + "-" + a;
+        return associations.computeIfAbsent(key, k -> associations.size());
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int index, int length) {
+        var bytes = new byte[length];
+        buffer.duplicate().position(index).get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_S_TMSI;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+/**
+ * A UE of one of the copies of a replayed trace. Created by the replayer when the first message of the UE is due, and
+ * then only accessed by the looper of its gNB.
+ */
+public class ReplayedUe {
+    public final GnbSimContext gnb;
+    // Key of the gNB UE context, version 0 UUIDs are never generated for the simulated UEs
+    public final UUID id;
+    public final long identityOffset;
+    public final ReplayCounters counters;
+
+    // Messages waiting for the downlink messages received before them in the trace
+    private final ArrayDeque<NgapTrace.Message> pendingMessages;
+    private int receivedDownlinks;
+
+    public ReplayedUe(GnbSimContext gnb, long index, long identityOffset, ReplayCounters counters) {
+        this.gnb = gnb;
+        this.id = new UUID(0, index);
+        this.identityOffset = identityOffset;
+        this.counters = counters;
+        this.pendingMessages = new ArrayDeque<>();
+    }
+
+    /**
+     * Returns true if the message can be sent now. Otherwise the message is held until the downlink messages received
+     * before it in the trace are received, behind the messages of the UE that are already held.
+     */
+    public boolean admit(NgapTrace.Message message) {
+        if (pendingMessages.isEmpty() && receivedDownlinks >= message.downlinksBefore) {
+            return true;
+        }
+        pendingMessages.add(message);
+        counters.held.increment();
+        return false;
+    }
+
+    public void downlinkReceived() {
+        receivedDownlinks++;
+    }
+
+    /**
+     * Returns the next held message that can be sent now, or null if there is none.
+     */
+    public NgapTrace.Message pollReleased() {
+        var message = pendingMessages.peek();
+        if (message == null || message.downlinksBefore > receivedDownlinks) {
+            return null;
+        }
+        pendingMessages.poll();
+        counters.held.decrement();
+        return message;
+    }
+
+    public byte[] nasPduOf(NgapTrace.Message message) {
+        return IdentityRewriter.rewriteNasPdu(message.nasPdu, identityOffset);
+    }
+
+    public FiveG_S_TMSI fiveGSTmsiOf(NgapTrace.Message message) {
+        return IdentityRewriter.rewriteFiveGSTmsi(message.fiveGSTmsi, identityOffset);
+    }
+}
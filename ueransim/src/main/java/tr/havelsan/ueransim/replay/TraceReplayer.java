@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import tr.havelsan.ueransim.AppConfig;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.nodes.GnbNode;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
+import tr.havelsan.ueransim.events.gnb.GnbReplayEvent;
+import tr.havelsan.ueransim.metrics.MetricsReporter;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.structs.ReplayConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Replays the uplink messages of a recorded NGAP trace towards the AMF, through the associations of simulated gNBs.
+ * The trace is multiplied into independent copies, each starting a copy interval after the previous one, whose UEs
+ * get their own UE-NGAP-IDs and have their identities shifted by the identity stride. The UEs of the copies are
+ * distributed over the gNBs in round-robin order.
+ * <p>
+ * The messages are dispatched at their trace times divided by the speed, by a single entry of the timing wheel that
+ * merges the copies in time order. The UE state machines are not simulated, so this reproduces the load shape of the
+ * trace rather than valid procedures, e.g. the security protected NAS messages are replayed as they are.
+ */
+public class TraceReplayer {
+    // Upper bound of the messages dispatched by one expiry, so that the gNBs are not flooded at full speed
+    private static final int MAX_DISPATCH_BATCH = 10_000;
+
+    private final SimulationContext simCtx;
+    private final ReplayConfig config;
+    private final NgapTrace trace;
+    private final ReplayTimer replayTimer;
+    private final PriorityQueue<Cursor> cursors;
+    private final ReplayedUe[] ues;
+    private final ReplayCounters counters;
+    private final CountDownLatch completion;
+    private final MetricsReporter metricsReporter;
+
+    private GnbSimContext[] gnbs;
+    private long startMillis;
+    private long dispatched;
+
+    public TraceReplayer(SimulationContext simCtx, ReplayConfig config) {
+        if (config.copies <= 0 || config.gnbCount <= 0) {
+            throw new IllegalArgumentException("copies and gnbCount must be positive");
+        }
+        this.simCtx = simCtx;
+        this.config = config;
+        try {
+            this.trace = NgapTrace.load(Path.of(config.traceFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.replayTimer = new ReplayTimer();
+        this.cursors = new PriorityQueue<>(Comparator.comparingLong(cursor -> cursor.dueMillis));
+        this.ues = new ReplayedUe[Math.multiplyExact(config.copies, trace.ueCount)];
+        this.counters = new ReplayCounters();
+        this.completion = new CountDownLatch(1);
+        this.metricsReporter = config.reportInterval > 0 ? new MetricsReporter(simCtx, config.reportInterval) : null;
+    }
+
+    public static ReplayConfig loadConfig(String file) {
+        return ((ImplicitTypedObject) MtsDecoder.decode(file)).asConstructed(ReplayConfig.class);
+    }
+
+    public void start() {
+        createGnbs();
+
+        if (!trace.messages.isEmpty()) {
+            for (int copy = 0; copy < config.copies; copy++) {
+                var cursor = new Cursor(copy);
+                cursor.dueMillis = dueMillis(cursor);
+                cursors.add(cursor);
+            }
+        }
+        if (metricsReporter != null) {
+            metricsReporter.start();
+        }
+
+        Logging.info(Tag.SYSTEM, "Trace replay starts in %d ms: %d messages of %d UEs, %d copies over %d gNBs, "
+                        + "speed=%.2f", config.startDelay, trace.messages.size(), trace.ueCount, config.copies,
+                config.gnbCount, config.speed);
+
+        startMillis = simCtx.timingWheel.getClock().millis() + config.startDelay;
+        simCtx.timingWheel.schedule(replayTimer, Math.max(1, config.startDelay));
+    }
+
+    /**
+     * Blocks until every message of every copy is dispatched to the gNBs, and each one is either sent or held by its
+     * gNB for the downlink messages before it.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        completion.await();
+    }
+
+    public boolean isCompleted() {
+        return completion.getCount() == 0;
+    }
+
+    private void createGnbs() {
+        var template = (ImplicitTypedObject) MtsDecoder.decode(config.gnbTemplate);
+        int baseGnbId = template.getInt("gnbId");
+
+        gnbs = new GnbSimContext[config.gnbCount];
+        for (int i = 0; i < gnbs.length; i++) {
+            var parameters = new LinkedHashMap<>(template.getParameters());
+            parameters.put("gnbId", baseGnbId + i);
+
+            var gnb = AppConfig.createGnbSimContext(simCtx, new ImplicitTypedObject(parameters));
+            Simulation.registerGnb(simCtx, gnb);
+            gnbs[i] = gnb;
+            GnbNode.run(gnb);
+            gnb.pushEvent(new GnbCommandEvent("ngsetup"));
+        }
+    }
+
+    private long dueMillis(Cursor cursor) {
+        long due = cursor.copy * config.copyInterval;
+        if (config.speed > 0) {
+            due += (long) (trace.messages.get(cursor.index).offsetMicros / 1000.0 / config.speed);
+        }
+        return due;
+    }
+
+    private void dispatch(Cursor cursor) {
+        var message = trace.messages.get(cursor.index);
+        int index = cursor.copy * trace.ueCount + message.ue;
+        var ue = ues[index];
+        if (ue == null) {
+            ue = new ReplayedUe(gnbs[index % gnbs.length], index, cursor.copy * config.identityStride, counters);
+            ues[index] = ue;
+        }
+        ue.gnb.pushEvent(new GnbReplayEvent(ue, message));
+        dispatched++;
+    }
+
+    private void finish() {
+        if (metricsReporter != null) {
+            metricsReporter.stop();
+        }
+        var summary = String.format("Trace replay finished: %d messages dispatched, %d sent, %d held back for "
+                        + "downlinks%n%s", dispatched, counters.sent.sum(), counters.held.sum(),
+                MetricsReporter.summary(simCtx.metrics));
+        Logging.info(Tag.PROCEDURE_RESULT, "%s", summary);
+        System.out.print(summary);
+        completion.countDown();
+    }
+
+    private static final class Cursor {
+        final int copy;
+        int index;
+        long dueMillis;
+
+        Cursor(int copy) {
+            this.copy = copy;
+        }
+    }
+
+    private class ReplayTimer extends TimerEntry {
+
+        @Override
+        protected void onExpire(long generation) {
+            long elapsed = simCtx.timingWheel.getClock().millis() - startMillis;
+
+            int batch = 0;
+            while (!cursors.isEmpty() && cursors.peek().dueMillis <= elapsed && batch < MAX_DISPATCH_BATCH) {
+                var cursor = cursors.poll();
+                dispatch(cursor);
+                batch++;
+
+                if (++cursor.index < trace.messages.size()) {
+                    cursor.dueMillis = dueMillis(cursor);
+                    cursors.add(cursor);
+                }
+            }
+
+            if (cursors.isEmpty()) {
+                // The last messages may still be in the mailboxes of the gNBs
+                if (counters.sent.sum() + counters.held.sum() < dispatched) {
+                    simCtx.timingWheel.schedule(this, 1);
+                } else {
+                    finish();
+                }
+            } else {
+                simCtx.timingWheel.schedule(this, Math.max(1, cursors.peek().dueMillis - elapsed));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.shard;
+
+import tr.havelsan.ueransim.structs.LoadConfig;
+import tr.havelsan.ueransim.structs.PacerConfig;
+
+/**
+ * The part of a load run owned by one worker process of a sharded run: a contiguous range of the UE indices, and so
+ * of the SUPIs, and a contiguous range of the gNBs. The global rates are divided among the workers, so that the
+ * workers together generate the configured load without sharing any state.
+ */
+public final class Shard {
+    public final int index;
+    public final int count;
+    public final int firstUe;
+    public final int ueCount;
+    public final int firstGnb;
+    public final int gnbCount;
+
+    private Shard(int index, int count, int firstUe, int ueCount, int firstGnb, int gnbCount) {
+        this.index = index;
+        this.count = count;
+        this.firstUe = firstUe;
+        this.ueCount = ueCount;
+        this.firstGnb = firstGnb;
+        this.gnbCount = gnbCount;
+    }
+
+    public static Shard of(LoadConfig config, int index, int count) {
+        if (count <= 0 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("invalid shard: " + index + "/" + count);
+        }
+        if (config.ueCount < count || config.gnbCount < count) {
+            throw new IllegalArgumentException("each worker needs at least one UE and one gNB");
+        }
+        int firstUe = split(config.ueCount, index, count);
+        int firstGnb = split(config.gnbCount, index, count);
+        return new Shard(index, count, firstUe, split(config.ueCount, index + 1, count) - firstUe,
+                firstGnb, split(config.gnbCount, index + 1, count) - firstGnb);
+    }
+
+    /**
+     * Parses a shard given as "index/count", e.g. on the command line of a worker.
+     */
+    public static Shard parse(LoadConfig config, String value) {
+        int separator = value.indexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("shard must be given as index/count: " + value);
+        }
+        return of(config, Integer.parseInt(value.substring(0, separator)),
+                Integer.parseInt(value.substring(separator + 1)));
+    }
+
+    /**
+     * Returns the configuration of the load generator of this shard. The counts are the ones of the shard, the
+     * arrival rate and the global pacer limits are divided by the number of shards, and each shard writes and
+     * restores its own snapshot file.
+     */
+    public LoadConfig apply(LoadConfig config) {
+        var pacer = config.pacer;
+        if (pacer != null) {
+            pacer = new PacerConfig(pacer.globalRate / count, pacer.gnbRate, pacer.burst,
+                    Math.max(1, (pacer.maxInFlight + count - 1) / count), pacer.closedLoop, pacer.minRate / count,
+                    pacer.adjustInterval, pacer.p99Threshold, pacer.failureThreshold);
+        }
+        return new LoadConfig(config.ueTemplate, config.gnbTemplate, ueCount, gnbCount, config.keySeed,
+                config.procedure, config.profile, config.rate / count, config.rampDuration, config.stepCount,
+                config.stepDuration, config.startDelay, config.idleAfterRegistration, config.periodicJitter,
+                config.reportInterval, pacer, config.population, shardFile(config.snapshotFile),
+                shardFile(config.restoreFile));
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    private String shardFile(String file) {
+        if (file == null || file.isEmpty()) {
+            return file;
+        }
+        int dot = file.lastIndexOf('.');
+        if (dot <= file.lastIndexOf('/')) {
+            return file + "-" + index;
+        }
+        return file.substring(0, dot) + "-" + index + file.substring(dot);
+    }
+
+    private static int split(int total, int index, int count) {
+        return (int) ((long) total * index / count);
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.shard;
+
+import tr.havelsan.ueransim.Program;
+import tr.havelsan.ueransim.core.threads.BaseThread;
+import tr.havelsan.ueransim.structs.LoadConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a load on several worker processes on the same host, each generating the load of its own {@link Shard} with
+ * its own heap, threads and mocked AMF, so that nothing is shared between the workers.
+ * <p>
+ * The workers are started with the JVM options of the coordinator, and with the processors divided among them. They
+ * connect back to the coordinator on a loopback port, and the load is started on all of them at once when they are
+ * all connected. The coordinator then aggregates the metrics of the workers periodically and when they are finished,
+ * and distributes the commands typed on its standard input:
+ * <pre>
+ * ue &lt;command&gt;    pushes the command to all UEs of all workers
+ * gnb &lt;command&gt;   pushes the command to all gNBs of all workers
+ * metrics          prints the aggregated metrics
+ * stop             stops the run
+ * </pre>
+ */
+public class ShardCoordinator {
+    private static final int CONNECT_TIMEOUT_MILLIS = 60_000;
+    private static final long REPLY_TIMEOUT_MILLIS = 10_000;
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final LoadConfig config;
+    private final String loadFile;
+    private final String workerHeap;
+    private final List<String> workerOptions;
+    private final Worker[] workers;
+    private final CountDownLatch completion;
+    // Requests are sent to all workers at once, so that the replies are not interleaved with the ones of another
+    private final Object requestLock;
+
+    private volatile boolean failed;
+    private volatile boolean stopping;
+
+    /**
+     * @param workerHeap    maximum heap size of each worker, e.g. "4g", or null to use the one of the coordinator
+     * @param workerOptions options of the simulator passed to each worker, e.g. "--no-debug"
+     */
+    public ShardCoordinator(LoadConfig config, String loadFile, int workerCount, String workerHeap,
+                            List<String> workerOptions) {
+        this.config = config;
+        this.loadFile = loadFile;
+        this.workerHeap = workerHeap;
+        this.workerOptions = workerOptions;
+        this.workers = new Worker[workerCount];
+        this.completion = new CountDownLatch(workerCount);
+        this.requestLock = new Object();
+
+        // Validates the shards before any process is started
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(Shard.of(config, i, workerCount));
+        }
+    }
+
+    /**
+     * Starts the workers, and the load on all of them once they are all connected.
+     */
+    public void start() throws IOException {
+        try (var serverSocket = new ServerSocket(0, workers.length, InetAddress.getLoopbackAddress())) {
+            serverSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (var worker : workers) {
+                worker.process = startProcess(worker.shard, serverSocket.getLocalPort());
+            }
+
+            for (int i = 0; i < workers.length; i++) {
+                // Times out if a worker fails to start
+                var socket = serverSocket.accept();
+                socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                var connection = new Connection(socket);
+                var hello = connection.readLine();
+                socket.setSoTimeout(0);
+                var tokens = hello != null ? hello.split(" ") : new String[0];
+                if (tokens.length != 2 || !tokens[0].equals("hello")) {
+                    throw new IOException("unexpected greeting of a worker: " + hello);
+                }
+                var worker = workers[Integer.parseInt(tokens[1])];
+                if (worker.connection != null) {
+                    throw new IOException("worker is connected twice: " + worker.shard);
+                }
+                worker.connection = connection;
+            }
+        }
+
+        for (var worker : workers) {
+            worker.startReceiver();
+        }
+        Logging.info(Tag.SYSTEM, "All %d workers are connected, starting the load", workers.length);
+        for (var reply : broadcast("start")) {
+            if (!reply.startsWith("ok")) {
+                throw new IOException("load could not be started: " + reply);
+            }
+        }
+
+        if (config.reportInterval > 0) {
+            startDaemon("shard-reporter", this::reportLoop);
+        }
+        startDaemon("shard-console", this::consoleLoop);
+    }
+
+    /**
+     * Blocks until all workers are finished, or one of them fails or the run is stopped. Returns true if all workers
+     * are finished.
+     */
+    public boolean awaitCompletion() throws InterruptedException {
+        completion.await();
+        if (failed) {
+            return false;
+        }
+
+        var metrics = new ShardMetrics();
+        for (var worker : workers) {
+            metrics.add(worker.finalMetrics);
+        }
+        var summary = String.format("Sharded load run finished: %d UEs, %d gNBs over %d workers, profile=%s " +
+                        "rate=%.2f/s%n%s", config.ueCount, config.gnbCount, workers.length, config.profile,
+                config.rate, metrics.summary());
+        Logging.info(Tag.PROCEDURE_RESULT, "%s", summary);
+        System.out.print(summary);
+        return true;
+    }
+
+    /**
+     * Stops the workers, forcibly if they do not exit in time. Can be called more than once.
+     */
+    public synchronized void stop() {
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+
+        for (var worker : workers) {
+            if (worker.connection != null) {
+                try {
+                    worker.connection.send("stop");
+                } catch (IOException e) {
+                    Logging.debug(Tag.CONNECTION, "Worker %s could not be stopped: %s", worker.shard, e);
+                }
+            }
+        }
+        for (var worker : workers) {
+            if (worker.process == null) {
+                continue;
+            }
+            try {
+                if (!worker.process.waitFor(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    Logging.warning(Tag.SYSTEM, "Worker %s did not exit in time, destroying it", worker.shard);
+                    worker.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                worker.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            if (worker.connection != null) {
+                worker.connection.close();
+            }
+        }
+
+        // Releases awaitCompletion if the run is stopped before it is finished
+        failed |= completion.getCount() > 0;
+        while (completion.getCount() > 0) {
+            completion.countDown();
+        }
+    }
+
+    /**
+     * Returns the metrics of all workers together.
+     */
+    public ShardMetrics collectMetrics() throws IOException {
+        var metrics = new ShardMetrics();
+        for (var reply : broadcast("metrics")) {
+            if (!reply.startsWith("metrics")) {
+                throw new IOException("unexpected reply to metrics: " + reply);
+            }
+            metrics.add(ShardMetrics.decode(reply.substring("metrics".length())));
+        }
+        return metrics;
+    }
+
+    private List<String> broadcast(String request) throws IOException {
+        synchronized (requestLock) {
+            var replies = new ArrayList<String>(workers.length);
+            for (var worker : workers) {
+                // Drops a late reply to an earlier request that timed out
+                worker.replies.clear();
+                worker.connection.send(request);
+            }
+            for (var worker : workers) {
+                replies.add(worker.awaitReply());
+            }
+            return replies;
+        }
+    }
+
+    private Process startProcess(Shard shard, int port) throws IOException {
+        var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (var option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // A debugger agent would listen on the same port in all processes
+            if (option.startsWith("-agentlib:jdwp") || (workerHeap != null && option.startsWith("-Xmx"))
+                    || option.startsWith("-XX:ActiveProcessorCount")) {
+                continue;
+            }
+            command.add(option);
+        }
+        if (workerHeap != null) {
+            command.add("-Xmx" + workerHeap);
+        }
+        // The thread pools of each worker are sized by its share of the processors
+        int processors = Math.max(1, Runtime.getRuntime().availableProcessors() / workers.length);
+        command.add("-XX:ActiveProcessorCount=" + processors);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Program.class.getName());
+        command.add("worker");
+        command.add(loadFile);
+        command.add("--shard");
+        command.add(shard.toString());
+        command.add("--coordinator-port");
+        command.add(Integer.toString(port));
+        command.addAll(workerOptions);
+
+        Logging.info(Tag.SYSTEM, "Starting worker %s: %d UEs, %d gNBs", shard, shard.ueCount, shard.gnbCount);
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private void reportLoop() {
+        while (!stopping && completion.getCount() > 0) {
+            try {
+                Thread.sleep(config.reportInterval);
+                var report = String.format("Aggregated metrics of %d workers:%n%s", workers.length,
+                        collectMetrics().summary());
+                Logging.info(Tag.PROCEDURE_RESULT, "%s", report);
+                System.out.print(report);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                Logging.debug(Tag.SYSTEM, "Metrics could not be collected: %s", e);
+            }
+        }
+    }
+
+    private void consoleLoop() {
+        var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                if (request.equals("stop")) {
+                    stop();
+                    return;
+                }
+                if (request.equals("metrics")) {
+                    System.out.print(collectMetrics().summary());
+                    continue;
+                }
+                if (!request.startsWith("ue ") && !request.startsWith("gnb ")) {
+                    System.out.println("Unknown request, expected one of: ue <command>, gnb <command>, metrics, " +
+                            "stop");
+                    continue;
+                }
+                var replies = broadcast(request);
+                for (int i = 0; i < replies.size(); i++) {
+                    System.out.println("worker " + workers[i].shard + ": " + replies.get(i));
+                }
+            }
+        } catch (IOException e) {
+            Logging.error(Tag.SYSTEM, "Coordinator console failed: %s", e);
+        }
+    }
+
+    private void onWorkerFinished(Worker worker, ShardMetrics metrics) {
+        worker.finalMetrics = metrics;
+        Logging.info(Tag.SYSTEM, "Worker %s is finished", worker.shard);
+        completion.countDown();
+    }
+
+    private void onWorkerLost(Worker worker, String reason) {
+        if (stopping) {
+            return;
+        }
+        Logging.error(Tag.SYSTEM, "Worker %s is lost: %s", worker.shard, reason);
+        System.out.println("Worker " + worker.shard + " is lost, stopping the run: " + reason);
+        failed = true;
+        while (completion.getCount() > 0) {
+            completion.countDown();
+        }
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        var thread = new BaseThread() {
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
+        thread.setName(name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private final class Worker {
+        final Shard shard;
+        final BlockingQueue<String> replies;
+        volatile Process process;
+        volatile Connection connection;
+        volatile ShardMetrics finalMetrics;
+
+        Worker(Shard shard) {
+            this.shard = shard;
+            this.replies = new LinkedBlockingQueue<>();
+        }
+
+        void startReceiver() {
+            startDaemon("shard-receiver-" + shard.index, this::receiveLoop);
+        }
+
+        /**
+         * Dispatches the lines of the worker. Completions are handled here, everything else is a reply to a request.
+         */
+        private void receiveLoop() {
+            try {
+                String line;
+                while ((line = connection.readLine()) != null) {
+                    if (line.startsWith("done")) {
+                        onWorkerFinished(this, ShardMetrics.decode(line.substring("done".length())));
+                    } else {
+                        replies.add(line);
+                    }
+                }
+                onWorkerLost(this, "connection is closed");
+            } catch (IOException | IllegalArgumentException e) {
+                onWorkerLost(this, e.toString());
+            }
+        }
+
+        String awaitReply() throws IOException {
+            try {
+                var reply = replies.poll(REPLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (reply == null) {
+                    throw new IOException("worker " + shard + " did not reply in time");
+                }
+                return reply;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for worker " + shard);
+            }
+        }
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final BufferedWriter writer;
+
+        Connection(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+            this.socket = socket;
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.UTF_8));
+        }
+
+        String readLine() throws IOException {
+            return reader.readLine();
+        }
+
+        synchronized void send(String line) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
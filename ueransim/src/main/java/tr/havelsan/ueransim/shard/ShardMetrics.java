@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.shard;
+
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.metrics.HistogramSnapshot;
+import tr.havelsan.ueransim.metrics.MetricsReporter;
+import tr.havelsan.ueransim.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+
+/**
+ * Procedure counters and latency histograms of one or more worker processes, encoded as a single line to be sent to
+ * the coordinator and aggregated there.
+ */
+public final class ShardMetrics {
+
+    private final EnumMap<EProcedure, Procedure> procedures;
+
+    public ShardMetrics() {
+        this.procedures = new EnumMap<>(EProcedure.class);
+    }
+
+    public static ShardMetrics of(MetricsRegistry registry) {
+        var metrics = new ShardMetrics();
+        for (var procedure : EProcedure.values()) {
+            var source = registry.procedure(procedure);
+            long started = source.started.sum();
+            if (started == 0) {
+                continue;
+            }
+            metrics.procedures.put(procedure, new Procedure(started, source.succeeded.sum(), source.failed.sum(),
+                    source.timedOut.sum(), source.latency.snapshot()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Encodes the metrics as space separated "procedure=started/succeeded/failed/timedOut/histogram" tokens.
+     */
+    public String encode() {
+        var sb = new StringBuilder();
+        for (var entry : procedures.entrySet()) {
+            var procedure = entry.getValue();
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(entry.getKey().name()).append('=')
+                    .append(procedure.started).append('/')
+                    .append(procedure.succeeded).append('/')
+                    .append(procedure.failed).append('/')
+                    .append(procedure.timedOut).append('/')
+                    .append(procedure.latency.encode());
+        }
+        return sb.toString();
+    }
+
+    public static ShardMetrics decode(String encoded) {
+        var metrics = new ShardMetrics();
+        for (var token : encoded.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int separator = token.indexOf('=');
+            var fields = separator > 0 ? token.substring(separator + 1).split("/") : new String[0];
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("invalid procedure metrics: " + token);
+            }
+            metrics.procedures.put(EProcedure.valueOf(token.substring(0, separator)),
+                    new Procedure(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3]), HistogramSnapshot.decode(fields[4])));
+        }
+        return metrics;
+    }
+
+    /**
+     * Adds the metrics of another worker to these.
+     */
+    public void add(ShardMetrics other) {
+        for (var entry : other.procedures.entrySet()) {
+            procedures.merge(entry.getKey(), entry.getValue(), Procedure::plus);
+        }
+    }
+
+    public long getStarted(EProcedure procedure) {
+        var metrics = procedures.get(procedure);
+        return metrics != null ? metrics.started : 0;
+    }
+
+    public HistogramSnapshot getLatency(EProcedure procedure) {
+        var metrics = procedures.get(procedure);
+        return metrics != null ? metrics.latency : HistogramSnapshot.empty();
+    }
+
+    /**
+     * Returns the summary of the procedures, in the format of {@link MetricsReporter#summary}.
+     */
+    public String summary() {
+        var sb = new StringBuilder();
+        for (var entry : procedures.entrySet()) {
+            var procedure = entry.getValue();
+            MetricsReporter.appendProcedure(sb, entry.getKey(), procedure.started, procedure.succeeded,
+                    procedure.failed, procedure.timedOut, procedure.latency);
+        }
+        return sb.toString();
+    }
+
+    private static final class Procedure {
+        final long started;
+        final long succeeded;
+        final long failed;
+        final long timedOut;
+        final HistogramSnapshot latency;
+
+        Procedure(long started, long succeeded, long failed, long timedOut, HistogramSnapshot latency) {
+            this.started = started;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.latency = latency;
+        }
+
+        Procedure plus(Procedure other) {
+            return new Procedure(started + other.started, succeeded + other.succeeded, failed + other.failed,
+                    timedOut + other.timedOut, latency.plus(other.latency));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.shard;
+
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.threads.BaseThread;
+import tr.havelsan.ueransim.events.EventParser;
+import tr.havelsan.ueransim.events.gnb.GnbCommandEvent;
+import tr.havelsan.ueransim.events.ue.UeCommandEvent;
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.structs.LoadConfig;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker process of a sharded run. It generates the load of its {@link Shard} with its own simulation context, and
+ * serves the requests of the {@link ShardCoordinator} over a local connection, one line per request:
+ * <pre>
+ * start            starts the arrivals of the UEs, "done &lt;metrics&gt;" is sent when all UEs are finished
+ * metrics          replied with "metrics &lt;metrics&gt;", see {@link ShardMetrics#encode()}
+ * ue &lt;command&gt;    pushes the command to all UEs of the worker
+ * gnb &lt;command&gt;   pushes the command to all gNBs of the worker
+ * stop             replied with "ok", after which the worker exits
+ * </pre>
+ * Other replies are "ok ..." or "error ..." lines.
+ */
+public class ShardWorker {
+
+    private final SimulationContext simCtx;
+    private final Shard shard;
+    private final int coordinatorPort;
+    private final LoadGenerator generator;
+
+    private BufferedWriter writer;
+    private boolean started;
+
+    public ShardWorker(SimulationContext simCtx, LoadConfig config, Shard shard, int coordinatorPort) {
+        this.simCtx = simCtx;
+        this.shard = shard;
+        this.coordinatorPort = coordinatorPort;
+        this.generator = new LoadGenerator(simCtx, shard.apply(config), shard.firstUe, shard.firstGnb);
+    }
+
+    /**
+     * Connects to the coordinator and serves its requests until it sends "stop" or closes the connection.
+     */
+    public void run() throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort)) {
+            socket.setTcpNoDelay(true);
+            var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            synchronized (this) {
+                writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            }
+
+            send("hello " + shard.index);
+            Logging.info(Tag.SYSTEM, "Worker %s is connected to the coordinator: %d UEs from index %d, %d gNBs",
+                    shard, shard.ueCount, shard.firstUe, shard.gnbCount);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().equals("stop")) {
+                    send("ok");
+                    break;
+                }
+                send(execute(line));
+            }
+        }
+        Logging.info(Tag.SYSTEM, "Worker %s is stopped", shard);
+    }
+
+    private String execute(String line) {
+        var tokens = line.trim().split("\\s+", 2);
+        try {
+            switch (tokens[0]) {
+                case "start":
+                    return start();
+                case "metrics":
+                    return "metrics " + ShardMetrics.of(simCtx.metrics).encode();
+                case "ue":
+                    return executeUeCommand(tokens);
+                case "gnb":
+                    return executeGnbCommand(tokens);
+                default:
+                    return "error unknown request: " + tokens[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        }
+    }
+
+    private String start() {
+        if (started) {
+            return "error already started";
+        }
+        started = true;
+        generator.start();
+
+        var completionThread = new BaseThread() {
+            @Override
+            public void run() {
+                try {
+                    generator.awaitCompletion();
+                    send("done " + ShardMetrics.of(simCtx.metrics).encode());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    Logging.error(Tag.SYSTEM, "Completion could not be sent to the coordinator: %s", e);
+                }
+            }
+        };
+        completionThread.setName("shard-completion");
+        completionThread.setDaemon(true);
+        completionThread.start();
+        return "ok";
+    }
+
+    private String executeUeCommand(String[] tokens) {
+        if (tokens.length != 2 || !(EventParser.parse(tokens[1]) instanceof UeCommandEvent)) {
+            return "error usage: ue <command>";
+        }
+        int[] count = new int[1];
+        Simulation.forEachUe(simCtx, ue -> {
+            ue.pushEvent(new UeCommandEvent(tokens[1]));
+            count[0]++;
+        });
+        return "ok targets=" + count[0];
+    }
+
+    private String executeGnbCommand(String[] tokens) {
+        if (tokens.length != 2 || !(EventParser.parse(tokens[1]) instanceof GnbCommandEvent)) {
+            return "error usage: gnb <command>";
+        }
+        int[] count = new int[1];
+        Simulation.forEachGnb(simCtx, gnb -> {
+            gnb.pushEvent(new GnbCommandEvent(tokens[1]));
+            count[0]++;
+        });
+        return "ok targets=" + count[0];
+    }
+
+    private synchronized void send(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+}
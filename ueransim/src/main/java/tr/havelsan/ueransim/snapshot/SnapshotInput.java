@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.snapshot;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotOutput}, through a read-only window of the file mapped into memory.
+ */
+class SnapshotInput implements Closeable {
+    static final int NULL_LENGTH = 0xFFFF;
+
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    SnapshotInput(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+    }
+
+    private void map(long start) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+        windowStart = start;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (window.remaining() < length) {
+            long position = windowStart + window.position();
+            if (size - position < length) {
+                throw new EOFException("snapshot file is truncated");
+            }
+            map(position);
+        }
+    }
+
+    int getByte() throws IOException {
+        ensure(1);
+        return window.get() & 0xFF;
+    }
+
+    int getShort() throws IOException {
+        ensure(2);
+        return window.getShort() & 0xFFFF;
+    }
+
+    int getInt() throws IOException {
+        ensure(4);
+        return window.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(8);
+        return window.getLong();
+    }
+
+    byte[] getBytes() throws IOException {
+        int length = getShort();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        ensure(length);
+        var value = new byte[length];
+        window.get(value);
+        return value;
+    }
+
+    String getString() throws IOException {
+        var bytes = getBytes();
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a snapshot file through a window of the file mapped into memory, which is moved forward as the window is
+ * filled. The file is truncated to the written length when closed.
+ */
+class SnapshotOutput implements Closeable {
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    SnapshotOutput(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(0, WINDOW_SIZE);
+    }
+
+    private void map(long start, long size) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        windowStart = start;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (window.remaining() < length) {
+            map(position(), Math.max(WINDOW_SIZE, length));
+        }
+    }
+
+    long position() {
+        return windowStart + window.position();
+    }
+
+    void putByte(int value) throws IOException {
+        ensure(1);
+        window.put((byte) value);
+    }
+
+    void putShort(int value) throws IOException {
+        ensure(2);
+        window.putShort((short) value);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(4);
+        window.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(8);
+        window.putLong(value);
+    }
+
+    /**
+     * Writes the given array with a 16-bit length prefix, a null array is written as the length 0xFFFF.
+     */
+    void putBytes(byte[] value) throws IOException {
+        if (value == null) {
+            putShort(SnapshotInput.NULL_LENGTH);
+            return;
+        }
+        if (value.length >= SnapshotInput.NULL_LENGTH) {
+            throw new IOException("snapshot field is too long: " + value.length);
+        }
+        ensure(2 + value.length);
+        window.putShort((short) value.length);
+        window.put(value);
+    }
+
+    void putString(String value) throws IOException {
+        putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        long length = position();
+        window = null;
+        channel.truncate(length);
+        channel.close();
+    }
+}
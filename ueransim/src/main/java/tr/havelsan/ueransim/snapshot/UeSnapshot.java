@@ -0,0 +1,361 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.snapshot;
+
+import tr.havelsan.ueransim.AppConfig;
+import tr.havelsan.ueransim.api.gnb.GnbUeManagement;
+import tr.havelsan.ueransim.api.nas.NasSecurityContext;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EConnectionIdentifier;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.core.ies.InformationElement;
+import tr.havelsan.ueransim.nas.impl.enums.EPduSessionIdentity;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfCipheringAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfIntegrityProtectionAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.*;
+import tr.havelsan.ueransim.structs.GnbUeContext;
+import tr.havelsan.ueransim.structs.PduSession;
+import tr.havelsan.ueransim.structs.SelectedAlgorithms;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.structs.UeKeys;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.OctetInputStream;
+import tr.havelsan.ueransim.utils.OctetOutputStream;
+import tr.havelsan.ueransim.utils.Tag;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.Octet2;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Snapshot of the registered state of the UEs and the NGAP UE contexts of the gNBs, so that a test can resume
+ * from a registered population against an AMF that kept its contexts, instead of repeating the registration ramp.
+ * <p>
+ * A snapshot keeps the identity, the MM state with the 5G-GUTI and the TAIs, the current NAS security context,
+ * the PDU sessions and the SQN of each UE, and the UE-NGAP-ID tables of each gNB. Information elements are kept in
+ * their NAS encoding. The snapshot should be taken while no procedure is running, and it must be written while the
+ * loopers are paused by the {@link tr.havelsan.ueransim.core.threads.LooperGate} of the simulation, since the state of
+ * the nodes is read outside of their loopers.
+ */
+public class UeSnapshot {
+
+    private static final int MAGIC = 0x55455353; // "UESS"
+    private static final int VERSION = 1;
+    private static final PduSession[] NO_SESSIONS = new PduSession[0];
+
+    private static final UeKeysField[] KEY_FIELDS = {
+            new UeKeysField(UeKeys::getRand, UeKeys::setRand),
+            new UeKeysField(UeKeys::getRes, UeKeys::setRes),
+            new UeKeysField(UeKeys::getResStar, UeKeys::setResStar),
+            new UeKeysField(UeKeys::getKAusf, UeKeys::setKAusf),
+            new UeKeysField(UeKeys::getKSeaf, UeKeys::setKSeaf),
+            new UeKeysField(UeKeys::getKAmf, UeKeys::setKAmf),
+            new UeKeysField(UeKeys::getKNasInt, UeKeys::setKNasInt),
+            new UeKeysField(UeKeys::getKNasEnc, UeKeys::setKNasEnc),
+    };
+
+    /**
+     * Writes the state of all the registered UEs and gNBs of the simulation to the given file.
+     */
+    public static void write(SimulationContext simCtx, Path file) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        int[] counts = new int[2];
+        simCtx.ueRegistry.forEach(ue -> {
+            counts[0]++;
+            counts[1] = Math.max(counts[1], ue.nodeId);
+        });
+        int[] gnbCount = new int[1];
+        simCtx.gnbRegistry.forEach(gnb -> gnbCount[0]++);
+
+        try (var out = new SnapshotOutput(file)) {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(counts[0]);
+            out.putInt(counts[1]);
+            out.putInt(gnbCount[0]);
+
+            var error = new IOException[1];
+            simCtx.ueRegistry.forEach(ue -> {
+                if (error[0] == null) {
+                    try {
+                        writeUe(out, ue);
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            simCtx.gnbRegistry.forEach(gnb -> {
+                if (error[0] == null) {
+                    try {
+                        writeGnb(out, gnb);
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+
+        Logging.info(Tag.SYSTEM, "Snapshot of %d UEs and %d gNBs is written to %s in %d ms", counts[0], gnbCount[0],
+                file, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Creates the UEs of the given snapshot file from the given UE template, and restores the UE contexts of the
+     * given gNBs, which are matched by their gNB IDs. The UEs and the gNBs are not registered to the simulation,
+     * and must not be running yet.
+     */
+    public static UeSimContext[] restore(SimulationContext simCtx, Path file, UeConfig template,
+                                         GnbSimContext[] gnbs) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        var gnbsById = new HashMap<Integer, GnbSimContext>();
+        for (var gnb : gnbs) {
+            gnbsById.put(gnb.config.gnbId, gnb);
+        }
+
+        try (var in = new SnapshotInput(file)) {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("not a UE snapshot file: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported UE snapshot version: " + version);
+            }
+            int ueCount = in.getInt();
+            int maxNodeId = in.getInt();
+            int gnbCount = in.getInt();
+
+            // UEs get new node IDs, the gNB records refer to the UEs with the node IDs at the time of the snapshot
+            var uesBySnapshotId = new UeSimContext[maxNodeId + 1];
+            var ues = new UeSimContext[ueCount];
+            for (int i = 0; i < ueCount; i++) {
+                int snapshotId = in.getInt();
+                var ue = readUe(in, simCtx, template, gnbsById);
+                uesBySnapshotId[snapshotId] = ue;
+                ues[i] = ue;
+            }
+            for (int i = 0; i < gnbCount; i++) {
+                readGnb(in, gnbsById, uesBySnapshotId);
+            }
+
+            Logging.info(Tag.SYSTEM, "Snapshot of %d UEs and %d gNBs is restored from %s in %d ms", ueCount,
+                    gnbCount, file, System.currentTimeMillis() - startTime);
+            return ues;
+        }
+    }
+
+    private static void writeUe(SnapshotOutput out, UeSimContext ue) throws IOException {
+        var config = ue.ueConfig;
+        out.putInt(ue.nodeId);
+        out.putString(config.supi != null ? config.supi.toString() : null);
+        out.putString(config.imei);
+        out.putBytes(config.key.toByteArray());
+        out.putInt(ue.connectedGnb != null ? ue.connectedGnb.config.gnbId : -1);
+
+        out.putByte(ue.mmCtx.mmState.ordinal());
+        out.putByte(ue.mmCtx.cmState.ordinal());
+        out.putBytes(ue.ueData.sqn != null ? ue.ueData.sqn.toByteArray() : null);
+        putIe(out, ue.mmCtx.storedGuti);
+        putIe(out, ue.mmCtx.lastVisitedRegisteredTai);
+        putIe(out, ue.mmCtx.taiList);
+
+        var nsCtx = ue.currentNsCtx;
+        out.putByte(nsCtx != null ? 1 : 0);
+        if (nsCtx != null) {
+            out.putByte(nsCtx.ngKsi.tsc.intValue());
+            out.putByte(nsCtx.ngKsi.nasKeySetIdentifier.intValue());
+            out.putShort(nsCtx.downlinkCount.overflow.intValue());
+            out.putByte(nsCtx.downlinkCount.sqn.intValue());
+            out.putShort(nsCtx.uplinkCount.overflow.intValue());
+            out.putByte(nsCtx.uplinkCount.sqn.intValue());
+            out.putByte(nsCtx.connectionIdentifier.intValue());
+            out.putByte(nsCtx.selectedAlgorithms.integrity.intValue());
+            out.putByte(nsCtx.selectedAlgorithms.ciphering.intValue());
+            for (var field : KEY_FIELDS) {
+                var key = field.getter.apply(nsCtx.keys);
+                out.putBytes(key != null ? key.toByteArray() : null);
+            }
+        }
+
+        // Tables of the UEs without PDU sessions are not allocated by the snapshot
+        var sessions = ue.smCtx.hasPduSessions() ? ue.smCtx.pduSessions() : NO_SESSIONS;
+        int sessionCount = 0;
+        for (var session : sessions) {
+            if (session != null && session != PduSession.RELEASED) {
+                sessionCount++;
+            }
+        }
+        out.putByte(sessionCount);
+        for (var session : sessions) {
+            if (session != null && session != PduSession.RELEASED) {
+                out.putByte(session.id.intValue());
+                out.putByte(session.isEstablished ? 1 : 0);
+                putIe(out, session.authorizedQoSRules);
+                putIe(out, session.sessionAmbr);
+                putIe(out, session.authorizedQoSFlowDescriptions);
+            }
+        }
+    }
+
+    private static UeSimContext readUe(SnapshotInput in, SimulationContext simCtx, UeConfig template,
+                                       HashMap<Integer, GnbSimContext> gnbsById) throws IOException {
+        var supi = Supi.parse(in.getString());
+        var imei = in.getString();
+        var key = new OctetString(in.getBytes());
+        var ue = AppConfig.createUeSimContext(simCtx, template.withIdentity(supi, imei, key));
+        ue.connectedGnb = gnbsById.get(in.getInt());
+
+        ue.mmCtx.mmState = EMmState.values()[in.getByte()];
+        ue.mmCtx.cmState = ECmState.values()[in.getByte()];
+        var sqn = in.getBytes();
+        ue.ueData.sqn = sqn != null ? new OctetString(sqn) : null;
+        var guti = getIe(in, IE5gsMobileIdentity.class);
+        ue.mmCtx.storedGuti = guti instanceof IE5gGutiMobileIdentity ? (IE5gGutiMobileIdentity) guti : null;
+        ue.mmCtx.lastVisitedRegisteredTai = getIe(in, IE5gsTrackingAreaIdentity.class);
+        ue.mmCtx.taiList = getIe(in, IE5gsTrackingAreaIdentityList.class);
+
+        if (in.getByte() != 0) {
+            var tsc = ETypeOfSecurityContext.fromValue(in.getByte());
+            var nsCtx = new NasSecurityContext(tsc, new Bit3(in.getByte()));
+            nsCtx.downlinkCount.overflow = new Octet2(in.getShort());
+            nsCtx.downlinkCount.sqn = Octet.valueOf(in.getByte());
+            nsCtx.uplinkCount.overflow = new Octet2(in.getShort());
+            nsCtx.uplinkCount.sqn = Octet.valueOf(in.getByte());
+            nsCtx.connectionIdentifier = EConnectionIdentifier.fromValue(in.getByte());
+            var integrity = ETypeOfIntegrityProtectionAlgorithm.fromValue(in.getByte());
+            var ciphering = ETypeOfCipheringAlgorithm.fromValue(in.getByte());
+            nsCtx.selectedAlgorithms = new SelectedAlgorithms(integrity, ciphering);
+            for (var field : KEY_FIELDS) {
+                var value = in.getBytes();
+                field.setter.accept(nsCtx.keys, value != null ? new OctetString(value) : null);
+            }
+            ue.currentNsCtx = nsCtx;
+        }
+
+        int sessionCount = in.getByte();
+        for (int i = 0; i < sessionCount; i++) {
+            var id = EPduSessionIdentity.fromValue(in.getByte());
+            var session = new PduSession(id);
+            session.isEstablished = in.getByte() != 0;
+            session.authorizedQoSRules = getIe(in, IEQoSRules.class);
+            session.sessionAmbr = getIe(in, IESessionAmbr.class);
+            session.authorizedQoSFlowDescriptions = getIe(in, IEQoSFlowDescriptions.class);
+            ue.smCtx.pduSessions()[id.intValue()] = session;
+        }
+        return ue;
+    }
+
+    private static void writeGnb(SnapshotOutput out, GnbSimContext gnb) throws IOException {
+        out.putInt(gnb.config.gnbId);
+        out.putLong(gnb.ueNgapIdCounter);
+        out.putInt(gnb.ueContexts.size());
+        for (var ueCtx : gnb.ueContexts.values()) {
+            out.putInt(ueCtx.ue.nodeId);
+            out.putLong(ueCtx.amfUeNgapId != null ? ueCtx.amfUeNgapId : -1);
+            out.putLong(ueCtx.ranUeNgapId);
+            out.putShort(ueCtx.streamNumber);
+            out.putShort(ueCtx.amfContext.associationId);
+        }
+    }
+
+    private static void readGnb(SnapshotInput in, HashMap<Integer, GnbSimContext> gnbsById,
+                                UeSimContext[] uesBySnapshotId) throws IOException {
+        int gnbId = in.getInt();
+        long ueNgapIdCounter = in.getLong();
+        int contextCount = in.getInt();
+
+        var gnb = gnbsById.get(gnbId);
+        if (gnb == null) {
+            Logging.warning(Tag.SYSTEM, "gNB %d of the snapshot is not configured, its UE contexts are skipped", gnbId);
+        } else {
+            gnb.ueNgapIdCounter = ueNgapIdCounter;
+        }
+
+        for (int i = 0; i < contextCount; i++) {
+            int ueId = in.getInt();
+            long amfUeNgapId = in.getLong();
+            long ranUeNgapId = in.getLong();
+            int streamNumber = in.getShort();
+            int associationId = in.getShort();
+
+            if (gnb == null || associationId >= gnb.amfContexts.length || uesBySnapshotId[ueId] == null) {
+                continue;
+            }
+
+            var ueCtx = new GnbUeContext();
+            ueCtx.ue = uesBySnapshotId[ueId];
+            ueCtx.amfUeNgapId = amfUeNgapId != -1 ? amfUeNgapId : null;
+            ueCtx.ranUeNgapId = ranUeNgapId;
+            ueCtx.streamNumber = streamNumber;
+            ueCtx.amfContext = gnb.amfContexts[associationId];
+            GnbUeManagement.addUeContext(gnb, ueCtx.ue.ctxId, ueCtx);
+        }
+    }
+
+    private static void putIe(SnapshotOutput out, InformationElement ie) throws IOException {
+        if (ie == null) {
+            out.putBytes(null);
+            return;
+        }
+        var stream = new OctetOutputStream();
+        NasEncoder.ie2346(stream, ie);
+        out.putBytes(stream.toByteArray());
+    }
+
+    private static <T extends InformationElement> T getIe(SnapshotInput in, Class<T> type) throws IOException {
+        var bytes = in.getBytes();
+        return bytes != null ? NasDecoder.ie2346(new OctetInputStream(bytes), type) : null;
+    }
+
+    private static class UeKeysField {
+        final Function<UeKeys, OctetString> getter;
+        final BiConsumer<UeKeys, OctetString> setter;
+
+        UeKeysField(Function<UeKeys, OctetString> getter,
+                    BiConsumer<UeKeys, OctetString> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+import tr.havelsan.ueransim.capture.PcapWriter;
+import tr.havelsan.ueransim.sctp.ISctpClient;
+
+import java.util.HashMap;
+
+/**
+ * An NGAP association of a gNB with one of the AMFs of its pool.
+ */
+public class GnbAmfContext {
+    public final int associationId;
+    public final AmfConfig config;
+    public final ISctpClient sctpClient;
+    // Capture of the messages of the association, null if the capture is disabled
+    public final PcapWriter.Association capture;
+    // UE contexts of the association keyed by the AMF-UE-NGAP-ID, which is only unique within an AMF. Maintained by
+    // GnbUeManagement, contexts are added once their AMF-UE-NGAP-ID is known.
+    public final HashMap<Long, GnbUeContext> ueContextsByAmfUeNgapId;
+
+    public boolean ngSetupSucceeded;
+    // Start of the running NG Setup on the simulation time, Long.MIN_VALUE if none is running. Zero is a valid time,
+    // since the virtual clock of the discrete event mode starts at zero.
+    public long ngSetupStartTime = Long.MIN_VALUE;
+    // Current weight of the smooth weighted round-robin selection
+    public double selectionWeight;
+
+    public GnbAmfContext(int associationId, AmfConfig config, ISctpClient sctpClient) {
+        this(associationId, config, sctpClient, null);
+    }
+
+    public GnbAmfContext(int associationId, AmfConfig config, ISctpClient sctpClient,
+                         PcapWriter.Association capture) {
+        this.associationId = associationId;
+        this.config = config;
+        this.sctpClient = sctpClient;
+        this.capture = capture;
+        this.ueContextsByAmfUeNgapId = new HashMap<>();
+    }
+
+    public double weight() {
+        return config.weight != null ? config.weight : 1;
+    }
+}
@@ -31,7 +31,9 @@ import tr.havelsan.ueransim.ngap2.SupportedTA;
 
 public class GnbConfig {
     public final String amfHost;
-    public final int amfPort;
+    public final Integer amfPort;
+    // AMFs to be associated with instead of amfHost and amfPort, UEs are distributed over them by weight
+    public final AmfConfig[] amfPool;
     public final boolean amfMocked;
     public final String amfMockedRemote;
 
@@ -39,13 +41,18 @@ public class GnbConfig {
     public final VPlmn gnbPlmn;
     public final SupportedTA[] supportedTAs;
 
-    public GnbConfig(String amfHost, int amfPort, boolean amfMocked, String amfMockedRemote, int gnbId, VPlmn gnbPlmn, SupportedTA[] supportedTAs) {
+    public final MockedLinkConfig amfMockedLink;
+
+    public GnbConfig(String amfHost, Integer amfPort, AmfConfig[] amfPool, boolean amfMocked, String amfMockedRemote,
+                     int gnbId, VPlmn gnbPlmn, SupportedTA[] supportedTAs, MockedLinkConfig amfMockedLink) {
         this.amfHost = amfHost;
         this.amfPort = amfPort;
+        this.amfPool = amfPool;
         this.amfMocked = amfMocked;
         this.amfMockedRemote = amfMockedRemote;
         this.gnbId = gnbId;
         this.gnbPlmn = gnbPlmn;
         this.supportedTAs = supportedTAs;
+        this.amfMockedLink = amfMockedLink;
     }
 }
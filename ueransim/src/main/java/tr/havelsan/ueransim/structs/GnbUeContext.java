@@ -26,7 +26,20 @@
 
 package tr.havelsan.ueransim.structs;
 
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.replay.ReplayedUe;
+
+import java.util.UUID;
+
 public class GnbUeContext {
+    // Key of the context in the UE contexts of the gNB
+    public UUID ueId;
+    // Direct handle of the UE, so that downlink events do not go through the simulation registry
+    public UeSimContext ue;
+    // Set instead of the UE for the UEs of a replayed trace
+    public ReplayedUe replay;
     public Long amfUeNgapId;
     public long ranUeNgapId;
+    public int streamNumber;
+    public GnbAmfContext amfContext;
 }
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+public class LoadConfig {
+    public final String ueTemplate;
+    public final String gnbTemplate;
+    public final int ueCount;
+    public final int gnbCount;
+    public final String keySeed;
+
+    public final String procedure;
+    public final String profile;
+    public final double rate;
+    public final long rampDuration;
+    public final int stepCount;
+    public final long stepDuration;
+    public final long startDelay;
+
+    public final boolean idleAfterRegistration;
+    public final double periodicJitter;
+    public final long reportInterval;
+
+    public final PacerConfig pacer;
+    public final PopulationConfig population;
+
+    public final String snapshotFile;
+    public final String restoreFile;
+
+    public LoadConfig(String ueTemplate, String gnbTemplate, int ueCount, int gnbCount, String keySeed,
+                      String procedure, String profile, double rate, long rampDuration, int stepCount,
+                      long stepDuration, long startDelay, boolean idleAfterRegistration, double periodicJitter,
+                      long reportInterval, PacerConfig pacer, PopulationConfig population, String snapshotFile,
+                      String restoreFile) {
+        this.ueTemplate = ueTemplate;
+        this.gnbTemplate = gnbTemplate;
+        this.ueCount = ueCount;
+        this.gnbCount = gnbCount;
+        this.keySeed = keySeed;
+        this.procedure = procedure;
+        this.profile = profile;
+        this.rate = rate;
+        this.rampDuration = rampDuration;
+        this.stepCount = stepCount;
+        this.stepDuration = stepDuration;
+        this.startDelay = startDelay;
+        this.idleAfterRegistration = idleAfterRegistration;
+        this.periodicJitter = periodicJitter;
+        this.reportInterval = reportInterval;
+        this.pacer = pacer;
+        this.population = population;
+        this.snapshotFile = snapshotFile;
+        this.restoreFile = restoreFile;
+    }
+}
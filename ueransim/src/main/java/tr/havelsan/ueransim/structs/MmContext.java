@@ -26,6 +26,8 @@
 
 package tr.havelsan.ueransim.structs;
 
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EMmState;
 import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
 import tr.havelsan.ueransim.nas.impl.ies.IE5gsTrackingAreaIdentity;
 import tr.havelsan.ueransim.nas.impl.ies.IE5gsTrackingAreaIdentityList;
@@ -34,6 +36,11 @@ import tr.havelsan.ueransim.nas.impl.messages.RegistrationRequest;
 
 public class MmContext {
 
+    public EMmState mmState = EMmState.DEREGISTERED;
+    public ECmState cmState = ECmState.IDLE;
+    // Start of the running authentication on the simulation time, Long.MIN_VALUE if none is running
+    public long authenticationStartTime = Long.MIN_VALUE;
+
     public RegistrationRequest registrationRequest;
 
     public IESuciMobileIdentity storedSuci;
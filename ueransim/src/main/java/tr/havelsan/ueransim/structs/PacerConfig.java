@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+public class PacerConfig {
+    public final double globalRate;
+    public final double gnbRate;
+    public final double burst;
+    public final int maxInFlight;
+
+    public final boolean closedLoop;
+    public final double minRate;
+    public final long adjustInterval;
+    public final double p99Threshold;
+    public final double failureThreshold;
+
+    public PacerConfig(double globalRate, double gnbRate, double burst, int maxInFlight, boolean closedLoop,
+                       double minRate, long adjustInterval, double p99Threshold, double failureThreshold) {
+        this.globalRate = globalRate;
+        this.gnbRate = gnbRate;
+        this.burst = burst;
+        this.maxInFlight = maxInFlight;
+        this.closedLoop = closedLoop;
+        this.minRate = minRate;
+        this.adjustInterval = adjustInterval;
+        this.p99Threshold = p99Threshold;
+        this.failureThreshold = failureThreshold;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+public class ReplayConfig {
+    public final String traceFile;
+    public final String gnbTemplate;
+    public final int gnbCount;
+
+    public final int copies;
+    // Replay speed relative to the trace, zero to replay as fast as possible
+    public final double speed;
+    public final long copyInterval;
+    public final long identityStride;
+
+    public final long startDelay;
+    public final long reportInterval;
+
+    public ReplayConfig(String traceFile, String gnbTemplate, int gnbCount, int copies, double speed,
+                        long copyInterval, long identityStride, long startDelay, long reportInterval) {
+        this.traceFile = traceFile;
+        this.gnbTemplate = gnbTemplate;
+        this.gnbCount = gnbCount;
+        this.copies = copies;
+        this.speed = speed;
+        this.copyInterval = copyInterval;
+        this.identityStride = identityStride;
+        this.startDelay = startDelay;
+        this.reportInterval = reportInterval;
+    }
+}
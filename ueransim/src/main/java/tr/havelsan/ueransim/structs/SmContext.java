@@ -26,13 +26,32 @@
 
 package tr.havelsan.ueransim.structs;
 
+/**
+ * Session management state of a UE. The tables are allocated when the first PDU session or procedure transaction
+ * is allocated, since most UEs of a population never establish a PDU session.
+ */
 public class SmContext {
+    private static final int PDU_SESSION_TABLE_SIZE = 16;
+    private static final int PROCEDURE_TRANSACTION_TABLE_SIZE = 255;
+
+    private PduSession[] pduSessions;
+    private ProcedureTransaction[] procedureTransactions;
 
-    public PduSession[] pduSessions;
-    public ProcedureTransaction[] procedureTransactions;
+    public PduSession[] pduSessions() {
+        if (pduSessions == null) {
+            pduSessions = new PduSession[PDU_SESSION_TABLE_SIZE];
+        }
+        return pduSessions;
+    }
+
+    public boolean hasPduSessions() {
+        return pduSessions != null;
+    }
 
-    public SmContext() {
-        this.pduSessions = new PduSession[16];
-        this.procedureTransactions = new ProcedureTransaction[255];
+    public ProcedureTransaction[] procedureTransactions() {
+        if (procedureTransactions == null) {
+            procedureTransactions = new ProcedureTransaction[PROCEDURE_TRANSACTION_TABLE_SIZE];
+        }
+        return procedureTransactions;
     }
 }
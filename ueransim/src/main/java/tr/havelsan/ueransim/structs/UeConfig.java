@@ -55,4 +55,24 @@ public class UeConfig {
         this.requestedNssai = requestedNssai;
         this.userLocationInformationNr = userLocationInformationNr;
     }
+
+    private UeConfig(UeConfig template, Supi supi, String imei, OctetString key) {
+        this.snn = template.snn;
+        this.key = key;
+        this.op = template.op;
+        this.amf = template.amf;
+        this.imei = imei;
+        this.supi = supi;
+        this.smsOverNasSupported = template.smsOverNasSupported;
+        this.requestedNssai = template.requestedNssai;
+        this.userLocationInformationNr = template.userLocationInformationNr;
+    }
+
+    /**
+     * Returns a configuration with the given identity, sharing all the other fields with this configuration.
+     * Shared fields are never modified, so a single template can back any number of UEs.
+     */
+    public UeConfig withIdentity(Supi supi, String imei, OctetString key) {
+        return new UeConfig(this, supi, imei, key != null ? key : this.key);
+    }
 }
@@ -28,18 +28,96 @@ package tr.havelsan.ueransim.structs;
 
 import tr.havelsan.ueransim.utils.octets.OctetString;
 
+/**
+ * Keys of a NAS security context. Keys are stored as byte arrays, since a security context is kept for every UE
+ * while most keys are only read when a key is derived. The NAS integrity and ciphering keys are read for every
+ * protected message, so they are kept as (immutable) octet strings and returned without a copy.
+ */
 public class UeKeys {
-    public OctetString rand;
-    public OctetString res;
-    public OctetString resStar; // used in 5G-AKA
+    private byte[] rand;
+    private byte[] res;
+    private byte[] resStar; // used in 5G-AKA
+
+    private byte[] kAusf;
+    private byte[] kSeaf;
+    private byte[] kAmf;
+    private OctetString kNasInt;
+    private OctetString kNasEnc;
+
+    private static OctetString toOctetString(byte[] bytes) {
+        return bytes != null ? new OctetString(bytes) : null;
+    }
+
+    private static byte[] toBytes(OctetString octetString) {
+        return octetString != null ? octetString.toByteArray() : null;
+    }
+
+    public OctetString getRand() {
+        return toOctetString(rand);
+    }
+
+    public void setRand(OctetString rand) {
+        this.rand = toBytes(rand);
+    }
 
-    public OctetString kAusf;
-    public OctetString kSeaf;
-    public OctetString kAmf;
-    public OctetString kNasInt;
-    public OctetString kNasEnc;
+    public OctetString getRes() {
+        return toOctetString(res);
+    }
+
+    public void setRes(OctetString res) {
+        this.res = toBytes(res);
+    }
+
+    public OctetString getResStar() {
+        return toOctetString(resStar);
+    }
+
+    public void setResStar(OctetString resStar) {
+        this.resStar = toBytes(resStar);
+    }
+
+    public OctetString getKAusf() {
+        return toOctetString(kAusf);
+    }
+
+    public void setKAusf(OctetString kAusf) {
+        this.kAusf = toBytes(kAusf);
+    }
+
+    public OctetString getKSeaf() {
+        return toOctetString(kSeaf);
+    }
+
+    public void setKSeaf(OctetString kSeaf) {
+        this.kSeaf = toBytes(kSeaf);
+    }
+
+    public OctetString getKAmf() {
+        return toOctetString(kAmf);
+    }
+
+    public void setKAmf(OctetString kAmf) {
+        this.kAmf = toBytes(kAmf);
+    }
+
+    public OctetString getKNasInt() {
+        return kNasInt;
+    }
+
+    public void setKNasInt(OctetString kNasInt) {
+        this.kNasInt = kNasInt;
+    }
+
+    public OctetString getKNasEnc() {
+        return kNasEnc;
+    }
+
+    public void setKNasEnc(OctetString kNasEnc) {
+        this.kNasEnc = kNasEnc;
+    }
 
     public UeKeys deepCopy() {
+        // Arrays are never modified once set and octet strings are immutable, so they can be shared
         var keys = new UeKeys();
         keys.rand = this.rand;
         keys.res = this.res;
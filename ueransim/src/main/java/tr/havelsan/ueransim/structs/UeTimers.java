@@ -27,54 +27,138 @@
 package tr.havelsan.ueransim.structs;
 
 import tr.havelsan.ueransim.api.nas.NasTimer;
+import tr.havelsan.ueransim.core.UeSimContext;
 
+/**
+ * NAS timers of a UE. Timers are created when they are first used, since most of them are never used by a UE. All
+ * methods must be called in the UE looper.
+ * <p>
+ * Default intervals are in seconds, see 3GPP TS 24.501 Table 10.2.1 and 10.3.1. Zero means provided by the network.
+ */
 public class UeTimers {
-    public final NasTimer t3346; /* MM - ... */
-    public final NasTimer t3396; /* SM - ... */
-
-    public final NasTimer t3444; /* MM - ... */
-    public final NasTimer t3445; /* MM - ... */
-
-    public final NasTimer t3502; /* MM - ... */
-    public final NasTimer t3510; /* MM - Registration Request transmission timer */
-    public final NasTimer t3511; /* MM - ... */
-    public final NasTimer t3512; /* MM - Periodic registration update timer */
-    public final NasTimer t3516; /* MM - 5G AKA - RAND and RES* storing timer */
-    public final NasTimer t3517; /* MM - Service Request transmission timer */
-    public final NasTimer t3519; /* MM - Transmission with fresh SUCI timer */
-    public final NasTimer t3520; /* MM - ... */
-    public final NasTimer t3521; /* MM - De-registration transmission timer for not switch off */
-    public final NasTimer t3525; /* MM - ... */
-    public final NasTimer t3540; /* MM - ... */
-
-    public final NasTimer t3580; /* SM - ... */
-    public final NasTimer t3581; /* SM - ... */
-    public final NasTimer t3582; /* SM - ... */
-    public final NasTimer t3583; /* SM - ... */
-    public final NasTimer t3584; /* SM - ... */
-    public final NasTimer t3585; /* SM - ... */
-
-    public UeTimers() {
-        this.t3346 = new NasTimer();
-        this.t3396 = new NasTimer();
-        this.t3444 = new NasTimer();
-        this.t3445 = new NasTimer();
-        this.t3502 = new NasTimer();
-        this.t3510 = new NasTimer();
-        this.t3511 = new NasTimer();
-        this.t3512 = new NasTimer();
-        this.t3516 = new NasTimer();
-        this.t3517 = new NasTimer();
-        this.t3519 = new NasTimer();
-        this.t3520 = new NasTimer();
-        this.t3521 = new NasTimer();
-        this.t3525 = new NasTimer();
-        this.t3540 = new NasTimer();
-        this.t3580 = new NasTimer();
-        this.t3581 = new NasTimer();
-        this.t3582 = new NasTimer();
-        this.t3583 = new NasTimer();
-        this.t3584 = new NasTimer();
-        this.t3585 = new NasTimer();
+    private static final int TIMER_COUNT = 21;
+
+    private final UeSimContext ctx;
+    private NasTimer[] timers;
+
+    public UeTimers(UeSimContext ctx) {
+        this.ctx = ctx;
+    }
+
+    // MM - ...
+    public NasTimer t3346() {
+        return timer(0, 3346, true, 0);
+    }
+
+    // SM - ...
+    public NasTimer t3396() {
+        return timer(1, 3396, false, 0);
+    }
+
+    // MM - ...
+    public NasTimer t3444() {
+        return timer(2, 3444, true, 0);
+    }
+
+    // MM - ...
+    public NasTimer t3445() {
+        return timer(3, 3445, true, 0);
+    }
+
+    // MM - ...
+    public NasTimer t3502() {
+        return timer(4, 3502, true, 720);
+    }
+
+    // MM - Registration Request transmission timer
+    public NasTimer t3510() {
+        return timer(5, 3510, true, 15);
+    }
+
+    // MM - ...
+    public NasTimer t3511() {
+        return timer(6, 3511, true, 10);
+    }
+
+    // MM - Periodic registration update timer
+    public NasTimer t3512() {
+        return timer(7, 3512, true, 3240);
+    }
+
+    // MM - 5G AKA - RAND and RES* storing timer
+    public NasTimer t3516() {
+        return timer(8, 3516, true, 30);
+    }
+
+    // MM - Service Request transmission timer
+    public NasTimer t3517() {
+        return timer(9, 3517, true, 15);
+    }
+
+    // MM - Transmission with fresh SUCI timer
+    public NasTimer t3519() {
+        return timer(10, 3519, true, 60);
+    }
+
+    // MM - ...
+    public NasTimer t3520() {
+        return timer(11, 3520, true, 15);
+    }
+
+    // MM - De-registration transmission timer for not switch off
+    public NasTimer t3521() {
+        return timer(12, 3521, true, 15);
+    }
+
+    // MM - ...
+    public NasTimer t3525() {
+        return timer(13, 3525, true, 60);
+    }
+
+    // MM - ...
+    public NasTimer t3540() {
+        return timer(14, 3540, true, 10);
+    }
+
+    // SM - ...
+    public NasTimer t3580() {
+        return timer(15, 3580, false, 16);
+    }
+
+    // SM - ...
+    public NasTimer t3581() {
+        return timer(16, 3581, false, 16);
+    }
+
+    // SM - ...
+    public NasTimer t3582() {
+        return timer(17, 3582, false, 16);
+    }
+
+    // SM - ...
+    public NasTimer t3583() {
+        return timer(18, 3583, false, 16);
+    }
+
+    // SM - ...
+    public NasTimer t3584() {
+        return timer(19, 3584, false, 0);
+    }
+
+    // SM - ...
+    public NasTimer t3585() {
+        return timer(20, 3585, false, 0);
+    }
+
+    private NasTimer timer(int index, int timerCode, boolean isMmTimer, int defaultInterval) {
+        if (timers == null) {
+            timers = new NasTimer[TIMER_COUNT];
+        }
+        var timer = timers[index];
+        if (timer == null) {
+            timer = new NasTimer(ctx, timerCode, isMmTimer, defaultInterval);
+            timers[index] = timer;
+        }
+        return timer;
     }
 }
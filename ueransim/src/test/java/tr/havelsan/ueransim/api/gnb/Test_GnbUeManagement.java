@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.api.gnb;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
+import tr.havelsan.ueransim.structs.GnbUeContext;
+
+import java.util.UUID;
+
+public class Test_GnbUeManagement {
+
+    @Test
+    public void testFindByNgapIds() {
+        var gnb = new GnbSimContext(new SimulationContext());
+        var firstAmf = new GnbAmfContext(0, null, null);
+        var secondAmf = new GnbAmfContext(1, null, null);
+        gnb.amfContexts = new GnbAmfContext[]{firstAmf, secondAmf};
+
+        var first = ueContext(1, firstAmf);
+        var second = ueContext(2, secondAmf);
+        var firstId = new UUID(0, 1);
+        var secondId = new UUID(0, 2);
+        GnbUeManagement.addUeContext(gnb, firstId, first);
+        GnbUeManagement.addUeContext(gnb, secondId, second);
+
+        Assert.assertEquals(firstId, GnbUeManagement.findUe(gnb, 1));
+        Assert.assertEquals(secondId, GnbUeManagement.findUe(gnb, 2));
+        Assert.assertNull(GnbUeManagement.findUe(gnb, 3));
+        Assert.assertNull(GnbUeManagement.findUeByAmfUeNgapId(gnb, firstAmf, 7));
+
+        // AMF-UE-NGAP-IDs are only unique within an AMF
+        GnbUeManagement.setAmfUeNgapId(first, 7);
+        GnbUeManagement.setAmfUeNgapId(second, 7);
+        Assert.assertEquals(firstId, GnbUeManagement.findUeByAmfUeNgapId(gnb, firstAmf, 7));
+        Assert.assertEquals(secondId, GnbUeManagement.findUeByAmfUeNgapId(gnb, secondAmf, 7));
+
+        Assert.assertSame(first, GnbUeManagement.removeUeContext(gnb, firstId));
+        Assert.assertNull(GnbUeManagement.removeUeContext(gnb, firstId));
+        Assert.assertNull(GnbUeManagement.findUe(gnb, 1));
+        Assert.assertNull(GnbUeManagement.findUeByAmfUeNgapId(gnb, firstAmf, 7));
+        Assert.assertEquals(secondId, GnbUeManagement.findUeByAmfUeNgapId(gnb, secondAmf, 7));
+        Assert.assertEquals(1, gnb.ueContexts.size());
+    }
+
+    private static GnbUeContext ueContext(long ranUeNgapId, GnbAmfContext amfContext) {
+        var gnbUeCtx = new GnbUeContext();
+        gnbUeCtx.ranUeNgapId = ranUeNgapId;
+        gnbUeCtx.amfContext = amfContext;
+        return gnbUeCtx;
+    }
+}
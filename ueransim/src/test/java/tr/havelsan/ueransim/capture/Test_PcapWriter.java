@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.capture;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.zip.CRC32C;
+
+public class Test_PcapWriter {
+
+    @Test
+    public void testRecords() throws Exception {
+        var dir = Files.createTempDirectory("pcap");
+        var writer = new PcapWriter(dir.resolve("ngap.pcap"), 0);
+        writer.start();
+
+        var association = writer.newAssociation("192.168.1.5", 0);
+        association.uplink(1, new byte[]{1, 2, 3, 4, 5});
+        association.downlink(7, new byte[]{6, 7, 8, 9});
+        association.uplink(1, new byte[]{10});
+        writer.close();
+
+        var file = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("ngap.pcap")));
+        Assert.assertEquals(0xA1B2C3D4, file.getInt(0));
+        Assert.assertEquals(101, file.getInt(20));
+        file.position(24);
+
+        var first = readPacket(file);
+        Assert.assertEquals(48 + 8, first.remaining());
+        Assert.assertEquals(132, first.get(9) & 0xFF);
+        Assert.assertEquals(0xC0A80105, first.getInt(16));
+        Assert.assertEquals(38412, first.getShort(22) & 0xFFFF);
+        Assert.assertEquals(5 + 16, first.getShort(34) & 0xFFFF);
+        Assert.assertEquals(1, first.getShort(40));
+        Assert.assertEquals(0, first.getShort(42));
+        Assert.assertEquals(60, first.getInt(44));
+        Assert.assertEquals(3, first.get(50));
+        assertChecksums(first);
+
+        var second = readPacket(file);
+        Assert.assertEquals(0xC0A80105, second.getInt(12));
+        Assert.assertEquals(7, second.getShort(40));
+        Assert.assertEquals(0, second.getInt(36));
+        assertChecksums(second);
+
+        var third = readPacket(file);
+        Assert.assertEquals(1, third.getInt(36));
+        Assert.assertEquals(1, third.getShort(42));
+        assertChecksums(third);
+
+        Assert.assertFalse(file.hasRemaining());
+        Assert.assertEquals(0, writer.getDroppedMessages());
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        var dir = Files.createTempDirectory("pcap");
+        var path = dir.resolve("ngap.pcap");
+        // Room for the global header and two records of 100 bytes of data
+        var writer = new PcapWriter(path, 24 + 2 * (16 + 48 + 100));
+        writer.start();
+
+        var association = writer.newAssociation("amf", 38412);
+        for (int i = 0; i < 5; i++) {
+            association.uplink(0, new byte[100]);
+        }
+        writer.close();
+
+        Assert.assertEquals(24 + 2 * (16 + 48 + 100), Files.size(path));
+        Assert.assertEquals(24 + 2 * (16 + 48 + 100), Files.size(writer.filePath(1)));
+        Assert.assertEquals(24 + 16 + 48 + 100, Files.size(writer.filePath(2)));
+        Assert.assertEquals(dir.resolve("ngap-2.pcap"), writer.filePath(2));
+    }
+
+    @Test
+    public void testWriteErrorDropsMessages() throws Exception {
+        var dir = Files.createTempDirectory("pcap");
+        var path = dir.resolve("ngap.pcap");
+        // Room for the global header and one record of 100 bytes of data
+        var writer = new PcapWriter(path, 24 + 16 + 48 + 100);
+        // The second file cannot be opened, so the capture fails when the first one is rotated
+        Files.createDirectory(writer.filePath(1));
+        writer.start();
+
+        var association = writer.newAssociation("amf", 38412);
+        for (int i = 0; i < 5; i++) {
+            association.uplink(0, new byte[100]);
+        }
+        writer.close();
+
+        Assert.assertEquals(24 + 16 + 48 + 100, Files.size(path));
+        Assert.assertEquals(4, writer.getDroppedMessages());
+    }
+
+    private static ByteBuffer readPacket(ByteBuffer file) {
+        file.position(file.position() + 8);
+        int length = file.getInt();
+        Assert.assertEquals(length, file.getInt());
+        var packet = file.slice();
+        packet.limit(length);
+        file.position(file.position() + length);
+        return packet;
+    }
+
+    private static void assertChecksums(ByteBuffer packet) {
+        int sum = 0;
+        for (int i = 0; i < 20; i += 2) {
+            sum += packet.getShort(i) & 0xFFFF;
+        }
+        while ((sum >> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >> 16);
+        }
+        Assert.assertEquals(0xFFFF, sum);
+
+        var sctp = packet.duplicate();
+        sctp.position(20);
+        int stored = sctp.order(ByteOrder.LITTLE_ENDIAN).getInt(28);
+        var copy = new byte[sctp.remaining()];
+        sctp.get(copy);
+        copy[8] = copy[9] = copy[10] = copy[11] = 0;
+        var crc = new CRC32C();
+        crc.update(copy);
+        Assert.assertEquals((int) crc.getValue(), stored);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.events.BaseEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test_NodeRegistry {
+
+    private static class TestNode extends BaseSimContext<BaseEvent> {
+        TestNode(NodeRegistry<TestNode> registry) {
+            super(null, registry.allocateId());
+        }
+    }
+
+    @Test
+    public void testIdsAreDense() {
+        var registry = new NodeRegistry<TestNode>();
+        for (int i = 0; i < 10_000; i++) {
+            var node = new TestNode(registry);
+            Assert.assertEquals(i, node.nodeId);
+            registry.register(node);
+        }
+
+        Assert.assertEquals(10_000, registry.size());
+        Assert.assertEquals(0, registry.get(0).nodeId);
+        Assert.assertEquals(9_999, registry.get(9_999).nodeId);
+        Assert.assertNull(registry.get(10_000));
+        Assert.assertNull(registry.get(-1));
+    }
+
+    @Test
+    public void testUnregisteredNodesAreSkipped() {
+        var registry = new NodeRegistry<TestNode>();
+        var first = new TestNode(registry);
+        var second = new TestNode(registry);
+        var third = new TestNode(registry);
+        registry.register(third);
+        registry.register(first);
+
+        var visited = new ArrayList<TestNode>();
+        registry.forEach(visited::add);
+        Assert.assertEquals(List.of(first, third), visited);
+        Assert.assertNull(registry.get(second.nodeId));
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws InterruptedException {
+        var registry = new NodeRegistry<TestNode>();
+        var threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    registry.register(new TestNode(registry));
+                }
+            });
+            threads[t].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(80_000, registry.size());
+        for (int id = 0; id < 80_000; id++) {
+            Assert.assertEquals(id, registry.get(id).nodeId);
+        }
+    }
+}
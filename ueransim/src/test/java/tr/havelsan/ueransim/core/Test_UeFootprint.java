@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import tr.havelsan.ueransim.api.nas.NasSecurityContext;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.nas.impl.values.VAmfSetId;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.bits.Bit6;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+public class Test_UeFootprint {
+
+    // Steady-state heap budget of a registered UE, excluding the state shared by all UEs. Measured at about
+    // 2030 bytes on a 64-bit JVM with compressed oops; the budget leaves a margin of about 25% above that.
+    private static final long BYTES_PER_UE_BUDGET = 2560;
+    private static final int UE_COUNT = 1000;
+
+    @Test
+    public void testRegisteredUeFitsInBudget() {
+        var simCtx = new SimulationContext();
+        var template = new UeConfig("5G:mnc001.mcc001.3gppnetwork.org", "5C95978B5E89488CB7DB44381E237809",
+                "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "8000", "356938035643809", "imsi-001001000000001", true,
+                null, null);
+
+        var ues = new UeSimContext[UE_COUNT];
+        for (int i = 0; i < ues.length; i++) {
+            ues[i] = registeredUe(simCtx, template, i);
+        }
+
+        var shared = GraphLayout.parseInstance(simCtx, template);
+        long bytesPerUe = GraphLayout.parseInstance((Object) ues).subtract(shared).totalSize() / UE_COUNT;
+
+        Assert.assertTrue(String.format("%d bytes per registered UE exceeds the budget of %d bytes", bytesPerUe,
+                BYTES_PER_UE_BUDGET), bytesPerUe <= BYTES_PER_UE_BUDGET);
+    }
+
+    /**
+     * Creates a UE with the state that is kept after a successful initial registration.
+     */
+    private static UeSimContext registeredUe(SimulationContext simCtx, UeConfig template, int index) {
+        var msin = String.format("%010d", index + 1);
+        var key = new byte[16];
+        key[15] = (byte) index;
+
+        var ue = new UeSimContext(simCtx);
+        ue.ueConfig = template.withIdentity(new Supi("imsi", "00100" + msin), "35693803564380" + index % 10,
+                new OctetString(key));
+        ue.ueData.sqn = new OctetString(new byte[6]);
+
+        ue.mmCtx.mmState = EMmState.REGISTERED;
+        ue.mmCtx.cmState = ECmState.CONNECTED;
+        ue.mmCtx.storedGuti = new IE5gGutiMobileIdentity(EMccValue.fromValue(1), EMncValue.fromValue(1),
+                new Octet(1), new VAmfSetId(1), new Bit6(1), new V5gTmsi(index));
+
+        var nsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, new Bit3(0));
+        nsCtx.keys.setRand(new OctetString(new byte[16]));
+        nsCtx.keys.setRes(new OctetString(new byte[16]));
+        nsCtx.keys.setResStar(new OctetString(new byte[16]));
+        nsCtx.keys.setKAusf(new OctetString(new byte[32]));
+        nsCtx.keys.setKSeaf(new OctetString(new byte[32]));
+        nsCtx.keys.setKAmf(new OctetString(new byte[32]));
+        nsCtx.keys.setKNasInt(new OctetString(new byte[16]));
+        nsCtx.keys.setKNasEnc(new OctetString(new byte[16]));
+        ue.currentNsCtx = nsCtx;
+
+        // Timers touched by the initial registration procedure
+        ue.ueTimers.t3510();
+        ue.ueTimers.t3502();
+        ue.ueTimers.t3511();
+        ue.ueTimers.t3519();
+        ue.ueTimers.t3346();
+        ue.ueTimers.t3512();
+        return ue;
+    }
+}
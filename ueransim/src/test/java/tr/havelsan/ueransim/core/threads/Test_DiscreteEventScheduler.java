@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.core.BaseSimContext;
+import tr.havelsan.ueransim.core.timers.TimerEntry;
+import tr.havelsan.ueransim.core.timers.TimingWheel;
+import tr.havelsan.ueransim.core.timers.VirtualClock;
+import tr.havelsan.ueransim.events.BaseEvent;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Test_DiscreteEventScheduler {
+
+    private static class TestEvent extends BaseEvent {
+        final int hop;
+
+        TestEvent(int hop) {
+            this.hop = hop;
+        }
+    }
+
+    private static class TestNode extends BaseSimContext<TestEvent> {
+        final String name;
+
+        TestNode(String name) {
+            super(null, 0);
+            this.name = name;
+        }
+    }
+
+    /**
+     * Two nodes passing an event back and forth, through a timer with a random delay on one way and through a mocked
+     * link on the other way. Each handled event is recorded with the virtual time.
+     */
+    private static class PingPong {
+        final VirtualClock clock = new VirtualClock();
+        final TimingWheel wheel = new TimingWheel(clock, 10);
+        final DiscreteEventScheduler scheduler = new DiscreteEventScheduler(clock, wheel, this::cycle);
+        final Random random;
+        final TestNode ping = new TestNode("ping");
+        final TestNode pong = new TestNode("pong");
+        final MockedSCTPClient link;
+        final List<String> trace = new ArrayList<>();
+        final int hops;
+
+        PingPong(long seed, int hops) throws Exception {
+            this.random = new Random(seed);
+            this.hops = hops;
+            this.link = new MockedSCTPClient((streamNumber, data, responder) -> responder.respond(streamNumber, data),
+                    1, 3_000_000, 0, 0, scheduler::nanoTime, random);
+            link.start();
+            scheduler.attach(ping);
+            scheduler.attach(pong);
+            scheduler.addLink(link, (data, streamNumber) -> pong.pushEvent(new TestEvent(data[0])));
+        }
+
+        private void cycle(BaseSimContext<?> ctx) {
+            var node = (TestNode) ctx;
+            var event = node.popEvent();
+            if (event == null) {
+                return;
+            }
+            Assert.assertSame(Thread.currentThread(), node.getLooperThread());
+            trace.add(clock.millis() + " " + node.name + " " + event.hop);
+
+            int next = event.hop + 1;
+            if (next == hops) {
+                return;
+            }
+            if (node == ping) {
+                link.send(0, new byte[]{(byte) next});
+            } else {
+                wheel.schedule(new TimerEntry() {
+                    @Override
+                    protected void onExpire(long generation) {
+                        ping.pushEvent(new TestEvent(next));
+                    }
+                }, 10 + random.nextInt(1000));
+            }
+        }
+
+        boolean run() throws Exception {
+            ping.pushEvent(new TestEvent(0));
+            return scheduler.run(() -> trace.size() == hops);
+        }
+    }
+
+    @Test
+    public void testRunsInTimestampOrder() throws Exception {
+        var run = new PingPong(1, 100);
+        Assert.assertTrue(run.run());
+        Assert.assertEquals(100, run.trace.size());
+
+        long previous = -1;
+        for (int i = 0; i < run.trace.size(); i++) {
+            var fields = run.trace.get(i).split(" ");
+            long time = Long.parseLong(fields[0]);
+            Assert.assertTrue(time >= previous);
+            Assert.assertEquals(i % 2 == 0 ? "ping" : "pong", fields[1]);
+            Assert.assertEquals(i, Integer.parseInt(fields[2]));
+            previous = time;
+        }
+
+        // The link delays and the timers are on virtual time
+        Assert.assertTrue(run.clock.millis() >= 50 * (3 + 10));
+        Assert.assertEquals(run.scheduler.nanoTime() / 1_000_000, run.clock.millis());
+    }
+
+    @Test
+    public void testSameSeedGivesSameTrace() throws Exception {
+        var first = new PingPong(42, 200);
+        var second = new PingPong(42, 200);
+        var other = new PingPong(43, 200);
+        first.run();
+        second.run();
+        other.run();
+
+        Assert.assertEquals(first.trace, second.trace);
+        Assert.assertNotEquals(first.trace, other.trace);
+    }
+
+    @Test
+    public void testStopsWhenNothingIsLeft() throws Exception {
+        var run = new PingPong(1, 10);
+        Assert.assertFalse(run.scheduler.run(() -> false));
+
+        run.ping.pushEvent(new TestEvent(0));
+        Assert.assertFalse(run.scheduler.run(() -> false));
+        Assert.assertEquals(10, run.trace.size());
+    }
+}
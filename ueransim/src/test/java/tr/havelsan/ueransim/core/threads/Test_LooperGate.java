@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.threads;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Test_LooperGate {
+
+    @Test
+    public void testCloseWaitsForRunningBatch() throws Exception {
+        var gate = new LooperGate();
+        var slot = gate.newSlot();
+        var closed = new AtomicBoolean();
+
+        gate.enter(slot);
+        var closer = new Thread(() -> {
+            try {
+                gate.close();
+                closed.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        closer.start();
+
+        Thread.sleep(50);
+        Assert.assertFalse(closed.get());
+
+        gate.exit(slot);
+        closer.join(5000);
+        Assert.assertTrue(closed.get());
+        gate.open();
+    }
+
+    @Test
+    public void testEnterBlocksWhileClosed() throws Exception {
+        var gate = new LooperGate();
+        var slot = gate.newSlot();
+        var entered = new CountDownLatch(1);
+
+        gate.close();
+        var looper = new Thread(() -> {
+            gate.enter(slot);
+            entered.countDown();
+            gate.exit(slot);
+        });
+        looper.start();
+
+        Assert.assertFalse(entered.await(50, TimeUnit.MILLISECONDS));
+        gate.open();
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        looper.join(5000);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core.timers;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test_TimingWheel {
+
+    private static class TestEntry extends TimerEntry {
+        final List<Long> expiries = new ArrayList<>();
+        final VirtualClock clock;
+
+        TestEntry(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        protected void onExpire(long generation) {
+            expiries.add(clock.millis());
+        }
+    }
+
+    private static void advanceBy(TimingWheel wheel, VirtualClock clock, long millis, long step) {
+        for (long i = 0; i < millis; i += step) {
+            clock.advance(step);
+            wheel.advance();
+        }
+    }
+
+    @Test
+    public void testShortTimer() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel(clock, 10);
+        var entry = new TestEntry(clock);
+
+        wheel.schedule(entry, 150);
+        advanceBy(wheel, clock, 140, 10);
+        Assert.assertTrue(entry.expiries.isEmpty());
+
+        advanceBy(wheel, clock, 10, 10);
+        Assert.assertEquals(List.of(150L), entry.expiries);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testLongTimersAreCascaded() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel(clock, 10);
+
+        // T3512 default and a few intervals crossing the level boundaries
+        long[] delays = {640, 650, 40_960, 41_000, 3_240_000, 2_621_440, 54 * 3600 * 1000L};
+        var entries = new ArrayList<TestEntry>();
+        for (var delay : delays) {
+            var entry = new TestEntry(clock);
+            wheel.schedule(entry, delay);
+            entries.add(entry);
+        }
+
+        advanceBy(wheel, clock, 54 * 3600 * 1000L, 1000);
+
+        for (int i = 0; i < delays.length; i++) {
+            var expiries = entries.get(i).expiries;
+            Assert.assertEquals(1, expiries.size());
+            Assert.assertTrue(expiries.get(0) >= delays[i]);
+            Assert.assertTrue(expiries.get(0) < delays[i] + 1000);
+        }
+    }
+
+    @Test
+    public void testNextExpiryJumpsToDeadlines() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel(clock, 10);
+        Assert.assertEquals(Long.MAX_VALUE, wheel.nextExpiryMillis());
+
+        long[] delays = {150, 640, 650, 41_000, 3_240_000};
+        var entries = new ArrayList<TestEntry>();
+        for (var delay : delays) {
+            var entry = new TestEntry(clock);
+            wheel.schedule(entry, delay);
+            entries.add(entry);
+        }
+
+        int steps = 0;
+        while (wheel.size() > 0) {
+            long next = wheel.nextExpiryMillis();
+            Assert.assertTrue(next > clock.millis());
+            clock.set(next);
+            wheel.advance();
+            steps++;
+        }
+
+        // Expiries are exact, and the idle periods are skipped at least one turn of the first level at a time
+        for (int i = 0; i < delays.length; i++) {
+            Assert.assertEquals(List.of(delays[i]), entries.get(i).expiries);
+        }
+        Assert.assertTrue(steps <= 3_240_000 / 640 + delays.length);
+        Assert.assertEquals(Long.MAX_VALUE, wheel.nextExpiryMillis());
+    }
+
+    @Test
+    public void testCancelAndReschedule() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel(clock, 10);
+        var cancelled = new TestEntry(clock);
+        var restarted = new TestEntry(clock);
+
+        wheel.schedule(cancelled, 100);
+        wheel.schedule(restarted, 100);
+        Assert.assertEquals(2, wheel.size());
+
+        advanceBy(wheel, clock, 50, 10);
+        Assert.assertTrue(wheel.cancel(cancelled));
+        Assert.assertFalse(wheel.cancel(cancelled));
+        wheel.schedule(restarted, 100);
+        Assert.assertEquals(1, wheel.size());
+
+        advanceBy(wheel, clock, 200, 10);
+        Assert.assertTrue(cancelled.expiries.isEmpty());
+        Assert.assertEquals(List.of(150L), restarted.expiries);
+    }
+
+    @Test
+    public void testGenerationChangesOnStop() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel(clock, 10);
+        var entry = new TestEntry(clock);
+
+        wheel.schedule(entry, 10);
+        var generation = entry.getGeneration();
+        wheel.cancel(entry);
+        Assert.assertNotEquals(generation, entry.getGeneration());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.metrics;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class Test_LatencyHistogram {
+
+    @Test
+    public void testBucketBoundaries() {
+        long previousHighest = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long highest = LatencyHistogram.highestValueOf(i);
+            Assert.assertEquals(i, LatencyHistogram.indexOf(highest));
+            Assert.assertEquals(i, LatencyHistogram.indexOf(previousHighest + 1));
+            previousHighest = highest;
+        }
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, previousHighest);
+    }
+
+    @Test
+    public void testRelativeError() {
+        for (long value = 1; value < LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            Assert.assertTrue(highest >= value);
+            Assert.assertTrue((highest - value) / (double) value < 1.0 / LatencyHistogram.SUB_BUCKET_HALF);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        var histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        var snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(1000_000, snapshot.getMax());
+        Assert.assertEquals(500_500, snapshot.getMean(), 1e-6);
+        Assert.assertEquals(500_000, snapshot.getValueAtPercentile(50), 500_000 / 64.0);
+        Assert.assertEquals(990_000, snapshot.getValueAtPercentile(99), 990_000 / 64.0);
+        Assert.assertEquals(1000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testInterval() {
+        var histogram = new LatencyHistogram();
+        histogram.record(10);
+        var first = histogram.snapshot();
+
+        histogram.record(20);
+        histogram.record(30);
+        var interval = histogram.snapshot().minus(first);
+
+        Assert.assertEquals(2, interval.getCount());
+        Assert.assertEquals(50, interval.getSum());
+        Assert.assertEquals(20, interval.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testEncodeAndMerge() {
+        var first = new LatencyHistogram();
+        var second = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            (i % 2 == 0 ? first : second).record(i * 1000);
+        }
+
+        var merged = HistogramSnapshot.decode(first.snapshot().encode())
+                .plus(HistogramSnapshot.decode(second.snapshot().encode()));
+        var expected = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            expected.record(i * 1000);
+        }
+
+        Assert.assertEquals(expected.snapshot().encode(), merged.encode());
+        Assert.assertEquals(1000, merged.getCount());
+        Assert.assertEquals(1000_000, merged.getMax());
+        Assert.assertEquals(0, HistogramSnapshot.decode(HistogramSnapshot.empty().encode()).getCount());
+    }
+}
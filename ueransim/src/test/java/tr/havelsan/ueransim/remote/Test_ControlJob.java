@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.remote;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.core.timers.VirtualClock;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test_ControlJob {
+    private static final EProcedure PROCEDURE = EProcedure.DEREGISTRATION;
+
+    private final VirtualClock clock = new VirtualClock(1000);
+    private final SimulationContext simCtx = new SimulationContext(clock, 1);
+    private final List<String> output = new ArrayList<>();
+    private final List<ControlJob> finished = new ArrayList<>();
+
+    private ControlJob startJob(UeSimContext... targets) {
+        var job = new ControlJob(1, simCtx, targets, "deregistration", PROCEDURE, 0, output::add, finished::add);
+        job.start();
+        advance(100);
+        return job;
+    }
+
+    private void advance(long millis) {
+        clock.advance(millis);
+        simCtx.timingWheel.advance();
+    }
+
+    private String lastOutput() {
+        return output.get(output.size() - 1);
+    }
+
+    @Test
+    public void testCountsOnlyTheProceduresStartedByTheJob() {
+        var first = new UeSimContext(simCtx);
+        var second = new UeSimContext(simCtx);
+        var other = new UeSimContext(simCtx);
+        var job = startJob(first, second);
+
+        // Not started after the command was pushed, or not a target
+        job.onProcedureFinished(first, PROCEDURE, EProcedureResult.SUCCESS, 0);
+        job.onProcedureStarted(other, PROCEDURE);
+        job.onProcedureFinished(other, PROCEDURE, EProcedureResult.SUCCESS, 0);
+
+        job.onProcedureStarted(first, PROCEDURE);
+        job.onProcedureStarted(first, EProcedure.INITIAL_REGISTRATION);
+        job.onProcedureFinished(first, PROCEDURE, EProcedureResult.SUCCESS, 0);
+        // A retry of the same UE is not counted again
+        job.onProcedureStarted(first, PROCEDURE);
+        job.onProcedureFinished(first, PROCEDURE, EProcedureResult.FAILURE, 0);
+        advance(1000);
+        Assert.assertTrue(finished.isEmpty());
+
+        job.onProcedureStarted(second, PROCEDURE);
+        job.onProcedureFinished(second, PROCEDURE, EProcedureResult.TIMEOUT, 0);
+        advance(1000);
+
+        Assert.assertEquals(1, finished.size());
+        Assert.assertTrue(lastOutput(), lastOutput().startsWith("done "));
+        Assert.assertTrue(lastOutput(), lastOutput().endsWith("dispatched=2/2 succeeded=1 failed=1 timedOut=0"));
+    }
+
+    @Test
+    public void testTimesOutWhenTargetDoesNotStart() {
+        var first = new UeSimContext(simCtx);
+        var second = new UeSimContext(simCtx);
+        var job = startJob(first, second);
+
+        job.onProcedureStarted(first, PROCEDURE);
+        job.onProcedureFinished(first, PROCEDURE, EProcedureResult.SUCCESS, 0);
+        advance(ControlJob.PROCEDURE_TIMEOUT_MILLIS - 1000);
+        Assert.assertTrue(finished.isEmpty());
+
+        advance(1000);
+        Assert.assertEquals(1, finished.size());
+        Assert.assertTrue(lastOutput(), lastOutput().startsWith("timeout "));
+        Assert.assertTrue(lastOutput(), lastOutput().endsWith("succeeded=1 failed=0 timedOut=1"));
+
+        // Late finishes do not change the finished job
+        job.onProcedureStarted(second, PROCEDURE);
+        job.onProcedureFinished(second, PROCEDURE, EProcedureResult.SUCCESS, 0);
+        advance(1000);
+        Assert.assertEquals(1, finished.size());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.remote;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class Test_TargetSelector {
+
+    @Test
+    public void testRange() {
+        var selector = TargetSelector.parse("1-50000");
+        Assert.assertFalse(selector.isGnbFilter());
+        Assert.assertFalse(selector.matches(0, -1));
+        Assert.assertTrue(selector.matches(1, -1));
+        Assert.assertTrue(selector.matches(50000, 3));
+        Assert.assertFalse(selector.matches(50001, -1));
+    }
+
+    @Test
+    public void testSingleAndAll() {
+        var single = TargetSelector.parse("7");
+        Assert.assertTrue(single.matches(7, -1));
+        Assert.assertFalse(single.matches(8, -1));
+
+        var all = TargetSelector.parse("all");
+        Assert.assertTrue(all.matches(0, -1));
+        Assert.assertTrue(all.matches(Integer.MAX_VALUE, 2));
+    }
+
+    @Test
+    public void testServingGnb() {
+        var selector = TargetSelector.parse("gnb:2");
+        Assert.assertTrue(selector.isGnbFilter());
+        Assert.assertTrue(selector.matches(100, 2));
+        Assert.assertFalse(selector.matches(100, 3));
+        Assert.assertFalse(selector.matches(100, -1));
+    }
+
+    @Test
+    public void testInvalidSelectors() {
+        for (var text : new String[]{"", "x", "-1", "5-3", "1-", "gnb:", "gnb:-2"}) {
+            try {
+                TargetSelector.parse(text);
+                Assert.fail("accepted: " + text);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+}
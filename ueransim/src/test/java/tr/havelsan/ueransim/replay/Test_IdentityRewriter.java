@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.load.UeConfigFactory;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.impl.enums.EFollowOnRequest;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.enums.ERegistrationType;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gsRegistrationType;
+import tr.havelsan.ueransim.nas.impl.ies.IEImeiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IEImsiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IENasKeySetIdentifier;
+import tr.havelsan.ueransim.nas.impl.messages.IdentityResponse;
+import tr.havelsan.ueransim.nas.impl.messages.RegistrationRequest;
+import tr.havelsan.ueransim.nas.impl.values.VHomeNetworkPki;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_S_TMSI;
+import tr.havelsan.ueransim.ngap.ngap_ies.FiveG_TMSI;
+
+public class Test_IdentityRewriter {
+
+    @Test
+    public void testAddToDigits() {
+        Assert.assertEquals("0000000006", IdentityRewriter.addToDigits("0000000001", 5));
+        Assert.assertEquals("0000000001", IdentityRewriter.addToDigits("9999999999", 2));
+        Assert.assertEquals("12a4", IdentityRewriter.addToDigits("12a4", 5));
+        Assert.assertNull(IdentityRewriter.addToDigits(null, 5));
+    }
+
+    @Test
+    public void testRegistrationRequestSuci() {
+        var suci = new IEImsiMobileIdentity(EMccValue.fromValue(1), EMncValue.fromValue(1), "0000",
+                IEImsiMobileIdentity.EProtectionSchemeIdentifier.NULL_SCHEME, new VHomeNetworkPki(0), "0000000001");
+        var request = new RegistrationRequest();
+        request.registrationType = new IE5gsRegistrationType(EFollowOnRequest.NO_FOR_PENDING,
+                ERegistrationType.INITIAL_REGISTRATION);
+        request.nasKeySetIdentifier = new IENasKeySetIdentifier(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT,
+                IENasKeySetIdentifier.NOT_AVAILABLE_OR_RESERVED);
+        request.mobileIdentity = suci;
+        var nasPdu = NasEncoder.nasPdu(request);
+
+        Assert.assertSame(nasPdu, IdentityRewriter.rewriteNasPdu(nasPdu, 0));
+
+        var rewritten = (RegistrationRequest) NasDecoder.nasPdu(IdentityRewriter.rewriteNasPdu(nasPdu, 1000));
+        var rewrittenSuci = (IEImsiMobileIdentity) rewritten.mobileIdentity;
+        Assert.assertEquals("0000001001", rewrittenSuci.schemeOutput);
+        Assert.assertEquals("0000", rewrittenSuci.routingIndicator);
+        Assert.assertEquals(ERegistrationType.INITIAL_REGISTRATION, rewritten.registrationType.registrationType);
+    }
+
+    @Test
+    public void testIdentityResponseImei() {
+        var nasPdu = NasEncoder.nasPdu(new IdentityResponse(new IEImeiMobileIdentity("356938035643809")));
+
+        var rewritten = (IdentityResponse) NasDecoder.nasPdu(IdentityRewriter.rewriteNasPdu(nasPdu, 3));
+        var imei = ((IEImeiMobileIdentity) rewritten.mobileIdentity).imei;
+        Assert.assertEquals("35693803564383", imei.substring(0, 14));
+        Assert.assertEquals(UeConfigFactory.luhnDigit("35693803564383"), imei.charAt(14) - '0');
+    }
+
+    @Test
+    public void testUndecodableNasPdu() {
+        var nasPdu = new byte[]{0x7E, 0x00};
+        Assert.assertSame(nasPdu, IdentityRewriter.rewriteNasPdu(nasPdu, 10));
+    }
+
+    @Test
+    public void testFiveGSTmsiWrapsAround() {
+        var fiveGSTmsi = new FiveG_S_TMSI();
+        fiveGSTmsi.fiveG_TMSI = new FiveG_TMSI(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE});
+
+        var rewritten = IdentityRewriter.rewriteFiveGSTmsi(fiveGSTmsi, 3);
+        Assert.assertArrayEquals(new byte[]{0, 0, 0, 1}, rewritten.fiveG_TMSI.getValue());
+        Assert.assertSame(fiveGSTmsi.aMFSetID, rewritten.aMFSetID);
+        Assert.assertSame(fiveGSTmsi, IdentityRewriter.rewriteFiveGSTmsi(fiveGSTmsi, 0));
+    }
+}
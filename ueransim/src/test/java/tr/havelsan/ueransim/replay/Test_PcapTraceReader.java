@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.capture.PcapWriter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+public class Test_PcapTraceReader {
+
+    @Test
+    public void testCaptureRoundTrip() throws Exception {
+        var path = Files.createTempDirectory("trace").resolve("ngap.pcap");
+        var writer = new PcapWriter(path, 0);
+        writer.start();
+
+        var first = writer.newAssociation("10.1.2.3", 38412);
+        var second = writer.newAssociation("10.1.2.4", 38412);
+        first.uplink(0, new byte[]{1, 2, 3});
+        first.downlink(5, new byte[]{4, 5, 6, 7, 8});
+        second.uplink(3, new byte[]{9});
+        writer.close();
+
+        var chunks = PcapTraceReader.read(path);
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, chunks.get(0).data);
+        Assert.assertArrayEquals(new byte[]{4, 5, 6, 7, 8}, chunks.get(1).data);
+        Assert.assertArrayEquals(new byte[]{9}, chunks.get(2).data);
+        Assert.assertEquals(0, chunks.get(0).streamNumber);
+        Assert.assertEquals(5, chunks.get(1).streamNumber);
+        Assert.assertEquals(3, chunks.get(2).streamNumber);
+        Assert.assertEquals(chunks.get(0).association, chunks.get(1).association);
+        Assert.assertNotEquals(chunks.get(0).association, chunks.get(2).association);
+        Assert.assertTrue(chunks.get(0).timeMicros <= chunks.get(1).timeMicros);
+    }
+
+    @Test
+    public void testLittleEndianEthernet() throws Exception {
+        var data = new byte[]{0x00, 0x0F, 0x40, 0x40};
+        int packetLength = 14 + 20 + 12 + 16 + data.length;
+        var file = ByteBuffer.allocate(24 + 16 + packetLength).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0).putInt(65535).putInt(1);
+        file.putInt(100).putInt(250).putInt(packetLength).putInt(packetLength);
+
+        file.order(ByteOrder.BIG_ENDIAN);
+        file.put(new byte[12]).putShort((short) 0x0800);
+        file.put((byte) 0x45).put((byte) 0).putShort((short) (packetLength - 14)).putInt(0);
+        file.put((byte) 64).put((byte) 132).putShort((short) 0).putInt(0x0A000001).putInt(0x0A000002);
+        file.putShort((short) 38412).putShort((short) 38412).putInt(1).putInt(0);
+        file.put((byte) 0).put((byte) 3).putShort((short) (16 + data.length)).putInt(7).putShort((short) 2)
+                .putShort((short) 0).putInt(60).put(data);
+        file.flip();
+
+        var chunks = PcapTraceReader.read(file);
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertEquals(100_000_250L, chunks.get(0).timeMicros);
+        Assert.assertEquals(2, chunks.get(0).streamNumber);
+        Assert.assertArrayEquals(data, chunks.get(0).data);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.ngap2.NgapMessageType;
+
+import java.util.List;
+
+public class Test_ReplayedUe {
+
+    @Test
+    public void testMessagesWaitForDownlinks() {
+        var counters = new ReplayCounters();
+        var ue = new ReplayedUe(null, 0, 0, counters);
+
+        var first = message(0);
+        var second = message(1);
+        var third = message(1);
+        var fourth = message(2);
+
+        Assert.assertTrue(ue.admit(first));
+        Assert.assertFalse(ue.admit(second));
+        // Kept behind the held message, even though it would not wait for a downlink otherwise
+        Assert.assertFalse(ue.admit(third));
+        Assert.assertFalse(ue.admit(fourth));
+        Assert.assertEquals(3, counters.held.sum());
+        Assert.assertNull(ue.pollReleased());
+
+        ue.downlinkReceived();
+        Assert.assertSame(second, ue.pollReleased());
+        Assert.assertSame(third, ue.pollReleased());
+        Assert.assertNull(ue.pollReleased());
+        Assert.assertEquals(1, counters.held.sum());
+
+        ue.downlinkReceived();
+        Assert.assertSame(fourth, ue.pollReleased());
+        Assert.assertNull(ue.pollReleased());
+        Assert.assertEquals(0, counters.held.sum());
+
+        Assert.assertTrue(ue.admit(message(2)));
+    }
+
+    @Test
+    public void testMessagesInTraceOrder() {
+        var counters = new ReplayCounters();
+        var ue = new ReplayedUe(null, 0, 0, counters);
+
+        ue.downlinkReceived();
+        ue.downlinkReceived();
+        Assert.assertTrue(ue.admit(message(1)));
+        Assert.assertTrue(ue.admit(message(2)));
+        Assert.assertFalse(ue.admit(message(3)));
+        Assert.assertEquals(1, counters.held.sum());
+    }
+
+    private static NgapTrace.Message message(int downlinksBefore) {
+        return new NgapTrace.Message(0, 0, downlinksBefore, NgapMessageType.UplinkNASTransport, List.of(), null,
+                null);
+    }
+}
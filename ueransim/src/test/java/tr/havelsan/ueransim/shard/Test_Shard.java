@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.shard;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.enums.EProcedure;
+import tr.havelsan.ueransim.enums.EProcedureResult;
+import tr.havelsan.ueransim.metrics.MetricsRegistry;
+import tr.havelsan.ueransim.structs.LoadConfig;
+import tr.havelsan.ueransim.structs.PacerConfig;
+
+public class Test_Shard {
+
+    private static LoadConfig config(int ueCount, int gnbCount) {
+        var pacer = new PacerConfig(200, 100, 10, 500, false, 10, 2000, 1000, 0.05);
+        return new LoadConfig("ue.yaml", "gnb.yaml", ueCount, gnbCount, "", "initial-registration", "poisson",
+                100, 10000, 5, 2000, 2000, false, 0.05, 10000, pacer, null, "snapshot.bin", "");
+    }
+
+    @Test
+    public void testRangesAreDisjointAndComplete() {
+        var config = config(1003, 7);
+        int nextUe = 0;
+        int nextGnb = 0;
+        for (int i = 0; i < 4; i++) {
+            var shard = Shard.of(config, i, 4);
+            Assert.assertEquals(nextUe, shard.firstUe);
+            Assert.assertEquals(nextGnb, shard.firstGnb);
+            Assert.assertTrue(shard.ueCount >= 250 && shard.ueCount <= 251);
+            Assert.assertTrue(shard.gnbCount >= 1 && shard.gnbCount <= 2);
+            nextUe += shard.ueCount;
+            nextGnb += shard.gnbCount;
+        }
+        Assert.assertEquals(1003, nextUe);
+        Assert.assertEquals(7, nextGnb);
+    }
+
+    @Test
+    public void testConfigOfShard() {
+        var shard = Shard.parse(config(1000, 4), "1/4");
+        var config = shard.apply(config(1000, 4));
+
+        Assert.assertEquals(250, config.ueCount);
+        Assert.assertEquals(1, config.gnbCount);
+        Assert.assertEquals(25, config.rate, 1e-9);
+        Assert.assertEquals(50, config.pacer.globalRate, 1e-9);
+        Assert.assertEquals(100, config.pacer.gnbRate, 1e-9);
+        Assert.assertEquals(125, config.pacer.maxInFlight);
+        Assert.assertEquals("snapshot-1.bin", config.snapshotFile);
+        Assert.assertEquals("", config.restoreFile);
+    }
+
+    @Test
+    public void testTooManyShards() {
+        try {
+            Shard.of(config(1000, 2), 0, 3);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testMetricsAreAggregated() {
+        var first = new MetricsRegistry();
+        var second = new MetricsRegistry();
+        for (int i = 1; i <= 100; i++) {
+            var registry = i % 2 == 0 ? first : second;
+            registry.procedure(EProcedure.INITIAL_REGISTRATION).started();
+            registry.procedure(EProcedure.INITIAL_REGISTRATION).finished(EProcedureResult.SUCCESS, i * 1_000_000L);
+        }
+        second.procedure(EProcedure.DEREGISTRATION).started();
+
+        var metrics = new ShardMetrics();
+        metrics.add(ShardMetrics.decode(ShardMetrics.of(first).encode()));
+        metrics.add(ShardMetrics.decode(ShardMetrics.of(second).encode()));
+
+        Assert.assertEquals(100, metrics.getStarted(EProcedure.INITIAL_REGISTRATION));
+        Assert.assertEquals(1, metrics.getStarted(EProcedure.DEREGISTRATION));
+        Assert.assertEquals(0, metrics.getStarted(EProcedure.NG_SETUP));
+        var latency = metrics.getLatency(EProcedure.INITIAL_REGISTRATION);
+        Assert.assertEquals(100, latency.getCount());
+        Assert.assertEquals(100_000_000, latency.getMax());
+        Assert.assertEquals(0, ShardMetrics.decode("").getStarted(EProcedure.INITIAL_REGISTRATION));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.snapshot;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.api.gnb.GnbUeManagement;
+import tr.havelsan.ueransim.api.nas.NasSecurityContext;
+import tr.havelsan.ueransim.api.sys.Simulation;
+import tr.havelsan.ueransim.api.sys.SimulationContext;
+import tr.havelsan.ueransim.core.GnbSimContext;
+import tr.havelsan.ueransim.core.UeSimContext;
+import tr.havelsan.ueransim.enums.ECmState;
+import tr.havelsan.ueransim.enums.EConnectionIdentifier;
+import tr.havelsan.ueransim.enums.EMmState;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.enums.EPduSessionIdentity;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfCipheringAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfIntegrityProtectionAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.nas.impl.values.VAmfSetId;
+import tr.havelsan.ueransim.structs.GnbAmfContext;
+import tr.havelsan.ueransim.structs.GnbConfig;
+import tr.havelsan.ueransim.structs.GnbUeContext;
+import tr.havelsan.ueransim.structs.PduSession;
+import tr.havelsan.ueransim.structs.SelectedAlgorithms;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.bits.Bit6;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.Octet2;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class Test_UeSnapshot {
+
+    private static final int GNB_ID = 5;
+
+    private static final UeConfig TEMPLATE = new UeConfig("5G:mnc001.mcc001.3gppnetwork.org",
+            "5C95978B5E89488CB7DB44381E237809", "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "8000", "356938035643809",
+            "imsi-001001000000001", true, null, null);
+
+    @Test
+    public void testWriteAndRestore() throws Exception {
+        var simCtx = new SimulationContext();
+        var gnb = newGnb(simCtx);
+        Simulation.registerGnb(simCtx, gnb);
+        gnb.ueNgapIdCounter = 7;
+
+        var ue = new UeSimContext(simCtx);
+        ue.ueConfig = TEMPLATE.withIdentity(new Supi("imsi", "001010000000002"), "356938035643802",
+                new OctetString("000102030405060708090A0B0C0D0E0F"));
+        ue.connectedGnb = gnb;
+        ue.ueData.sqn = new OctetString("000000000021");
+        ue.mmCtx.mmState = EMmState.REGISTERED;
+        ue.mmCtx.cmState = ECmState.IDLE;
+        ue.mmCtx.storedGuti = new IE5gGutiMobileIdentity(EMccValue.fromValue(1), EMncValue.fromValue(1),
+                new Octet(1), new VAmfSetId(1), new Bit6(1), new V5gTmsi(0x12345678));
+
+        var nsCtx = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, new Bit3(2));
+        nsCtx.uplinkCount.overflow = new Octet2(3);
+        nsCtx.uplinkCount.sqn = new Octet(4);
+        nsCtx.downlinkCount.sqn = new Octet(5);
+        nsCtx.connectionIdentifier = EConnectionIdentifier.THREE_3GPP_ACCESS;
+        nsCtx.selectedAlgorithms = new SelectedAlgorithms(ETypeOfIntegrityProtectionAlgorithm.IA2_128,
+                ETypeOfCipheringAlgorithm.EA1_128);
+        nsCtx.keys.setKAmf(new OctetString("AA".repeat(32)));
+        nsCtx.keys.setKNasInt(new OctetString("BB".repeat(16)));
+        nsCtx.keys.setKNasEnc(new OctetString("CC".repeat(16)));
+        ue.currentNsCtx = nsCtx;
+
+        var session = new PduSession(EPduSessionIdentity.fromValue(1));
+        session.isEstablished = true;
+        ue.smCtx.pduSessions()[1] = session;
+        Simulation.registerUe(simCtx, ue);
+
+        var ueCtx = new GnbUeContext();
+        ueCtx.ue = ue;
+        ueCtx.amfUeNgapId = 42L;
+        ueCtx.ranUeNgapId = 3;
+        ueCtx.streamNumber = 1;
+        ueCtx.amfContext = gnb.amfContexts[0];
+        GnbUeManagement.addUeContext(gnb, ue.ctxId, ueCtx);
+
+        var file = Files.createTempDirectory("snapshot").resolve("ues.bin");
+        UeSnapshot.write(simCtx, file);
+
+        var restoredCtx = new SimulationContext();
+        var restoredGnb = newGnb(restoredCtx);
+        var ues = UeSnapshot.restore(restoredCtx, file, TEMPLATE, new GnbSimContext[]{restoredGnb});
+
+        Assert.assertEquals(1, ues.length);
+        var restored = ues[0];
+        Assert.assertEquals("imsi-001010000000002", restored.ueConfig.supi.toString());
+        Assert.assertEquals("356938035643802", restored.ueConfig.imei);
+        Assert.assertEquals(ue.ueConfig.key, restored.ueConfig.key);
+        Assert.assertSame(restoredGnb, restored.connectedGnb);
+        Assert.assertEquals(ue.ueData.sqn, restored.ueData.sqn);
+        Assert.assertEquals(EMmState.REGISTERED, restored.mmCtx.mmState);
+        Assert.assertEquals(ECmState.IDLE, restored.mmCtx.cmState);
+        Assert.assertEquals(0x12345678L, restored.mmCtx.storedGuti.tmsi.value.longValue());
+        Assert.assertNull(restored.mmCtx.taiList);
+
+        var restoredNsCtx = restored.currentNsCtx;
+        Assert.assertNotNull(restoredNsCtx);
+        Assert.assertEquals(2, restoredNsCtx.ngKsi.nasKeySetIdentifier.intValue());
+        Assert.assertEquals(3, restoredNsCtx.uplinkCount.overflow.intValue());
+        Assert.assertEquals(4, restoredNsCtx.uplinkCount.sqn.intValue());
+        Assert.assertEquals(5, restoredNsCtx.downlinkCount.sqn.intValue());
+        Assert.assertEquals(EConnectionIdentifier.THREE_3GPP_ACCESS, restoredNsCtx.connectionIdentifier);
+        Assert.assertEquals(ETypeOfIntegrityProtectionAlgorithm.IA2_128, restoredNsCtx.selectedAlgorithms.integrity);
+        Assert.assertEquals(ETypeOfCipheringAlgorithm.EA1_128, restoredNsCtx.selectedAlgorithms.ciphering);
+        Assert.assertEquals(nsCtx.keys.getKAmf(), restoredNsCtx.keys.getKAmf());
+        Assert.assertEquals(nsCtx.keys.getKNasInt(), restoredNsCtx.keys.getKNasInt());
+        Assert.assertEquals(nsCtx.keys.getKNasEnc(), restoredNsCtx.keys.getKNasEnc());
+        Assert.assertNull(restoredNsCtx.keys.getRand());
+
+        var restoredSession = restored.smCtx.pduSessions()[1];
+        Assert.assertNotNull(restoredSession);
+        Assert.assertTrue(restoredSession.isEstablished);
+        Assert.assertNull(restoredSession.sessionAmbr);
+
+        Assert.assertEquals(7, restoredGnb.ueNgapIdCounter);
+        Assert.assertEquals(1, restoredGnb.ueContexts.size());
+        var restoredUeCtx = restoredGnb.ueContexts.get(restored.ctxId);
+        Assert.assertSame(restored, restoredUeCtx.ue);
+        Assert.assertEquals(Long.valueOf(42), restoredUeCtx.amfUeNgapId);
+        Assert.assertEquals(3, restoredUeCtx.ranUeNgapId);
+        Assert.assertEquals(1, restoredUeCtx.streamNumber);
+        Assert.assertSame(restoredGnb.amfContexts[0], restoredUeCtx.amfContext);
+        Assert.assertEquals(restored.ctxId, GnbUeManagement.findUe(restoredGnb, 3));
+        Assert.assertEquals(restored.ctxId,
+                GnbUeManagement.findUeByAmfUeNgapId(restoredGnb, restoredGnb.amfContexts[0], 42));
+    }
+
+    @Test
+    public void testRestoreRejectsOtherFiles() throws Exception {
+        var file = Files.createTempDirectory("snapshot").resolve("other.bin");
+        Files.write(file, new byte[64]);
+
+        var simCtx = new SimulationContext();
+        try {
+            UeSnapshot.restore(simCtx, file, TEMPLATE, new GnbSimContext[0]);
+            Assert.fail("restore must fail for a file that is not a snapshot");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("not a UE snapshot file"));
+        }
+    }
+
+    private static GnbSimContext newGnb(SimulationContext simCtx) {
+        var gnb = new GnbSimContext(simCtx);
+        gnb.config = new GnbConfig(null, null, null, true, null, GNB_ID, null, null, null);
+        gnb.amfContexts = new GnbAmfContext[]{new GnbAmfContext(0, null, null)};
+        return gnb;
+    }
+}
@@ -38,8 +38,18 @@ public class Logging {
 
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
     private static final AtomicInteger functionDepth = new AtomicInteger(0);
+    private static volatile boolean debugEnabled = true;
+
+    public static boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    public static void setDebugEnabled(boolean enabled) {
+        debugEnabled = enabled;
+    }
 
     public static void debug(Tag tag, String message, Object... args) {
+        if (!debugEnabled) return;
         log(Severity.DEBUG, Color.WHITE_BRIGHT, functionDepth.get(), tag, message, args);
     }
 
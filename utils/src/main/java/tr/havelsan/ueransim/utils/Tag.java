@@ -37,5 +37,6 @@ public enum Tag {
     CONNECTION,
     EVENT,
     NAS_SECURITY,
+    NAS_TIMER,
     NOT_IMPL_YET;
 }
@@ -47,12 +47,23 @@ import java.io.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 public final class Utils {
 
@@ -415,34 +426,85 @@ public final class Utils {
         return null;
     }
 
+    public static boolean hasCommandLineFlag(String[] args, String flag) {
+        for (var arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads the native library in the given resource. The library is extracted to a per-user directory only the user
+     * can write to, under a name derived from its content, and the extracted file is reused by later runs if its
+     * content is the same. If that directory can not be used, the library is extracted to a new private temporary
+     * directory instead.
+     */
     public static synchronized void loadLibraryFromResource(String name) {
         if (loadedResLibs.contains(name)) {
             return;
         }
         try {
-            InputStream in = Utils.class.getClassLoader().getResourceAsStream(name);
-            if (in == null) {
-                throw new RuntimeException("resource not found: " + name);
-            }
-
-            byte[] buffer = new byte[1024];
-            int read;
-            File temp = File.createTempFile(name, "");
-            temp.deleteOnExit();
-
-            FileOutputStream fos = new FileOutputStream(temp);
-            while ((read = in.read(buffer)) != -1) {
-                fos.write(buffer, 0, read);
+            byte[] content = getResourceFile(name);
+            var crc = new CRC32();
+            crc.update(content);
+            var fileName = String.format("%08x-%s", crc.getValue(), name);
+
+            var dir = nativeLibraryDirectory();
+            var file = dir != null ? dir.resolve(fileName) : null;
+            if (file == null || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                    || !Arrays.equals(Files.readAllBytes(file), content)) {
+                if (dir == null) {
+                    // Created with owner-only permissions
+                    dir = Files.createTempDirectory("ueransim-");
+                    dir.toFile().deleteOnExit();
+                    file = dir.resolve(fileName);
+                    file.toFile().deleteOnExit();
+                }
+                var temp = Files.createTempFile(dir, name, ".tmp");
+                Files.write(temp, content);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             }
-            fos.close();
-            in.close();
-            System.load(temp.getAbsolutePath());
+            System.load(file.toAbsolutePath().toString());
             loadedResLibs.add(name);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Returns the per-user directory of the extracted native libraries, creating it with owner-only permissions if it
+     * does not exist. Returns null if the directory can not be used safely, i.e. if it is not a directory owned by the
+     * current user, or if others can write to it.
+     */
+    private static Path nativeLibraryDirectory() {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return null;
+        }
+        try {
+            var dir = Paths.get(System.getProperty("user.home"), ".cache", "ueransim");
+            Files.createDirectories(dir.getParent());
+            try {
+                Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            } catch (FileAlreadyExistsException ignored) {
+            }
+
+            var attributes = Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            var user = dir.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!attributes.isDirectory() || !attributes.owner().equals(user)
+                    || attributes.permissions().contains(PosixFilePermission.GROUP_WRITE)
+                    || attributes.permissions().contains(PosixFilePermission.OTHERS_WRITE)) {
+                return null;
+            }
+            return dir;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
     /**
      * Returns new octet string as 1-octet length is added at beginning of the given octet string.
      * (The length is added using Big Endian)
@@ -34,6 +34,15 @@ import tr.havelsan.ueransim.utils.bits.Bit;
  */
 public final class Octet extends OctetN {
 
+    // Octets are immutable, so every octet string can share the same 256 instances
+    private static final Octet[] CACHE = new Octet[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Octet(i);
+        }
+    }
+
     public Octet() {
         this(0);
     }
@@ -46,6 +55,16 @@ public final class Octet extends OctetN {
         this(Utils.toLong(hex));
     }
 
+    /**
+     * Returns a shared instance for the values between 0 and 255, and a new instance otherwise.
+     */
+    public static Octet valueOf(long value) {
+        if (value >= 0 && value < CACHE.length) {
+            return CACHE[(int) value];
+        }
+        return new Octet(value);
+    }
+
     @Override
     public final Octet setBit(int index, int bit) {
         return new Octet(super.setBit(index, bit).longValue());
@@ -43,7 +43,7 @@ public final class OctetString implements Iterable<Octet> {
     public OctetString(int[] octetInts) {
         var data = new Octet[octetInts.length];
         for (int i = 0; i < octetInts.length; i++)
-            data[i] = new Octet(octetInts[i]);
+            data[i] = Octet.valueOf(octetInts[i]);
 
         this.data = data;
         this.length = data.length;
@@ -52,7 +52,7 @@ public final class OctetString implements Iterable<Octet> {
     public OctetString(byte[] octetBytes) {
         var data = new Octet[octetBytes.length];
         for (int i = 0; i < octetBytes.length; i++)
-            data[i] = new Octet(octetBytes[i] & 0xFF);
+            data[i] = Octet.valueOf(octetBytes[i] & 0xFF);
 
         this.data = data;
         this.length = data.length;
@@ -85,7 +85,7 @@ public final class OctetString implements Iterable<Octet> {
         }
         Octet[] arr = s1.getAsArray();
         for (int i = 0; i < s1.length; i++) {
-            arr[i] = new Octet(arr[i].intValue() ^ s2.get(i).intValue());
+            arr[i] = Octet.valueOf(arr[i].intValue() ^ s2.get(i).intValue());
         }
         return new OctetString(arr);
     }